@@ -0,0 +1,154 @@
+package org.indoorgml.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.visualizer.CellSpaceBatch;
+import org.indoorgml.visualizer.CellSpaceGeometryBuilder;
+import org.indoorgml.visualizer.InstancedStateMarkers;
+import org.indoorgml.visualizer.SceneSynchronizer;
+import org.indoorgml.visualizer.StateGeometryBuilder;
+import org.indoorgml.visualizer.TransitionGeometryBuilder;
+import org.indoorgml.visualizer.TransitionNetwork;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing one geometry per polygon against batched cell
+ * space meshes for a grid building of {@code size} rooms, headless. The build
+ * benchmarks report the geometry and vertex count of the scene as secondary
+ * results. {@code deleteCell} removes one cell through a
+ * {@link SceneSynchronizer}, which is compared to {@code rebuildScene}, the
+ * time to rebuild the whole scene instead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CellSpaceBatchBenchmark {
+
+    static final int DELETIONS = 100;
+    private static final ColorRGBA[] PALETTE = {
+            ColorRGBA.Blue, ColorRGBA.Orange, ColorRGBA.Cyan, ColorRGBA.Magenta, ColorRGBA.Brown
+    };
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private AssetManager assetManager;
+    private IndoorGMLModel model;
+    private List<CellSpace> cells;
+
+    @Setup
+    public void setUp() {
+        assetManager = new DesktopAssetManager(true);
+        model = SyntheticBuildings.grid(size, 100);
+        cells = new ArrayList<>(model.getCellSpaces());
+    }
+
+    /**
+     * Size of the built scene.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SceneSize {
+        public long geometries;
+        public long vertices;
+    }
+
+    /**
+     * A synchronized scene that loses {@value #DELETIONS} cells per iteration.
+     */
+    @State(Scope.Thread)
+    public static class LiveScene {
+        IndoorGMLModel model;
+        List<String> victims;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(CellSpaceBatchBenchmark benchmark) {
+            model = SyntheticBuildings.grid(benchmark.size, 100);
+            List<CellSpace> list = new ArrayList<>(model.getCellSpaces());
+            CellSpaceBatch colored = CellSpaceGeometryBuilder.buildVertexColoredCellSpaces(list,
+                    benchmark.assetManager, PALETTE, 0.5f);
+            InstancedStateMarkers markers = StateGeometryBuilder.buildInstancedStates(model.getStates(),
+                    benchmark.assetManager);
+            TransitionNetwork network = TransitionGeometryBuilder.buildTransitionNetwork(model.getTransitions(),
+                    benchmark.assetManager);
+            model.addChangeListener(new SceneSynchronizer(colored, markers, network));
+            victims = new ArrayList<>(DELETIONS);
+            for (int i = 0; i < DELETIONS; i++) {
+                victims.add(list.get(i * (list.size() / DELETIONS)).getId());
+            }
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    public Node perPolygon(SceneSize scene) {
+        Node node = CellSpaceGeometryBuilder.buildCellSpacesFromCells(cells, assetManager);
+        scene.geometries = node.getQuantity();
+        scene.vertices = countVertices(node);
+        return node;
+    }
+
+    @Benchmark
+    public CellSpaceBatch batched(SceneSize scene) {
+        CellSpaceBatch batch = CellSpaceGeometryBuilder.buildBatchedCellSpaces(cells, assetManager, PALETTE, 0.5f);
+        scene.geometries = batch.getGeometryCount();
+        scene.vertices = batch.getVertexCount();
+        return batch;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, batchSize = DELETIONS)
+    @Measurement(iterations = 10, batchSize = DELETIONS)
+    public void deleteCell(LiveScene scene) {
+        scene.model.removeCellSpace(scene.victims.get(scene.next++));
+    }
+
+    @Benchmark
+    public Object[] rebuildScene() {
+        return new Object[] {
+                CellSpaceGeometryBuilder.buildVertexColoredCellSpaces(cells, assetManager, PALETTE, 0.5f),
+                StateGeometryBuilder.buildInstancedStates(model.getStates(), assetManager),
+                TransitionGeometryBuilder.buildTransitionNetwork(model.getTransitions(), assetManager)
+        };
+    }
+
+    private static long countVertices(Node node) {
+        long count = 0;
+        for (Spatial s : node.getChildren()) {
+            if (s instanceof Geometry geom) {
+                count += geom.getMesh().getVertexCount();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,131 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.ModelSnapshot;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks that move random rooms of a grid of {@code size} rooms on a
+ * writer thread while two reader threads read the model, the way a render
+ * thread and routing workers read a model that is edited live. In the
+ * {@code snapshot} group the readers only take snapshots; in the {@code walk}
+ * group they also walk all Transitions and fail the benchmark if a
+ * Transition does not start at its State within a snapshot.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConcurrentReadBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    private IndoorGMLModel model;
+    private int handles;
+
+    @Setup
+    public void setUp() {
+        model = build(size);
+        handles = model.snapshot().getCellSpaceHandleCount();
+    }
+
+    /**
+     * Random source of the writer.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        final Random random = new Random(7);
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public void snapshotMove(Writer writer) {
+        move(writer.random);
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(2)
+    public ModelSnapshot snapshotRead() {
+        return model.snapshot();
+    }
+
+    @Benchmark
+    @Group("walk")
+    @GroupThreads(1)
+    public void walkMove(Writer writer) {
+        move(writer.random);
+    }
+
+    @Benchmark
+    @Group("walk")
+    @GroupThreads(2)
+    public int walkRead() {
+        ModelSnapshot snapshot = model.snapshot();
+        int count = 0;
+        for (Transition t : snapshot.getTransitions()) {
+            StatePoint a = t.getStateA();
+            double[] coords = t.getGeometry().getCoordinates();
+            if (snapshot.getState(a.getHandle()) != a || coords[0] != a.getPosition().getX()
+                    || coords[1] != a.getPosition().getY()) {
+                throw new IllegalStateException("Transition " + t.getId() + " does not match its State");
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private void move(Random random) {
+        model.moveCellSpace(random.nextInt(handles), random.nextDouble() - 0.5, random.nextDouble() - 0.5, 0);
+    }
+
+    private static IndoorGMLModel build(int cells) {
+        int columns = (int) Math.ceil(Math.sqrt(cells));
+        IndoorGMLModel model = new IndoorGMLModel();
+        List<StatePoint> states = new ArrayList<>(cells);
+        model.beginBatch();
+        for (int i = 0; i < cells; i++) {
+            List<Polygon> polygons = new ArrayList<>(1);
+            polygons.add(SyntheticBuildings.floorQuad((i % columns) * SyntheticBuildings.ROOM,
+                    (i / columns) * SyntheticBuildings.ROOM, 0, SyntheticBuildings.ROOM, SyntheticBuildings.ROOM));
+            CellSpace cell = model.addCellSpace(polygons);
+            states.add(cell.getState());
+        }
+        for (int i = 0; i < cells; i++) {
+            if ((i + 1) % columns != 0 && i + 1 < cells) {
+                model.addTransition(states.get(i), states.get(i + 1));
+            }
+            if (i + columns < cells) {
+                model.addTransition(states.get(i), states.get(i + columns));
+            }
+        }
+        model.endBatch();
+        return model;
+    }
+}
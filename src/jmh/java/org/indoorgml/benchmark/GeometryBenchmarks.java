@@ -0,0 +1,62 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.Vector3d;
+import org.indoorgml.util.GeometryUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the bounding box and scale kernels of
+ * {@link GeometryUtils} over all polygons of a grid building of
+ * {@code size} rooms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GeometryBenchmarks {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private List<Polygon> polygons;
+    private boolean inverse;
+
+    @Setup
+    public void setUp() {
+        polygons = new ArrayList<>(size * 6);
+        for (CellSpace cs : SyntheticBuildings.grid(size, 500).getCellSpaces()) {
+            polygons.addAll(cs.getPolygons());
+        }
+    }
+
+    @Benchmark
+    public Vector3d computeBoundingCenter() {
+        return GeometryUtils.computeBoundingCenter(polygons);
+    }
+
+    @Benchmark
+    public void applyScale() {
+        // alternate the factor so that the coordinates stay in range
+        GeometryUtils.applyScale(polygons, inverse ? 0.5 : 2.0);
+        inverse = !inverse;
+    }
+}
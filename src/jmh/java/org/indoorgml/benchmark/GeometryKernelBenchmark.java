@@ -0,0 +1,182 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.Vector3d;
+import org.indoorgml.util.GeometryUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks that fit georeferenced coordinates into a unit scene the way
+ * the examples used to, with separate passes for the center, the largest
+ * dimension, the scale and the translation, against the fused single pass
+ * kernels of {@link GeometryUtils}. Runs on a flat coordinate array and on
+ * packed floor polygons of {@code vertices} vertices in total. The
+ * {@code Vector} variant forks a JVM with the Vector API module, so the
+ * fused kernels use SIMD; the others run the scalar fallback.
+ * <p>
+ * Fitting coordinates that already fit does the same work, so the data is not
+ * restored between invocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GeometryKernelBenchmark {
+
+    private static final double ORIGIN_X = 62762.359;
+    private static final double ORIGIN_Y = 49638.265;
+    private static final double SIZE = 10.0;
+
+    @Param({"1000000", "10000000"})
+    public int vertices;
+
+    private double[] coords;
+    private List<Polygon> polygons;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        coords = new double[vertices * 3];
+        for (int i = 0; i < coords.length; i += 3) {
+            coords[i] = ORIGIN_X + random.nextDouble() * 800;
+            coords[i + 1] = ORIGIN_Y + random.nextDouble() * 700;
+            coords[i + 2] = random.nextDouble() * 2500;
+        }
+        polygons = new ArrayList<>(vertices / 4);
+        for (int i = 0; i < vertices / 4; i++) {
+            polygons.add(SyntheticBuildings.floorQuad(ORIGIN_X + random.nextDouble() * 800,
+                    ORIGIN_Y + random.nextDouble() * 700, random.nextInt(40) * SyntheticBuildings.HEIGHT,
+                    SyntheticBuildings.ROOM, SyntheticBuildings.ROOM));
+        }
+    }
+
+    /**
+     * Center and largest dimension as two bound passes, then scale and
+     * translation as two more passes.
+     */
+    @Benchmark
+    public double[] arraySeparate() {
+        double[] c = coords;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < c.length; i += 3) {
+            minX = Math.min(minX, c[i]);
+            minY = Math.min(minY, c[i + 1]);
+            minZ = Math.min(minZ, c[i + 2]);
+            maxX = Math.max(maxX, c[i]);
+            maxY = Math.max(maxY, c[i + 1]);
+            maxZ = Math.max(maxZ, c[i + 2]);
+        }
+        double s = SIZE / Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+        for (int i = 0; i < c.length; i++) {
+            c[i] *= s;
+        }
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        minZ = Double.POSITIVE_INFINITY;
+        maxX = Double.NEGATIVE_INFINITY;
+        maxY = Double.NEGATIVE_INFINITY;
+        maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < c.length; i += 3) {
+            minX = Math.min(minX, c[i]);
+            minY = Math.min(minY, c[i + 1]);
+            minZ = Math.min(minZ, c[i + 2]);
+            maxX = Math.max(maxX, c[i]);
+            maxY = Math.max(maxY, c[i + 1]);
+            maxZ = Math.max(maxZ, c[i + 2]);
+        }
+        double cx = (minX + maxX) / 2;
+        double cy = (minY + maxY) / 2;
+        double cz = (minZ + maxZ) / 2;
+        for (int i = 0; i < c.length; i += 3) {
+            c[i] -= cx;
+            c[i + 1] -= cy;
+            c[i + 2] -= cz;
+        }
+        return c;
+    }
+
+    @Benchmark
+    public double[] arrayFused() {
+        double[] bounds = GeometryUtils.emptyBounds();
+        GeometryUtils.extendBounds(coords, 0, coords.length, bounds);
+        double s = SIZE / GeometryUtils.maxDimension(bounds);
+        Vector3d center = GeometryUtils.center(bounds);
+        GeometryUtils.transform(coords, 0, coords.length, s,
+                -center.getX() * s, -center.getY() * s, -center.getZ() * s);
+        return coords;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+    public double[] arrayFusedVector() {
+        return arrayFused();
+    }
+
+    /**
+     * The former example code: vertex views for every pass.
+     */
+    @Benchmark
+    public List<Polygon> polygonsSeparate() {
+        double[] bounds = GeometryUtils.emptyBounds();
+        for (Polygon poly : polygons) {
+            for (Vector3d v : poly.getVertices()) {
+                GeometryUtils.extendBounds(v.getX(), v.getY(), v.getZ(), bounds);
+            }
+        }
+        double s = SIZE / GeometryUtils.maxDimension(bounds);
+        for (Polygon poly : polygons) {
+            for (Vector3d v : poly.getVertices()) {
+                v.setX(v.getX() * s);
+                v.setY(v.getY() * s);
+                v.setZ(v.getZ() * s);
+            }
+        }
+        double[] scaled = GeometryUtils.emptyBounds();
+        for (Polygon poly : polygons) {
+            for (Vector3d v : poly.getVertices()) {
+                GeometryUtils.extendBounds(v.getX(), v.getY(), v.getZ(), scaled);
+            }
+        }
+        Vector3d center = GeometryUtils.center(scaled);
+        for (Polygon poly : polygons) {
+            for (Vector3d v : poly.getVertices()) {
+                v.setX(v.getX() - center.getX());
+                v.setY(v.getY() - center.getY());
+                v.setZ(v.getZ() - center.getZ());
+            }
+        }
+        return polygons;
+    }
+
+    @Benchmark
+    public List<Polygon> polygonsFused() {
+        double[] bounds = GeometryUtils.computeBounds(polygons);
+        double s = SIZE / GeometryUtils.maxDimension(bounds);
+        Vector3d center = GeometryUtils.center(bounds);
+        GeometryUtils.applyTransform(polygons, s, -center.getX() * s, -center.getY() * s, -center.getZ() * s);
+        return polygons;
+    }
+}
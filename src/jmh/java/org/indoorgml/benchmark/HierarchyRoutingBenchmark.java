@@ -0,0 +1,143 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.routing.ContractionHierarchy;
+import org.indoorgml.routing.HierarchyRoutePlanner;
+import org.indoorgml.routing.Route;
+import org.indoorgml.routing.RoutePlanner;
+import org.indoorgml.routing.StateGraph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing route queries on a contraction hierarchy with
+ * plain Dijkstra and A* on a synthetic campus of 16 buildings with 4 floors
+ * of {@code side x side} rooms; a side of 125 gives 1M States. The query
+ * benchmarks sample single queries between random rooms, so the result lists
+ * latency percentiles. The setup checks that the hierarchy and the plain
+ * search agree on a sample of the queries.
+ * <p>
+ * {@code build}, {@code save} and {@code load} measure the preprocessing,
+ * which takes a while for the large campus; select the query benchmarks
+ * with a regular expression to skip them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class HierarchyRoutingBenchmark {
+
+    private static final int BUILDINGS = 16;
+    private static final int FLOORS = 4;
+    private static final int QUERIES = 1024;
+
+    @Param({"32", "125"})
+    public int side;
+
+    private StateGraph graph;
+    private ContractionHierarchy hierarchy;
+    private HierarchyRoutePlanner hierarchyPlanner;
+    private RoutePlanner dijkstra;
+    private RoutePlanner astar;
+    private Path file;
+    private final Route route = new Route();
+    private final int[] from = new int[QUERIES];
+    private final int[] to = new int[QUERIES];
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        graph = StateGraph.build(SyntheticBuildings.campus(BUILDINGS, FLOORS, side));
+        hierarchy = ContractionHierarchy.build(graph);
+        file = Files.createTempFile("campus", ".ch");
+        hierarchy.save(file);
+        hierarchyPlanner = new HierarchyRoutePlanner(hierarchy);
+        dijkstra = new RoutePlanner(graph);
+        dijkstra.setUseHeuristic(false);
+        astar = new RoutePlanner(graph);
+
+        Random random = new Random(7);
+        for (int i = 0; i < QUERIES; i++) {
+            from[i] = random.nextInt(graph.getStateCount());
+            to[i] = random.nextInt(graph.getStateCount());
+        }
+        // the plain search is far slower, so only a sample is compared
+        for (int i = 0; i < 20; i++) {
+            hierarchyPlanner.findRoute(from[i], to[i], route);
+            double expected = route.getDistance();
+            astar.findRoute(from[i], to[i], route);
+            if (Math.abs(route.getDistance() - expected) > 1e-6 * Math.max(1, expected)) {
+                throw new IllegalStateException("Query " + i + ": hierarchy " + expected
+                        + ", plain search " + route.getDistance());
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public double hierarchy() {
+        int i = next++ & (QUERIES - 1);
+        hierarchyPlanner.findRoute(from[i], to[i], route);
+        return route.getDistance();
+    }
+
+    @Benchmark
+    public double astar() {
+        int i = next++ & (QUERIES - 1);
+        astar.findRoute(from[i], to[i], route);
+        return route.getDistance();
+    }
+
+    @Benchmark
+    public double dijkstra() {
+        int i = next++ & (QUERIES - 1);
+        dijkstra.findRoute(from[i], to[i], route);
+        return route.getDistance();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public ContractionHierarchy build() {
+        return ContractionHierarchy.build(graph);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Path save() throws IOException {
+        hierarchy.save(file);
+        return file;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ContractionHierarchy load() throws IOException {
+        return ContractionHierarchy.load(file, graph);
+    }
+}
@@ -0,0 +1,258 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.io.IndoorGMLReader;
+import org.indoorgml.io.ReadStatistics;
+import org.indoorgml.model.IndoorGMLModel;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark that reads a synthetic IndoorGML file of about
+ * {@code megabytes} MB with {@link IndoorGMLReader}. The peak heap during the
+ * read is reported as a secondary result; run with {@code -prof gc} for the
+ * allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IndoorGMLReaderBenchmark {
+
+    private static final String CORE = "http://www.opengis.net/indoorgml/1.0/core";
+    private static final String GML = "http://www.opengis.net/gml/3.2";
+    private static final String XLINK = "http://www.w3.org/1999/xlink";
+    private static final double ROOM = 5.0;
+    private static final double HEIGHT = 3.0;
+
+    @Param({"30", "300"})
+    public int megabytes;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException, XMLStreamException {
+        file = Files.createTempFile("indoorgml-benchmark", ".gml");
+        generate(file, megabytes * 1024L * 1024L);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Peak heap of the iteration, including the models of earlier reads that
+     * were not collected yet.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public long peakHeapMegabytes;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            BenchmarkSupport.usedHeapAfterGc();
+            BenchmarkSupport.resetPeakHeap();
+        }
+    }
+
+    @Benchmark
+    public ReadStatistics read(Heap heap) throws IOException {
+        ReadStatistics stats = new IndoorGMLReader().read(file, new IndoorGMLModel());
+        heap.peakHeapMegabytes = BenchmarkSupport.peakHeap() >> 20;
+        return stats;
+    }
+
+    /**
+     * Writes box shaped rooms on a grid until roughly the target size is reached,
+     * followed by their states and transitions to the right and upper neighbors.
+     */
+    static int generate(Path file, long targetBytes) throws IOException, XMLStreamException {
+        // cells make up about 80% of the document, states and transitions the rest
+        long cellBytes = targetBytes * 8 / 10;
+        try (CountingOutputStream out = new CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            XMLStreamWriter w = XMLOutputFactory.newFactory().createXMLStreamWriter(out, "UTF-8");
+            w.writeStartDocument("UTF-8", "1.0");
+            w.setPrefix("core", CORE);
+            w.setPrefix("gml", GML);
+            w.setPrefix("xlink", XLINK);
+            w.writeStartElement(CORE, "IndoorFeatures");
+            w.writeNamespace("core", CORE);
+            w.writeNamespace("gml", GML);
+            w.writeNamespace("xlink", XLINK);
+
+            w.writeStartElement(CORE, "primalSpaceFeatures");
+            w.writeStartElement(CORE, "PrimalSpaceFeatures");
+            int cells = 0;
+            int columns = 1000;
+            while (true) {
+                w.flush();
+                if (out.count >= cellBytes) {
+                    break;
+                }
+                writeCell(w, cells, (cells % columns) * ROOM, (cells / columns) * ROOM);
+                cells++;
+            }
+            w.writeEndElement();
+            w.writeEndElement();
+
+            w.writeStartElement(CORE, "multiLayeredGraph");
+            w.writeStartElement(CORE, "MultiLayeredGraph");
+            w.writeStartElement(CORE, "spaceLayers");
+            w.writeStartElement(CORE, "spaceLayerMember");
+            w.writeStartElement(CORE, "SpaceLayer");
+            w.writeStartElement(CORE, "nodes");
+            for (int i = 0; i < cells; i++) {
+                w.writeStartElement(CORE, "stateMember");
+                w.writeStartElement(CORE, "State");
+                w.writeAttribute(GML, "id", "S" + i);
+                w.writeEmptyElement(CORE, "duality");
+                w.writeAttribute(XLINK, "href", "#C" + i);
+                w.writeStartElement(CORE, "geometry");
+                w.writeStartElement(GML, "Point");
+                w.writeStartElement(GML, "pos");
+                double x = (i % columns) * ROOM + ROOM / 2;
+                double y = (i / columns) * ROOM + ROOM / 2;
+                w.writeCharacters(x + " " + y + " " + HEIGHT / 2);
+                w.writeEndElement();
+                w.writeEndElement();
+                w.writeEndElement();
+                w.writeEndElement();
+                w.writeEndElement();
+            }
+            w.writeEndElement();
+            w.writeStartElement(CORE, "edges");
+            int t = 0;
+            for (int i = 0; i < cells; i++) {
+                if ((i + 1) % columns != 0 && i + 1 < cells) {
+                    writeTransition(w, t++, i, i + 1);
+                }
+                if (i + columns < cells) {
+                    writeTransition(w, t++, i, i + columns);
+                }
+            }
+            w.writeEndElement();
+            w.writeEndElement();
+            w.writeEndElement();
+            w.writeEndElement();
+            w.writeEndElement();
+            w.writeEndElement();
+
+            w.writeEndElement();
+            w.writeEndDocument();
+            w.close();
+            return cells;
+        }
+    }
+
+    private static void writeCell(XMLStreamWriter w, int index, double x, double y)
+            throws XMLStreamException {
+        double x2 = x + ROOM;
+        double y2 = y + ROOM;
+        w.writeStartElement(CORE, "cellSpaceMember");
+        w.writeStartElement(CORE, "CellSpace");
+        w.writeAttribute(GML, "id", "C" + index);
+        w.writeStartElement(CORE, "cellSpaceGeometry");
+        w.writeStartElement(CORE, "Geometry3D");
+        w.writeStartElement(GML, "Solid");
+        w.writeStartElement(GML, "exterior");
+        w.writeStartElement(GML, "Shell");
+        writeSurface(w, x, y, 0, x, y2, 0, x2, y2, 0, x2, y, 0);
+        writeSurface(w, x, y, HEIGHT, x2, y, HEIGHT, x2, y2, HEIGHT, x, y2, HEIGHT);
+        writeSurface(w, x, y, 0, x2, y, 0, x2, y, HEIGHT, x, y, HEIGHT);
+        writeSurface(w, x2, y, 0, x2, y2, 0, x2, y2, HEIGHT, x2, y, HEIGHT);
+        writeSurface(w, x2, y2, 0, x, y2, 0, x, y2, HEIGHT, x2, y2, HEIGHT);
+        writeSurface(w, x, y2, 0, x, y, 0, x, y, HEIGHT, x, y2, HEIGHT);
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndElement();
+    }
+
+    private static void writeSurface(XMLStreamWriter w, double... c) throws XMLStreamException {
+        w.writeStartElement(GML, "surfaceMember");
+        w.writeStartElement(GML, "Polygon");
+        w.writeStartElement(GML, "exterior");
+        w.writeStartElement(GML, "LinearRing");
+        w.writeStartElement(GML, "posList");
+        w.writeAttribute("srsDimension", "3");
+        StringBuilder sb = new StringBuilder();
+        for (double v : c) {
+            sb.append(v).append(' ');
+        }
+        // close the ring
+        sb.append(c[0]).append(' ').append(c[1]).append(' ').append(c[2]);
+        w.writeCharacters(sb.toString());
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndElement();
+        w.writeEndElement();
+    }
+
+    private static void writeTransition(XMLStreamWriter w, int index, int a, int b)
+            throws XMLStreamException {
+        w.writeStartElement(CORE, "transitionMember");
+        w.writeStartElement(CORE, "Transition");
+        w.writeAttribute(GML, "id", "T" + index);
+        w.writeStartElement(CORE, "weight");
+        w.writeCharacters("1.0");
+        w.writeEndElement();
+        w.writeEmptyElement(CORE, "connects");
+        w.writeAttribute(XLINK, "href", "#S" + a);
+        w.writeEmptyElement(CORE, "connects");
+        w.writeAttribute(XLINK, "href", "#S" + b);
+        w.writeEndElement();
+        w.writeEndElement();
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
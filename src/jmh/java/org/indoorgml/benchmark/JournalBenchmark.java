@@ -0,0 +1,269 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.io.MappedSnapshot;
+import org.indoorgml.io.ModelJournal;
+import org.indoorgml.io.SnapshotWriter;
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+import org.indoorgml.model.Vector3d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing saving a full snapshot of a grid building of
+ * {@code cells} rooms with appending edits to a {@link ModelJournal}, with
+ * and without forcing every commit to the disk and with several edits per
+ * commit, and recovering the model from the base and the journal.
+ * <p>
+ * {@code commit} starts from a fresh model and journal every iteration and
+ * runs a batch of {@value #COMMITS} commits, the score is the time of one
+ * batch. After every iteration the model is recovered and checked against
+ * the edited one. After the recovery benchmarks a torn record is appended,
+ * which must be cut off, and the journal is compacted and checked again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JournalBenchmark {
+
+    static final int COMMITS = 1000;
+    private static final int EDITS = 3000;
+
+    @Param({"200000"})
+    public int cells;
+
+    private IndoorGMLModel model;
+    private Path dir;
+
+    @Setup
+    public void setUp() throws IOException {
+        model = SyntheticBuildings.grid(cells, 500);
+        dir = Files.createTempDirectory("indoorgml-journal");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(dir.resolve("model.igms"));
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * A fresh model with a journal attached, {@code group} edits per commit.
+     */
+    @State(Scope.Thread)
+    public static class Journal {
+        @Param({"false", "true"})
+        public boolean sync;
+
+        @Param({"1", "10"})
+        public int group;
+
+        IndoorGMLModel model;
+        List<String> ids;
+        Path dir;
+        Path base;
+        Path file;
+        ModelJournal journal;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(JournalBenchmark benchmark) throws IOException {
+            model = null;
+            model = SyntheticBuildings.grid(benchmark.cells, 500);
+            ids = shuffledIds(model);
+            dir = Files.createTempDirectory("indoorgml-journal");
+            base = dir.resolve("model.igms");
+            file = dir.resolve("model.journal");
+            SnapshotWriter.write(model, base);
+            journal = ModelJournal.open(file, base, sync);
+            model.addChangeListener(journal);
+            next = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            model.removeChangeListener(journal);
+            journal.close();
+            check(model, ModelJournal.recover(base, file));
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(base);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * A base snapshot with a journal of {@value #EDITS} edits.
+     */
+    @State(Scope.Thread)
+    public static class Recovery {
+        IndoorGMLModel model;
+        Path dir;
+        Path base;
+        Path file;
+
+        @Setup
+        public void setUp(JournalBenchmark benchmark) throws IOException {
+            model = SyntheticBuildings.grid(benchmark.cells, 500);
+            List<String> ids = shuffledIds(model);
+            dir = Files.createTempDirectory("indoorgml-journal");
+            base = dir.resolve("model.igms");
+            file = dir.resolve("model.journal");
+            SnapshotWriter.write(model, base);
+            try (ModelJournal journal = ModelJournal.open(file, base, false)) {
+                model.addChangeListener(journal);
+                for (int i = 0; i < EDITS; i++) {
+                    edit(model, ids.get(i), i);
+                }
+                model.removeChangeListener(journal);
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            try {
+                long size = Files.size(file);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND)) {
+                    channel.write(ByteBuffer.wrap(new byte[] {40, 0, 0, 0, 1, 2, 3}));
+                }
+                try (ModelJournal journal = ModelJournal.open(file, base, true)) {
+                    if (Files.size(file) != size) {
+                        throw new IllegalStateException("Torn record was not cut off");
+                    }
+                    journal.compact(model, base);
+                }
+                check(model, ModelJournal.recover(base, file));
+            } finally {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(base);
+                Files.deleteIfExists(dir);
+            }
+        }
+    }
+
+    @Benchmark
+    public Path saveSnapshot() throws IOException {
+        Path base = dir.resolve("model.igms");
+        SnapshotWriter.write(model, base);
+        return base;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = COMMITS)
+    @Measurement(iterations = 10, batchSize = COMMITS)
+    public long commit(Journal journal) {
+        IndoorGMLModel model = journal.model;
+        model.beginBatch();
+        try {
+            for (int i = 0; i < journal.group; i++) {
+                int k = journal.next++;
+                edit(model, journal.ids.get(k), k);
+            }
+        } finally {
+            model.endBatch();
+        }
+        return journal.journal.getLastSequence();
+    }
+
+    @Benchmark
+    public IndoorGMLModel loadBase(Recovery recovery) throws IOException {
+        try (MappedSnapshot snapshot = MappedSnapshot.open(recovery.base)) {
+            return snapshot.toModel();
+        }
+    }
+
+    @Benchmark
+    public IndoorGMLModel recover(Recovery recovery) throws IOException {
+        return ModelJournal.recover(recovery.base, recovery.file);
+    }
+
+    private static List<String> shuffledIds(IndoorGMLModel model) {
+        List<String> ids = new ArrayList<>();
+        for (CellSpace cs : model.getCellSpaces()) {
+            ids.add(cs.getId());
+        }
+        Collections.shuffle(ids, new Random(7));
+        return ids;
+    }
+
+    private static void edit(IndoorGMLModel model, String cellId, int i) {
+        CellSpace cell = model.getCellSpace(cellId);
+        StatePoint state = cell.getState();
+        switch (i % 5) {
+            case 0:
+                model.removeCellSpace(cellId);
+                break;
+            case 1:
+                model.moveCellSpace(cellId, 0.5, 0, 0);
+                break;
+            case 2: {
+                Vector3d p = state.getPosition();
+                model.moveState(state.getId(), new Vector3d(p.getX(), p.getY() + 0.5, p.getZ()));
+                break;
+            }
+            case 3:
+                model.removeState(state.getId());
+                break;
+            default: {
+                List<Transition> incident = model.getIncidentTransitions(state.getId());
+                if (!incident.isEmpty()) {
+                    model.removeTransition(incident.get(0).getId());
+                }
+                break;
+            }
+        }
+    }
+
+    private static void check(IndoorGMLModel expected, IndoorGMLModel actual) {
+        if (expected.getCellSpaces().size() != actual.getCellSpaces().size()
+                || expected.getStates().size() != actual.getStates().size()
+                || expected.getTransitions().size() != actual.getTransitions().size()
+                || Math.abs(checksum(expected) - checksum(actual)) > 1e-6 * Math.abs(checksum(expected))) {
+            throw new IllegalStateException("Recovered model differs from the edited model");
+        }
+    }
+
+    private static double checksum(IndoorGMLModel model) {
+        double sum = 0;
+        for (CellSpace cs : model.getCellSpaces()) {
+            sum += cs.getPolygons().get(0).getCoordinates()[0];
+        }
+        for (StatePoint s : model.getStates()) {
+            sum += s.getPosition().getX() + s.getPosition().getY();
+        }
+        for (Transition t : model.getTransitions()) {
+            sum += t.getGeometry().getCoordinates()[0];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,73 @@
+package org.indoorgml.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.scene.Node;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Transition;
+import org.indoorgml.visualizer.CellSpaceGeometryBuilder;
+import org.indoorgml.visualizer.TransitionGeometryBuilder;
+import org.indoorgml.visualizer.TransitionNetwork;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for converting model geometry into jME meshes, headless
+ * with a desktop asset manager and without a renderer. The per polygon and
+ * per transition builders create one geometry per element, so the sizes
+ * stay smaller than for the model benchmarks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MeshBuilderBenchmarks {
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private AssetManager assetManager;
+    private List<CellSpace> cells;
+    private List<Transition> transitions;
+
+    @Setup
+    public void setUp() {
+        assetManager = new DesktopAssetManager(true);
+        IndoorGMLModel model = SyntheticBuildings.grid(size, 500);
+        cells = new ArrayList<>(model.getCellSpaces());
+        transitions = new ArrayList<>(model.getTransitions());
+    }
+
+    @Benchmark
+    public Node cellSpaces() {
+        return CellSpaceGeometryBuilder.buildCellSpacesFromCells(cells, assetManager);
+    }
+
+    @Benchmark
+    public Node transitions() {
+        return TransitionGeometryBuilder.buildTransitionsFromTransitions(transitions, assetManager);
+    }
+
+    @Benchmark
+    public TransitionNetwork transitionNetwork() {
+        return TransitionGeometryBuilder.buildTransitionNetwork(transitions, assetManager);
+    }
+}
@@ -0,0 +1,89 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for adding and removing model elements in a grid building
+ * of {@code size} rooms. Every iteration starts from a fresh grid and runs a
+ * batch of {@value #BATCH} operations, so removals never run out of elements
+ * and the model size stays close to the parameter; the score is the time of
+ * one batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = ModelBenchmarks.BATCH)
+@Measurement(iterations = 10, batchSize = ModelBenchmarks.BATCH)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ModelBenchmarks {
+
+    static final int BATCH = 500;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private IndoorGMLModel model;
+    private List<List<Polygon>> rooms;
+    private List<String> cellIds;
+    private List<String> stateIds;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        model = null;
+        model = SyntheticBuildings.grid(size, 500);
+        cellIds = new ArrayList<>(size);
+        stateIds = new ArrayList<>(size);
+        for (CellSpace cs : model.getCellSpaces()) {
+            cellIds.add(cs.getId());
+        }
+        for (StatePoint s : model.getStates()) {
+            stateIds.add(s.getId());
+        }
+        Collections.shuffle(cellIds, new Random(42));
+        Collections.shuffle(stateIds, new Random(42));
+        rooms = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            rooms.add(SyntheticBuildings.box(i * SyntheticBuildings.ROOM, -SyntheticBuildings.ROOM, 0,
+                    SyntheticBuildings.ROOM, SyntheticBuildings.ROOM, SyntheticBuildings.HEIGHT));
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public CellSpace addCellSpace() {
+        return model.addCellSpace(rooms.get(next++));
+    }
+
+    @Benchmark
+    public void removeCellSpace() {
+        model.removeCellSpace(cellIds.get(next++));
+    }
+
+    @Benchmark
+    public void removeState() {
+        model.removeState(stateIds.get(next++));
+    }
+}
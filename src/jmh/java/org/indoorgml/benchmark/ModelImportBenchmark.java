@@ -0,0 +1,111 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpaceImport;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks that import a grid of {@code size} single polygon rooms into
+ * a new model three ways: one {@code addCellSpace} call per room,
+ * {@code addCellSpaces} on a pool, and loader threads that each fill their
+ * own {@link CellSpaceImport} and add it to the model. The parallel variants
+ * use one thread per core.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ModelImportBenchmark {
+
+    private static final int SLICE = 4096;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private int threads;
+    private ForkJoinPool pool;
+    private List<List<Polygon>> rooms;
+
+    @Setup
+    public void setUp() {
+        threads = Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+        int columns = (int) Math.ceil(Math.sqrt(size));
+        rooms = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<Polygon> polygons = new ArrayList<>(1);
+            polygons.add(SyntheticBuildings.floorQuad((i % columns) * SyntheticBuildings.ROOM,
+                    (i / columns) * SyntheticBuildings.ROOM, 0, SyntheticBuildings.ROOM, SyntheticBuildings.ROOM));
+            rooms.add(polygons);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public IndoorGMLModel addCellSpace() {
+        IndoorGMLModel model = new IndoorGMLModel();
+        for (List<Polygon> polygons : rooms) {
+            model.addCellSpace(polygons);
+        }
+        return model;
+    }
+
+    @Benchmark
+    public IndoorGMLModel addCellSpacesOnPool() {
+        IndoorGMLModel model = new IndoorGMLModel();
+        model.addCellSpaces(rooms, pool);
+        return model;
+    }
+
+    @Benchmark
+    public IndoorGMLModel loaderThreads() throws InterruptedException {
+        IndoorGMLModel model = new IndoorGMLModel();
+        Thread[] loaders = new Thread[threads];
+        int chunk = (rooms.size() + threads - 1) / threads;
+        for (int t = 0; t < threads; t++) {
+            List<List<Polygon>> part = rooms.subList(Math.min(rooms.size(), t * chunk),
+                    Math.min(rooms.size(), (t + 1) * chunk));
+            loaders[t] = new Thread(() -> {
+                // commit in slices so the loaders take turns adding to the model
+                CellSpaceImport cells = model.newImport(SLICE);
+                for (List<Polygon> polygons : part) {
+                    cells.add(polygons);
+                    if (cells.size() == SLICE) {
+                        model.addCellSpaces(cells);
+                        cells = model.newImport(SLICE);
+                    }
+                }
+                model.addCellSpaces(cells);
+            }, "loader-" + t);
+            loaders[t].start();
+        }
+        for (Thread loader : loaders) {
+            loader.join();
+        }
+        return model;
+    }
+}
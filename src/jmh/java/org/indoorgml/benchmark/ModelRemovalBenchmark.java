@@ -0,0 +1,67 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark that deletes {@code percent} percent of randomly chosen cells,
+ * with their States and Transitions, from a square grid model of
+ * {@code size} rooms. Every iteration starts from a fresh model; the score
+ * is the time of all deletions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ModelRemovalBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"10"})
+    public int percent;
+
+    private IndoorGMLModel model;
+    private List<String> victims;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        model = null;
+        model = SyntheticBuildings.grid(size, (int) Math.ceil(Math.sqrt(size)));
+        List<String> ids = new ArrayList<>(size);
+        for (CellSpace cs : model.getCellSpaces()) {
+            ids.add(cs.getId());
+        }
+        Collections.shuffle(ids, new Random(42));
+        victims = ids.subList(0, ids.size() * percent / 100);
+    }
+
+    @Benchmark
+    public IndoorGMLModel removeCellSpaces() {
+        for (String id : victims) {
+            model.removeCellSpace(id);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,200 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the model index of a grid of {@code size} single polygon
+ * rooms: lookups and degree queries by ID and by handle, and removing a tenth
+ * of the Transitions or cells from a fresh model per iteration. The heap the
+ * model uses per cell, without the geometry, is reported as a secondary
+ * result of the lookup benchmarks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ModelStorageBenchmark {
+
+    private static final int PICKS = 1 << 16;
+
+    @Param({"100000", "500000"})
+    public int size;
+
+    private IndoorGMLModel model;
+    private long bytesPerCell;
+    private String[] cellIds;
+    private String[] stateIds;
+    private String[] transitionIds;
+    private int[] cellHandles;
+    private int[] stateHandles;
+    private int[] transitionHandles;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Polygon> geometry = geometry(size);
+        long geometryOnly = BenchmarkSupport.usedHeapAfterGc();
+        model = build(geometry, columns(size));
+        geometry = null;
+        bytesPerCell = (BenchmarkSupport.usedHeapAfterGc() - geometryOnly) / size;
+
+        List<CellSpace> cells = new ArrayList<>(model.getCellSpaces());
+        List<Transition> transitions = new ArrayList<>(model.getTransitions());
+        Random random = new Random(42);
+        cellIds = new String[PICKS];
+        stateIds = new String[PICKS];
+        transitionIds = new String[PICKS];
+        cellHandles = new int[PICKS];
+        stateHandles = new int[PICKS];
+        transitionHandles = new int[PICKS];
+        for (int i = 0; i < PICKS; i++) {
+            CellSpace cs = cells.get(random.nextInt(cells.size()));
+            Transition t = transitions.get(random.nextInt(transitions.size()));
+            cellIds[i] = cs.getId();
+            stateIds[i] = cs.getState().getId();
+            transitionIds[i] = t.getId();
+            cellHandles[i] = cs.getHandle();
+            stateHandles[i] = cs.getState().getHandle();
+            transitionHandles[i] = t.getHandle();
+        }
+    }
+
+    /**
+     * Heap used by the model per cell.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerCell;
+    }
+
+    /**
+     * A fresh model with a shuffled tenth of its Transitions and cells.
+     */
+    @State(Scope.Thread)
+    public static class Removal {
+        IndoorGMLModel model;
+        List<String> transitionIds;
+        List<String> cellIds;
+
+        @Setup(Level.Iteration)
+        public void setUp(ModelStorageBenchmark benchmark) {
+            model = null;
+            model = build(geometry(benchmark.size), columns(benchmark.size));
+            transitionIds = new ArrayList<>();
+            cellIds = new ArrayList<>();
+            for (Transition t : model.getTransitions()) {
+                transitionIds.add(t.getId());
+            }
+            for (CellSpace cs : model.getCellSpaces()) {
+                cellIds.add(cs.getId());
+            }
+            Collections.shuffle(transitionIds, new Random(7));
+            Collections.shuffle(cellIds, new Random(7));
+            transitionIds = transitionIds.subList(0, transitionIds.size() / 10);
+            cellIds = cellIds.subList(0, cellIds.size() / 10);
+        }
+    }
+
+    /**
+     * A cell, a degree and a Transition lookup.
+     */
+    @Benchmark
+    public int lookupById(Footprint footprint) {
+        int k = next++ & (PICKS - 1);
+        footprint.bytesPerCell = bytesPerCell;
+        return model.getCellSpace(cellIds[k]).getPolygons().size()
+                + model.getDegree(stateIds[k])
+                + model.getTransition(transitionIds[k]).getId().length();
+    }
+
+    @Benchmark
+    public int lookupByHandle(Footprint footprint) {
+        int k = next++ & (PICKS - 1);
+        footprint.bytesPerCell = bytesPerCell;
+        return model.getCellSpace(cellHandles[k]).getPolygons().size()
+                + model.getDegree(stateHandles[k])
+                + model.getTransition(transitionHandles[k]).getId().length();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    public IndoorGMLModel removeTransitions(Removal removal) {
+        for (String id : removal.transitionIds) {
+            removal.model.removeTransition(id);
+        }
+        return removal.model;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    public IndoorGMLModel removeCellSpaces(Removal removal) {
+        for (String id : removal.cellIds) {
+            removal.model.removeCellSpace(id);
+        }
+        return removal.model;
+    }
+
+    private static int columns(int size) {
+        return (int) Math.ceil(Math.sqrt(size));
+    }
+
+    private static List<Polygon> geometry(int size) {
+        int columns = columns(size);
+        List<Polygon> geometry = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            geometry.add(SyntheticBuildings.floorQuad((i % columns) * SyntheticBuildings.ROOM,
+                    (i / columns) * SyntheticBuildings.ROOM, 0, SyntheticBuildings.ROOM, SyntheticBuildings.ROOM));
+        }
+        return geometry;
+    }
+
+    private static IndoorGMLModel build(List<Polygon> geometry, int columns) {
+        IndoorGMLModel model = new IndoorGMLModel();
+        List<StatePoint> states = new ArrayList<>(geometry.size());
+        for (Polygon poly : geometry) {
+            List<Polygon> polygons = new ArrayList<>(1);
+            polygons.add(poly);
+            states.add(model.addCellSpace(polygons).getState());
+        }
+        for (int i = 0; i < states.size(); i++) {
+            if ((i + 1) % columns != 0 && i + 1 < states.size()) {
+                model.addTransition(states.get(i), states.get(i + 1));
+            }
+            if (i + columns < states.size()) {
+                model.addTransition(states.get(i), states.get(i + columns));
+            }
+        }
+        return model;
+    }
+}
@@ -0,0 +1,76 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.visualizer.PickingService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for ray picks with the {@link PickingService} on a square
+ * grid building of {@code size} rooms. Rays are cast from random points above
+ * the building at a slant, so they hit the cell roofs, State markers and
+ * Transitions. {@code rebuild} measures building the index over all objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PickingBenchmark {
+
+    private static final int RAYS = 1 << 16;
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    private PickingService picking;
+    private final double[] rays = new double[RAYS * 6];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int columns = (int) Math.ceil(Math.sqrt(size));
+        IndoorGMLModel model = SyntheticBuildings.grid(size, columns);
+        picking = new PickingService(model);
+        picking.rebuild();
+
+        Random random = new Random(42);
+        double width = columns * SyntheticBuildings.ROOM;
+        double depth = Math.ceil((double) size / columns) * SyntheticBuildings.ROOM;
+        for (int i = 0; i < RAYS; i++) {
+            rays[i * 6] = random.nextDouble() * width;
+            rays[i * 6 + 1] = random.nextDouble() * depth;
+            rays[i * 6 + 2] = 50;
+            rays[i * 6 + 3] = random.nextDouble() - 0.5;
+            rays[i * 6 + 4] = random.nextDouble() - 0.5;
+            rays[i * 6 + 5] = -1;
+        }
+    }
+
+    @Benchmark
+    public PickingService.Pick pick() {
+        int r = (next++ & (RAYS - 1)) * 6;
+        return picking.pick(rays[r], rays[r + 1], rays[r + 2], rays[r + 3], rays[r + 4], rays[r + 5]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PickingService rebuild() {
+        picking.rebuild();
+        return picking;
+    }
+}
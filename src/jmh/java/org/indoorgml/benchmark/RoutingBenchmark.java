@@ -0,0 +1,108 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.routing.Route;
+import org.indoorgml.routing.RoutePlanner;
+import org.indoorgml.routing.StateGraph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for route queries between random rooms of a square grid
+ * building of {@code size} rooms, with Dijkstra and A*. The query benchmarks
+ * sample single queries, so the result lists latency percentiles. Sampling
+ * allocates for its own histogram; run with {@code -bm avgt -prof gc} to
+ * confirm that a query allocates nothing.
+ * <p>
+ * {@code nearby} limits the queries to rooms at most {@value #NEARBY} rooms
+ * apart, the typical kiosk route inside one wing of a building. Random pairs
+ * across the whole building are the worst case of a plain search; use
+ * {@link HierarchyRoutingBenchmark} for those.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RoutingBenchmark {
+
+    static final int NEARBY = 50;
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean nearby;
+
+    private IndoorGMLModel model;
+    private RoutePlanner dijkstra;
+    private RoutePlanner astar;
+    private final Route route = new Route();
+    private final int[] from = new int[QUERIES];
+    private final int[] to = new int[QUERIES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int columns = (int) Math.ceil(Math.sqrt(size));
+        model = SyntheticBuildings.grid(size, columns);
+        StateGraph graph = StateGraph.build(model);
+        dijkstra = new RoutePlanner(graph);
+        dijkstra.setUseHeuristic(false);
+        astar = new RoutePlanner(graph);
+
+        Random random = new Random(42);
+        int n = graph.getStateCount();
+        for (int i = 0; i < QUERIES; i++) {
+            from[i] = random.nextInt(n);
+            if (nearby) {
+                // grid rooms are numbered row by row
+                int x = clamp(from[i] % columns + random.nextInt(2 * NEARBY + 1) - NEARBY, columns);
+                int y = clamp(from[i] / columns + random.nextInt(2 * NEARBY + 1) - NEARBY, columns);
+                to[i] = Math.min(y * columns + x, n - 1);
+            } else {
+                to[i] = random.nextInt(n);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public StateGraph buildGraph() {
+        return StateGraph.build(model);
+    }
+
+    @Benchmark
+    public double dijkstra() {
+        int i = next++ & (QUERIES - 1);
+        dijkstra.findRoute(from[i], to[i], route);
+        return route.getDistance();
+    }
+
+    @Benchmark
+    public double astar() {
+        int i = next++ & (QUERIES - 1);
+        astar.findRoute(from[i], to[i], route);
+        return route.getDistance();
+    }
+
+    private static int clamp(int value, int columns) {
+        return Math.max(0, Math.min(value, columns - 1));
+    }
+}
@@ -0,0 +1,80 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.io.MappedSnapshot;
+import org.indoorgml.io.SnapshotWriter;
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing rebuilding a grid model of {@code size} rooms
+ * through addCellSpace/addTransition with opening a memory mapped snapshot of
+ * it: just opening, reading one cell, and decoding the whole model.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SnapshotBenchmark {
+
+    @Param({"1000", "10000", "200000"})
+    public int size;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("indoorgml-snapshot", ".bin");
+        SnapshotWriter.write(SyntheticBuildings.grid(size, 500), file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public IndoorGMLModel rebuild() {
+        return SyntheticBuildings.grid(size, 500);
+    }
+
+    @Benchmark
+    public int open() throws IOException {
+        try (MappedSnapshot snapshot = MappedSnapshot.open(file)) {
+            return snapshot.getCellSpaceCount();
+        }
+    }
+
+    @Benchmark
+    public CellSpace firstCell() throws IOException {
+        try (MappedSnapshot snapshot = MappedSnapshot.open(file)) {
+            return snapshot.getCellSpace(snapshot.getCellSpaceCount() / 2);
+        }
+    }
+
+    @Benchmark
+    public IndoorGMLModel fullDecode() throws IOException {
+        try (MappedSnapshot snapshot = MappedSnapshot.open(file)) {
+            return snapshot.toModel();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.spatial.CellSpaceIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks locating random points in a grid building of {@code cells}
+ * rooms with a {@link CellSpaceIndex}, one query at a time and with the
+ * batch API on all processors, against a linear scan over the bounding
+ * boxes of all cells. The points cover the building and a margin around it.
+ * The setup checks that the batch, nearest and linear scan results agree
+ * with the sequential queries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SpatialIndexBenchmark {
+
+    private static final int QUERIES = 1 << 16;
+    /** Queries checked against the linear scan, which is far too slow for all of them. */
+    private static final int LINEAR_CHECKS = 500;
+
+    @Param({"10000", "100000"})
+    public int cells;
+
+    private IndoorGMLModel model;
+    private CellSpaceIndex index;
+    private List<double[]> boxes;
+    private double[] points;
+    private ForkJoinPool pool;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        int columns = (int) Math.ceil(Math.sqrt(cells));
+        model = SyntheticBuildings.grid(cells, columns);
+        index = CellSpaceIndex.build(model);
+        boxes = boxes(model);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        Random random = new Random(42);
+        double width = columns * SyntheticBuildings.ROOM;
+        double depth = Math.ceil((double) cells / columns) * SyntheticBuildings.ROOM;
+        points = new double[QUERIES * 3];
+        for (int i = 0; i < QUERIES; i++) {
+            points[i * 3] = -10 + random.nextDouble() * (width + 20);
+            points[i * 3 + 1] = -10 + random.nextDouble() * (depth + 20);
+            points[i * 3 + 2] = -1 + random.nextDouble() * (SyntheticBuildings.HEIGHT + 2);
+        }
+
+        CellSpace[] batch = index.findContaining(points, pool);
+        CellSpace[] nearest = index.findNearest(points, pool);
+        for (int i = 0; i < QUERIES; i++) {
+            CellSpace found = index.findContaining(points[i * 3], points[i * 3 + 1], points[i * 3 + 2]);
+            if (batch[i] != found) {
+                throw new IllegalStateException("Batch and sequential results differ on query " + i);
+            }
+            if (found != null && nearest[i] != found) {
+                throw new IllegalStateException("Nearest cell differs from the containing cell on query " + i);
+            }
+            if (i < LINEAR_CHECKS
+                    && (scan(boxes, points[i * 3], points[i * 3 + 1], points[i * 3 + 2]) >= 0) != (found != null)) {
+                throw new IllegalStateException("Index and linear scan disagree on query " + i);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CellSpaceIndex build() {
+        return CellSpaceIndex.build(model);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public CellSpace contains() {
+        int i = (next++ & (QUERIES - 1)) * 3;
+        return index.findContaining(points[i], points[i + 1], points[i + 2]);
+    }
+
+    /**
+     * All {@value #QUERIES} points with the batch API.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CellSpace[] containsBatch() {
+        return index.findContaining(points, pool);
+    }
+
+    /**
+     * All {@value #QUERIES} points with the batch API.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CellSpace[] nearestBatch() {
+        return index.findNearest(points, pool);
+    }
+
+    @Benchmark
+    public int linearScan() {
+        int i = (next++ & (QUERIES - 1)) * 3;
+        return scan(boxes, points[i], points[i + 1], points[i + 2]);
+    }
+
+    private static List<double[]> boxes(IndoorGMLModel model) {
+        List<double[]> boxes = new ArrayList<>(model.getCellSpaces().size());
+        for (CellSpace cs : model.getCellSpaces()) {
+            double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                    Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            for (Polygon poly : cs.getPolygons()) {
+                double[] c = poly.getCoordinates();
+                for (int i = 0; i < c.length; i += 3) {
+                    for (int a = 0; a < 3; a++) {
+                        box[a] = Math.min(box[a], c[i + a]);
+                        box[3 + a] = Math.max(box[3 + a], c[i + a]);
+                    }
+                }
+            }
+            boxes.add(box);
+        }
+        return boxes;
+    }
+
+    /**
+     * Linear scan over the boxes. The grid rooms are axis aligned boxes, so
+     * box containment equals cell containment here.
+     */
+    private static int scan(List<double[]> boxes, double x, double y, double z) {
+        for (int i = 0; i < boxes.size(); i++) {
+            double[] b = boxes.get(i);
+            if (x > b[0] && x < b[3] && y > b[1] && y < b[4] && z > b[2] && z < b[5]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,144 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Vector3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates synthetic buildings made of box shaped rooms for the benchmarks.
+ */
+final class SyntheticBuildings {
+
+    static final double ROOM = 5.0;
+    static final double HEIGHT = 3.0;
+    static final int STAIR_SPACING = 25;
+
+    private SyntheticBuildings() {
+    }
+
+    /**
+     * Creates a model with the given number of rooms laid out on a grid with
+     * {@code columns} rooms per row. Every room is connected to its right and
+     * upper neighbor.
+     */
+    static IndoorGMLModel grid(int cells, int columns) {
+        IndoorGMLModel model = new IndoorGMLModel();
+        List<StatePoint> states = new ArrayList<>(cells);
+        for (int i = 0; i < cells; i++) {
+            CellSpace cs = model.addCellSpace(box((i % columns) * ROOM, (i / columns) * ROOM, 0,
+                    ROOM, ROOM, HEIGHT));
+            states.add(cs.getState());
+        }
+        for (int i = 0; i < cells; i++) {
+            if ((i + 1) % columns != 0 && i + 1 < cells) {
+                model.addTransition(states.get(i), states.get(i + 1));
+            }
+            if (i + columns < cells) {
+                model.addTransition(states.get(i), states.get(i + columns));
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Creates a campus of {@code buildings} buildings on a square grid. Each
+     * building has {@code floors} floors of {@code side x side} rooms that are
+     * connected to their right and upper neighbor, a staircase every
+     * {@value #STAIR_SPACING} rooms connecting consecutive floors, and ground
+     * floor entrances linked to the entrances of the neighboring buildings.
+     * Rooms consist of a single floor polygon to keep large campuses small.
+     */
+    static IndoorGMLModel campus(int buildings, int floors, int side) {
+        IndoorGMLModel model = new IndoorGMLModel();
+        int perRow = (int) Math.ceil(Math.sqrt(buildings));
+        double spacing = side * ROOM + 4 * ROOM;
+        int perFloor = side * side;
+        StatePoint[][] rooms = new StatePoint[buildings][floors * perFloor];
+        for (int b = 0; b < buildings; b++) {
+            double bx = (b % perRow) * spacing;
+            double by = (b / perRow) * spacing;
+            for (int f = 0; f < floors; f++) {
+                for (int i = 0; i < perFloor; i++) {
+                    double x = bx + (i % side) * ROOM;
+                    double y = by + (i / side) * ROOM;
+                    List<Polygon> floor = new ArrayList<>(1);
+                    floor.add(floorQuad(x, y, f * HEIGHT, ROOM, ROOM));
+                    rooms[b][f * perFloor + i] = model.addCellSpace(floor).getState();
+                }
+            }
+            for (int f = 0; f < floors; f++) {
+                int base = f * perFloor;
+                for (int i = 0; i < perFloor; i++) {
+                    if ((i + 1) % side != 0) {
+                        model.addTransition(rooms[b][base + i], rooms[b][base + i + 1]);
+                    }
+                    if (i + side < perFloor) {
+                        model.addTransition(rooms[b][base + i], rooms[b][base + i + side]);
+                    }
+                    boolean stair = (i % side) % STAIR_SPACING == 0 && (i / side) % STAIR_SPACING == 0;
+                    if (stair && f + 1 < floors) {
+                        model.addTransition(rooms[b][base + i], rooms[b][base + perFloor + i]);
+                    }
+                }
+            }
+        }
+        // entrances in the middle of the east and north facades
+        int east = (side / 2) * side + side - 1;
+        int west = (side / 2) * side;
+        int north = (side - 1) * side + side / 2;
+        int south = side / 2;
+        for (int b = 0; b < buildings; b++) {
+            if (b % perRow + 1 < perRow && b + 1 < buildings) {
+                model.addTransition(rooms[b][east], rooms[b + 1][west]);
+            }
+            if (b + perRow < buildings) {
+                model.addTransition(rooms[b][north], rooms[b + perRow][south]);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Returns a packed horizontal rectangle.
+     */
+    static Polygon floorQuad(double x, double y, double z, double w, double d) {
+        Polygon poly = new Polygon();
+        poly.setCoordinates(new double[] {x, y, z, x + w, y, z, x + w, y + d, z, x, y + d, z});
+        poly.setIndexArray(new int[] {0, 1, 2, 0, 2, 3});
+        return poly;
+    }
+
+    /**
+     * Returns the six faces of an axis aligned box.
+     */
+    static List<Polygon> box(double x, double y, double z, double w, double d, double h) {
+        double x2 = x + w;
+        double y2 = y + d;
+        double z2 = z + h;
+        List<Polygon> list = new ArrayList<>(6);
+        list.add(quad(x, y, z, x, y2, z, x2, y2, z, x2, y, z));
+        list.add(quad(x, y, z2, x2, y, z2, x2, y2, z2, x, y2, z2));
+        list.add(quad(x, y, z, x2, y, z, x2, y, z2, x, y, z2));
+        list.add(quad(x2, y, z, x2, y2, z, x2, y2, z2, x2, y, z2));
+        list.add(quad(x2, y2, z, x, y2, z, x, y2, z2, x2, y2, z2));
+        list.add(quad(x, y2, z, x, y, z, x, y, z2, x, y2, z2));
+        return list;
+    }
+
+    private static Polygon quad(double... c) {
+        Polygon poly = new Polygon();
+        poly.setVertices(Arrays.asList(
+                new Vector3d(c[0], c[1], c[2]),
+                new Vector3d(c[3], c[4], c[5]),
+                new Vector3d(c[6], c[7], c[8]),
+                new Vector3d(c[9], c[10], c[11])));
+        poly.setIndices(Arrays.asList(0, 1, 2, 0, 2, 3));
+        return poly;
+    }
+}
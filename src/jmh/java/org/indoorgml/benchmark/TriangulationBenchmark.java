@@ -0,0 +1,153 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.Triangulator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks triangulating {@code slabs} floor slabs with a grid of
+ * {@code side x side} rectangular holes, as left by columns and shafts, one
+ * polygon after the other and in parallel on all processors with the
+ * {@link Triangulator}. The setup checks that the triangles cover the slab
+ * area.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TriangulationBenchmark {
+
+    @Param({"200"})
+    public int slabs;
+
+    @Param({"10", "30"})
+    public int side;
+
+    private List<CellSpace> cells;
+    private Triangulator triangulator;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        // import data, which is triangulated before it is added to a model
+        cells = new ArrayList<>(slabs);
+        for (int s = 0; s < slabs; s++) {
+            List<Polygon> polygons = new ArrayList<>(1);
+            polygons.add(slab(side, s * SyntheticBuildings.HEIGHT));
+            CellSpace cs = new CellSpace();
+            cs.setPolygons(polygons);
+            cells.add(cs);
+        }
+        triangulator = new Triangulator();
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        Triangulator.triangulateAll(cells, pool, true);
+        double expected = slabArea(side);
+        for (CellSpace cs : cells) {
+            if (Math.abs(triangleArea(cs.getPolygons().get(0)) - expected) > 1e-6 * expected) {
+                throw new IllegalStateException("Triangles do not cover the slab area");
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<CellSpace> sequential() {
+        for (CellSpace cs : cells) {
+            for (Polygon poly : cs.getPolygons()) {
+                triangulator.triangulate(poly);
+            }
+        }
+        return cells;
+    }
+
+    @Benchmark
+    public int parallel() {
+        return Triangulator.triangulateAll(cells, pool, true);
+    }
+
+    /**
+     * Returns a square slab with {@code side x side} square holes. The
+     * exterior ring is counter-clockwise, the holes are clockwise.
+     */
+    private static Polygon slab(int side, double z) {
+        double cell = SyntheticBuildings.ROOM;
+        double size = side * cell;
+        double[] coords = new double[(4 + side * side * 4) * 3];
+        int[] holes = new int[side * side];
+        int v = 0;
+        v = put(coords, v, 0, 0, z);
+        v = put(coords, v, size, 0, z);
+        v = put(coords, v, size, size, z);
+        v = put(coords, v, 0, size, z);
+        int h = 0;
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                double x = i * cell + cell * 0.3;
+                double y = j * cell + cell * 0.3;
+                double w = cell * 0.4;
+                holes[h++] = v;
+                v = put(coords, v, x, y, z);
+                v = put(coords, v, x, y + w, z);
+                v = put(coords, v, x + w, y + w, z);
+                v = put(coords, v, x + w, y, z);
+            }
+        }
+        Polygon poly = new Polygon();
+        poly.setCoordinates(coords);
+        poly.setHoleStarts(holes);
+        return poly;
+    }
+
+    private static int put(double[] coords, int v, double x, double y, double z) {
+        coords[v * 3] = x;
+        coords[v * 3 + 1] = y;
+        coords[v * 3 + 2] = z;
+        return v + 1;
+    }
+
+    private static double slabArea(int side) {
+        double cell = SyntheticBuildings.ROOM;
+        return side * side * (cell * cell - 0.16 * cell * cell);
+    }
+
+    /**
+     * Returns the signed area of the triangles in the XY plane.
+     */
+    private static double triangleArea(Polygon poly) {
+        double[] c = poly.getCoordinates();
+        int[] idx = poly.getIndexArray();
+        double sum = 0;
+        for (int t = 0; t < idx.length; t += 3) {
+            int a = idx[t] * 3;
+            int b = idx[t + 1] * 3;
+            int d = idx[t + 2] * 3;
+            sum += (c[b] - c[a]) * (c[d + 1] - c[a + 1]) - (c[b + 1] - c[a + 1]) * (c[d] - c[a]);
+        }
+        return sum / 2;
+    }
+}
@@ -0,0 +1,95 @@
+package org.indoorgml.benchmark;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.spatial.VertexPool;
+import org.indoorgml.spatial.VertexWelder;
+import org.indoorgml.spatial.WeldReport;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks welding the box shaped rooms of a grid building of
+ * {@code cells} rooms, once per cell as the vertex colored batches do and
+ * once into a single pool for the whole floor. The welded vertex count and
+ * the vertex buffer bytes saved are reported as secondary results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class VertexWeldingBenchmark {
+
+    private static final double TOLERANCE = 1e-6;
+    /** Float positions plus RGBA vertex colors. */
+    private static final int BYTES_PER_VERTEX = 28;
+
+    @Param({"10000", "100000"})
+    public int cells;
+
+    private List<CellSpace> all;
+
+    @Setup
+    public void setUp() {
+        IndoorGMLModel model = SyntheticBuildings.grid(cells, (int) Math.ceil(Math.sqrt(cells)));
+        all = new ArrayList<>(model.getCellSpaces());
+    }
+
+    /**
+     * Result of the last weld.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Weld {
+        public long vertices;
+        public long savedBytes;
+
+        void set(WeldReport report) {
+            vertices = report.getOutputVertices();
+            savedBytes = report.getSavedBytes(BYTES_PER_VERTEX);
+        }
+    }
+
+    @Benchmark
+    public WeldReport perCell(Weld weld) {
+        VertexWelder welder = new VertexWelder(TOLERANCE);
+        int input = 0;
+        int output = 0;
+        for (CellSpace cs : all) {
+            welder.clear();
+            for (Polygon poly : cs.getPolygons()) {
+                welder.addAll(poly.getCoordinates());
+            }
+            input += welder.getInputCount();
+            output += welder.getVertexCount();
+        }
+        WeldReport report = new WeldReport(input, output);
+        weld.set(report);
+        return report;
+    }
+
+    @Benchmark
+    public VertexPool perFloor(Weld weld) {
+        VertexPool pool = VertexPool.weld(all, TOLERANCE);
+        weld.set(pool.getReport());
+        return pool;
+    }
+}
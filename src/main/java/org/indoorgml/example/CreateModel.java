@@ -5,7 +5,6 @@ import org.indoorgml.model.IndoorGMLModel;
 import org.indoorgml.model.Polygon;
 import org.indoorgml.model.StatePoint;
 import org.indoorgml.model.Vector3d;
-import org.indoorgml.util.GeometryUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,8 +13,8 @@ import java.util.List;
 /**
  * Utility that builds a small example {@link IndoorGMLModel} containing
  * a few cell spaces, their states and connecting transitions. The polygon
- * data uses large coordinates which are scaled down and centered around
- * the origin so the resulting scene fits nicely into the view.
+ * data keeps its large georeferenced coordinates; scenes are fitted into
+ * the view with a {@link org.indoorgml.visualizer.ViewTransform}.
  */
 public final class CreateModel {
 
@@ -34,19 +33,6 @@ public final class CreateModel {
                 createCellSpace3()
         );
 
-        // collect polygons for transformation
-        List<Polygon> allPolygons = new ArrayList<>();
-        for (CellSpace cs : cells) {
-            allPolygons.addAll(cs.getPolygons());
-        }
-
-        // scale coordinates to a manageable size and move them around the origin
-        float scale = (float) (10.0 / GeometryUtils.computeMaxDimension(allPolygons));
-        GeometryUtils.applyScale(allPolygons, scale);
-        Vector3d center = GeometryUtils.computeBoundingCenter(allPolygons);
-        GeometryUtils.applyTranslation(allPolygons,
-                new Vector3d(-center.getX(), -center.getY(), -center.getZ()));
-
         // add cells to the model (states are created automatically)
         for (CellSpace cs : cells) {
             model.addCellSpace(cs.getPolygons());
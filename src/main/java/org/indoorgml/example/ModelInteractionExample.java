@@ -1,7 +1,6 @@
 package org.indoorgml.example;
 
 import com.jme3.app.SimpleApplication;
-import com.jme3.collision.CollisionResults;
 import com.jme3.input.ChaseCamera;
 import com.jme3.input.MouseInput;
 import com.jme3.input.controls.ActionListener;
@@ -12,43 +11,95 @@ import com.jme3.math.ColorRGBA;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
 import com.jme3.math.Ray;
-import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
 
-import org.indoorgml.model.CellSpace;
 import org.indoorgml.model.StatePoint;
 import org.indoorgml.model.Transition;
 import org.indoorgml.model.IndoorGMLModel;
 import org.indoorgml.example.CreateModel;
+import org.indoorgml.io.ModelJournal;
+import org.indoorgml.io.SnapshotWriter;
+import org.indoorgml.visualizer.CellSpaceBatch;
 import org.indoorgml.visualizer.CellSpaceGeometryBuilder;
+import org.indoorgml.visualizer.InstancedStateMarkers;
+import org.indoorgml.visualizer.PickingService;
+import org.indoorgml.visualizer.ProgressiveSceneLoader;
+import org.indoorgml.visualizer.SceneSynchronizer;
 import org.indoorgml.visualizer.StateGeometryBuilder;
 import org.indoorgml.visualizer.TransitionGeometryBuilder;
-
+import org.indoorgml.visualizer.TransitionNetwork;
+import org.indoorgml.visualizer.ViewTransform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Example that uses IndoorGMLModel to create CellSpaces with
  * automatically generated States and Transitions. Clicking on the
  * geometries prints their IDs to the console.
+ * <p>
+ * Deletions are written to a journal next to a base snapshot and survive a
+ * restart; the journal is folded into the base once it grows large. Both
+ * files are kept in the directory given as first argument, or in
+ * {@code indoorgml-example} below the temporary directory.
  */
 public class ModelInteractionExample extends SimpleApplication {
 
+    private static final Logger LOGGER = Logger.getLogger(ModelInteractionExample.class.getName());
+    private static final long COMPACT_SIZE = 4 << 20;
+
+    private final Path dataDir;
+    private final Path base;
+    private final Path journalFile;
+
     private IndoorGMLModel model;
+    private ModelJournal journal;
     private ChaseCamera chaseCam;
     private Node scene;
-    private final java.util.List<Geometry> selected = new java.util.ArrayList<>();
+    private CellSpaceBatch cellBatch;
+    private InstancedStateMarkers stateMarkers;
+    private TransitionNetwork transitionNetwork;
+    private PickingService picking;
+    private ViewTransform view;
+    private String selectedCellId;
+    private String selectedStateId;
+    private String selectedTransitionId;
+
+    public ModelInteractionExample(Path dataDir) {
+        this.dataDir = dataDir;
+        base = dataDir.resolve("model.igms");
+        journalFile = dataDir.resolve("model.journal");
+    }
 
     public static void main(String[] args) {
-        ModelInteractionExample app = new ModelInteractionExample();
+        Path dataDir = args.length > 0
+                ? Paths.get(args[0])
+                : Paths.get(System.getProperty("java.io.tmpdir"), "indoorgml-example");
+        ModelInteractionExample app = new ModelInteractionExample(dataDir);
         app.start();
     }
 
     @Override
     public void simpleInitApp() {
-        model = CreateModel.createModel();
+        model = loadModel();
+        // keep the georeferenced coordinates, fit them into the view while writing the buffers
+        view = ViewTransform.fit(model.getCellSpaces(), 10.0);
         scene = createScene();
         rootNode.attachChild(scene);
+        // apply deletions to the live scene instead of rebuilding it
+        model.addChangeListener(new SceneSynchronizer(cellBatch, stateMarkers, transitionNetwork));
+        // pick against packed model data instead of colliding with the scene graph
+        picking = new PickingService(model, view);
+        model.addChangeListener(picking);
+        model.addChangeListener(journal);
 
         inputManager.addMapping("select", new MouseButtonTrigger(MouseInput.BUTTON_LEFT));
         inputManager.addListener(actionListener, "select");
@@ -61,6 +112,38 @@ public class ModelInteractionExample extends SimpleApplication {
         chaseCam.setDragToRotate(true);
     }
 
+    /**
+     * Recovers the model from the base snapshot and the journal, or creates
+     * it and writes the first base.
+     */
+    private IndoorGMLModel loadModel() {
+        try {
+            IndoorGMLModel loaded;
+            if (Files.exists(base)) {
+                loaded = ModelJournal.recover(base, journalFile);
+            } else {
+                loaded = CreateModel.createModel();
+                Files.createDirectories(dataDir);
+                Files.deleteIfExists(journalFile);
+                SnapshotWriter.write(loaded, base);
+            }
+            journal = ModelJournal.open(journalFile, base, true);
+            return loaded;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not close the journal", e);
+        }
+        super.destroy();
+    }
+
     private Node createScene() {
         Node node = new Node("scene");
         ColorRGBA[] colors = new ColorRGBA[] {
@@ -70,16 +153,18 @@ public class ModelInteractionExample extends SimpleApplication {
                 ColorRGBA.Magenta,
                 ColorRGBA.Brown
         };
-        int idx = 0;
-        for (CellSpace cs : model.getCellSpaces()) {
-            ColorRGBA color = colors[idx % colors.length];
-            node.attachChild(CellSpaceGeometryBuilder.buildCellSpacesFromCells(
-                    List.of(cs), assetManager, color, 0.5f));
-            idx++;
-        }
-        node.attachChild(StateGeometryBuilder.buildStates(new ArrayList<>(model.getStates()), assetManager));
-        node.attachChild(TransitionGeometryBuilder.buildTransitionsFromTransitions(
-                new ArrayList<>(model.getTransitions()), assetManager));
+        // all cells share one material, colors live in the vertex color buffer
+        cellBatch = CellSpaceGeometryBuilder.buildVertexColoredCellSpaces(
+                new ArrayList<>(), assetManager, colors, 0.5f, -1, view);
+        node.attachChild(cellBatch.getNode());
+        stateMarkers = StateGeometryBuilder.buildInstancedStates(Collections.emptyList(), assetManager, view);
+        node.attachChild(stateMarkers.getNode());
+        transitionNetwork = TransitionGeometryBuilder.buildTransitionNetwork(Collections.emptyList(), assetManager,
+                view);
+        node.attachChild(transitionNetwork.getNode());
+        // nearest cells first, a few milliseconds per frame, buffers filled on worker threads
+        stateManager.attach(new ProgressiveSceneLoader(model, cellBatch, stateMarkers, transitionNetwork,
+                ForkJoinPool.commonPool()));
         return node;
     }
 
@@ -88,36 +173,36 @@ public class ModelInteractionExample extends SimpleApplication {
         Vector2f click2d = inputManager.getCursorPosition();
         Vector3f origin = cam.getWorldCoordinates(click2d, 0f);
         Vector3f direction = cam.getWorldCoordinates(click2d, 1f).subtractLocal(origin).normalizeLocal();
-        Ray ray = new Ray(origin, direction);
-        CollisionResults results = new CollisionResults();
-        rootNode.collideWith(ray, results);
-        if (results.size() > 0) {
-            Geometry g = results.getClosestCollision().getGeometry();
-            String cellId = g.getUserData("cellId");
-            String polygonId = g.getUserData("polygonId");
-            String stateId = g.getUserData("stateId");
-            String transitionId = g.getUserData("transitionId");
-            if (cellId != null) {
-                highlightWithId("cellId", cellId);
-                System.out.println("Clicked CellSpace " + cellId + " (" + polygonId + ")");
-            } else if (stateId != null) {
-                highlightWithId("stateId", stateId);
-                System.out.println("Clicked State " + stateId);
-            } else if (transitionId != null) {
-                highlightWithId("transitionId", transitionId);
-                System.out.println("Clicked Transition " + transitionId);
-            }
+        PickingService.Pick pick = picking.pick(new Ray(origin, direction), view);
+        if (pick == null) {
+            return;
+        }
+        switch (pick.getKind()) {
+            case CELL_SPACE:
+                selectedCellId = pick.getId();
+                cellBatch.setColor(selectedCellId, ColorRGBA.Yellow);
+                System.out.println("Clicked CellSpace " + pick.getId() + " (" + pick.getPolygonId() + ")");
+                break;
+            case STATE:
+                selectedStateId = pick.getId();
+                stateMarkers.highlight(selectedStateId);
+                System.out.println("Clicked State " + pick.getId());
+                break;
+            case TRANSITION:
+                selectedTransitionId = pick.getId();
+                transitionNetwork.setColor(selectedTransitionId, ColorRGBA.Yellow);
+                System.out.println("Clicked Transition " + pick.getId());
+                break;
+            default:
+                break;
         }
     }
 
     private void deleteSelection() {
-        if (selected.isEmpty()) {
-            return;
-        }
-        Geometry g = selected.get(0);
-        String cellId = g.getUserData("cellId");
-        String stateId = g.getUserData("stateId");
-        String transitionId = g.getUserData("transitionId");
+        String cellId = selectedCellId;
+        String stateId = selectedStateId;
+        String transitionId = selectedTransitionId;
+        clearSelection();
         if (cellId != null) {
             model.removeCellSpace(cellId);
         } else if (stateId != null) {
@@ -125,48 +210,32 @@ public class ModelInteractionExample extends SimpleApplication {
         } else if (transitionId != null) {
             model.removeTransition(transitionId);
         }
-        rebuildScene();
-    }
-
-    private void highlightWithId(String key, String id) {
-        java.util.ArrayDeque<com.jme3.scene.Spatial> stack = new java.util.ArrayDeque<>();
-        stack.add(scene);
-        while (!stack.isEmpty()) {
-            com.jme3.scene.Spatial s = stack.poll();
-            if (s instanceof Geometry geom) {
-                String val = geom.getUserData(key);
-                if (id.equals(val)) {
-                    ColorRGBA base = geom.getUserData("baseColor");
-                    ColorRGBA highlight = ColorRGBA.Yellow.clone();
-                    if (base != null) {
-                        highlight.a = base.a;
-                    }
-                    geom.getMaterial().setColor("Color", highlight);
-                    selected.add(geom);
-                }
-            }
-            if (s instanceof Node node) {
-                stack.addAll(node.getChildren());
+        if (journal.getFailure() != null) {
+            LOGGER.log(Level.WARNING, "Could not write the journal", journal.getFailure());
+        }
+        try {
+            // compacting also resumes a journal stopped by a failed write
+            if (journal.getFailure() != null || journal.size() > COMPACT_SIZE) {
+                journal.compact(model, base);
             }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not compact the journal", e);
         }
     }
 
     private void clearSelection() {
-        for (Geometry geom : selected) {
-            ColorRGBA base = geom.getUserData("baseColor");
-            if (base != null) {
-                geom.getMaterial().setColor("Color", base);
-            }
+        if (selectedCellId != null) {
+            cellBatch.resetColor(selectedCellId);
+            selectedCellId = null;
+        }
+        if (selectedStateId != null) {
+            stateMarkers.clearHighlight();
+            selectedStateId = null;
+        }
+        if (selectedTransitionId != null) {
+            transitionNetwork.resetColor(selectedTransitionId);
+            selectedTransitionId = null;
         }
-        selected.clear();
-    }
-
-    private void rebuildScene() {
-        rootNode.detachChild(scene);
-        scene = createScene();
-        rootNode.attachChild(scene);
-        chaseCam.setSpatial(scene);
-        clearSelection();
     }
 
     private final ActionListener actionListener = new ActionListener() {
@@ -11,7 +11,7 @@ import org.indoorgml.model.Vector3d;
 import org.indoorgml.visualizer.CellSpaceGeometryBuilder;
 import org.indoorgml.visualizer.StateGeometryBuilder;
 import org.indoorgml.visualizer.TransitionGeometryBuilder;
-import org.indoorgml.util.GeometryUtils;
+import org.indoorgml.visualizer.ViewTransform;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,14 +44,9 @@ public class MultiCellSpacesExample extends SimpleApplication {
         List<StatePoint> states = createStates(cellSpaces);
         List<LineString> transitions = createTransitions(states);
 
-        // Scale large coordinates down and translate them so the geometry is
-        // centered around the origin before creating the scene graph.
-        float scale = (float) (10.0 / GeometryUtils.computeMaxDimension(allPolygons));
-        applyScale(allPolygons, transitions, states, scale);
-
-        Vector3d center = GeometryUtils.computeBoundingCenter(allPolygons);
-        applyTranslation(allPolygons, transitions, states,
-                -center.getX(), -center.getY(), -center.getZ());
+        // Fit the large coordinates into the view while the mesh buffers are
+        // written; the polygons, states and transitions keep their coordinates.
+        ViewTransform view = ViewTransform.fitPolygons(allPolygons, 10.0);
 
         Node scene = new Node("scene");
         ColorRGBA[] colors = new ColorRGBA[] {
@@ -64,10 +59,10 @@ public class MultiCellSpacesExample extends SimpleApplication {
         for (int i = 0; i < cellSpaces.size(); i++) {
             ColorRGBA color = colors[i % colors.length];
             scene.attachChild(CellSpaceGeometryBuilder.buildCellSpaces(
-                    cellSpaces.get(i), assetManager, color, 0.5f));
+                    cellSpaces.get(i), assetManager, color, 0.5f, view));
         }
-        scene.attachChild(TransitionGeometryBuilder.buildTransitions(transitions, assetManager));
-        scene.attachChild(StateGeometryBuilder.buildStates(states, assetManager));
+        scene.attachChild(TransitionGeometryBuilder.buildTransitions(transitions, assetManager, view));
+        scene.attachChild(StateGeometryBuilder.buildStates(states, assetManager, view));
         rootNode.attachChild(scene);
 
         flyCam.setEnabled(false);
@@ -106,54 +101,7 @@ public class MultiCellSpacesExample extends SimpleApplication {
     }
 
 
-    private void applyScale(List<Polygon> polygons, List<LineString> lines,
-                            List<StatePoint> states, double s) {
-        for (Polygon poly : polygons) {
-            for (Vector3d v : poly.getVertices()) {
-                v.setX(v.getX() * s);
-                v.setY(v.getY() * s);
-                v.setZ(v.getZ() * s);
-            }
-        }
-        for (LineString line : lines) {
-            for (Vector3d v : line.getVertices()) {
-                v.setX(v.getX() * s);
-                v.setY(v.getY() * s);
-                v.setZ(v.getZ() * s);
-            }
-        }
-        for (StatePoint state : states) {
-            Vector3d pos = state.getPosition();
-            pos.setX(pos.getX() * s);
-            pos.setY(pos.getY() * s);
-            pos.setZ(pos.getZ() * s);
-        }
-    }
 
-    private void applyTranslation(List<Polygon> polygons, List<LineString> lines,
-                                  List<StatePoint> states,
-                                  double tx, double ty, double tz) {
-        for (Polygon poly : polygons) {
-            for (Vector3d v : poly.getVertices()) {
-                v.setX(v.getX() + tx);
-                v.setY(v.getY() + ty);
-                v.setZ(v.getZ() + tz);
-            }
-        }
-        for (LineString line : lines) {
-            for (Vector3d v : line.getVertices()) {
-                v.setX(v.getX() + tx);
-                v.setY(v.getY() + ty);
-                v.setZ(v.getZ() + tz);
-            }
-        }
-        for (StatePoint state : states) {
-            Vector3d pos = state.getPosition();
-            pos.setX(pos.getX() + tx);
-            pos.setY(pos.getY() + ty);
-            pos.setZ(pos.getZ() + tz);
-        }
-    }
 
     private Polygon poly(Vector3d v1, Vector3d v2, Vector3d v3, Vector3d v4) {
         Polygon poly = new Polygon();
@@ -0,0 +1,134 @@
+package org.indoorgml.example;
+
+import com.jme3.app.SimpleApplication;
+import com.jme3.input.KeyInput;
+import com.jme3.input.controls.ActionListener;
+import com.jme3.input.controls.KeyTrigger;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Vector3d;
+import org.indoorgml.visualizer.StoreyScene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Example that shows a 40 storey tower split into one scene node per storey.
+ * Page up and page down isolate the storey above or below the current one,
+ * space shows all storeys again.
+ */
+public class StoreyTowerExample extends SimpleApplication {
+
+    private static final int STOREYS = 40;
+    private static final int SIDE = 8;
+    private static final float ROOM = 4f;
+    private static final float HEIGHT = 3f;
+
+    private StoreyScene scene;
+    private int current = -1;
+
+    public static void main(String[] args) {
+        StoreyTowerExample app = new StoreyTowerExample();
+        app.start();
+    }
+
+    @Override
+    public void simpleInitApp() {
+        IndoorGMLModel model = createTower();
+        ColorRGBA[] colors = {ColorRGBA.Blue, ColorRGBA.Orange, ColorRGBA.Cyan};
+        scene = StoreyScene.build(model, assetManager, colors, 0.5f);
+        model.addChangeListener(scene);
+        rootNode.attachChild(scene.getNode());
+
+        inputManager.addMapping("up", new KeyTrigger(KeyInput.KEY_PGUP));
+        inputManager.addMapping("down", new KeyTrigger(KeyInput.KEY_PGDN));
+        inputManager.addMapping("all", new KeyTrigger(KeyInput.KEY_SPACE));
+        inputManager.addListener(actionListener, "up", "down", "all");
+
+        flyCam.setMoveSpeed(30f);
+        cam.setLocation(new Vector3f(-40f, -40f, STOREYS * HEIGHT / 2));
+        cam.lookAt(new Vector3f(SIDE * ROOM / 2, SIDE * ROOM / 2, STOREYS * HEIGHT / 2), Vector3f.UNIT_Z);
+    }
+
+    /**
+     * Creates {@value #STOREYS} storeys of {@code SIDE x SIDE} box rooms that
+     * are connected to their neighbors, with a staircase in one corner.
+     */
+    private static IndoorGMLModel createTower() {
+        IndoorGMLModel model = new IndoorGMLModel();
+        StatePoint[] rooms = new StatePoint[STOREYS * SIDE * SIDE];
+        for (int f = 0; f < STOREYS; f++) {
+            for (int i = 0; i < SIDE * SIDE; i++) {
+                float x = (i % SIDE) * ROOM;
+                float y = (i / SIDE) * ROOM;
+                rooms[f * SIDE * SIDE + i] = model.addCellSpace(box(x, y, f * HEIGHT)).getState();
+            }
+        }
+        for (int f = 0; f < STOREYS; f++) {
+            int base = f * SIDE * SIDE;
+            for (int i = 0; i < SIDE * SIDE; i++) {
+                if ((i + 1) % SIDE != 0) {
+                    model.addTransition(rooms[base + i], rooms[base + i + 1]);
+                }
+                if (i + SIDE < SIDE * SIDE) {
+                    model.addTransition(rooms[base + i], rooms[base + i + SIDE]);
+                }
+            }
+            if (f + 1 < STOREYS) {
+                model.addTransition(rooms[base], rooms[base + SIDE * SIDE]);
+            }
+        }
+        return model;
+    }
+
+    private static List<Polygon> box(float x, float y, float z) {
+        float x2 = x + ROOM;
+        float y2 = y + ROOM;
+        float z2 = z + HEIGHT;
+        List<Polygon> list = new ArrayList<>(6);
+        list.add(quad(x, y, z, x, y2, z, x2, y2, z, x2, y, z));
+        list.add(quad(x, y, z2, x2, y, z2, x2, y2, z2, x, y2, z2));
+        list.add(quad(x, y, z, x2, y, z, x2, y, z2, x, y, z2));
+        list.add(quad(x2, y, z, x2, y2, z, x2, y2, z2, x2, y, z2));
+        list.add(quad(x2, y2, z, x, y2, z, x, y2, z2, x2, y2, z2));
+        list.add(quad(x, y2, z, x, y, z, x, y, z2, x, y2, z2));
+        return list;
+    }
+
+    private static Polygon quad(float... c) {
+        Polygon poly = new Polygon();
+        poly.setVertices(Arrays.asList(
+                new Vector3d(c[0], c[1], c[2]),
+                new Vector3d(c[3], c[4], c[5]),
+                new Vector3d(c[6], c[7], c[8]),
+                new Vector3d(c[9], c[10], c[11])));
+        poly.setIndices(Arrays.asList(0, 1, 2, 0, 2, 3));
+        return poly;
+    }
+
+    private final ActionListener actionListener = new ActionListener() {
+        @Override
+        public void onAction(String name, boolean isPressed, float tpf) {
+            if (!isPressed) {
+                return;
+            }
+            if ("all".equals(name)) {
+                current = -1;
+                scene.showAll();
+                return;
+            }
+            if ("up".equals(name)) {
+                current = Math.min(scene.getStoreyCount() - 1, current + 1);
+            } else {
+                current = Math.max(0, current < 0 ? scene.getStoreyCount() - 1 : current - 1);
+            }
+            scene.isolate(current);
+            System.out.println("Showing storey " + current + " of " + scene.getStoreyCount());
+        }
+    };
+}
@@ -11,7 +11,7 @@ import org.indoorgml.model.Vector3d;
 import org.indoorgml.visualizer.CellSpaceGeometryBuilder;
 import org.indoorgml.visualizer.StateGeometryBuilder;
 import org.indoorgml.visualizer.TransitionGeometryBuilder;
-import org.indoorgml.util.GeometryUtils;
+import org.indoorgml.visualizer.ViewTransform;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -47,22 +47,17 @@ public class TwoCellSpacesExample extends SimpleApplication {
 
         List<LineString> transitions = createTransition(states.get(0), states.get(1));
 
-        // Scale large coordinates down and translate them so the geometry is
-        // centered around the origin before creating the scene graph.
-        float scale = (float) (10.0 / GeometryUtils.computeMaxDimension(allPolygons));
-        applyScale(allPolygons, transitions, states, scale);
-
-        Vector3d center = GeometryUtils.computeBoundingCenter(allPolygons);
-        applyTranslation(allPolygons, transitions, states,
-                -center.getX(), -center.getY(), -center.getZ());
+        // Fit the large coordinates into the view while the mesh buffers are
+        // written; the polygons, states and transitions keep their coordinates.
+        ViewTransform view = ViewTransform.fitPolygons(allPolygons, 10.0);
 
         Node scene = new Node("scene");
         scene.attachChild(CellSpaceGeometryBuilder.buildCellSpaces(cellSpace1, assetManager,
-                ColorRGBA.Blue, 0.5f));
+                ColorRGBA.Blue, 0.5f, view));
         scene.attachChild(CellSpaceGeometryBuilder.buildCellSpaces(cellSpace2, assetManager,
-                ColorRGBA.Orange, 0.5f));
-        scene.attachChild(TransitionGeometryBuilder.buildTransitions(transitions, assetManager));
-        scene.attachChild(StateGeometryBuilder.buildStates(states, assetManager));
+                ColorRGBA.Orange, 0.5f, view));
+        scene.attachChild(TransitionGeometryBuilder.buildTransitions(transitions, assetManager, view));
+        scene.attachChild(StateGeometryBuilder.buildStates(states, assetManager, view));
         rootNode.attachChild(scene);
 
         flyCam.setEnabled(false);
@@ -101,54 +96,7 @@ public class TwoCellSpacesExample extends SimpleApplication {
     }
 
 
-    private void applyScale(List<Polygon> polygons, List<LineString> lines,
-                            List<StatePoint> states, double s) {
-        for (Polygon poly : polygons) {
-            for (Vector3d v : poly.getVertices()) {
-                v.setX(v.getX() * s);
-                v.setY(v.getY() * s);
-                v.setZ(v.getZ() * s);
-            }
-        }
-        for (LineString line : lines) {
-            for (Vector3d v : line.getVertices()) {
-                v.setX(v.getX() * s);
-                v.setY(v.getY() * s);
-                v.setZ(v.getZ() * s);
-            }
-        }
-        for (StatePoint state : states) {
-            Vector3d pos = state.getPosition();
-            pos.setX(pos.getX() * s);
-            pos.setY(pos.getY() * s);
-            pos.setZ(pos.getZ() * s);
-        }
-    }
 
-    private void applyTranslation(List<Polygon> polygons, List<LineString> lines,
-                                  List<StatePoint> states,
-                                  double tx, double ty, double tz) {
-        for (Polygon poly : polygons) {
-            for (Vector3d v : poly.getVertices()) {
-                v.setX(v.getX() + tx);
-                v.setY(v.getY() + ty);
-                v.setZ(v.getZ() + tz);
-            }
-        }
-        for (LineString line : lines) {
-            for (Vector3d v : line.getVertices()) {
-                v.setX(v.getX() + tx);
-                v.setY(v.getY() + ty);
-                v.setZ(v.getZ() + tz);
-            }
-        }
-        for (StatePoint state : states) {
-            Vector3d pos = state.getPosition();
-            pos.setX(pos.getX() + tx);
-            pos.setY(pos.getY() + ty);
-            pos.setZ(pos.getZ() + tz);
-        }
-    }
 
     private Polygon poly(Vector3d v1, Vector3d v2, Vector3d v3, Vector3d v4) {
         Polygon poly = new Polygon();
@@ -0,0 +1,480 @@
+package org.indoorgml.io;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Triangulator;
+import org.indoorgml.model.Vector3d;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming IndoorGML reader based on a StAX pull parser.
+ * <p>
+ * The document is read in a single pass and every CellSpace, State and
+ * Transition is added to the {@link IndoorGMLModel} as soon as its closing
+ * element has been seen, so no DOM is built and the parser working set only
+ * depends on the largest single element. The reader keeps a map from GML ids
+ * to model objects in order to resolve {@code duality} and {@code connects}
+ * references; therefore states must follow their cell spaces and transitions
+ * must follow their states, which is the order used by IndoorGML documents.
+ * Polygons are read with their interior rings and triangulated while reading.
+ * <p>
+ * Additions are grouped into model batches of {@value #BATCH_SIZE} elements,
+ * so listeners see a few large change lists and the model publishes one
+ * snapshot per group instead of one per element.
+ * <p>
+ * Instances reuse internal buffers and are not thread safe.
+ */
+public class IndoorGMLReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BATCH_SIZE = 4096;
+
+    private static final Set<String> CELL_SPACE_ELEMENTS = Set.of(
+            "CellSpace", "GeneralSpace", "TransferSpace", "TransitionSpace",
+            "ConnectionSpace", "AnchorSpace", "NavigableSpace", "NonNavigableSpace");
+
+    private final XMLInputFactory factory;
+    private final StringBuilder text = new StringBuilder();
+    private double[] coords = new double[3 * 64];
+    private int coordCount;
+    private int[] holeStarts = new int[8];
+    private int holeCount;
+    private final Triangulator triangulator = new Triangulator();
+
+    private Map<String, CellSpace> cellsByGmlId;
+    private Map<String, StatePoint> statesByGmlId;
+
+    public IndoorGMLReader() {
+        factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+
+    /**
+     * Reads the given file into a new model.
+     */
+    public IndoorGMLModel read(Path file) throws IOException {
+        IndoorGMLModel model = new IndoorGMLModel();
+        read(file, model);
+        return model;
+    }
+
+    /**
+     * Reads the given file and adds its content to the model.
+     */
+    public ReadStatistics read(Path file, IndoorGMLModel model) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in, model);
+        }
+    }
+
+    /**
+     * Reads the stream and adds its content to the model. The stream is not closed.
+     */
+    public ReadStatistics read(InputStream in, IndoorGMLModel model) throws IOException {
+        ReadStatistics stats = new ReadStatistics();
+        CountingInputStream counting = new CountingInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        cellsByGmlId = new HashMap<>();
+        statesByGmlId = new HashMap<>();
+        long start = System.nanoTime();
+        XMLStreamReader reader = null;
+        model.beginBatch();
+        boolean inBatch = true;
+        try {
+            reader = factory.createXMLStreamReader(counting);
+            int batched = 0;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if (CELL_SPACE_ELEMENTS.contains(name)) {
+                    readCellSpace(reader, model, stats);
+                } else if ("State".equals(name)) {
+                    readState(reader, model, stats);
+                } else if ("Transition".equals(name)) {
+                    readTransition(reader, model, stats);
+                } else {
+                    continue;
+                }
+                if (++batched == BATCH_SIZE) {
+                    // publish the group and let other writers in between groups
+                    batched = 0;
+                    inBatch = false;
+                    model.endBatch();
+                    model.beginBatch();
+                    inBatch = true;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid IndoorGML document: " + e.getMessage(), e);
+        } finally {
+            if (inBatch) {
+                model.endBatch();
+            }
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // nothing left to release
+                }
+            }
+            cellsByGmlId = null;
+            statesByGmlId = null;
+        }
+        stats.setElapsedNanos(System.nanoTime() - start);
+        stats.setBytesRead(counting.count);
+        return stats;
+    }
+
+    private void readCellSpace(XMLStreamReader reader, IndoorGMLModel model, ReadStatistics stats)
+            throws XMLStreamException {
+        String gmlId = gmlId(reader);
+        List<Polygon> polygons = new ArrayList<>();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("Polygon".equals(reader.getLocalName())) {
+                    Polygon poly = readPolygon(reader);
+                    if (poly != null) {
+                        polygons.add(poly);
+                    }
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        if (polygons.isEmpty()) {
+            return;
+        }
+        CellSpace cell = model.addCellSpace(polygons);
+        if (gmlId != null) {
+            cellsByGmlId.put(gmlId, cell);
+        }
+        stats.incrementCellSpaces();
+        stats.addPolygons(polygons.size());
+    }
+
+    /**
+     * Reads a gml:Polygon with its exterior and interior rings. Returns null
+     * for degenerate exterior rings; degenerate interior rings are skipped.
+     */
+    private Polygon readPolygon(XMLStreamReader reader) throws XMLStreamException {
+        coordCount = 0;
+        holeCount = 0;
+        boolean ring = false;
+        int ringStart = 0;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("exterior".equals(name) || "interior".equals(name)) {
+                    ring = true;
+                    ringStart = coordCount;
+                    depth++;
+                } else if (ring && ("posList".equals(name) || "pos".equals(name))) {
+                    readPositions(reader);
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("exterior".equals(name)) {
+                    ring = false;
+                    closeRing(ringStart);
+                    if (coordCount < 9) {
+                        return skip(reader, depth - 1);
+                    }
+                } else if ("interior".equals(name)) {
+                    ring = false;
+                    closeRing(ringStart);
+                    if (coordCount - ringStart < 9) {
+                        coordCount = ringStart;
+                    } else {
+                        addHole(ringStart / 3);
+                    }
+                }
+                depth--;
+            }
+        }
+        if (coordCount < 9 || (holeCount > 0 && holeStarts[0] < 3)) {
+            return null;
+        }
+        double[] vertices = Arrays.copyOf(coords, coordCount);
+        int[] holes = holeCount > 0 ? Arrays.copyOf(holeStarts, holeCount) : null;
+        Polygon poly = new Polygon();
+        poly.setCoordinates(vertices);
+        poly.setHoleStarts(holes);
+        poly.setIndexArray(triangulator.triangulate(vertices, holes));
+        return poly;
+    }
+
+    /**
+     * Drops the repeated closing vertex of the ring starting at {@code ringStart}.
+     */
+    private void closeRing(int ringStart) {
+        int first = ringStart / 3;
+        int last = coordCount / 3 - 1;
+        if (last - first >= 3 && sameVertex(first, last)) {
+            coordCount -= 3;
+        }
+    }
+
+    private void addHole(int start) {
+        if (holeCount == holeStarts.length) {
+            holeStarts = Arrays.copyOf(holeStarts, holeCount * 2);
+        }
+        holeStarts[holeCount++] = start;
+    }
+
+    /**
+     * Skips the rest of an element whose remaining depth is given and returns null.
+     */
+    private static Polygon skip(XMLStreamReader reader, int depth) throws XMLStreamException {
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return null;
+    }
+
+    private void readState(XMLStreamReader reader, IndoorGMLModel model, ReadStatistics stats)
+            throws XMLStreamException {
+        String gmlId = gmlId(reader);
+        String dualCell = null;
+        Vector3d position = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("duality".equals(name)) {
+                    dualCell = href(reader);
+                    depth++;
+                } else if ("pos".equals(name)) {
+                    coordCount = 0;
+                    readPositions(reader);
+                    if (coordCount >= 3) {
+                        position = new Vector3d(coords[0], coords[1], coords[2]);
+                    }
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+
+        CellSpace cell = dualCell != null ? cellsByGmlId.get(dualCell) : null;
+        if (cell == null || cell.getState() == null) {
+            stats.incrementSkippedStates();
+            return;
+        }
+        // the State is already in the model, so a differing position is
+        // applied as a move, which replaces it by a copy
+        int handle = cell.getState().getHandle();
+        if (position != null && !samePosition(position, cell.getState().getPosition())) {
+            model.moveState(handle, position);
+        }
+        StatePoint state = model.getState(handle);
+        if (gmlId != null) {
+            statesByGmlId.put(gmlId, state);
+        }
+        stats.incrementStates();
+    }
+
+    private void readTransition(XMLStreamReader reader, IndoorGMLModel model, ReadStatistics stats)
+            throws XMLStreamException {
+        String stateA = null;
+        String stateB = null;
+        boolean inGeometry = false;
+        coordCount = 0;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("connects".equals(name)) {
+                    if (stateA == null) {
+                        stateA = href(reader);
+                    } else {
+                        stateB = href(reader);
+                    }
+                    depth++;
+                } else if ("LineString".equals(name)) {
+                    inGeometry = true;
+                    depth++;
+                } else if (inGeometry && ("posList".equals(name) || "pos".equals(name))) {
+                    readPositions(reader);
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if ("LineString".equals(reader.getLocalName())) {
+                    inGeometry = false;
+                }
+                depth--;
+            }
+        }
+
+        StatePoint a = stateA != null ? statesByGmlId.get(stateA) : null;
+        StatePoint b = stateB != null ? statesByGmlId.get(stateB) : null;
+        if (a == null || b == null) {
+            stats.incrementSkippedTransitions();
+            return;
+        }
+        int count = coordCount / 3;
+        model.addTransition(a, b, count >= 2 ? Arrays.copyOf(coords, count * 3) : null);
+        stats.incrementTransitions();
+    }
+
+    private static boolean samePosition(Vector3d a, Vector3d b) {
+        return a.getX() == b.getX() && a.getY() == b.getY() && a.getZ() == b.getZ();
+    }
+
+    /**
+     * Appends the coordinates of a gml:pos or gml:posList element to the
+     * coordinate buffer. Two dimensional coordinates get a z value of 0.
+     */
+    private void readPositions(XMLStreamReader reader) throws XMLStreamException {
+        boolean list = "posList".equals(reader.getLocalName());
+        String dimension = reader.getAttributeValue(null, "srsDimension");
+        int dim = dimension != null ? Integer.parseInt(dimension.trim()) : (list ? 3 : 0);
+        readText(reader);
+
+        int first = coordCount;
+        int component = 0;
+        int len = text.length();
+        int i = 0;
+        while (i < len) {
+            while (i < len && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < len && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (start == i) {
+                break;
+            }
+            double value = Double.parseDouble(text.substring(start, i));
+            if (dim == 2) {
+                append(value);
+                if (++component == 2) {
+                    append(0.0);
+                    component = 0;
+                }
+            } else {
+                append(value);
+            }
+        }
+        if (!list && dim == 0 && coordCount - first == 2) {
+            append(0.0);
+        }
+    }
+
+    private void readText(XMLStreamReader reader) throws XMLStreamException {
+        text.setLength(0);
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+        }
+    }
+
+    private void append(double value) {
+        if (coordCount == coords.length) {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+        }
+        coords[coordCount++] = value;
+    }
+
+    private boolean sameVertex(int a, int b) {
+        return coords[a * 3] == coords[b * 3]
+                && coords[a * 3 + 1] == coords[b * 3 + 1]
+                && coords[a * 3 + 2] == coords[b * 3 + 2];
+    }
+
+    private static String gmlId(XMLStreamReader reader) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if ("id".equals(reader.getAttributeLocalName(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static String href(XMLStreamReader reader) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if ("href".equals(reader.getAttributeLocalName(i))) {
+                String value = reader.getAttributeValue(i);
+                return value.startsWith("#") ? value.substring(1) : value;
+            }
+        }
+        return null;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package org.indoorgml.io;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.LineString;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+import org.indoorgml.model.Vector3d;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.indoorgml.io.SnapshotFormat.*;
+
+/**
+ * Read-only view of a snapshot written by {@link SnapshotWriter}.
+ * <p>
+ * Opening a snapshot maps the file and validates the header only. Cells,
+ * states and transitions are decoded on first access and cached, so the
+ * cost of opening does not depend on the model size. Decoded objects keep
+ * their identity: the state of a decoded CellSpace is the same instance as
+ * the endpoint of a decoded Transition.
+ * <p>
+ * Snapshots are limited to 2 GB because they are mapped as a single buffer.
+ * Instances are not thread safe.
+ */
+public final class MappedSnapshot implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    private final int stringCount;
+    private final int stateCount;
+    private final int cellCount;
+    private final int transitionCount;
+    private final long stringsOffset;
+    private final long statesOffset;
+    private final long cellsOffset;
+    private final long polygonsOffset;
+    private final long transitionsOffset;
+    private final long verticesOffset;
+    private final long indicesOffset;
+    private final long holesOffset;
+    private final long adjacencyOffset;
+
+    private StatePoint[] states;
+    private CellSpace[] cells;
+    private Transition[] transitions;
+
+    private MappedSnapshot(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer.order(ORDER);
+        if (this.buffer.getInt(H_MAGIC) != MAGIC) {
+            throw new IOException("Not an IndoorGML snapshot");
+        }
+        int version = this.buffer.getInt(H_VERSION);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        stringCount = this.buffer.getInt(H_STRING_COUNT);
+        stateCount = this.buffer.getInt(H_STATE_COUNT);
+        cellCount = this.buffer.getInt(H_CELL_COUNT);
+        transitionCount = this.buffer.getInt(H_TRANSITION_COUNT);
+        stringsOffset = this.buffer.getLong(H_STRINGS);
+        statesOffset = this.buffer.getLong(H_STATES);
+        cellsOffset = this.buffer.getLong(H_CELLS);
+        polygonsOffset = this.buffer.getLong(H_POLYGONS);
+        transitionsOffset = this.buffer.getLong(H_TRANSITIONS);
+        verticesOffset = this.buffer.getLong(H_VERTICES);
+        indicesOffset = this.buffer.getLong(H_INDICES);
+        holesOffset = this.buffer.getLong(H_HOLES);
+        adjacencyOffset = this.buffer.getLong(H_ADJACENCY);
+        if (this.buffer.getLong(H_END) != this.buffer.capacity()) {
+            throw new IOException("Truncated snapshot");
+        }
+    }
+
+    /**
+     * Maps the given snapshot file.
+     */
+    public static MappedSnapshot open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid snapshot size " + size);
+            }
+            return new MappedSnapshot(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the last journal record folded into this snapshot, or 0.
+     */
+    public long getJournalSequence() {
+        return buffer.getLong(H_SEQUENCE);
+    }
+
+    public int getCellSpaceCount() {
+        return cellCount;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * Returns the id of a cell without decoding its geometry.
+     */
+    public String getCellSpaceId(int index) {
+        return string(buffer.getInt(record(cellsOffset, CELL_RECORD, index, cellCount)));
+    }
+
+    public CellSpace getCellSpace(int index) {
+        if (cells == null) {
+            cells = new CellSpace[cellCount];
+        }
+        CellSpace cell = cells[index];
+        if (cell == null) {
+            int pos = record(cellsOffset, CELL_RECORD, index, cellCount);
+            cell = new CellSpace();
+            cell.setId(string(buffer.getInt(pos)));
+            int state = buffer.getInt(pos + 4);
+            if (state >= 0) {
+                cell.setState(getState(state));
+            }
+            int firstPolygon = buffer.getInt(pos + 8);
+            int polygonCount = buffer.getInt(pos + 12);
+            List<Polygon> polygons = new ArrayList<>(polygonCount);
+            for (int i = 0; i < polygonCount; i++) {
+                polygons.add(polygon(firstPolygon + i));
+            }
+            cell.setPolygons(polygons);
+            cells[index] = cell;
+        }
+        return cell;
+    }
+
+    public StatePoint getState(int index) {
+        if (states == null) {
+            states = new StatePoint[stateCount];
+        }
+        StatePoint state = states[index];
+        if (state == null) {
+            int pos = record(statesOffset, STATE_RECORD, index, stateCount);
+            state = new StatePoint();
+            state.setId(string(buffer.getInt(pos)));
+            state.setPosition(new Vector3d(buffer.getDouble(pos + 4),
+                    buffer.getDouble(pos + 12), buffer.getDouble(pos + 20)));
+            states[index] = state;
+        }
+        return state;
+    }
+
+    public Transition getTransition(int index) {
+        if (transitions == null) {
+            transitions = new Transition[transitionCount];
+        }
+        Transition t = transitions[index];
+        if (t == null) {
+            int pos = record(transitionsOffset, TRANSITION_RECORD, index, transitionCount);
+            t = new Transition();
+            t.setId(string(buffer.getInt(pos)));
+            t.setStateA(getState(buffer.getInt(pos + 4)));
+            t.setStateB(getState(buffer.getInt(pos + 8)));
+            int vertexCount = buffer.getInt(pos + 16);
+            if (vertexCount > 0) {
+                LineString line = new LineString();
+                line.setCoordinates(coordinates(buffer.getInt(pos + 12), vertexCount));
+                t.setGeometry(line);
+            }
+            transitions[index] = t;
+        }
+        return t;
+    }
+
+    /**
+     * Returns the indices of all transitions connected to the given state.
+     */
+    public int[] getIncidentTransitions(int stateIndex) {
+        if (stateIndex < 0 || stateIndex >= stateCount) {
+            throw new IndexOutOfBoundsException(stateIndex);
+        }
+        int offsets = (int) adjacencyOffset;
+        int start = buffer.getInt(offsets + 4 * stateIndex);
+        int end = buffer.getInt(offsets + 4 * (stateIndex + 1));
+        int data = offsets + 4 * (stateCount + 1);
+        int[] result = new int[end - start];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = buffer.getInt(data + 4 * (start + i));
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the whole snapshot into a new model that keeps all original IDs.
+     */
+    public IndoorGMLModel toModel() {
+        IndoorGMLModel model = new IndoorGMLModel();
+        model.beginBatch();
+        try {
+            for (int i = 0; i < cellCount; i++) {
+                model.restoreCellSpace(getCellSpace(i));
+            }
+            for (int i = 0; i < transitionCount; i++) {
+                model.restoreTransition(getTransition(i));
+            }
+        } finally {
+            model.endBatch();
+        }
+        return model;
+    }
+
+    /**
+     * Closes the underlying channel. The mapping itself is released by the
+     * garbage collector once no decoded buffer references it anymore.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private Polygon polygon(int index) {
+        int pos = (int) (polygonsOffset + (long) POLYGON_RECORD * index);
+        Polygon poly = new Polygon();
+        poly.setId(string(buffer.getInt(pos)));
+        poly.setCoordinates(coordinates(buffer.getInt(pos + 4), buffer.getInt(pos + 8)));
+        int firstIndex = buffer.getInt(pos + 12);
+        int[] indices = new int[buffer.getInt(pos + 16)];
+        buffer.slice((int) (indicesOffset + (long) INDEX_RECORD * firstIndex), indices.length * INDEX_RECORD)
+                .order(ORDER).asIntBuffer().get(indices);
+        poly.setIndexArray(indices);
+        int holeCount = buffer.getInt(pos + 24);
+        if (holeCount > 0) {
+            int[] holes = new int[holeCount];
+            buffer.slice((int) (holesOffset + (long) HOLE_RECORD * buffer.getInt(pos + 20)), holeCount * HOLE_RECORD)
+                    .order(ORDER).asIntBuffer().get(holes);
+            poly.setHoleStarts(holes);
+        }
+        return poly;
+    }
+
+    private double[] coordinates(int first, int count) {
+        double[] coords = new double[count * 3];
+        buffer.slice((int) (verticesOffset + (long) VERTEX_RECORD * first), count * VERTEX_RECORD)
+                .order(ORDER).asDoubleBuffer().get(coords);
+        return coords;
+    }
+
+    private String string(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int table = (int) stringsOffset;
+        int start = buffer.getInt(table + 4 * index);
+        int end = buffer.getInt(table + 4 * (index + 1));
+        int data = table + 4 * (stringCount + 1);
+        byte[] bytes = new byte[end - start];
+        buffer.get(data + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int record(long sectionOffset, int recordSize, int index, int count) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (int) (sectionOffset + (long) recordSize * index);
+    }
+}
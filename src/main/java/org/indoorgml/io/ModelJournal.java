@@ -0,0 +1,613 @@
+package org.indoorgml.io;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.LineString;
+import org.indoorgml.model.ModelChangeEvent;
+import org.indoorgml.model.ModelChangeListener;
+import org.indoorgml.model.ModelSnapshot;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+import org.indoorgml.model.Vector3d;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.indoorgml.io.SnapshotFormat.ORDER;
+
+/**
+ * Append-only log of the changes of an {@link IndoorGMLModel}, replayed on
+ * top of a base snapshot written by {@link SnapshotWriter}.
+ * <p>
+ * Register the journal as change listener of the model. All events of one
+ * batch become records that are written with a single call and, if the
+ * journal was opened with {@code sync}, forced to the disk before the batch
+ * ends, so wrapping several edits in a batch commits them together. Every
+ * record carries a sequence number and a CRC32; a record cut off by a crash
+ * fails the check and is dropped, together with anything after it, when the
+ * journal is opened again.
+ * <p>
+ * Records describe the result of a change rather than the call: added and
+ * moved CellSpaces are stored with their geometry, moved States with their
+ * position, and removals by ID. Transition moves follow from the State moves
+ * and are not stored. Replaying therefore costs time in proportion to the
+ * journal, not to the model.
+ * <p>
+ * {@link #compact(IndoorGMLModel, Path)} writes a new base snapshot that
+ * records the last sequence it contains and then starts the journal over.
+ * Both files are replaced with atomic renames and records already in the base
+ * are skipped on replay, so a crash at any point leaves a consistent pair.
+ * <pre>
+ * header  int magic, int version, long first sequence
+ * record  int length, int crc, long sequence, byte type, data
+ * </pre>
+ */
+public final class ModelJournal implements ModelChangeListener, Closeable {
+
+    private static final int MAGIC = 0x49474d4a; // "IGMJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    /** Length and CRC in front of every record. */
+    private static final int RECORD_PREFIX = 8;
+
+    private static final byte CELL_SPACE = 1;
+    private static final byte TRANSITION = 2;
+    private static final byte STATE_MOVED = 3;
+    private static final byte CELL_SPACE_REMOVED = 4;
+    private static final byte STATE_REMOVED = 5;
+    private static final byte TRANSITION_REMOVED = 6;
+
+    private final Path file;
+    private final boolean sync;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ORDER);
+    private long lastSequence;
+    private IOException failure;
+    /** Groups ignored because of the failure. */
+    private long dropped;
+
+    private ModelJournal(Path file, boolean sync, FileChannel channel, long lastSequence) {
+        this.file = file;
+        this.sync = sync;
+        this.channel = channel;
+        this.lastSequence = lastSequence;
+    }
+
+    /**
+     * Opens the journal of the given base snapshot for appending. A missing
+     * journal, or one that holds nothing the base does not already contain, is
+     * started over after the last record folded into the base. A damaged tail
+     * left by a crash is cut off.
+     *
+     * @param base the base snapshot, which need not exist yet
+     * @param sync whether every group of records is forced to the disk
+     * @throws IOException if the journal does not continue the base
+     */
+    public static ModelJournal open(Path file, Path base, boolean sync) throws IOException {
+        long folded = sequenceOf(base);
+        if (!Files.exists(file)) {
+            create(file, folded + 1);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            Scan scan = scan(channel, null, folded);
+            if (scan.lastSequence < folded) {
+                // written before the base; replay would skip anything appended to it
+                channel.close();
+                create(file, folded + 1);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                scan = scan(channel, null, folded);
+            }
+            if (scan.end < channel.size()) {
+                channel.truncate(scan.end);
+            }
+            channel.position(scan.end);
+            return new ModelJournal(file, sync, channel, scan.lastSequence);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the base snapshot, if it exists, and replays the journal on top
+     * of it. The journal is not opened for appending.
+     *
+     * @throws IOException if the journal does not continue the base
+     */
+    public static IndoorGMLModel recover(Path base, Path journal) throws IOException {
+        IndoorGMLModel model;
+        long folded = 0;
+        if (Files.exists(base)) {
+            try (MappedSnapshot snapshot = MappedSnapshot.open(base)) {
+                model = snapshot.toModel();
+                folded = snapshot.getJournalSequence();
+            }
+        } else {
+            model = new IndoorGMLModel();
+        }
+        if (Files.exists(journal)) {
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+                model.beginBatch();
+                try {
+                    scan(channel, model, folded);
+                } finally {
+                    model.endBatch();
+                }
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Returns the sequence number of the last record written or found.
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns the size of the journal in bytes.
+     */
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public synchronized void modelChanged(List<ModelChangeEvent> events) {
+        if (failure != null) {
+            dropped++;
+            return;
+        }
+        buffer.clear();
+        long sequence = lastSequence;
+        for (ModelChangeEvent e : events) {
+            byte type = type(e.getType());
+            if (type == 0) {
+                continue;
+            }
+            int start = buffer.position();
+            ensure(RECORD_PREFIX + 9);
+            buffer.position(start + RECORD_PREFIX);
+            buffer.putLong(++sequence);
+            buffer.put(type);
+            switch (type) {
+                case CELL_SPACE:
+                    putCellSpace(e.getCellSpace());
+                    break;
+                case TRANSITION:
+                    putTransition(e.getTransition());
+                    break;
+                case STATE_MOVED:
+                    putString(e.getId());
+                    putPosition(e.getState().getPosition());
+                    break;
+                default:
+                    putString(e.getId());
+                    break;
+            }
+            int end = buffer.position();
+            crc.reset();
+            crc.update(buffer.array(), start + RECORD_PREFIX, end - start - RECORD_PREFIX);
+            buffer.putInt(start, end - start - RECORD_PREFIX);
+            buffer.putInt(start + 4, (int) crc.getValue());
+        }
+        if (sequence == lastSequence) {
+            return;
+        }
+        long end = 0;
+        try {
+            end = channel.position();
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+            lastSequence = sequence;
+        } catch (IOException e) {
+            // drop a partly written group so the records on disk stay a prefix
+            // of the changes; later groups must not follow the gap
+            try {
+                channel.truncate(end);
+                channel.position(end);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            failure = e;
+        }
+    }
+
+    /**
+     * Returns the error that stopped the journal, or null while it works.
+     * A failed write is not thrown to the model, which would keep the other
+     * listeners from seeing the batch; instead the journal is cut back to the
+     * last complete group and ignores further changes until
+     * {@link #compact(IndoorGMLModel, Path)} succeeds, since the model then
+     * holds changes the journal is missing.
+     */
+    public synchronized IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Writes the current model as new base snapshot and removes the folded
+     * records from the journal. The snapshot file is written while the model
+     * may still be edited; only the final swap of the journal blocks
+     * appends, for as long as it takes to copy the records added meanwhile.
+     * Compacting also resumes a journal stopped by a failed write.
+     */
+    public void compact(IndoorGMLModel model, Path base) throws IOException {
+        ModelSnapshot snapshot;
+        long folded;
+        long droppedBefore;
+        // no batch can end while this one is open, so the journal matches the snapshot
+        model.beginBatch();
+        try {
+            snapshot = model.snapshot();
+            synchronized (this) {
+                folded = lastSequence;
+                droppedBefore = dropped;
+            }
+        } finally {
+            model.endBatch();
+        }
+        SnapshotWriter.write(snapshot, base, folded);
+        synchronized (this) {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            create(tmp, folded + 1);
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long start = skip(channel, folded);
+                channel.transferTo(start, channel.size() - start, out);
+                out.force(true);
+            }
+            channel.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            // the new base holds everything a failed write lost, unless more
+            // groups were dropped after the snapshot was taken
+            if (dropped == droppedBefore) {
+                failure = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the last record folded into the base snapshot, or 0 if there is
+     * no base yet.
+     */
+    private static long sequenceOf(Path base) throws IOException {
+        if (!Files.exists(base)) {
+            return 0;
+        }
+        try (MappedSnapshot snapshot = MappedSnapshot.open(base)) {
+            return snapshot.getJournalSequence();
+        }
+    }
+
+    private static void create(Path file, long firstSequence) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+        header.putInt(MAGIC).putInt(VERSION).putLong(firstSequence).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Returns the file position of the first record after the given sequence.
+     */
+    private static long skip(FileChannel channel, long sequence) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX + 8).order(ORDER);
+        long pos = HEADER_SIZE;
+        long size = channel.size();
+        while (pos + prefix.capacity() <= size) {
+            prefix.clear();
+            read(channel, prefix, pos);
+            if (prefix.getLong(RECORD_PREFIX) > sequence) {
+                break;
+            }
+            pos += RECORD_PREFIX + prefix.getInt(0);
+        }
+        return Math.min(pos, size);
+    }
+
+    /**
+     * Reads the records up to the first damaged one and applies those after
+     * {@code folded} to the model, if one is given. A journal that starts
+     * after {@code folded + 1} misses records the base does not hold either
+     * and is rejected.
+     */
+    private static Scan scan(FileChannel channel, IndoorGMLModel model, long folded) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+        if (size < HEADER_SIZE || read(channel, header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            throw new IOException("Not an IndoorGML journal");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported journal version " + header.getInt(4));
+        }
+        long first = header.getLong(8);
+        if (first > folded + 1) {
+            throw new IOException("Journal starts at record " + first + " but the base ends at record " + folded);
+        }
+        Scan scan = new Scan();
+        scan.lastSequence = first - 1;
+        scan.end = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX).order(ORDER);
+        ByteBuffer body = ByteBuffer.allocate(1 << 16).order(ORDER);
+        while (scan.end + RECORD_PREFIX <= size) {
+            prefix.clear();
+            read(channel, prefix, scan.end);
+            int length = prefix.getInt(0);
+            if (length < 9 || scan.end + RECORD_PREFIX + length > size) {
+                break;
+            }
+            if (body.capacity() < length) {
+                body = ByteBuffer.allocate(Integer.highestOneBit(length) << 1).order(ORDER);
+            }
+            body.clear().limit(length);
+            read(channel, body, scan.end + RECORD_PREFIX);
+            crc.reset();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != prefix.getInt(4)) {
+                break;
+            }
+            long sequence = body.getLong(0);
+            if (model != null && sequence > folded) {
+                body.position(8);
+                apply(model, body);
+            }
+            scan.lastSequence = sequence;
+            scan.end += RECORD_PREFIX + length;
+        }
+        return scan;
+    }
+
+    private static int read(FileChannel channel, ByteBuffer target, long position) throws IOException {
+        int total = 0;
+        while (target.hasRemaining()) {
+            int n = channel.read(target, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        target.flip();
+        return total;
+    }
+
+    private static void apply(IndoorGMLModel model, ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case CELL_SPACE:
+                model.restoreCellSpace(getCellSpace(model, in));
+                break;
+            case TRANSITION: {
+                Transition t = getTransition(model, in);
+                if (t != null) {
+                    model.restoreTransition(t);
+                }
+                break;
+            }
+            case STATE_MOVED:
+                model.moveState(getString(in), getPosition(in));
+                break;
+            case CELL_SPACE_REMOVED:
+                model.removeCellSpace(getString(in));
+                break;
+            case STATE_REMOVED:
+                model.removeState(getString(in));
+                break;
+            case TRANSITION_REMOVED:
+                model.removeTransition(getString(in));
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static byte type(ModelChangeEvent.Type type) {
+        switch (type) {
+            case CELL_SPACE_ADDED:
+            case CELL_SPACE_MOVED:
+                return CELL_SPACE;
+            case TRANSITION_ADDED:
+                return TRANSITION;
+            case STATE_MOVED:
+                return STATE_MOVED;
+            case CELL_SPACE_REMOVED:
+                return CELL_SPACE_REMOVED;
+            case STATE_REMOVED:
+                return STATE_REMOVED;
+            case TRANSITION_REMOVED:
+                return TRANSITION_REMOVED;
+            default:
+                // States are stored with their CellSpace, Transition moves follow from State moves
+                return 0;
+        }
+    }
+
+    private void putCellSpace(CellSpace cell) {
+        putString(cell.getId());
+        StatePoint state = cell.getState();
+        putString(state != null ? state.getId() : null);
+        if (state != null) {
+            putPosition(state.getPosition());
+        }
+        ensure(4);
+        buffer.putInt(cell.getPolygons().size());
+        for (Polygon p : cell.getPolygons()) {
+            putString(p.getId());
+            putDoubles(p.getCoordinates());
+            putInts(p.hasIndices() ? p.getIndexArray() : null);
+            putInts(p.getHoleStarts());
+        }
+    }
+
+    private void putTransition(Transition t) {
+        putString(t.getId());
+        putString(t.getStateA().getId());
+        putString(t.getStateB().getId());
+        putDoubles(t.getGeometry() != null ? t.getGeometry().getCoordinates() : null);
+    }
+
+    private void putPosition(Vector3d p) {
+        ensure(24);
+        buffer.putDouble(p.getX()).putDouble(p.getY()).putDouble(p.getZ());
+    }
+
+    private void putString(String s) {
+        if (s == null) {
+            ensure(4);
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    private void putDoubles(double[] values) {
+        ensure(4 + (values != null ? 8 * values.length : 0));
+        buffer.putInt(values != null ? values.length : -1);
+        if (values != null) {
+            for (double v : values) {
+                buffer.putDouble(v);
+            }
+        }
+    }
+
+    private void putInts(int[] values) {
+        ensure(4 + (values != null ? 4 * values.length : 0));
+        buffer.putInt(values != null ? values.length : -1);
+        if (values != null) {
+            for (int v : values) {
+                buffer.putInt(v);
+            }
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes))
+                    .order(ORDER);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    private static CellSpace getCellSpace(IndoorGMLModel model, ByteBuffer in) {
+        CellSpace cell = new CellSpace();
+        cell.setId(getString(in));
+        String stateId = getString(in);
+        if (stateId != null) {
+            Vector3d position = getPosition(in);
+            // a moved CellSpace keeps the State instance its Transitions refer to
+            StatePoint state = model.getState(stateId);
+            if (state == null) {
+                state = new StatePoint();
+                state.setId(stateId);
+                state.setPosition(position);
+            }
+            cell.setState(state);
+        }
+        int count = in.getInt();
+        List<Polygon> polygons = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Polygon p = new Polygon();
+            p.setId(getString(in));
+            p.setCoordinates(getDoubles(in));
+            int[] indices = getInts(in);
+            if (indices != null) {
+                p.setIndexArray(indices);
+            }
+            p.setHoleStarts(getInts(in));
+            polygons.add(p);
+        }
+        cell.setPolygons(polygons);
+        return cell;
+    }
+
+    /**
+     * Returns the Transition, or null if one of its States no longer exists.
+     */
+    private static Transition getTransition(IndoorGMLModel model, ByteBuffer in) {
+        Transition t = new Transition();
+        t.setId(getString(in));
+        t.setStateA(model.getState(getString(in)));
+        t.setStateB(model.getState(getString(in)));
+        double[] coords = getDoubles(in);
+        if (coords != null) {
+            LineString line = new LineString();
+            line.setCoordinates(coords);
+            t.setGeometry(line);
+        }
+        return t.getStateA() != null && t.getStateB() != null ? t : null;
+    }
+
+    private static Vector3d getPosition(ByteBuffer in) {
+        return new Vector3d(in.getDouble(), in.getDouble(), in.getDouble());
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    private static double[] getDoubles(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        double[] values = new double[length];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + 8 * length);
+        return values;
+    }
+
+    private static int[] getInts(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        int[] values = new int[length];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * length);
+        return values;
+    }
+
+    private static final class Scan {
+        long end;
+        long lastSequence;
+    }
+}
@@ -0,0 +1,102 @@
+package org.indoorgml.io;
+
+/**
+ * Counters collected while reading an IndoorGML document.
+ */
+public class ReadStatistics {
+    private long bytesRead;
+    private long elapsedNanos;
+    private int cellSpaces;
+    private int polygons;
+    private int states;
+    private int transitions;
+    private int skippedStates;
+    private int skippedTransitions;
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    void setBytesRead(long bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getCellSpaces() {
+        return cellSpaces;
+    }
+
+    void incrementCellSpaces() {
+        cellSpaces++;
+    }
+
+    public int getPolygons() {
+        return polygons;
+    }
+
+    void addPolygons(int count) {
+        polygons += count;
+    }
+
+    public int getStates() {
+        return states;
+    }
+
+    void incrementStates() {
+        states++;
+    }
+
+    public int getTransitions() {
+        return transitions;
+    }
+
+    void incrementTransitions() {
+        transitions++;
+    }
+
+    /**
+     * Number of states without a resolvable dual CellSpace.
+     */
+    public int getSkippedStates() {
+        return skippedStates;
+    }
+
+    void incrementSkippedStates() {
+        skippedStates++;
+    }
+
+    /**
+     * Number of transitions whose connected states could not be resolved.
+     */
+    public int getSkippedTransitions() {
+        return skippedTransitions;
+    }
+
+    void incrementSkippedTransitions() {
+        skippedTransitions++;
+    }
+
+    /**
+     * Returns the read throughput in megabytes per second.
+     */
+    public double getMegabytesPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return (bytesRead / (1024.0 * 1024.0)) / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d cells, %d polygons, %d states, %d transitions, %.1f MB in %.2f s (%.1f MB/s)",
+                cellSpaces, polygons, states, transitions,
+                bytesRead / (1024.0 * 1024.0), elapsedNanos / 1e9, getMegabytesPerSecond());
+    }
+}
@@ -0,0 +1,70 @@
+package org.indoorgml.io;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout constants of the binary model snapshot written by {@link SnapshotWriter}
+ * and read by {@link MappedSnapshot}.
+ * <p>
+ * A snapshot starts with a fixed size header followed by sections of fixed size
+ * records, so every element can be located without scanning the file:
+ * <pre>
+ * header      magic, version, element counts, section offsets, journal sequence
+ * strings     int[stringCount + 1] byte offsets, followed by UTF-8 data
+ * states      int id, double x, double y, double z
+ * cells       int id, int state, int firstPolygon, int polygonCount
+ * polygons    int id, int firstVertex, int vertexCount, int firstIndex, int indexCount,
+ *             int firstHole, int holeCount
+ * transitions int id, int stateA, int stateB, int firstVertex, int vertexCount
+ * vertices    double x, double y, double z
+ * indices     int
+ * holes       int start vertex of an interior ring, relative to the polygon
+ * adjacency   int[stateCount + 1] offsets, int[] incident transitions per state
+ * </pre>
+ * String ids refer to the string table, state references are state record
+ * indices and -1 marks a missing value. A transition without geometry has a
+ * vertex count of 0. All values are little endian. The journal sequence is
+ * the last {@link ModelJournal} record already contained in the snapshot, 0
+ * if it was not written by a compaction.
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x49474d53; // "IGMS"
+    static final int VERSION = 2;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int HEADER_SIZE = 128;
+    static final int STATE_RECORD = 4 + 3 * 8;
+    static final int CELL_RECORD = 4 * 4;
+    static final int POLYGON_RECORD = 7 * 4;
+    static final int TRANSITION_RECORD = 5 * 4;
+    static final int VERTEX_RECORD = 3 * 8;
+    static final int INDEX_RECORD = 4;
+    static final int HOLE_RECORD = 4;
+
+    // header field positions
+    static final int H_MAGIC = 0;
+    static final int H_VERSION = 4;
+    static final int H_STRING_COUNT = 8;
+    static final int H_STATE_COUNT = 12;
+    static final int H_CELL_COUNT = 16;
+    static final int H_POLYGON_COUNT = 20;
+    static final int H_TRANSITION_COUNT = 24;
+    static final int H_VERTEX_COUNT = 28;
+    static final int H_INDEX_COUNT = 32;
+    static final int H_HOLE_COUNT = 36;
+    static final int H_STRINGS = 40;
+    static final int H_STATES = 48;
+    static final int H_CELLS = 56;
+    static final int H_POLYGONS = 64;
+    static final int H_TRANSITIONS = 72;
+    static final int H_VERTICES = 80;
+    static final int H_INDICES = 88;
+    static final int H_ADJACENCY = 96;
+    static final int H_END = 104;
+    static final int H_SEQUENCE = 112;
+    static final int H_HOLES = 120;
+
+    private SnapshotFormat() {
+    }
+}
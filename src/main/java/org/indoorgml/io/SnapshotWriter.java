@@ -0,0 +1,385 @@
+package org.indoorgml.io;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.ModelSnapshot;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+import org.indoorgml.model.Vector3d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.indoorgml.io.SnapshotFormat.*;
+
+/**
+ * Writes an {@link IndoorGMLModel} into the binary snapshot format described
+ * in {@link SnapshotFormat}. The file is written next to the target and moved
+ * into place afterwards, so readers never observe a partially written snapshot.
+ */
+public final class SnapshotWriter {
+
+    private static final int CHUNK = 1 << 20;
+
+    private SnapshotWriter() {
+    }
+
+    public static void write(IndoorGMLModel model, Path file) throws IOException {
+        write(model.snapshot(), file, 0);
+    }
+
+    /**
+     * Writes a snapshot of a model, which may still be edited meanwhile.
+     *
+     * @param journalSequence the last {@link ModelJournal} record contained
+     *                        in the snapshot, or 0
+     */
+    public static void write(ModelSnapshot model, Path file, long journalSequence) throws IOException {
+        List<StatePoint> states = new ArrayList<>(model.getStates());
+        List<CellSpace> cells = new ArrayList<>(model.getCellSpaces());
+        List<Transition> transitions = new ArrayList<>(model.getTransitions());
+
+        Map<StatePoint, Integer> stateIndex = new IdentityHashMap<>();
+        for (int i = 0; i < states.size(); i++) {
+            stateIndex.put(states.get(i), i);
+        }
+
+        StringTable strings = new StringTable();
+        int polygonCount = 0;
+        long vertexCount = 0;
+        long indexCount = 0;
+        long holeCount = 0;
+        for (CellSpace cs : cells) {
+            for (Polygon p : cs.getPolygons()) {
+                polygonCount++;
+                vertexCount += p.getVertexCount();
+                indexCount += p.getIndexArray().length;
+                holeCount += holeCount(p);
+            }
+        }
+        for (Transition t : transitions) {
+            vertexCount += vertexCount(t);
+        }
+        if (vertexCount > Integer.MAX_VALUE || indexCount > Integer.MAX_VALUE || holeCount > Integer.MAX_VALUE) {
+            throw new IOException("Model too large for snapshot format version " + VERSION);
+        }
+
+        // incident transitions per state in compressed sparse row layout
+        int[] adjacencyOffsets = new int[states.size() + 1];
+        int[][] endpoints = new int[transitions.size()][];
+        for (int i = 0; i < transitions.size(); i++) {
+            Transition t = transitions.get(i);
+            int a = indexOf(stateIndex, t.getStateA(), t);
+            int b = indexOf(stateIndex, t.getStateB(), t);
+            endpoints[i] = new int[] {a, b};
+            adjacencyOffsets[a + 1]++;
+            if (b != a) {
+                adjacencyOffsets[b + 1]++;
+            }
+        }
+        for (int i = 0; i < states.size(); i++) {
+            adjacencyOffsets[i + 1] += adjacencyOffsets[i];
+        }
+        int[] adjacency = new int[adjacencyOffsets[states.size()]];
+        int[] fill = adjacencyOffsets.clone();
+        for (int i = 0; i < transitions.size(); i++) {
+            adjacency[fill[endpoints[i][0]]++] = i;
+            if (endpoints[i][1] != endpoints[i][0]) {
+                adjacency[fill[endpoints[i][1]]++] = i;
+            }
+        }
+
+        // intern all ids before the string section size is known
+        for (StatePoint s : states) {
+            strings.add(s.getId());
+        }
+        for (CellSpace cs : cells) {
+            strings.add(cs.getId());
+            for (Polygon p : cs.getPolygons()) {
+                strings.add(p.getId());
+            }
+        }
+        for (Transition t : transitions) {
+            strings.add(t.getId());
+        }
+
+        long stringsOffset = HEADER_SIZE;
+        long statesOffset = align(stringsOffset + 4L * (strings.size() + 1) + strings.byteSize());
+        long cellsOffset = statesOffset + (long) STATE_RECORD * states.size();
+        long polygonsOffset = cellsOffset + (long) CELL_RECORD * cells.size();
+        long transitionsOffset = polygonsOffset + (long) POLYGON_RECORD * polygonCount;
+        long verticesOffset = align(transitionsOffset + (long) TRANSITION_RECORD * transitions.size());
+        long indicesOffset = verticesOffset + VERTEX_RECORD * vertexCount;
+        long holesOffset = indicesOffset + INDEX_RECORD * indexCount;
+        long adjacencyOffset = holesOffset + HOLE_RECORD * holeCount;
+        long end = adjacencyOffset + 4L * (adjacencyOffsets.length + adjacency.length);
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(strings.size());
+            out.putInt(states.size());
+            out.putInt(cells.size());
+            out.putInt(polygonCount);
+            out.putInt(transitions.size());
+            out.putInt((int) vertexCount);
+            out.putInt((int) indexCount);
+            out.putInt((int) holeCount);
+            out.putLong(stringsOffset);
+            out.putLong(statesOffset);
+            out.putLong(cellsOffset);
+            out.putLong(polygonsOffset);
+            out.putLong(transitionsOffset);
+            out.putLong(verticesOffset);
+            out.putLong(indicesOffset);
+            out.putLong(adjacencyOffset);
+            out.putLong(end);
+            out.padTo(H_SEQUENCE);
+            out.putLong(journalSequence);
+            out.putLong(holesOffset);
+            out.padTo(stringsOffset);
+
+            strings.write(out);
+            out.padTo(statesOffset);
+
+            for (StatePoint s : states) {
+                Vector3d pos = s.getPosition();
+                out.putInt(strings.indexOf(s.getId()));
+                out.putDouble(pos.getX());
+                out.putDouble(pos.getY());
+                out.putDouble(pos.getZ());
+            }
+
+            int firstPolygon = 0;
+            for (CellSpace cs : cells) {
+                out.putInt(strings.indexOf(cs.getId()));
+                Integer state = cs.getState() != null ? stateIndex.get(cs.getState()) : null;
+                out.putInt(state != null ? state : -1);
+                out.putInt(firstPolygon);
+                out.putInt(cs.getPolygons().size());
+                firstPolygon += cs.getPolygons().size();
+            }
+
+            int firstVertex = 0;
+            int firstIndex = 0;
+            int firstHole = 0;
+            for (CellSpace cs : cells) {
+                for (Polygon p : cs.getPolygons()) {
+                    out.putInt(strings.indexOf(p.getId()));
+                    out.putInt(firstVertex);
+                    int indices = p.getIndexArray().length;
+                    int holes = holeCount(p);
+                    out.putInt(p.getVertexCount());
+                    out.putInt(firstIndex);
+                    out.putInt(indices);
+                    out.putInt(firstHole);
+                    out.putInt(holes);
+                    firstVertex += p.getVertexCount();
+                    firstIndex += indices;
+                    firstHole += holes;
+                }
+            }
+
+            for (int i = 0; i < transitions.size(); i++) {
+                Transition t = transitions.get(i);
+                int count = vertexCount(t);
+                out.putInt(strings.indexOf(t.getId()));
+                out.putInt(endpoints[i][0]);
+                out.putInt(endpoints[i][1]);
+                out.putInt(firstVertex);
+                out.putInt(count);
+                firstVertex += count;
+            }
+            out.padTo(verticesOffset);
+
+            for (CellSpace cs : cells) {
+                for (Polygon p : cs.getPolygons()) {
+                    putCoordinates(out, p.getCoordinates());
+                }
+            }
+            for (Transition t : transitions) {
+                if (t.getGeometry() != null) {
+                    putCoordinates(out, t.getGeometry().getCoordinates());
+                }
+            }
+
+            for (CellSpace cs : cells) {
+                for (Polygon p : cs.getPolygons()) {
+                    for (int index : p.getIndexArray()) {
+                        out.putInt(index);
+                    }
+                }
+            }
+
+            for (CellSpace cs : cells) {
+                for (Polygon p : cs.getPolygons()) {
+                    if (p.getHoleStarts() != null) {
+                        for (int start : p.getHoleStarts()) {
+                            out.putInt(start);
+                        }
+                    }
+                }
+            }
+
+            for (int offset : adjacencyOffsets) {
+                out.putInt(offset);
+            }
+            for (int t : adjacency) {
+                out.putInt(t);
+            }
+            out.flush();
+            // the rename must not become visible before the data
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int indexOf(Map<StatePoint, Integer> stateIndex, StatePoint state, Transition t)
+            throws IOException {
+        Integer index = stateIndex.get(state);
+        if (index == null) {
+            throw new IOException("Transition " + t.getId() + " references a state outside the model");
+        }
+        return index;
+    }
+
+    private static int holeCount(Polygon p) {
+        return p.getHoleStarts() != null ? p.getHoleStarts().length : 0;
+    }
+
+    private static int vertexCount(Transition t) {
+        return t.getGeometry() != null ? t.getGeometry().getVertexCount() : 0;
+    }
+
+    private static void putCoordinates(Output out, double[] coords) throws IOException {
+        for (double c : coords) {
+            out.putDouble(c);
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Deduplicating table of UTF-8 encoded strings. Null is stored as index -1.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> index = new HashMap<>();
+        private final List<byte[]> data = new ArrayList<>();
+        private long byteSize;
+
+        void add(String s) {
+            if (s != null && !index.containsKey(s)) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                index.put(s, data.size());
+                data.add(bytes);
+                byteSize += bytes.length;
+            }
+        }
+
+        int indexOf(String s) {
+            return s == null ? -1 : index.get(s);
+        }
+
+        int size() {
+            return data.size();
+        }
+
+        long byteSize() {
+            return byteSize;
+        }
+
+        void write(Output out) throws IOException {
+            int offset = 0;
+            out.putInt(0);
+            for (byte[] bytes : data) {
+                offset += bytes.length;
+                out.putInt(offset);
+            }
+            for (byte[] bytes : data) {
+                out.put(bytes);
+            }
+        }
+    }
+
+    /**
+     * Buffered little endian output on top of a file channel.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK).order(ORDER);
+        private long position;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buffer.putInt(v);
+            position += 4;
+        }
+
+        void putLong(long v) throws IOException {
+            ensure(8);
+            buffer.putLong(v);
+            position += 8;
+        }
+
+        void putDouble(double v) throws IOException {
+            ensure(8);
+            buffer.putDouble(v);
+            position += 8;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int off = 0;
+            while (off < bytes.length) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - off);
+                buffer.put(bytes, off, n);
+                off += n;
+                position += n;
+            }
+        }
+
+        void padTo(long offset) throws IOException {
+            while (position < offset) {
+                ensure(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.List;
  */
 public class CellSpace {
     private String id;
+    private int handle = -1;
     private List<Polygon> polygons;
     private StatePoint state;
 
@@ -18,6 +19,18 @@ public class CellSpace {
         this.id = id;
     }
 
+    /**
+     * Returns the dense index the model assigned to this CellSpace, or -1 if it
+     * was never added to a model. Handles are not reused after a removal.
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    void setHandle(int handle) {
+        this.handle = handle;
+    }
+
     public List<Polygon> getPolygons() {
         return polygons;
     }
@@ -0,0 +1,171 @@
+package org.indoorgml.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * CellSpaces with new States prepared for
+ * {@link IndoorGMLModel#addCellSpaces(CellSpaceImport)}.
+ * <p>
+ * An import assigns IDs from number ranges it reserves from the model in
+ * blocks, so loader threads that fill their own imports only touch the shared
+ * counters once per block. The position of every State is computed when its
+ * CellSpace is added to the import. Numbers left over in the last blocks are
+ * not used, so the IDs of imported elements may have gaps. An import is not
+ * thread safe; use one per loader thread.
+ */
+public final class CellSpaceImport {
+
+    /** Numbers reserved at once for CellSpaces and States. */
+    private static final int RANGE = 1024;
+    /** CellSpaces created by one task of {@link #prepare}. */
+    private static final int GRAIN = 1024;
+
+    private final IndoorGMLModel model;
+    private final List<CellSpace> cells;
+    private int nextCell;
+    private int cellLimit;
+    private int nextState;
+    private int stateLimit;
+    private int nextPolygon;
+    private int polygonLimit;
+    private boolean taken;
+
+    CellSpaceImport(IndoorGMLModel model, int expectedCells) {
+        this(model, new ArrayList<>(Math.max(16, expectedCells)));
+    }
+
+    private CellSpaceImport(IndoorGMLModel model, List<CellSpace> cells) {
+        this.model = model;
+        this.cells = cells;
+    }
+
+    /**
+     * Creates a CellSpace of the polygons with a State at their centroid and
+     * assigns the IDs of both and of the polygons.
+     *
+     * @throws IllegalStateException if the import was already added
+     */
+    public CellSpace add(List<Polygon> polygons) {
+        if (taken) {
+            throw new IllegalStateException("Import was already added to the model");
+        }
+        if (nextCell == cellLimit) {
+            nextCell = model.reserveCells(RANGE);
+            cellLimit = nextCell + RANGE;
+        }
+        if (nextState == stateLimit) {
+            nextState = model.reserveStates(RANGE);
+            stateLimit = nextState + RANGE;
+        }
+        if (polygonLimit - nextPolygon < polygons.size()) {
+            int count = Math.max(RANGE, polygons.size());
+            nextPolygon = model.reservePolygons(count);
+            polygonLimit = nextPolygon + count;
+        }
+        CellSpace cell = create(polygons, nextCell++, nextState++, nextPolygon);
+        nextPolygon += polygons.size();
+        cells.add(cell);
+        return cell;
+    }
+
+    public int size() {
+        return cells.size();
+    }
+
+    /**
+     * Returns the prepared CellSpaces in the order they were added.
+     */
+    public List<CellSpace> getCellSpaces() {
+        return Collections.unmodifiableList(cells);
+    }
+
+    /**
+     * Hands the CellSpaces to the model, once.
+     */
+    List<CellSpace> take(IndoorGMLModel target) {
+        if (target != model) {
+            throw new IllegalArgumentException("Import belongs to another model");
+        }
+        if (taken) {
+            throw new IllegalArgumentException("Import was already added to the model");
+        }
+        taken = true;
+        return cells;
+    }
+
+    static CellSpace create(List<Polygon> polygons, int cellNumber, int stateNumber, int firstPolygon) {
+        CellSpace cell = new CellSpace();
+        cell.setId("Room" + cellNumber);
+        for (int i = 0; i < polygons.size(); i++) {
+            polygons.get(i).setId("P" + (firstPolygon + i));
+        }
+        cell.setPolygons(polygons);
+
+        StatePoint state = new StatePoint();
+        state.setId("S" + stateNumber);
+        state.setPosition(IndoorGMLModel.computeCentroid(polygons));
+        cell.setState(state);
+        return cell;
+    }
+
+    /**
+     * Reserves consecutive IDs for all lists of polygons and creates their
+     * CellSpaces in parallel on the pool.
+     */
+    static CellSpaceImport prepare(IndoorGMLModel model, List<List<Polygon>> polygons, ForkJoinPool pool) {
+        int n = polygons.size();
+        int[] polygonStarts = new int[n];
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            polygonStarts[i] = total;
+            total += polygons.get(i).size();
+        }
+        CellSpace[] cells = new CellSpace[n];
+        PrepareTask task = new PrepareTask(polygons, cells, model.reserveCells(n), model.reserveStates(n),
+                model.reservePolygons(total), polygonStarts, 0, n);
+        pool.invoke(task);
+        return new CellSpaceImport(model, Arrays.asList(cells));
+    }
+
+    @SuppressWarnings("serial")
+    private static final class PrepareTask extends RecursiveAction {
+        private final List<List<Polygon>> polygons;
+        private final CellSpace[] cells;
+        private final int cellBase;
+        private final int stateBase;
+        private final int polygonBase;
+        private final int[] polygonStarts;
+        private final int from;
+        private final int to;
+
+        PrepareTask(List<List<Polygon>> polygons, CellSpace[] cells, int cellBase, int stateBase,
+                    int polygonBase, int[] polygonStarts, int from, int to) {
+            this.polygons = polygons;
+            this.cells = cells;
+            this.cellBase = cellBase;
+            this.stateBase = stateBase;
+            this.polygonBase = polygonBase;
+            this.polygonStarts = polygonStarts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > GRAIN) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new PrepareTask(polygons, cells, cellBase, stateBase, polygonBase, polygonStarts, from, mid),
+                        new PrepareTask(polygons, cells, cellBase, stateBase, polygonBase, polygonStarts, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                cells[i] = create(polygons.get(i), cellBase + i, stateBase + i, polygonBase + polygonStarts[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.indoorgml.model;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Elements stored at their handle in a persistent three level table. Handles
+ * are assigned in insertion order and never reused, so iteration follows
+ * insertion order and skips removed slots.
+ * <p>
+ * A handle selects a slot of the top array, a middle block and a leaf block
+ * of 128 slots each. The levels are typed arrays, so a lookup is three
+ * array loads without type checks.
+ * <p>
+ * The table is changed by one writer. {@link #freeze()} returns an immutable
+ * {@link View} in constant time: it only hands out the current top array and
+ * starts a new edit. Blocks created in the current edit carry its token in
+ * their last slot and are changed in place; a block that is shared with a
+ * view is copied on its first change, so a change copies at most the top
+ * array and one block per level and views share all untouched blocks.
+ */
+final class HandleTable<T> {
+
+    private static final int BITS = 7;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    /** Token of the current edit. */
+    private Object[] edit = new Object[0];
+    private Object[][][] top = new Object[1][][];
+    /** True if the top array was created in the current edit. */
+    private boolean topOwned = true;
+    private int end;
+    private int size;
+    private View<T> frozen;
+
+    /**
+     * Stores the element at the next handle and returns that handle.
+     */
+    int append(T item) {
+        int handle = end;
+        set(handle, item);
+        return handle;
+    }
+
+    /**
+     * Stores the element at the handle, or clears the slot if it is null.
+     * Handles past the end extend the table.
+     */
+    void set(int handle, T item) {
+        if (handle < 0) {
+            throw new IndexOutOfBoundsException(handle);
+        }
+        Object previous = put(handle, item);
+        if (handle >= end) {
+            end = handle + 1;
+        }
+        if (previous == null && item != null) {
+            size++;
+        } else if (previous != null && item == null) {
+            size--;
+        }
+    }
+
+    T get(int handle) {
+        return get(top, end, handle);
+    }
+
+    /**
+     * Removes and returns the element at the handle, or null.
+     */
+    T remove(int handle) {
+        T item = get(handle);
+        if (item != null) {
+            set(handle, null);
+        }
+        return item;
+    }
+
+    /**
+     * Returns one more than the largest handle assigned so far.
+     */
+    int getEnd() {
+        return end;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns an immutable view of the current contents. Later changes copy
+     * the blocks they touch instead of changing the view.
+     */
+    View<T> freeze() {
+        if (frozen == null) {
+            frozen = new View<>(top, end, size);
+            edit = new Object[0];
+            topOwned = false;
+        }
+        return frozen;
+    }
+
+    private Object put(int handle, Object item) {
+        frozen = null;
+        int t = handle >>> (2 * BITS);
+        if (t >= top.length) {
+            top = Arrays.copyOf(top, Math.max(t + 1, top.length * 2));
+            topOwned = true;
+        } else if (!topOwned) {
+            top = top.clone();
+            topOwned = true;
+        }
+        Object[][] middle = top[t];
+        if (middle == null) {
+            middle = new Object[WIDTH + 1][];
+            middle[WIDTH] = edit;
+            top[t] = middle;
+        } else if (middle[WIDTH] != edit) {
+            middle = middle.clone();
+            middle[WIDTH] = edit;
+            top[t] = middle;
+        }
+        int m = (handle >>> BITS) & MASK;
+        Object[] leaf = middle[m];
+        if (leaf == null) {
+            leaf = new Object[WIDTH + 1];
+            leaf[WIDTH] = edit;
+            middle[m] = leaf;
+        } else if (leaf[WIDTH] != edit) {
+            leaf = leaf.clone();
+            leaf[WIDTH] = edit;
+            middle[m] = leaf;
+        }
+        Object previous = leaf[handle & MASK];
+        leaf[handle & MASK] = item;
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T get(Object[][][] top, int end, int handle) {
+        if (handle < 0 || handle >= end) {
+            return null;
+        }
+        Object[] leaf = leaf(top, handle);
+        return leaf != null ? (T) leaf[handle & MASK] : null;
+    }
+
+    private static Object[] leaf(Object[][][] top, int handle) {
+        int t = handle >>> (2 * BITS);
+        Object[][] middle = t < top.length ? top[t] : null;
+        return middle != null ? middle[(handle >>> BITS) & MASK] : null;
+    }
+
+    /**
+     * Immutable contents of a table at the time it was frozen. Safe to read
+     * from any thread once it was published.
+     */
+    static final class View<T> extends AbstractCollection<T> {
+        private final Object[][][] top;
+        private final int end;
+        private final int size;
+
+        View(Object[][][] top, int end, int size) {
+            this.top = top;
+            this.end = end;
+            this.size = size;
+        }
+
+        T get(int handle) {
+            return HandleTable.get(top, end, handle);
+        }
+
+        int getEnd() {
+            return end;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private Object[] leaf;
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next < end) {
+                        if (leaf == null || (next & MASK) == 0) {
+                            leaf = leaf(top, next);
+                            if (leaf == null) {
+                                next = (next | MASK) + 1;
+                                continue;
+                            }
+                        }
+                        if (leaf[next & MASK] != null) {
+                            return true;
+                        }
+                        next++;
+                    }
+                    return false;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return (T) leaf[next++ & MASK];
+                }
+            };
+        }
+    }
+}
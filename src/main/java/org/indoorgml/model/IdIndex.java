@@ -0,0 +1,167 @@
+package org.indoorgml.model;
+
+import java.util.Arrays;
+
+/**
+ * Map from String IDs to non negative int handles with open addressing.
+ * <p>
+ * Keys and values are kept in parallel arrays, so an entry costs two array
+ * slots instead of a map entry and a boxed Integer. Keys are compared by
+ * identity first; IDs handed out by the model are the same instances that are
+ * stored here, so most lookups do not compare characters. Not thread safe.
+ */
+public final class IdIndex {
+
+    private static final String DELETED = new String("<deleted>");
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+    private int[] values;
+    private int size;
+    /** Live entries plus deleted markers. */
+    private int used;
+
+    public IdIndex() {
+        this(0);
+    }
+
+    public IdIndex(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expectedSize * 4) {
+            capacity <<= 1;
+        }
+        keys = new String[capacity];
+        values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the handle of the ID, or -1 if the ID is unknown or null.
+     */
+    public int get(String id) {
+        if (id == null) {
+            return -1;
+        }
+        String[] k = keys;
+        int mask = k.length - 1;
+        for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+            String key = k[i];
+            if (key == null) {
+                return -1;
+            }
+            if (key == id || (key != DELETED && key.equals(id))) {
+                return values[i];
+            }
+        }
+    }
+
+    /**
+     * Grows the table so that it holds the given number of entries without
+     * rehashing again.
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = keys.length;
+        while (capacity * 3 < expectedSize * 4) {
+            capacity <<= 1;
+        }
+        if (capacity > keys.length) {
+            rehash(capacity);
+        }
+    }
+
+    public boolean contains(String id) {
+        return get(id) >= 0;
+    }
+
+    /**
+     * Maps the ID to the handle and returns the previous handle, or -1.
+     */
+    public int put(String id, int handle) {
+        if (handle < 0) {
+            throw new IllegalArgumentException("Negative handle: " + handle);
+        }
+        if ((used + 1) * 4 > keys.length * 3) {
+            rehash(size * 2 > keys.length / 2 ? keys.length * 2 : keys.length);
+        }
+        int mask = keys.length - 1;
+        int free = -1;
+        for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+            String key = keys[i];
+            if (key == null) {
+                if (free < 0) {
+                    free = i;
+                    used++;
+                }
+                keys[free] = id;
+                values[free] = handle;
+                size++;
+                return -1;
+            }
+            if (key == DELETED) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (key == id || key.equals(id)) {
+                int previous = values[i];
+                values[i] = handle;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Removes the ID and returns its handle, or -1 if the ID is unknown or null.
+     */
+    public int remove(String id) {
+        if (id == null) {
+            return -1;
+        }
+        String[] k = keys;
+        int mask = k.length - 1;
+        for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+            String key = k[i];
+            if (key == null) {
+                return -1;
+            }
+            if (key == id || (key != DELETED && key.equals(id))) {
+                k[i] = DELETED;
+                size--;
+                return values[i];
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+        used = 0;
+    }
+
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new String[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            String key = oldKeys[j];
+            if (key != null && key != DELETED) {
+                int i = slot(key, mask);
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+        used = size;
+    }
+
+    private static int slot(String id, int mask) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
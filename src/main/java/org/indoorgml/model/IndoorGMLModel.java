@@ -1,105 +1,832 @@
 package org.indoorgml.model;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manages CellSpaces, States and Transitions with unique IDs.
+ * <p>
+ * Every element also gets a dense int handle when it is added. Elements are
+ * stored in arrays at their handle and the String IDs only map to handles,
+ * so callers that keep handles, for example in arrays indexed by handle,
+ * look up, iterate and remove without hashing or comparing strings. Handles
+ * are assigned in insertion order and not reused, which keeps the iteration
+ * order of the collections the order in which elements were added.
+ * <p>
+ * For every State the model keeps its incident Transitions and its owning
+ * CellSpace, so removals, neighbor lookups and degree queries only touch the
+ * local neighborhood of a State.
+ * <p>
+ * Every modification is published to the registered
+ * {@link ModelChangeListener}s. Changes made between {@link #beginBatch()}
+ * and {@link #endBatch()} are delivered together when the outermost batch
+ * ends.
+ * <p>
+ * Every change runs inside a batch, and a batch holds the write lock of the
+ * model from {@link #beginBatch()} to the matching {@link #endBatch()}, so
+ * changes from several threads are applied one batch at a time. The reading
+ * methods of the model itself belong to the thread holding the lock; other
+ * threads read through {@link #snapshot()}. At the end of every
+ * operation or outermost batch the model publishes an immutable
+ * {@link ModelSnapshot} that shares all unchanged storage with the previous
+ * one. Published elements are never changed: moving or detaching an element
+ * replaces it, and the elements referring to it, by changed copies with the
+ * same IDs and handles. Readers therefore never lock and writers never wait
+ * for readers.
+ * <p>
+ * Large imports prepare their CellSpaces outside the lock, on many threads
+ * if needed, with a {@link CellSpaceImport} or
+ * {@link #addCellSpaces(List, ForkJoinPool)}; only registering the prepared
+ * elements runs under the lock. The collections returned by {@link #getCellSpaces()},
+ * {@link #getStates()} and {@link #getTransitions()} are those of the latest
+ * snapshot and do not change when the model is edited later.
  */
 public class IndoorGMLModel {
-    private final Map<String, CellSpace> cellSpaces = new LinkedHashMap<>();
-    private final Map<String, StatePoint> states = new LinkedHashMap<>();
-    private final Map<String, Transition> transitions = new LinkedHashMap<>();
-    private int cellCounter = 1;
-    private int stateCounter = 1;
-    private int transitionCounter = 1;
-    private int polygonCounter = 1;
+    private static final Transition[] NONE = new Transition[0];
+
+    private final HandleTable<CellSpace> cellSpaces = new HandleTable<>();
+    private final HandleTable<StatePoint> states = new HandleTable<>();
+    private final HandleTable<Transition> transitions = new HandleTable<>();
+    private final IdIndex cellIndex = new IdIndex();
+    private final IdIndex stateIndex = new IdIndex();
+    private final IdIndex transitionIndex = new IdIndex();
+    /** Incident Transitions per State handle; the arrays are replaced, never changed. */
+    private final HandleTable<Transition[]> incident = new HandleTable<>();
+    /** Owning CellSpace per State handle. */
+    private final HandleTable<CellSpace> owners = new HandleTable<>();
+    private final AtomicInteger cellCounter = new AtomicInteger(1);
+    private final AtomicInteger stateCounter = new AtomicInteger(1);
+    private final AtomicInteger transitionCounter = new AtomicInteger(1);
+    private final AtomicInteger polygonCounter = new AtomicInteger(1);
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<ModelChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private List<ModelChangeEvent> pendingEvents = new ArrayList<>();
+    private int batchDepth;
+    private boolean modified;
+    private long version;
+    private volatile ModelSnapshot published = freeze();
+
+    public void addChangeListener(ModelChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(ModelChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts collecting change events instead of delivering them immediately,
+     * waiting until no other thread has a batch open. Batches may be nested;
+     * each call must be paired with {@link #endBatch()} on the same thread.
+     */
+    public void beginBatch() {
+        writeLock.lock();
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch. When the outermost batch ends, a new snapshot is published
+     * and all collected events are delivered to the listeners in a single call
+     * before other threads may change the model.
+     */
+    public void endBatch() {
+        if (!writeLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("No batch in progress");
+        }
+        try {
+            if (--batchDepth == 0) {
+                if (modified) {
+                    modified = false;
+                    published = freeze();
+                }
+                if (!pendingEvents.isEmpty()) {
+                    List<ModelChangeEvent> events = Collections.unmodifiableList(pendingEvents);
+                    pendingEvents = new ArrayList<>();
+                    for (ModelChangeListener listener : listeners) {
+                        listener.modelChanged(events);
+                    }
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the latest published version of the model. Safe to call from
+     * any thread; it neither locks nor waits for a writer. On the writing
+     * thread the snapshot includes all changes except those of a batch that
+     * is still open.
+     */
+    public ModelSnapshot snapshot() {
+        return published;
+    }
+
+    private ModelSnapshot freeze() {
+        return new ModelSnapshot(version++, cellSpaces.freeze(), states.freeze(), transitions.freeze(),
+                incident.freeze(), owners.freeze());
+    }
+
+    private void fire(ModelChangeEvent.Type type, String id, Object element) {
+        modified = true;
+        if (!listeners.isEmpty()) {
+            pendingEvents.add(new ModelChangeEvent(type, id, element));
+        }
+    }
 
     /**
      * Adds a new CellSpace and automatically creates a new State.
      */
     public CellSpace addCellSpace(List<Polygon> polygons) {
-        String cellId = "Room" + cellCounter++;
-        CellSpace cell = new CellSpace();
-        cell.setId(cellId);
-        for (Polygon p : polygons) {
-            p.setId("P" + polygonCounter++);
-        }
-        cell.setPolygons(polygons);
-
-        StatePoint state = new StatePoint();
-        state.setId("S" + stateCounter++);
-        state.setPosition(computeCentroid(polygons));
-        cell.setState(state);
-        states.put(state.getId(), state);
-        cellSpaces.put(cellId, cell);
+        CellSpace cell = CellSpaceImport.create(polygons, cellCounter.getAndIncrement(),
+                stateCounter.getAndIncrement(), polygonCounter.getAndAdd(polygons.size()));
+        beginBatch();
+        try {
+            register(cell);
+        } finally {
+            endBatch();
+        }
         return cell;
     }
 
+    /**
+     * Starts an import of CellSpaces. The import is meant for one loader
+     * thread: it assigns IDs from ranges it reserves from the model in blocks
+     * and computes the States without touching the model, so any number of
+     * imports can be filled at the same time.
+     *
+     * @param expectedCells number of CellSpaces the import will probably hold
+     */
+    public CellSpaceImport newImport(int expectedCells) {
+        return new CellSpaceImport(this, expectedCells);
+    }
+
+    /**
+     * Adds all CellSpaces of an import and their States in one batch. May be
+     * called from several loader threads; the imports are added one at a time.
+     *
+     * @throws IllegalArgumentException if the import belongs to another model
+     *                                  or was already added
+     */
+    public void addCellSpaces(CellSpaceImport cells) {
+        beginBatch();
+        try {
+            List<CellSpace> list = cells.take(this);
+            cellIndex.ensureCapacity(cellIndex.size() + list.size());
+            stateIndex.ensureCapacity(stateIndex.size() + list.size());
+            for (int i = 0; i < list.size(); i++) {
+                register(list.get(i));
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Adds one CellSpace with a new State for every list of polygons, like
+     * {@link #addCellSpace(List)}. The IDs are reserved at once and the
+     * CellSpaces and States are created on the given pool; only adding them
+     * to the model is sequential. IDs and handles follow the order of the
+     * list.
+     */
+    public List<CellSpace> addCellSpaces(List<List<Polygon>> polygons, ForkJoinPool pool) {
+        CellSpaceImport cells = CellSpaceImport.prepare(this, polygons, pool);
+        List<CellSpace> list = cells.getCellSpaces();
+        addCellSpaces(cells);
+        return list;
+    }
+
+    private void register(CellSpace cell) {
+        StatePoint state = cell.getState();
+        registerState(state, cell);
+        registerCell(cell);
+        fire(ModelChangeEvent.Type.CELL_SPACE_ADDED, cell.getId(), cell);
+        fire(ModelChangeEvent.Type.STATE_ADDED, state.getId(), state);
+    }
+
+    /**
+     * Reserves {@code count} consecutive CellSpace numbers and returns the first.
+     */
+    int reserveCells(int count) {
+        return cellCounter.getAndAdd(count);
+    }
+
+    int reserveStates(int count) {
+        return stateCounter.getAndAdd(count);
+    }
+
+    int reservePolygons(int count) {
+        return polygonCounter.getAndAdd(count);
+    }
+
     /**
      * Removes a CellSpace and all related objects.
      */
     public void removeCellSpace(String cellSpaceId) {
-        CellSpace cell = cellSpaces.remove(cellSpaceId);
-        if (cell == null) {
-            return;
+        beginBatch();
+        try {
+            removeCellSpace(cellIndex.get(cellSpaceId));
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Removes the CellSpace with the given handle and all related objects.
+     */
+    public void removeCellSpace(int cellHandle) {
+        beginBatch();
+        try {
+            CellSpace cell = cellSpaces.remove(cellHandle);
+            if (cell == null) {
+                return;
+            }
+            cellIndex.remove(cell.getId());
+            int state = handleOf(cell.getState());
+            if (state >= 0) {
+                removeStateAndTransitions(state);
+            }
+            fire(ModelChangeEvent.Type.CELL_SPACE_REMOVED, cell.getId(), cell);
+        } finally {
+            endBatch();
         }
-        String stateId = cell.getState().getId();
-        states.remove(stateId);
-        transitions.values().removeIf(t ->
-                t.getStateA().getId().equals(stateId) ||
-                        t.getStateB().getId().equals(stateId));
     }
 
     public Transition addTransition(StatePoint a, StatePoint b) {
-        String id = "T" + transitionCounter++;
+        return addTransition(a, b, null);
+    }
+
+    /**
+     * Adds a Transition whose geometry follows the given {@code x, y, z}
+     * coordinates, or the straight line between the States if they are null.
+     * The array is owned by the model afterwards.
+     */
+    public Transition addTransition(StatePoint a, StatePoint b, double[] coordinates) {
+        String id = "T" + transitionCounter.getAndIncrement();
         Transition t = new Transition();
         t.setId(id);
         t.setStateA(a);
         t.setStateB(b);
         LineString line = new LineString();
-        line.setVertices(Arrays.asList(
-                new Vector3d(a.getPosition().getX(), a.getPosition().getY(), a.getPosition().getZ()),
-                new Vector3d(b.getPosition().getX(), b.getPosition().getY(), b.getPosition().getZ())
-        ));
+        if (coordinates == null) {
+            coordinates = new double[] {
+                    a.getPosition().getX(), a.getPosition().getY(), a.getPosition().getZ(),
+                    b.getPosition().getX(), b.getPosition().getY(), b.getPosition().getZ()
+            };
+        }
+        line.setCoordinates(coordinates);
         t.setGeometry(line);
-        transitions.put(id, t);
+
+        beginBatch();
+        try {
+            registerTransition(t);
+            fire(ModelChangeEvent.Type.TRANSITION_ADDED, id, t);
+        } finally {
+            endBatch();
+        }
         return t;
     }
 
+    /**
+     * Adds a CellSpace that already carries its IDs, for example when a saved
+     * model is restored. Its State is registered as well and the ID counters
+     * are advanced past the restored IDs. An element with the same ID is
+     * replaced and keeps its handle.
+     */
+    public void restoreCellSpace(CellSpace cell) {
+        for (Polygon p : cell.getPolygons()) {
+            advance(polygonCounter, p.getId(), "P");
+        }
+        StatePoint state = cell.getState();
+        if (state != null) {
+            advance(stateCounter, state.getId(), "S");
+        }
+        advance(cellCounter, cell.getId(), "Room");
+
+        beginBatch();
+        try {
+            if (state != null) {
+                registerState(state, cell);
+            }
+            registerCell(cell);
+            fire(ModelChangeEvent.Type.CELL_SPACE_ADDED, cell.getId(), cell);
+            if (state != null) {
+                fire(ModelChangeEvent.Type.STATE_ADDED, state.getId(), state);
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Adds a Transition that already carries its ID and geometry.
+     */
+    public void restoreTransition(Transition t) {
+        advance(transitionCounter, t.getId(), "T");
+        beginBatch();
+        try {
+            registerTransition(t);
+            fire(ModelChangeEvent.Type.TRANSITION_ADDED, t.getId(), t);
+        } finally {
+            endBatch();
+        }
+    }
+
+    private void registerCell(CellSpace cell) {
+        int handle = cellIndex.get(cell.getId());
+        if (handle >= 0) {
+            cellSpaces.set(handle, cell);
+        } else {
+            handle = cellSpaces.append(cell);
+            cellIndex.put(cell.getId(), handle);
+        }
+        cell.setHandle(handle);
+    }
+
+    private void registerState(StatePoint state, CellSpace cell) {
+        int handle = stateIndex.get(state.getId());
+        if (handle >= 0) {
+            states.set(handle, state);
+        } else {
+            handle = states.append(state);
+            stateIndex.put(state.getId(), handle);
+        }
+        state.setHandle(handle);
+        owners.set(handle, cell);
+    }
+
+    private void registerTransition(Transition t) {
+        int handle = transitionIndex.get(t.getId());
+        if (handle >= 0) {
+            unlink(transitions.get(handle));
+            transitions.set(handle, t);
+        } else {
+            handle = transitions.append(t);
+            transitionIndex.put(t.getId(), handle);
+        }
+        t.setHandle(handle);
+        link(t);
+    }
+
+    public CellSpace getCellSpace(String cellSpaceId) {
+        return cellSpaces.get(cellIndex.get(cellSpaceId));
+    }
+
+    public StatePoint getState(String stateId) {
+        return states.get(stateIndex.get(stateId));
+    }
+
+    public Transition getTransition(String transitionId) {
+        return transitions.get(transitionIndex.get(transitionId));
+    }
+
+    /**
+     * Returns the CellSpace with the given handle, or null if there is none
+     * or it was removed.
+     */
+    public CellSpace getCellSpace(int cellHandle) {
+        return cellSpaces.get(cellHandle);
+    }
+
+    public StatePoint getState(int stateHandle) {
+        return states.get(stateHandle);
+    }
+
+    public Transition getTransition(int transitionHandle) {
+        return transitions.get(transitionHandle);
+    }
+
+    /**
+     * Returns the handle of a CellSpace, or -1 if the ID is unknown.
+     */
+    public int getCellSpaceHandle(String cellSpaceId) {
+        return cellIndex.get(cellSpaceId);
+    }
+
+    public int getStateHandle(String stateId) {
+        return stateIndex.get(stateId);
+    }
+
+    public int getTransitionHandle(String transitionId) {
+        return transitionIndex.get(transitionId);
+    }
+
+    /**
+     * Returns one more than the largest CellSpace handle assigned so far, the
+     * length of arrays indexed by CellSpace handle.
+     */
+    public int getCellSpaceHandleCount() {
+        return cellSpaces.getEnd();
+    }
+
+    public int getStateHandleCount() {
+        return states.getEnd();
+    }
+
+    public int getTransitionHandleCount() {
+        return transitions.getEnd();
+    }
+
+    /**
+     * Returns the Transitions connected to a State, or an empty list.
+     */
+    public List<Transition> getIncidentTransitions(String stateId) {
+        return getIncidentTransitions(stateIndex.get(stateId));
+    }
+
+    /**
+     * Returns the Transitions connected to the State with the given handle,
+     * or an empty list.
+     */
+    public List<Transition> getIncidentTransitions(int stateHandle) {
+        Transition[] list = incidentArray(stateHandle);
+        return list.length == 0 ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(list));
+    }
+
+    /**
+     * Returns the States reachable from a State through one Transition.
+     */
+    public List<StatePoint> getNeighbors(String stateId) {
+        return getNeighbors(stateIndex.get(stateId));
+    }
+
+    public List<StatePoint> getNeighbors(int stateHandle) {
+        Transition[] list = incidentArray(stateHandle);
+        List<StatePoint> neighbors = new ArrayList<>(list.length);
+        for (Transition t : list) {
+            neighbors.add(opposite(t, stateHandle));
+        }
+        return neighbors;
+    }
+
+    public int getDegree(String stateId) {
+        return getDegree(stateIndex.get(stateId));
+    }
+
+    public int getDegree(int stateHandle) {
+        return incidentArray(stateHandle).length;
+    }
+
+    /**
+     * Returns the CellSpace whose State this is, or null.
+     */
+    public CellSpace getCellSpaceOfState(String stateId) {
+        return getCellSpaceOfState(stateIndex.get(stateId));
+    }
+
+    public CellSpace getCellSpaceOfState(int stateHandle) {
+        return owners.get(stateHandle);
+    }
+
+    /**
+     * Returns the CellSpaces of the latest snapshot in the order they were
+     * added.
+     */
     public Collection<CellSpace> getCellSpaces() {
-        return cellSpaces.values();
+        return published.getCellSpaces();
     }
 
     public Collection<StatePoint> getStates() {
-        return states.values();
+        return published.getStates();
     }
 
     public Collection<Transition> getTransitions() {
-        return transitions.values();
+        return published.getTransitions();
     }
 
     public void removeState(String stateId) {
-        states.remove(stateId);
-        cellSpaces.values().forEach(cs -> {
-            if (cs.getState() != null && cs.getState().getId().equals(stateId)) {
-                cs.setState(null);
+        beginBatch();
+        try {
+            removeState(stateIndex.get(stateId));
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Removes a State and its Transitions. Its CellSpace is replaced by a
+     * copy without State.
+     */
+    public void removeState(int stateHandle) {
+        beginBatch();
+        try {
+            if (states.get(stateHandle) == null) {
+                return;
             }
-        });
-        transitions.values().removeIf(t ->
-                t.getStateA().getId().equals(stateId) ||
-                        t.getStateB().getId().equals(stateId));
+            CellSpace owner = owners.get(stateHandle);
+            if (owner != null) {
+                cellSpaces.set(owner.getHandle(), copy(owner, owner.getPolygons(), null));
+            }
+            removeStateAndTransitions(stateHandle);
+        } finally {
+            endBatch();
+        }
     }
 
     public void removeTransition(String transitionId) {
-        transitions.remove(transitionId);
+        beginBatch();
+        try {
+            removeTransition(transitionIndex.get(transitionId));
+        } finally {
+            endBatch();
+        }
     }
 
-    private Vector3d computeCentroid(List<Polygon> polygons) {
+    public void removeTransition(int transitionHandle) {
+        beginBatch();
+        try {
+            Transition t = transitions.remove(transitionHandle);
+            if (t != null) {
+                transitionIndex.remove(t.getId());
+                unlink(t);
+                fire(ModelChangeEvent.Type.TRANSITION_REMOVED, t.getId(), t);
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Moves a State and the connected end points of all its Transitions.
+     */
+    public void moveState(String stateId, Vector3d position) {
+        beginBatch();
+        try {
+            moveState(stateIndex.get(stateId), position);
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Replaces the State by a copy at the new position, and its CellSpace and
+     * Transitions by copies that refer to it. The copies keep the IDs and
+     * handles of the replaced elements.
+     */
+    public void moveState(int stateHandle, Vector3d position) {
+        beginBatch();
+        try {
+            StatePoint state = states.get(stateHandle);
+            if (state == null) {
+                return;
+            }
+            StatePoint moved = new StatePoint();
+            moved.setId(state.getId());
+            moved.setHandle(stateHandle);
+            moved.setPosition(new Vector3d(position.getX(), position.getY(), position.getZ()));
+            states.set(stateHandle, moved);
+            CellSpace owner = owners.get(stateHandle);
+            if (owner != null && owner.getState() == state) {
+                CellSpace copy = copy(owner, owner.getPolygons(), moved);
+                cellSpaces.set(owner.getHandle(), copy);
+                owners.set(stateHandle, copy);
+            }
+            fire(ModelChangeEvent.Type.STATE_MOVED, moved.getId(), moved);
+
+            Transition[] list = incidentArray(stateHandle);
+            for (Transition t : list) {
+                Transition copy = new Transition();
+                copy.setId(t.getId());
+                copy.setHandle(t.getHandle());
+                copy.setStateA(t.getStateA() == state ? moved : t.getStateA());
+                copy.setStateB(t.getStateB() == state ? moved : t.getStateB());
+                if (t.getGeometry() != null) {
+                    double[] coords = t.getGeometry().getCoordinates().clone();
+                    if (copy.getStateA() == moved) {
+                        setPoint(coords, 0, position);
+                    }
+                    if (copy.getStateB() == moved) {
+                        setPoint(coords, coords.length - 3, position);
+                    }
+                    LineString line = new LineString();
+                    line.setCoordinates(coords);
+                    copy.setGeometry(line);
+                }
+                if (transitions.get(t.getHandle()) == t) {
+                    transitions.set(t.getHandle(), copy);
+                }
+                replace(stateHandle, t, copy);
+                int other = handleOf(opposite(copy, stateHandle));
+                if (other >= 0 && other != stateHandle) {
+                    replace(other, t, copy);
+                }
+                fire(ModelChangeEvent.Type.TRANSITION_MOVED, copy.getId(), copy);
+            }
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Translates a CellSpace together with its State and the connected
+     * Transition end points. All of them are replaced by moved copies.
+     */
+    public void moveCellSpace(String cellSpaceId, double dx, double dy, double dz) {
+        beginBatch();
+        try {
+            moveCellSpace(cellIndex.get(cellSpaceId), dx, dy, dz);
+        } finally {
+            endBatch();
+        }
+    }
+
+    public void moveCellSpace(int cellHandle, double dx, double dy, double dz) {
+        beginBatch();
+        try {
+            CellSpace cell = cellSpaces.get(cellHandle);
+            if (cell == null) {
+                return;
+            }
+            List<Polygon> polygons = new ArrayList<>(cell.getPolygons().size());
+            for (Polygon p : cell.getPolygons()) {
+                double[] coords = p.isPacked() ? p.getCoordinates().clone() : p.getCoordinates();
+                for (int i = 0; i < coords.length; i += 3) {
+                    coords[i] += dx;
+                    coords[i + 1] += dy;
+                    coords[i + 2] += dz;
+                }
+                Polygon moved = new Polygon();
+                moved.setId(p.getId());
+                moved.setCoordinates(coords);
+                if (p.hasIndices()) {
+                    moved.setIndexArray(p.getIndexArray());
+                }
+                moved.setHoleStarts(p.getHoleStarts());
+                polygons.add(moved);
+            }
+            CellSpace moved = copy(cell, polygons, cell.getState());
+            cellSpaces.set(cellHandle, moved);
+            int state = handleOf(cell.getState());
+            if (state >= 0) {
+                if (owners.get(state) == cell) {
+                    owners.set(state, moved);
+                }
+                Vector3d pos = cell.getState().getPosition();
+                moveState(state, new Vector3d(pos.getX() + dx, pos.getY() + dy, pos.getZ() + dz));
+            }
+            moved = cellSpaces.get(cellHandle);
+            fire(ModelChangeEvent.Type.CELL_SPACE_MOVED, moved.getId(), moved);
+        } finally {
+            endBatch();
+        }
+    }
+
+    private static CellSpace copy(CellSpace cell, List<Polygon> polygons, StatePoint state) {
+        CellSpace copy = new CellSpace();
+        copy.setId(cell.getId());
+        copy.setHandle(cell.getHandle());
+        copy.setPolygons(polygons);
+        copy.setState(state);
+        return copy;
+    }
+
+    private void removeStateAndTransitions(int stateHandle) {
+        Transition[] list = incidentArray(stateHandle);
+        incident.set(stateHandle, null);
+        for (Transition t : list) {
+            if (transitions.get(t.getHandle()) == t) {
+                transitions.remove(t.getHandle());
+                transitionIndex.remove(t.getId());
+            }
+            int other = handleOf(opposite(t, stateHandle));
+            if (other >= 0 && other != stateHandle) {
+                unlink(other, t);
+            }
+            fire(ModelChangeEvent.Type.TRANSITION_REMOVED, t.getId(), t);
+        }
+        owners.set(stateHandle, null);
+        StatePoint state = states.remove(stateHandle);
+        if (state != null) {
+            stateIndex.remove(state.getId());
+            fire(ModelChangeEvent.Type.STATE_REMOVED, state.getId(), state);
+        }
+    }
+
+    /**
+     * Returns the handle of a State of this model, or -1. States that are not
+     * the registered instance are resolved through their ID.
+     */
+    private int handleOf(StatePoint state) {
+        if (state == null) {
+            return -1;
+        }
+        int handle = state.getHandle();
+        if (states.get(handle) == state) {
+            return handle;
+        }
+        return stateIndex.get(state.getId());
+    }
+
+    private void link(Transition t) {
+        int a = handleOf(t.getStateA());
+        int b = handleOf(t.getStateB());
+        if (a >= 0) {
+            append(a, t);
+        }
+        if (b >= 0 && b != a) {
+            append(b, t);
+        }
+    }
+
+    private void append(int stateHandle, Transition t) {
+        Transition[] list = incidentArray(stateHandle);
+        Transition[] grown = Arrays.copyOf(list, list.length + 1);
+        grown[list.length] = t;
+        incident.set(stateHandle, grown);
+    }
+
+    private void unlink(Transition t) {
+        int a = handleOf(t.getStateA());
+        int b = handleOf(t.getStateB());
+        if (a >= 0) {
+            unlink(a, t);
+        }
+        if (b >= 0 && b != a) {
+            unlink(b, t);
+        }
+    }
+
+    private void unlink(int stateHandle, Transition t) {
+        Transition[] list = incidentArray(stateHandle);
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] == t) {
+                if (list.length == 1) {
+                    incident.set(stateHandle, null);
+                    return;
+                }
+                Transition[] shrunk = new Transition[list.length - 1];
+                System.arraycopy(list, 0, shrunk, 0, i);
+                System.arraycopy(list, i + 1, shrunk, i, list.length - i - 1);
+                incident.set(stateHandle, shrunk);
+                return;
+            }
+        }
+    }
+
+    private void replace(int stateHandle, Transition t, Transition copy) {
+        Transition[] list = incidentArray(stateHandle);
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] == t) {
+                Transition[] changed = list.clone();
+                changed[i] = copy;
+                incident.set(stateHandle, changed);
+                return;
+            }
+        }
+    }
+
+    private Transition[] incidentArray(int stateHandle) {
+        Transition[] list = incident.get(stateHandle);
+        return list != null ? list : NONE;
+    }
+
+    private StatePoint opposite(Transition t, int stateHandle) {
+        return handleOf(t.getStateA()) == stateHandle ? t.getStateB() : t.getStateA();
+    }
+
+    private static void setPoint(double[] coords, int offset, Vector3d p) {
+        coords[offset] = p.getX();
+        coords[offset + 1] = p.getY();
+        coords[offset + 2] = p.getZ();
+    }
+
+    /**
+     * Advances the counter past the number of a restored ID.
+     */
+    private static void advance(AtomicInteger counter, String id, String prefix) {
+        if (id == null || !id.startsWith(prefix)) {
+            return;
+        }
+        try {
+            int next = Integer.parseInt(id.substring(prefix.length())) + 1;
+            counter.accumulateAndGet(next, Math::max);
+        } catch (NumberFormatException e) {
+            // IDs that do not follow the pattern cannot collide with generated ones
+        }
+    }
+
+    /**
+     * Returns the mean of all polygon vertices.
+     */
+    static Vector3d computeCentroid(List<Polygon> polygons) {
         double x = 0;
         double y = 0;
         double z = 0;
         int count = 0;
         for (Polygon poly : polygons) {
+            if (poly.isPacked()) {
+                double[] coords = poly.getCoordinates();
+                for (int i = 0; i < coords.length; i += 3) {
+                    x += coords[i];
+                    y += coords[i + 1];
+                    z += coords[i + 2];
+                }
+                count += coords.length / 3;
+                continue;
+            }
             for (Vector3d v : poly.getVertices()) {
                 x += v.getX();
                 y += v.getY();
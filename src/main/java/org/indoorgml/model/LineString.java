@@ -4,15 +4,62 @@ import java.util.List;
 
 /**
  * Simple line string represented by an ordered list of vertices.
+ * <p>
+ * Like {@link Polygon} the vertices can alternatively be stored packed in a
+ * flat {@code x, y, z} coordinate array.
  */
 public class LineString {
     private List<Vector3d> vertices;
+    private double[] coordinates;
 
     public List<Vector3d> getVertices() {
+        if (coordinates != null) {
+            return new PackedVertexList(coordinates);
+        }
         return vertices;
     }
 
     public void setVertices(List<Vector3d> vertices) {
         this.vertices = vertices;
+        this.coordinates = null;
+    }
+
+    public boolean isPacked() {
+        return coordinates != null;
+    }
+
+    public int getVertexCount() {
+        if (coordinates != null) {
+            return coordinates.length / 3;
+        }
+        return vertices != null ? vertices.size() : 0;
+    }
+
+    /**
+     * Returns the vertices as {@code x, y, z} triples. In packed mode this is the
+     * backing array, otherwise a newly allocated copy.
+     */
+    public double[] getCoordinates() {
+        if (coordinates != null) {
+            return coordinates;
+        }
+        return vertices != null ? PackedArrays.packVertices(vertices) : new double[0];
+    }
+
+    /**
+     * Switches to packed mode using the given {@code x, y, z} array without copying it.
+     */
+    public void setCoordinates(double[] coordinates) {
+        this.coordinates = coordinates;
+        this.vertices = null;
+    }
+
+    /**
+     * Converts list based vertices into a packed array.
+     */
+    public void pack() {
+        if (coordinates == null && vertices != null) {
+            setCoordinates(PackedArrays.packVertices(vertices));
+        }
     }
 }
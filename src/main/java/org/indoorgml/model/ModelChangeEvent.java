@@ -0,0 +1,81 @@
+package org.indoorgml.model;
+
+/**
+ * Describes a single change of an {@link IndoorGMLModel}.
+ */
+public class ModelChangeEvent {
+
+    public enum Type {
+        CELL_SPACE_ADDED,
+        CELL_SPACE_REMOVED,
+        CELL_SPACE_MOVED,
+        STATE_ADDED,
+        STATE_REMOVED,
+        STATE_MOVED,
+        TRANSITION_ADDED,
+        TRANSITION_REMOVED,
+        TRANSITION_MOVED
+    }
+
+    private final Type type;
+    private final String id;
+    private final Object element;
+
+    public ModelChangeEvent(Type type, String id, Object element) {
+        this.type = type;
+        this.id = id;
+        this.element = element;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the id of the changed CellSpace, State or Transition.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the changed object. For removals this is the object as it was
+     * before it was removed.
+     */
+    public Object getElement() {
+        return element;
+    }
+
+    /**
+     * Returns the model handle of the changed element, or -1 if it has none.
+     */
+    public int getHandle() {
+        if (element instanceof CellSpace) {
+            return ((CellSpace) element).getHandle();
+        }
+        if (element instanceof StatePoint) {
+            return ((StatePoint) element).getHandle();
+        }
+        if (element instanceof Transition) {
+            return ((Transition) element).getHandle();
+        }
+        return -1;
+    }
+
+    public CellSpace getCellSpace() {
+        return (CellSpace) element;
+    }
+
+    public StatePoint getState() {
+        return (StatePoint) element;
+    }
+
+    public Transition getTransition() {
+        return (Transition) element;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + id;
+    }
+}
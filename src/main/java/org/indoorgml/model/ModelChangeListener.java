@@ -0,0 +1,13 @@
+package org.indoorgml.model;
+
+import java.util.List;
+
+/**
+ * Receives the changes of an {@link IndoorGMLModel}. Events are delivered in
+ * the order they happened, grouped per model operation or per batch opened
+ * with {@link IndoorGMLModel#beginBatch()}.
+ */
+public interface ModelChangeListener {
+
+    void modelChanged(List<ModelChangeEvent> events);
+}
@@ -0,0 +1,189 @@
+package org.indoorgml.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable version of an {@link IndoorGMLModel}.
+ * <p>
+ * The model publishes a new snapshot at the end of every operation or batch;
+ * {@link IndoorGMLModel#snapshot()} returns the latest one without locking.
+ * A snapshot shares all unchanged storage with its predecessor and its
+ * elements are never changed afterwards, because the model replaces an
+ * element by a changed copy instead of changing it. Readers on any thread can
+ * therefore iterate, follow handles and walk the State graph of a snapshot
+ * while a writer keeps editing the model.
+ * <p>
+ * Lookups by handle are constant time. The first lookup by ID of a kind
+ * builds an index over the snapshot; readers that keep handles never pay for
+ * it.
+ */
+public final class ModelSnapshot {
+
+    private static final Transition[] NONE = new Transition[0];
+
+    private final long version;
+    private final HandleTable.View<CellSpace> cellSpaces;
+    private final HandleTable.View<StatePoint> states;
+    private final HandleTable.View<Transition> transitions;
+    private final HandleTable.View<Transition[]> incident;
+    private final HandleTable.View<CellSpace> owners;
+    private volatile IdIndex cellIndex;
+    private volatile IdIndex stateIndex;
+    private volatile IdIndex transitionIndex;
+
+    ModelSnapshot(long version, HandleTable.View<CellSpace> cellSpaces, HandleTable.View<StatePoint> states,
+                  HandleTable.View<Transition> transitions, HandleTable.View<Transition[]> incident,
+                  HandleTable.View<CellSpace> owners) {
+        this.version = version;
+        this.cellSpaces = cellSpaces;
+        this.states = states;
+        this.transitions = transitions;
+        this.incident = incident;
+        this.owners = owners;
+    }
+
+    /**
+     * Returns the number of the version, which grows with every published
+     * change of the model.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Collection<CellSpace> getCellSpaces() {
+        return cellSpaces;
+    }
+
+    public Collection<StatePoint> getStates() {
+        return states;
+    }
+
+    public Collection<Transition> getTransitions() {
+        return transitions;
+    }
+
+    public CellSpace getCellSpace(int cellHandle) {
+        return cellSpaces.get(cellHandle);
+    }
+
+    public StatePoint getState(int stateHandle) {
+        return states.get(stateHandle);
+    }
+
+    public Transition getTransition(int transitionHandle) {
+        return transitions.get(transitionHandle);
+    }
+
+    public CellSpace getCellSpace(String cellSpaceId) {
+        return cellSpaces.get(cellIndex().get(cellSpaceId));
+    }
+
+    public StatePoint getState(String stateId) {
+        return states.get(stateIndex().get(stateId));
+    }
+
+    public Transition getTransition(String transitionId) {
+        return transitions.get(transitionIndex().get(transitionId));
+    }
+
+    /**
+     * Returns one more than the largest CellSpace handle of this version.
+     */
+    public int getCellSpaceHandleCount() {
+        return cellSpaces.getEnd();
+    }
+
+    public int getStateHandleCount() {
+        return states.getEnd();
+    }
+
+    public int getTransitionHandleCount() {
+        return transitions.getEnd();
+    }
+
+    public List<Transition> getIncidentTransitions(int stateHandle) {
+        Transition[] list = incidentArray(stateHandle);
+        return list.length == 0 ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(list));
+    }
+
+    public List<Transition> getIncidentTransitions(String stateId) {
+        return getIncidentTransitions(stateIndex().get(stateId));
+    }
+
+    public List<StatePoint> getNeighbors(int stateHandle) {
+        Transition[] list = incidentArray(stateHandle);
+        StatePoint state = states.get(stateHandle);
+        List<StatePoint> neighbors = new ArrayList<>(list.length);
+        for (Transition t : list) {
+            StatePoint a = t.getStateA();
+            neighbors.add(a == state || a.getHandle() == stateHandle ? t.getStateB() : a);
+        }
+        return neighbors;
+    }
+
+    public int getDegree(int stateHandle) {
+        return incidentArray(stateHandle).length;
+    }
+
+    public int getDegree(String stateId) {
+        return getDegree(stateIndex().get(stateId));
+    }
+
+    public CellSpace getCellSpaceOfState(int stateHandle) {
+        return owners.get(stateHandle);
+    }
+
+    private Transition[] incidentArray(int stateHandle) {
+        Transition[] list = incident.get(stateHandle);
+        return list != null ? list : NONE;
+    }
+
+    private IdIndex cellIndex() {
+        IdIndex index = cellIndex;
+        if (index == null) {
+            cellIndex = index = index(cellSpaces);
+        }
+        return index;
+    }
+
+    private IdIndex stateIndex() {
+        IdIndex index = stateIndex;
+        if (index == null) {
+            stateIndex = index = index(states);
+        }
+        return index;
+    }
+
+    private IdIndex transitionIndex() {
+        IdIndex index = transitionIndex;
+        if (index == null) {
+            transitionIndex = index = index(transitions);
+        }
+        return index;
+    }
+
+    /**
+     * Indexes the elements by ID. Concurrent first lookups may each build an
+     * index; they are equal and only one of them is kept.
+     */
+    private static IdIndex index(HandleTable.View<?> table) {
+        IdIndex index = new IdIndex(table.size());
+        for (Object element : table) {
+            if (element instanceof CellSpace) {
+                CellSpace cell = (CellSpace) element;
+                index.put(cell.getId(), cell.getHandle());
+            } else if (element instanceof StatePoint) {
+                StatePoint state = (StatePoint) element;
+                index.put(state.getId(), state.getHandle());
+            } else {
+                Transition t = (Transition) element;
+                index.put(t.getId(), t.getHandle());
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,32 @@
+package org.indoorgml.model;
+
+import java.util.List;
+
+/**
+ * Conversions from list based geometry to packed primitive arrays.
+ */
+final class PackedArrays {
+
+    private PackedArrays() {
+    }
+
+    static double[] packVertices(List<Vector3d> vertices) {
+        double[] coords = new double[vertices.size() * 3];
+        int i = 0;
+        for (Vector3d v : vertices) {
+            coords[i++] = v.getX();
+            coords[i++] = v.getY();
+            coords[i++] = v.getZ();
+        }
+        return coords;
+    }
+
+    static int[] packIndices(List<Integer> indices) {
+        int[] result = new int[indices.size()];
+        int i = 0;
+        for (Integer index : indices) {
+            result[i++] = index;
+        }
+        return result;
+    }
+}
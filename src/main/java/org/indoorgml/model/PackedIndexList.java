@@ -0,0 +1,32 @@
+package org.indoorgml.model;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Fixed size list view of a primitive index array.
+ */
+class PackedIndexList extends AbstractList<Integer> implements RandomAccess {
+    private final int[] indices;
+
+    PackedIndexList(int[] indices) {
+        this.indices = indices;
+    }
+
+    @Override
+    public Integer get(int index) {
+        return indices[index];
+    }
+
+    @Override
+    public Integer set(int index, Integer value) {
+        int old = indices[index];
+        indices[index] = value;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return indices.length;
+    }
+}
@@ -0,0 +1,45 @@
+package org.indoorgml.model;
+
+/**
+ * Vector view onto three consecutive values of a packed coordinate array.
+ * Reads and writes go straight to the array.
+ */
+class PackedVector3d extends Vector3d {
+    private final double[] coordinates;
+    private final int offset;
+
+    PackedVector3d(double[] coordinates, int offset) {
+        this.coordinates = coordinates;
+        this.offset = offset;
+    }
+
+    @Override
+    public double getX() {
+        return coordinates[offset];
+    }
+
+    @Override
+    public void setX(double x) {
+        coordinates[offset] = x;
+    }
+
+    @Override
+    public double getY() {
+        return coordinates[offset + 1];
+    }
+
+    @Override
+    public void setY(double y) {
+        coordinates[offset + 1] = y;
+    }
+
+    @Override
+    public double getZ() {
+        return coordinates[offset + 2];
+    }
+
+    @Override
+    public void setZ(double z) {
+        coordinates[offset + 2] = z;
+    }
+}
@@ -0,0 +1,39 @@
+package org.indoorgml.model;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Fixed size list view of a packed {@code x, y, z} coordinate array. The
+ * returned vectors write through to the array.
+ */
+class PackedVertexList extends AbstractList<Vector3d> implements RandomAccess {
+    private final double[] coordinates;
+
+    PackedVertexList(double[] coordinates) {
+        this.coordinates = coordinates;
+    }
+
+    @Override
+    public Vector3d get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new PackedVector3d(coordinates, index * 3);
+    }
+
+    @Override
+    public Vector3d set(int index, Vector3d v) {
+        Vector3d old = new Vector3d(coordinates[index * 3], coordinates[index * 3 + 1],
+                coordinates[index * 3 + 2]);
+        coordinates[index * 3] = v.getX();
+        coordinates[index * 3 + 1] = v.getY();
+        coordinates[index * 3 + 2] = v.getZ();
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return coordinates.length / 3;
+    }
+}
@@ -4,11 +4,27 @@ import java.util.List;
 
 /**
  * Polygon defined by vertices and triangle indices.
+ * <p>
+ * Vertices and indices are either kept as lists or, in packed mode, as a flat
+ * {@code x, y, z} coordinate array and a primitive index array. In packed mode
+ * {@link #getVertices()} and {@link #getIndices()} return fixed size views that
+ * read and write the arrays directly.
+ * <p>
+ * The vertices hold the exterior ring followed by the interior rings, if any,
+ * whose first vertices are given by {@link #getHoleStarts()}. Polygons without
+ * triangle indices are triangulated by the {@link Triangulator} the first time
+ * their indices are requested. The computed indices are published with a
+ * single write to a volatile field, so polygons shared by published model
+ * snapshots may be triangulated from any thread; concurrent readers at worst
+ * triangulate twice and get equal arrays.
  */
 public class Polygon {
     private String id;
     private List<Vector3d> vertices;
     private List<Integer> indices;
+    private double[] coordinates;
+    private volatile int[] indexArray;
+    private int[] holeStarts;
 
     public String getId() {
         return id;
@@ -19,18 +35,126 @@ public class Polygon {
     }
 
     public List<Vector3d> getVertices() {
+        if (coordinates != null) {
+            return new PackedVertexList(coordinates);
+        }
         return vertices;
     }
 
     public void setVertices(List<Vector3d> vertices) {
         this.vertices = vertices;
+        this.coordinates = null;
     }
 
     public List<Integer> getIndices() {
+        int[] array = indexArray;
+        if (array == null && indices == null) {
+            array = triangulate();
+        }
+        if (array != null) {
+            return new PackedIndexList(array);
+        }
         return indices;
     }
 
     public void setIndices(List<Integer> indices) {
         this.indices = indices;
+        this.indexArray = null;
+    }
+
+    /**
+     * Returns true if the vertices are stored in a packed coordinate array.
+     */
+    public boolean isPacked() {
+        return coordinates != null;
+    }
+
+    public int getVertexCount() {
+        if (coordinates != null) {
+            return coordinates.length / 3;
+        }
+        return vertices != null ? vertices.size() : 0;
+    }
+
+    /**
+     * Returns the vertices as {@code x, y, z} triples. In packed mode this is the
+     * backing array, otherwise a newly allocated copy.
+     */
+    public double[] getCoordinates() {
+        if (coordinates != null) {
+            return coordinates;
+        }
+        return vertices != null ? PackedArrays.packVertices(vertices) : new double[0];
+    }
+
+    /**
+     * Switches to packed mode using the given {@code x, y, z} array without copying it.
+     */
+    public void setCoordinates(double[] coordinates) {
+        this.coordinates = coordinates;
+        this.vertices = null;
+    }
+
+    /**
+     * Returns the triangle indices. In packed mode this is the backing array,
+     * otherwise a newly allocated copy.
+     */
+    public int[] getIndexArray() {
+        int[] array = indexArray;
+        if (array == null && indices == null) {
+            array = triangulate();
+        }
+        if (array != null) {
+            return array;
+        }
+        return indices != null ? PackedArrays.packIndices(indices) : new int[0];
+    }
+
+    /**
+     * Stores the triangle indices in the given array without copying it.
+     */
+    public void setIndexArray(int[] indexArray) {
+        this.indexArray = indexArray;
+        this.indices = null;
+    }
+
+    /**
+     * Returns true if triangle indices were set or computed.
+     */
+    public boolean hasIndices() {
+        return indices != null || indexArray != null;
+    }
+
+    /**
+     * Returns the index of the first vertex of every interior ring, or null
+     * if the polygon has no holes.
+     */
+    public int[] getHoleStarts() {
+        return holeStarts;
+    }
+
+    public void setHoleStarts(int[] holeStarts) {
+        this.holeStarts = holeStarts;
+    }
+
+    private int[] triangulate() {
+        if (getVertexCount() < 3) {
+            return null;
+        }
+        int[] array = Triangulator.triangulateLocal(getCoordinates(), holeStarts);
+        indexArray = array;
+        return array;
+    }
+
+    /**
+     * Converts list based vertices and indices into packed arrays.
+     */
+    public void pack() {
+        if (coordinates == null && vertices != null) {
+            setCoordinates(PackedArrays.packVertices(vertices));
+        }
+        if (indexArray == null && indices != null) {
+            setIndexArray(PackedArrays.packIndices(indices));
+        }
     }
 }
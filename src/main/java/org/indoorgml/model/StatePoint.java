@@ -5,6 +5,7 @@ package org.indoorgml.model;
  */
 public class StatePoint {
     private String id;
+    private int handle = -1;
     private Vector3d position;
 
     public String getId() {
@@ -15,6 +16,18 @@ public class StatePoint {
         this.id = id;
     }
 
+    /**
+     * Returns the dense index the model assigned to this State, or -1 if it
+     * was never added to a model. Handles are not reused after a removal.
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    void setHandle(int handle) {
+        this.handle = handle;
+    }
+
     public Vector3d getPosition() {
         return position;
     }
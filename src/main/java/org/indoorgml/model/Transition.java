@@ -5,6 +5,7 @@ package org.indoorgml.model;
  */
 public class Transition {
     private String id;
+    private int handle = -1;
     private StatePoint stateA;
     private StatePoint stateB;
     private LineString geometry;
@@ -17,6 +18,18 @@ public class Transition {
         this.id = id;
     }
 
+    /**
+     * Returns the dense index the model assigned to this Transition, or -1 if it
+     * was never added to a model. Handles are not reused after a removal.
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    void setHandle(int handle) {
+        this.handle = handle;
+    }
+
     public StatePoint getStateA() {
         return stateA;
     }
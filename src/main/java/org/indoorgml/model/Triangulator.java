@@ -0,0 +1,900 @@
+package org.indoorgml.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Triangulates planar polygons given as an exterior ring followed by optional
+ * interior rings (holes).
+ * <p>
+ * The rings are projected onto the coordinate plane that is most parallel to
+ * the polygon. Triangles, convex rings and quads with one reflex corner are
+ * fanned directly. All other rings are triangulated by ear clipping: holes are
+ * first bridged into the exterior ring, and for larger rings candidate ears
+ * are only tested against the vertices near them in Z-order, so slabs with
+ * many holes stay far from quadratic time. Rings that cannot be clipped
+ * cleanly, such as self intersecting ones, are split along valid diagonals.
+ * The triangles keep the winding of the exterior ring, and vertices are never
+ * added, so the indices refer to the polygon's own coordinates.
+ * <p>
+ * Instances reuse internal buffers and are not thread safe.
+ */
+public final class Triangulator {
+
+    /** Rings with more vertices are clipped with the Z-order acceleration. */
+    private static final int HASHED_VERTICES = 80;
+    /** Polygons triangulated by one fork-join leaf task. */
+    private static final int POLYGON_GRAIN = 256;
+
+    private static final ThreadLocal<Triangulator> LOCAL = ThreadLocal.withInitial(Triangulator::new);
+
+    // projected coordinates per input vertex
+    private double[] u = new double[64];
+    private double[] v = new double[64];
+
+    // doubly linked ring nodes; -1 is used as null
+    private int nodeCount;
+    private int[] vertex = new int[64];
+    // node coordinates are copied from u and v for locality
+    private double[] nodeX = new double[64];
+    private double[] nodeY = new double[64];
+    private int[] prev = new int[64];
+    private int[] next = new int[64];
+    private int[] prevZ = new int[64];
+    private int[] nextZ = new int[64];
+    private int[] order = new int[64];
+    private boolean[] steiner = new boolean[64];
+
+    private int[] triangles = new int[192];
+    private int indexCount;
+
+    private double minX;
+    private double minY;
+    private double invSize;
+
+    /**
+     * Triangulates a polygon without holes.
+     */
+    public int[] triangulate(double[] coords) {
+        return triangulate(coords, null);
+    }
+
+    /**
+     * Triangulates a polygon.
+     *
+     * @param coords     {@code x, y, z} triples of the exterior ring followed by
+     *                   the interior rings, without repeated closing vertices
+     * @param holeStarts index of the first vertex of every interior ring, in
+     *                   ascending order, or null
+     * @return triangle indices into the vertices
+     */
+    public int[] triangulate(double[] coords, int[] holeStarts) {
+        int n = coords.length / 3;
+        int outerEnd = holeStarts != null && holeStarts.length > 0 ? holeStarts[0] : n;
+        if (outerEnd < 3) {
+            return new int[0];
+        }
+        project(coords, n, outerEnd);
+        if (outerEnd == n) {
+            int[] fan = fan(n);
+            if (fan != null) {
+                return fan;
+            }
+        }
+
+        nodeCount = 0;
+        indexCount = 0;
+        int outer = linkedList(0, outerEnd, true);
+        if (outer < 0 || next[outer] == prev[outer]) {
+            return new int[0];
+        }
+        if (outerEnd < n) {
+            outer = eliminateHoles(holeStarts, n, outer);
+        }
+        invSize = 0;
+        if (n > HASHED_VERTICES) {
+            minX = Double.POSITIVE_INFINITY;
+            minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < outerEnd; i++) {
+                minX = Math.min(minX, u[i]);
+                minY = Math.min(minY, v[i]);
+                maxX = Math.max(maxX, u[i]);
+                maxY = Math.max(maxY, v[i]);
+            }
+            double size = Math.max(maxX - minX, maxY - minY);
+            invSize = size != 0 ? 32767 / size : 0;
+        }
+        clip(outer, 0);
+        int[] result = Arrays.copyOf(triangles, indexCount);
+        keepWinding(result, outerEnd);
+        return result;
+    }
+
+    /**
+     * Sets the triangle indices of the polygon from its rings.
+     */
+    public void triangulate(Polygon poly) {
+        poly.setIndexArray(triangulate(poly.getCoordinates(), poly.getHoleStarts()));
+    }
+
+    /**
+     * Triangulates with a triangulator owned by the calling thread.
+     */
+    static int[] triangulateLocal(double[] coords, int[] holeStarts) {
+        return LOCAL.get().triangulate(coords, holeStarts);
+    }
+
+    /**
+     * Triangulates the polygons of all CellSpaces of the model that have no
+     * triangle indices yet, in parallel on the given pool. This only computes
+     * ahead of time what the polygons would compute on first access, so it
+     * is safe on published CellSpaces.
+     *
+     * @return the number of triangulated polygons
+     */
+    public static int triangulateAll(IndoorGMLModel model, ForkJoinPool pool) {
+        return triangulate(model.getCellSpaces(), pool, false);
+    }
+
+    /**
+     * Triangulates the polygons of the cells in parallel on the given pool.
+     * <p>
+     * Replacing indices changes the polygons in place, so this is meant for
+     * import data that is not part of a model yet. Change published
+     * CellSpaces through the model instead, by adding a copy with the new
+     * polygons.
+     *
+     * @param replace whether polygons that already have indices are
+     *                triangulated again
+     * @return the number of triangulated polygons
+     * @throws IllegalArgumentException if indices are replaced and one of the
+     *                                  cells belongs to a model
+     */
+    public static int triangulateAll(Collection<CellSpace> cells, ForkJoinPool pool, boolean replace) {
+        if (replace) {
+            for (CellSpace cs : cells) {
+                if (cs.getHandle() >= 0) {
+                    throw new IllegalArgumentException("CellSpace " + cs.getId() + " belongs to a model");
+                }
+            }
+        }
+        return triangulate(cells, pool, replace);
+    }
+
+    private static int triangulate(Collection<CellSpace> cells, ForkJoinPool pool, boolean replace) {
+        List<Polygon> polygons = new ArrayList<>();
+        for (CellSpace cs : cells) {
+            for (Polygon poly : cs.getPolygons()) {
+                if (replace || !poly.hasIndices()) {
+                    polygons.add(poly);
+                }
+            }
+        }
+        Polygon[] all = polygons.toArray(new Polygon[0]);
+        pool.invoke(new TriangulateTask(all, 0, all.length));
+        return all.length;
+    }
+
+    @SuppressWarnings("serial")
+    private static final class TriangulateTask extends RecursiveAction {
+        private final Polygon[] polygons;
+        private final int from;
+        private final int to;
+
+        TriangulateTask(Polygon[] polygons, int from, int to) {
+            this.polygons = polygons;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > POLYGON_GRAIN) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TriangulateTask(polygons, from, mid), new TriangulateTask(polygons, mid, to));
+                return;
+            }
+            Triangulator triangulator = LOCAL.get();
+            for (int i = from; i < to; i++) {
+                triangulator.triangulate(polygons[i]);
+            }
+        }
+    }
+
+    /**
+     * Projects all vertices onto the axis plane that is most parallel to the
+     * Newell normal of the exterior ring.
+     */
+    private void project(double[] c, int n, int outerEnd) {
+        if (u.length < n) {
+            u = new double[Math.max(n, u.length * 2)];
+            v = new double[u.length];
+        }
+        double nx = 0;
+        double ny = 0;
+        double nz = 0;
+        for (int i = 0; i < outerEnd; i++) {
+            int a = i * 3;
+            int b = (i + 1 == outerEnd ? 0 : i + 1) * 3;
+            nx += (c[a + 1] - c[b + 1]) * (c[a + 2] + c[b + 2]);
+            ny += (c[a + 2] - c[b + 2]) * (c[a] + c[b]);
+            nz += (c[a] - c[b]) * (c[a + 1] + c[b + 1]);
+        }
+        double ax = Math.abs(nx);
+        double ay = Math.abs(ny);
+        double az = Math.abs(nz);
+        int first = az >= ax && az >= ay ? 0 : ax >= ay ? 1 : 2;
+        int second = (first + 1) % 3;
+        for (int i = 0; i < n; i++) {
+            u[i] = c[i * 3 + first];
+            v[i] = c[i * 3 + second];
+        }
+    }
+
+    /**
+     * Fans triangles, convex rings and quads with a single reflex corner.
+     * Returns null if the ring needs ear clipping.
+     */
+    private int[] fan(int n) {
+        if (n == 3) {
+            return new int[] {0, 1, 2};
+        }
+        int positive = 0;
+        int negative = 0;
+        int lastNegative = -1;
+        int lastPositive = -1;
+        for (int i = 0; i < n; i++) {
+            int a = i == 0 ? n - 1 : i - 1;
+            int c = i + 1 == n ? 0 : i + 1;
+            double cross = (u[i] - u[a]) * (v[c] - v[i]) - (v[i] - v[a]) * (u[c] - u[i]);
+            if (cross > 0) {
+                positive++;
+                lastPositive = i;
+            } else if (cross < 0) {
+                negative++;
+                lastNegative = i;
+            }
+        }
+        int apex;
+        if (positive == 0 || negative == 0) {
+            apex = 0;
+        } else if (n == 4 && (positive == 1 || negative == 1)) {
+            apex = positive == 1 ? lastPositive : lastNegative;
+        } else {
+            return null;
+        }
+        int[] result = new int[(n - 2) * 3];
+        for (int k = 1, j = 0; k < n - 1; k++) {
+            result[j++] = apex;
+            result[j++] = (apex + k) % n;
+            result[j++] = (apex + k + 1) % n;
+        }
+        return result;
+    }
+
+    /**
+     * Flips the triangles if ear clipping reversed the winding of the
+     * exterior ring.
+     */
+    private void keepWinding(int[] result, int outerEnd) {
+        double ring = 0;
+        for (int i = 0, j = outerEnd - 1; i < outerEnd; j = i++) {
+            ring += u[j] * v[i] - u[i] * v[j];
+        }
+        double clipped = 0;
+        for (int t = 0; t < result.length; t += 3) {
+            int a = result[t];
+            int b = result[t + 1];
+            int c = result[t + 2];
+            clipped += (u[b] - u[a]) * (v[c] - v[a]) - (v[b] - v[a]) * (u[c] - u[a]);
+        }
+        if ((ring > 0) != (clipped > 0)) {
+            for (int t = 0; t < result.length; t += 3) {
+                int swap = result[t + 1];
+                result[t + 1] = result[t + 2];
+                result[t + 2] = swap;
+            }
+        }
+    }
+
+    // ---- linked rings ----
+
+    private double x(int node) {
+        return nodeX[node];
+    }
+
+    private double y(int node) {
+        return nodeY[node];
+    }
+
+    private int newNode(int vertexIndex) {
+        if (nodeCount == vertex.length) {
+            int capacity = vertex.length * 2;
+            vertex = Arrays.copyOf(vertex, capacity);
+            nodeX = Arrays.copyOf(nodeX, capacity);
+            nodeY = Arrays.copyOf(nodeY, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prevZ = Arrays.copyOf(prevZ, capacity);
+            nextZ = Arrays.copyOf(nextZ, capacity);
+            order = Arrays.copyOf(order, capacity);
+            steiner = Arrays.copyOf(steiner, capacity);
+        }
+        int p = nodeCount++;
+        vertex[p] = vertexIndex;
+        nodeX[p] = u[vertexIndex];
+        nodeY[p] = v[vertexIndex];
+        prev[p] = -1;
+        next[p] = -1;
+        prevZ[p] = -1;
+        nextZ[p] = -1;
+        order[p] = 0;
+        steiner[p] = false;
+        return p;
+    }
+
+    private int insertNode(int vertexIndex, int last) {
+        int p = newNode(vertexIndex);
+        if (last < 0) {
+            prev[p] = p;
+            next[p] = p;
+        } else {
+            next[p] = next[last];
+            prev[p] = last;
+            prev[next[last]] = p;
+            next[last] = p;
+        }
+        return p;
+    }
+
+    private void removeNode(int p) {
+        prev[next[p]] = prev[p];
+        next[prev[p]] = next[p];
+        if (prevZ[p] >= 0) {
+            nextZ[prevZ[p]] = nextZ[p];
+        }
+        if (nextZ[p] >= 0) {
+            prevZ[nextZ[p]] = prevZ[p];
+        }
+    }
+
+    /**
+     * Links the vertices {@code start} to {@code end} into a ring with the
+     * requested orientation and returns its last node, or -1.
+     */
+    private int linkedList(int start, int end, boolean clockwise) {
+        double area = 0;
+        for (int i = start, j = end - 1; i < end; j = i++) {
+            area += (u[j] - u[i]) * (v[i] + v[j]);
+        }
+        int last = -1;
+        if (clockwise == (area > 0)) {
+            for (int i = start; i < end; i++) {
+                last = insertNode(i, last);
+            }
+        } else {
+            for (int i = end - 1; i >= start; i--) {
+                last = insertNode(i, last);
+            }
+        }
+        if (last >= 0 && equal(last, next[last])) {
+            removeNode(last);
+            last = next[last];
+        }
+        return last;
+    }
+
+    /**
+     * Removes duplicate and collinear nodes between {@code start} and
+     * {@code end}.
+     */
+    private int filterPoints(int start, int end) {
+        if (start < 0) {
+            return start;
+        }
+        if (end < 0) {
+            end = start;
+        }
+        int p = start;
+        boolean again;
+        do {
+            again = false;
+            if (!steiner[p] && (equal(p, next[p]) || area(prev[p], p, next[p]) == 0)) {
+                removeNode(p);
+                p = end = prev[p];
+                if (p == next[p]) {
+                    break;
+                }
+                again = true;
+            } else {
+                p = next[p];
+            }
+        } while (again || p != end);
+        return end;
+    }
+
+    // ---- ear clipping ----
+
+    private void clip(int ear, int pass) {
+        if (ear < 0) {
+            return;
+        }
+        if (pass == 0 && invSize != 0) {
+            indexCurve(ear);
+        }
+        int stop = ear;
+        while (prev[ear] != next[ear]) {
+            int a = prev[ear];
+            int c = next[ear];
+            if (invSize != 0 ? isEarHashed(ear) : isEar(ear)) {
+                addTriangle(vertex[a], vertex[ear], vertex[c]);
+                removeNode(ear);
+                // skipping the next vertex leads to less sliver triangles
+                ear = next[c];
+                stop = next[c];
+                continue;
+            }
+            ear = c;
+            if (ear == stop) {
+                if (pass == 0) {
+                    clip(filterPoints(ear, -1), 1);
+                } else if (pass == 1) {
+                    clip(cureLocalIntersections(filterPoints(ear, -1)), 2);
+                } else {
+                    splitClip(ear);
+                }
+                break;
+            }
+        }
+    }
+
+    private void addTriangle(int a, int b, int c) {
+        if (indexCount + 3 > triangles.length) {
+            triangles = Arrays.copyOf(triangles, triangles.length * 2);
+        }
+        triangles[indexCount++] = a;
+        triangles[indexCount++] = b;
+        triangles[indexCount++] = c;
+    }
+
+    private boolean isEar(int ear) {
+        int a = prev[ear];
+        int c = next[ear];
+        if (area(a, ear, c) >= 0) {
+            return false;
+        }
+        double ax = x(a);
+        double ay = y(a);
+        double bx = x(ear);
+        double by = y(ear);
+        double cx = x(c);
+        double cy = y(c);
+        double x0 = Math.min(ax, Math.min(bx, cx));
+        double y0 = Math.min(ay, Math.min(by, cy));
+        double x1 = Math.max(ax, Math.max(bx, cx));
+        double y1 = Math.max(ay, Math.max(by, cy));
+        for (int p = next[c]; p != a; p = next[p]) {
+            double px = x(p);
+            double py = y(p);
+            if (px >= x0 && px <= x1 && py >= y0 && py <= y1
+                    && pointInTriangle(ax, ay, bx, by, cx, cy, px, py)
+                    && area(prev[p], p, next[p]) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isEarHashed(int ear) {
+        int a = prev[ear];
+        int c = next[ear];
+        if (area(a, ear, c) >= 0) {
+            return false;
+        }
+        double ax = x(a);
+        double ay = y(a);
+        double bx = x(ear);
+        double by = y(ear);
+        double cx = x(c);
+        double cy = y(c);
+        double x0 = Math.min(ax, Math.min(bx, cx));
+        double y0 = Math.min(ay, Math.min(by, cy));
+        double x1 = Math.max(ax, Math.max(bx, cx));
+        double y1 = Math.max(ay, Math.max(by, cy));
+        int minZ = zOrder(x0, y0);
+        int maxZ = zOrder(x1, y1);
+
+        int p = prevZ[ear];
+        int n = nextZ[ear];
+        while (p >= 0 && order[p] >= minZ && n >= 0 && order[n] <= maxZ) {
+            if (blocks(p, a, c, ax, ay, bx, by, cx, cy, x0, y0, x1, y1)) {
+                return false;
+            }
+            p = prevZ[p];
+            if (blocks(n, a, c, ax, ay, bx, by, cx, cy, x0, y0, x1, y1)) {
+                return false;
+            }
+            n = nextZ[n];
+        }
+        while (p >= 0 && order[p] >= minZ) {
+            if (blocks(p, a, c, ax, ay, bx, by, cx, cy, x0, y0, x1, y1)) {
+                return false;
+            }
+            p = prevZ[p];
+        }
+        while (n >= 0 && order[n] <= maxZ) {
+            if (blocks(n, a, c, ax, ay, bx, by, cx, cy, x0, y0, x1, y1)) {
+                return false;
+            }
+            n = nextZ[n];
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if node {@code p} is a reflex or collinear vertex inside
+     * the candidate ear {@code a, b, c}.
+     */
+    private boolean blocks(int p, int a, int c, double ax, double ay, double bx, double by, double cx,
+                           double cy, double x0, double y0, double x1, double y1) {
+        double px = x(p);
+        double py = y(p);
+        return px >= x0 && px <= x1 && py >= y0 && py <= y1 && p != a && p != c
+                && pointInTriangle(ax, ay, bx, by, cx, cy, px, py)
+                && area(prev[p], p, next[p]) >= 0;
+    }
+
+    /**
+     * Clips the ears along self intersections of the form a-b-c-d where a-b
+     * crosses c-d.
+     */
+    private int cureLocalIntersections(int start) {
+        int p = start;
+        do {
+            int a = prev[p];
+            int b = next[next[p]];
+            if (!equal(a, b) && intersects(a, p, next[p], b) && locallyInside(a, b) && locallyInside(b, a)) {
+                addTriangle(vertex[a], vertex[p], vertex[b]);
+                removeNode(p);
+                removeNode(next[p]);
+                p = start = b;
+            }
+            p = next[p];
+        } while (p != start);
+        return filterPoints(p, -1);
+    }
+
+    /**
+     * Splits the ring along a valid diagonal and clips both halves.
+     */
+    private void splitClip(int start) {
+        int a = start;
+        do {
+            int b = next[next[a]];
+            while (b != prev[a]) {
+                if (vertex[a] != vertex[b] && isValidDiagonal(a, b)) {
+                    int c = splitPolygon(a, b);
+                    a = filterPoints(a, next[a]);
+                    c = filterPoints(c, next[c]);
+                    clip(a, 0);
+                    clip(c, 0);
+                    return;
+                }
+                b = next[b];
+            }
+            a = next[a];
+        } while (a != start);
+    }
+
+    // ---- holes ----
+
+    private int eliminateHoles(int[] holeStarts, int n, int outer) {
+        List<Integer> queue = new ArrayList<>(holeStarts.length);
+        for (int h = 0; h < holeStarts.length; h++) {
+            int start = holeStarts[h];
+            int end = h + 1 < holeStarts.length ? holeStarts[h + 1] : n;
+            if (end <= start) {
+                continue;
+            }
+            int list = linkedList(start, end, false);
+            if (list < 0) {
+                continue;
+            }
+            if (list == next[list]) {
+                steiner[list] = true;
+            }
+            queue.add(leftmost(list));
+        }
+        queue.sort((a, b) -> {
+            int cmp = Double.compare(x(a), x(b));
+            return cmp != 0 ? cmp : Double.compare(y(a), y(b));
+        });
+        for (int hole : queue) {
+            outer = eliminateHole(hole, outer);
+        }
+        return outer;
+    }
+
+    private int eliminateHole(int hole, int outer) {
+        int bridge = findHoleBridge(hole, outer);
+        if (bridge < 0) {
+            return outer;
+        }
+        int bridgeReverse = splitPolygon(bridge, hole);
+        filterAround(bridgeReverse);
+        return filterAround(bridge);
+    }
+
+    /**
+     * Removes duplicate and collinear nodes at a cut, checking {@code start}
+     * and its successor and stepping back after every removal. Unlike
+     * {@link #filterPoints} it does not walk the whole ring, which would make
+     * bridging many holes quadratic. Returns a node of the ring.
+     */
+    private int filterAround(int start) {
+        int p = start;
+        int end = next[start];
+        while (true) {
+            if (!steiner[p] && (equal(p, next[p]) || area(prev[p], p, next[p]) == 0)) {
+                int q = prev[p];
+                if (p == end) {
+                    end = next[p];
+                }
+                removeNode(p);
+                if (q == next[q]) {
+                    return q;
+                }
+                p = q;
+                continue;
+            }
+            if (p == end) {
+                return p;
+            }
+            p = next[p];
+        }
+    }
+
+    /**
+     * Finds a vertex of the outer ring that the leftmost vertex of a hole can
+     * be connected to without crossing an edge, by casting a ray to the left.
+     */
+    private int findHoleBridge(int hole, int outer) {
+        double hx = x(hole);
+        double hy = y(hole);
+        double qx = Double.NEGATIVE_INFINITY;
+        int m = -1;
+        int p = outer;
+        do {
+            int q = next[p];
+            if (hy <= y(p) && hy >= y(q) && y(q) != y(p)) {
+                double ix = x(p) + (hy - y(p)) * (x(q) - x(p)) / (y(q) - y(p));
+                if (ix <= hx && ix > qx) {
+                    qx = ix;
+                    m = x(p) < x(q) ? p : q;
+                    if (ix == hx) {
+                        // the hole touches the outer ring
+                        return m;
+                    }
+                }
+            }
+            p = q;
+        } while (p != outer);
+        if (m < 0) {
+            return -1;
+        }
+
+        // of the vertices inside the triangle hole - intersection - m, take
+        // the one with the smallest angle to the ray
+        int stop = m;
+        double mx = x(m);
+        double my = y(m);
+        double tanMin = Double.POSITIVE_INFINITY;
+        p = m;
+        do {
+            double px = x(p);
+            double py = y(p);
+            if (hx >= px && px >= mx && hx != px
+                    && pointInTriangle(hy < my ? hx : qx, hy, mx, my, hy < my ? qx : hx, hy, px, py)) {
+                double tan = Math.abs(hy - py) / (hx - px);
+                if (locallyInside(p, hole) && (tan < tanMin
+                        || (tan == tanMin && (px > x(m) || (px == x(m) && sectorContainsSector(m, p)))))) {
+                    m = p;
+                    tanMin = tan;
+                }
+            }
+            p = next[p];
+        } while (p != stop);
+        return m;
+    }
+
+    private boolean sectorContainsSector(int m, int p) {
+        return area(prev[m], m, prev[p]) < 0 && area(next[p], m, next[m]) < 0;
+    }
+
+    private int leftmost(int start) {
+        int p = start;
+        int left = start;
+        do {
+            if (x(p) < x(left) || (x(p) == x(left) && y(p) < y(left))) {
+                left = p;
+            }
+            p = next[p];
+        } while (p != start);
+        return left;
+    }
+
+    /**
+     * Connects {@code a} and {@code b} with a diagonal. The ring is split in
+     * two if both are on the same ring, or merged if they are on different
+     * ones. Returns the copy of {@code b}.
+     */
+    private int splitPolygon(int a, int b) {
+        int a2 = newNode(vertex[a]);
+        int b2 = newNode(vertex[b]);
+        int an = next[a];
+        int bp = prev[b];
+
+        next[a] = b;
+        prev[b] = a;
+
+        next[a2] = an;
+        prev[an] = a2;
+
+        next[b2] = a2;
+        prev[a2] = b2;
+
+        next[bp] = b2;
+        prev[b2] = bp;
+        return b2;
+    }
+
+    // ---- z-order ----
+
+    /**
+     * Sorts the nodes of a ring by the Z-order of their position into a
+     * second linked list.
+     */
+    private void indexCurve(int start) {
+        int count = 0;
+        int p = start;
+        do {
+            count++;
+            p = next[p];
+        } while (p != start);
+        long[] keys = new long[count];
+        int k = 0;
+        do {
+            order[p] = zOrder(x(p), y(p));
+            keys[k++] = ((long) order[p] << 32) | p;
+            p = next[p];
+        } while (p != start);
+        Arrays.sort(keys);
+        int previous = -1;
+        for (long key : keys) {
+            int node = (int) key;
+            prevZ[node] = previous;
+            if (previous >= 0) {
+                nextZ[previous] = node;
+            }
+            previous = node;
+        }
+        nextZ[previous] = -1;
+    }
+
+    /**
+     * Interleaves the bits of the coordinates scaled to 15 bits.
+     */
+    private int zOrder(double px, double py) {
+        int x = (int) ((px - minX) * invSize);
+        int y = (int) ((py - minY) * invSize);
+        x = (x | (x << 8)) & 0x00FF00FF;
+        x = (x | (x << 4)) & 0x0F0F0F0F;
+        x = (x | (x << 2)) & 0x33333333;
+        x = (x | (x << 1)) & 0x55555555;
+        y = (y | (y << 8)) & 0x00FF00FF;
+        y = (y | (y << 4)) & 0x0F0F0F0F;
+        y = (y | (y << 2)) & 0x33333333;
+        y = (y | (y << 1)) & 0x55555555;
+        return x | (y << 1);
+    }
+
+    // ---- predicates ----
+
+    private boolean equal(int a, int b) {
+        return x(a) == x(b) && y(a) == y(b);
+    }
+
+    /**
+     * Signed area of the triangle; negative for a convex corner of a ring in
+     * clockwise order.
+     */
+    private double area(int p, int q, int r) {
+        return (y(q) - y(p)) * (x(r) - x(q)) - (x(q) - x(p)) * (y(r) - y(q));
+    }
+
+    private static boolean pointInTriangle(double ax, double ay, double bx, double by, double cx, double cy,
+                                           double px, double py) {
+        return (cx - px) * (ay - py) >= (ax - px) * (cy - py)
+                && (ax - px) * (by - py) >= (bx - px) * (ay - py)
+                && (bx - px) * (cy - py) >= (cx - px) * (by - py);
+    }
+
+    private boolean isValidDiagonal(int a, int b) {
+        return vertex[next[a]] != vertex[b] && vertex[prev[a]] != vertex[b] && !intersectsPolygon(a, b)
+                && (locallyInside(a, b) && locallyInside(b, a) && middleInside(a, b)
+                        && (area(prev[a], a, prev[b]) != 0 || area(a, prev[b], b) != 0)
+                    || equal(a, b) && area(prev[a], a, next[a]) > 0 && area(prev[b], b, next[b]) > 0);
+    }
+
+    private boolean intersects(int p1, int q1, int p2, int q2) {
+        int o1 = sign(area(p1, q1, p2));
+        int o2 = sign(area(p1, q1, q2));
+        int o3 = sign(area(p2, q2, p1));
+        int o4 = sign(area(p2, q2, q1));
+        if (o1 != o2 && o3 != o4) {
+            return true;
+        }
+        return o1 == 0 && onSegment(p1, p2, q1)
+                || o2 == 0 && onSegment(p1, q2, q1)
+                || o3 == 0 && onSegment(p2, p1, q2)
+                || o4 == 0 && onSegment(p2, q1, q2);
+    }
+
+    /**
+     * Returns true if {@code q} lies on segment {@code p r}, given that the
+     * three are collinear.
+     */
+    private boolean onSegment(int p, int q, int r) {
+        return x(q) <= Math.max(x(p), x(r)) && x(q) >= Math.min(x(p), x(r))
+                && y(q) <= Math.max(y(p), y(r)) && y(q) >= Math.min(y(p), y(r));
+    }
+
+    private static int sign(double value) {
+        return value > 0 ? 1 : value < 0 ? -1 : 0;
+    }
+
+    private boolean intersectsPolygon(int a, int b) {
+        int p = a;
+        do {
+            int q = next[p];
+            if (vertex[p] != vertex[a] && vertex[q] != vertex[a] && vertex[p] != vertex[b]
+                    && vertex[q] != vertex[b] && intersects(p, q, a, b)) {
+                return true;
+            }
+            p = q;
+        } while (p != a);
+        return false;
+    }
+
+    private boolean locallyInside(int a, int b) {
+        return area(prev[a], a, next[a]) < 0
+                ? area(a, b, next[a]) >= 0 && area(a, prev[a], b) >= 0
+                : area(a, b, prev[a]) < 0 || area(a, next[a], b) < 0;
+    }
+
+    /**
+     * Returns true if the middle of the diagonal {@code a b} is inside the
+     * ring.
+     */
+    private boolean middleInside(int a, int b) {
+        int p = a;
+        boolean inside = false;
+        double px = (x(a) + x(b)) / 2;
+        double py = (y(a) + y(b)) / 2;
+        do {
+            int q = next[p];
+            if ((y(p) > py) != (y(q) > py) && y(q) != y(p)
+                    && px < (x(q) - x(p)) * (py - y(p)) / (y(q) - y(p)) + x(p)) {
+                inside = !inside;
+            }
+            p = q;
+        } while (p != a);
+        return inside;
+    }
+}
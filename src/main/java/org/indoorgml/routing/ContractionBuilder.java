@@ -0,0 +1,404 @@
+package org.indoorgml.routing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Preprocessing of a {@link ContractionHierarchy}.
+ * <p>
+ * The priority of a State combines the edge difference of contracting it
+ * (shortcuts added minus edges removed), the number of already contracted
+ * neighbors and its level in the hierarchy. Every round selects the States
+ * whose priority is lower than that of all their remaining neighbors. These
+ * form an independent set, so their witness searches run in parallel; the
+ * searches avoid all States of the round, which keeps the shortcuts correct
+ * when neighbors of each other's neighbors are removed at the same time.
+ */
+final class ContractionBuilder {
+
+    /**
+     * Maximum number of States settled by a single witness search. A search
+     * that stops early adds a possibly redundant shortcut, never a wrong one.
+     */
+    private static final int SETTLE_LIMIT = 150;
+
+
+    private final StateGraph graph;
+    private final int n;
+    private final int parallelism;
+
+    // remaining graph, symmetric adjacency lists
+    private final int[][] neighbors;
+    private final double[][] weights;
+    private final int[][] middles;
+    private final int[] degree;
+
+    private final boolean[] contracted;
+    private final boolean[] inRound;
+    private final int[] priority;
+    private final int[] deletedNeighbors;
+    private final int[] level;
+    private final int[] rank;
+
+    // upward edges collected while contracting
+    private final int[][] upTargets;
+    private final double[][] upWeights;
+    private final int[][] upMiddles;
+
+    private final ThreadLocal<WitnessSearch> searches;
+
+    ContractionBuilder(StateGraph graph, int parallelism) {
+        this.graph = graph;
+        this.n = graph.getStateCount();
+        this.parallelism = Math.max(1, parallelism);
+        neighbors = new int[n][];
+        weights = new double[n][];
+        middles = new int[n][];
+        degree = new int[n];
+        contracted = new boolean[n];
+        inRound = new boolean[n];
+        priority = new int[n];
+        deletedNeighbors = new int[n];
+        level = new int[n];
+        rank = new int[n];
+        upTargets = new int[n][];
+        upWeights = new double[n][];
+        upMiddles = new int[n][];
+        searches = ThreadLocal.withInitial(WitnessSearch::new);
+    }
+
+    ContractionHierarchy build() {
+        for (int s = 0; s < n; s++) {
+            int edges = graph.getEndEdge(s) - graph.getFirstEdge(s);
+            neighbors[s] = new int[Math.max(2, edges)];
+            weights[s] = new double[neighbors[s].length];
+            middles[s] = new int[neighbors[s].length];
+        }
+        for (int s = 0; s < n; s++) {
+            for (int e = graph.getFirstEdge(s), end = graph.getEndEdge(s); e < end; e++) {
+                int t = graph.getTarget(e);
+                if (t != s) {
+                    addEdge(s, t, graph.getWeight(e), ~e);
+                }
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int[] alive = IntStream.range(0, n).toArray();
+            pool.submit(() -> Arrays.stream(alive).parallel()
+                    .forEach(s -> priority[s] = computePriority(s))).join();
+
+            int nextRank = 0;
+            int[] touched = new int[n];
+            int touchedGeneration = 0;
+            int aliveCount = n;
+            while (aliveCount > 0) {
+                int[] remaining = Arrays.copyOf(alive, aliveCount);
+                int[] round = pool.submit(() -> Arrays.stream(remaining).parallel()
+                        .filter(this::isLocalMinimum).toArray()).join();
+                for (int s : round) {
+                    inRound[s] = true;
+                }
+                Shortcuts[] shortcuts = new Shortcuts[round.length];
+                pool.submit(() -> IntStream.range(0, round.length).parallel()
+                        .forEach(i -> shortcuts[i] = searches.get().contract(round[i]))).join();
+
+                touchedGeneration++;
+                int touchedCount = 0;
+                int[] affected = new int[16];
+                for (int i = 0; i < round.length; i++) {
+                    int s = round[i];
+                    contract(s, nextRank++, shortcuts[i]);
+                    int[] up = upTargets[s];
+                    for (int u : up) {
+                        if (touched[u] != touchedGeneration) {
+                            touched[u] = touchedGeneration;
+                            if (touchedCount == affected.length) {
+                                affected = Arrays.copyOf(affected, touchedCount * 2);
+                            }
+                            affected[touchedCount++] = u;
+                        }
+                    }
+                }
+                for (int s : round) {
+                    inRound[s] = false;
+                }
+                int[] update = Arrays.copyOf(affected, touchedCount);
+                pool.submit(() -> Arrays.stream(update).parallel()
+                        .forEach(s -> priority[s] = computePriority(s))).join();
+
+                int kept = 0;
+                for (int i = 0; i < aliveCount; i++) {
+                    if (!contracted[alive[i]]) {
+                        alive[kept++] = alive[i];
+                    }
+                }
+                aliveCount = kept;
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return assemble();
+    }
+
+    private int computePriority(int s) {
+        int shortcuts = searches.get().estimateShortcuts(s);
+        return 2 * (shortcuts - degree[s]) + deletedNeighbors[s] + level[s];
+    }
+
+    private boolean isLocalMinimum(int s) {
+        int p = priority[s];
+        int h = mix(s);
+        int[] nb = neighbors[s];
+        for (int i = 0; i < degree[s]; i++) {
+            int u = nb[i];
+            int q = priority[u];
+            if (q < p || (q == p && (mix(u) < h || (mix(u) == h && u < s)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads the tie breaking over the graph instead of following the State numbering.
+     */
+    private static int mix(int s) {
+        int h = s * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void contract(int s, int r, Shortcuts shortcuts) {
+        rank[s] = r;
+        contracted[s] = true;
+        int d = degree[s];
+        upTargets[s] = Arrays.copyOf(neighbors[s], d);
+        upWeights[s] = Arrays.copyOf(weights[s], d);
+        upMiddles[s] = Arrays.copyOf(middles[s], d);
+        for (int i = 0; i < d; i++) {
+            int u = neighbors[s][i];
+            removeEdge(u, s);
+            deletedNeighbors[u]++;
+            level[u] = Math.max(level[u], level[s] + 1);
+        }
+        for (int i = 0; i < shortcuts.count; i++) {
+            int a = shortcuts.from[i];
+            int b = shortcuts.to[i];
+            addEdge(a, b, shortcuts.weight[i], s);
+            addEdge(b, a, shortcuts.weight[i], s);
+        }
+        neighbors[s] = null;
+        weights[s] = null;
+        middles[s] = null;
+        degree[s] = 0;
+    }
+
+    /**
+     * Adds or shortens the edge from {@code a} to {@code b}.
+     */
+    private void addEdge(int a, int b, double w, int middle) {
+        int[] nb = neighbors[a];
+        for (int i = 0; i < degree[a]; i++) {
+            if (nb[i] == b) {
+                if (w < weights[a][i]) {
+                    weights[a][i] = w;
+                    middles[a][i] = middle;
+                }
+                return;
+            }
+        }
+        int d = degree[a];
+        if (d == nb.length) {
+            neighbors[a] = nb = Arrays.copyOf(nb, d * 2);
+            weights[a] = Arrays.copyOf(weights[a], d * 2);
+            middles[a] = Arrays.copyOf(middles[a], d * 2);
+        }
+        nb[d] = b;
+        weights[a][d] = w;
+        middles[a][d] = middle;
+        degree[a] = d + 1;
+    }
+
+    private void removeEdge(int a, int b) {
+        int[] nb = neighbors[a];
+        int last = degree[a] - 1;
+        for (int i = 0; i <= last; i++) {
+            if (nb[i] == b) {
+                nb[i] = nb[last];
+                weights[a][i] = weights[a][last];
+                middles[a][i] = middles[a][last];
+                degree[a] = last;
+                return;
+            }
+        }
+    }
+
+    private ContractionHierarchy assemble() {
+        int[] offsets = new int[n + 1];
+        for (int s = 0; s < n; s++) {
+            offsets[s + 1] = offsets[s] + upTargets[s].length;
+        }
+        int[] targets = new int[offsets[n]];
+        double[] w = new double[offsets[n]];
+        int[] m = new int[offsets[n]];
+        for (int s = 0; s < n; s++) {
+            System.arraycopy(upTargets[s], 0, targets, offsets[s], upTargets[s].length);
+            System.arraycopy(upWeights[s], 0, w, offsets[s], upWeights[s].length);
+            System.arraycopy(upMiddles[s], 0, m, offsets[s], upMiddles[s].length);
+            upTargets[s] = null;
+            upWeights[s] = null;
+            upMiddles[s] = null;
+        }
+        return new ContractionHierarchy(graph, rank, offsets, targets, w, m);
+    }
+
+    /**
+     * Shortcuts required to contract one State.
+     */
+    private static final class Shortcuts {
+        int[] from = new int[4];
+        int[] to = new int[4];
+        double[] weight = new double[4];
+        int count;
+
+        void add(int a, int b, double w) {
+            if (count == from.length) {
+                from = Arrays.copyOf(from, count * 2);
+                to = Arrays.copyOf(to, count * 2);
+                weight = Arrays.copyOf(weight, count * 2);
+            }
+            from[count] = a;
+            to[count] = b;
+            weight[count] = w;
+            count++;
+        }
+    }
+
+    /**
+     * Per thread workspace for the local searches that look for paths
+     * avoiding the State being contracted.
+     */
+    private final class WitnessSearch {
+        private final double[] dist = new double[n];
+        private final int[] stamp = new int[n];
+        private final int[] targetStamp = new int[n];
+        private final IndexedMinHeap heap = new IndexedMinHeap(n, 64);
+        private int generation;
+
+        /**
+         * Determines the shortcuts needed to contract {@code s}.
+         */
+        Shortcuts contract(int s) {
+            Shortcuts result = new Shortcuts();
+            int d = degree[s];
+            int[] nb = neighbors[s];
+            double[] w = weights[s];
+            for (int i = 0; i < d - 1; i++) {
+                int a = nb[i];
+                double maxVia = 0;
+                for (int j = i + 1; j < d; j++) {
+                    maxVia = Math.max(maxVia, w[j]);
+                }
+                search(a, s, nb, i + 1, d, w[i] + maxVia);
+                for (int j = i + 1; j < d; j++) {
+                    int b = nb[j];
+                    double via = w[i] + w[j];
+                    if (stamp[b] != generation || dist[b] > via) {
+                        result.add(a, b, via);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Estimates the number of shortcuts needed to contract {@code s},
+         * looking for witnesses of at most two edges only. Priorities are
+         * recomputed far more often than States are contracted, and this
+         * estimate is good enough to order them.
+         */
+        int estimateShortcuts(int s) {
+            int count = 0;
+            int d = degree[s];
+            int[] nb = neighbors[s];
+            double[] w = weights[s];
+            for (int i = 0; i < d - 1; i++) {
+                int a = nb[i];
+                generation++;
+                int[] an = neighbors[a];
+                double[] aw = weights[a];
+                for (int k = 0; k < degree[a]; k++) {
+                    if (an[k] != s) {
+                        stamp[an[k]] = generation;
+                        dist[an[k]] = aw[k];
+                    }
+                }
+                for (int j = i + 1; j < d; j++) {
+                    int b = nb[j];
+                    double via = w[i] + w[j];
+                    double best = stamp[b] == generation ? dist[b] : Double.POSITIVE_INFINITY;
+                    int[] bn = neighbors[b];
+                    double[] bw = weights[b];
+                    for (int k = 0; k < degree[b] && best > via; k++) {
+                        int x = bn[k];
+                        if (x != s && stamp[x] == generation) {
+                            best = Math.min(best, dist[x] + bw[k]);
+                        }
+                    }
+                    if (best > via) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Runs a Dijkstra search from {@code source} that avoids {@code avoid}
+         * and stops once the targets {@code targets[from..to-1]} are settled,
+         * the distance exceeds {@code limit} or the settle limit is reached.
+         */
+        private void search(int source, int avoid, int[] targets, int from, int to, double limit) {
+            generation++;
+            for (int j = from; j < to; j++) {
+                targetStamp[targets[j]] = generation;
+            }
+            int remaining = to - from;
+            heap.clear();
+            dist[source] = 0;
+            stamp[source] = generation;
+            heap.push(source, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && settled < SETTLE_LIMIT) {
+                if (heap.peekKey() > limit) {
+                    break;
+                }
+                int u = heap.pop();
+                settled++;
+                if (targetStamp[u] == generation && --remaining == 0) {
+                    break;
+                }
+                double du = dist[u];
+                int[] nb = neighbors[u];
+                double[] w = weights[u];
+                for (int i = 0, du2 = degree[u]; i < du2; i++) {
+                    int t = nb[i];
+                    if (t == avoid || inRound[t]) {
+                        continue;
+                    }
+                    double nd = du + w[i];
+                    if (stamp[t] != generation) {
+                        stamp[t] = generation;
+                        dist[t] = nd;
+                        heap.push(t, nd);
+                    } else if (nd < dist[t]) {
+                        dist[t] = nd;
+                        heap.decreaseKey(t, nd);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.indoorgml.routing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Contraction hierarchy over a {@link StateGraph}.
+ * <p>
+ * During preprocessing the States are contracted one after another; whenever
+ * removing a State would lengthen a shortest path between two of its
+ * neighbors, a shortcut edge is inserted. The index keeps, for every State,
+ * only the edges and shortcuts leading to States contracted later ("upward"
+ * edges). A {@link HierarchyRoutePlanner} answers queries with two small
+ * upward searches instead of one search over the whole graph.
+ * <p>
+ * The index belongs to the graph it was built from and can be saved and
+ * loaded for that graph. It is immutable and can be shared between threads.
+ */
+public final class ContractionHierarchy {
+
+    private static final int MAGIC = 0x49474348;
+    private static final int VERSION = 1;
+
+    private final StateGraph graph;
+    private final int[] rank;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    /** Middle State of a shortcut, or the bitwise inverted graph edge from the owning State to the target. */
+    private final int[] middles;
+
+    ContractionHierarchy(StateGraph graph, int[] rank, int[] offsets, int[] targets, double[] weights,
+                         int[] middles) {
+        this.graph = graph;
+        this.rank = rank;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.middles = middles;
+    }
+
+    /**
+     * Builds the hierarchy using all available processors.
+     */
+    public static ContractionHierarchy build(StateGraph graph) {
+        return build(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Builds the hierarchy. Independent States are contracted in rounds, and
+     * the witness searches of a round run on {@code parallelism} threads.
+     */
+    public static ContractionHierarchy build(StateGraph graph, int parallelism) {
+        return new ContractionBuilder(graph, parallelism).build();
+    }
+
+    public StateGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the position of a State in the contraction order.
+     */
+    public int getRank(int state) {
+        return rank[state];
+    }
+
+    /**
+     * Returns the number of upward edges including shortcuts.
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    public int getShortcutCount() {
+        int count = 0;
+        for (int m : middles) {
+            if (m >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int getFirstEdge(int state) {
+        return offsets[state];
+    }
+
+    int getEndEdge(int state) {
+        return offsets[state + 1];
+    }
+
+    int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    double getWeight(int edge) {
+        return weights[edge];
+    }
+
+    int getMiddle(int edge) {
+        return middles[edge];
+    }
+
+    /**
+     * Returns the upward edge of {@code state} leading to {@code target}, or -1.
+     */
+    int findEdge(int state, int target) {
+        for (int e = offsets[state], end = offsets[state + 1]; e < end; e++) {
+            if (targets[e] == target) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the index to a file. The file is written next to the target and
+     * moved into place afterwards.
+     */
+    public void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(graph.getStateCount());
+            out.writeInt(graph.getEdgeCount());
+            out.writeInt(targets.length);
+            for (int r : rank) {
+                out.writeInt(r);
+            }
+            for (int o : offsets) {
+                out.writeInt(o);
+            }
+            for (int t : targets) {
+                out.writeInt(t);
+            }
+            for (double w : weights) {
+                out.writeDouble(w);
+            }
+            for (int m : middles) {
+                out.writeInt(m);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads an index written by {@link #save}. The graph must be built from
+     * the same model the index was built for.
+     */
+    public static ContractionHierarchy load(Path file, StateGraph graph) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a contraction hierarchy");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported contraction hierarchy version " + version);
+            }
+            int states = in.readInt();
+            int graphEdges = in.readInt();
+            if (states != graph.getStateCount() || graphEdges != graph.getEdgeCount()) {
+                throw new IOException("Contraction hierarchy was built for a different graph");
+            }
+            int edges = in.readInt();
+            int[] rank = readInts(in, states);
+            int[] offsets = readInts(in, states + 1);
+            int[] targets = readInts(in, edges);
+            double[] weights = new double[edges];
+            for (int i = 0; i < edges; i++) {
+                weights[i] = in.readDouble();
+            }
+            int[] middles = readInts(in, edges);
+            return new ContractionHierarchy(graph, rank, offsets, targets, weights, middles);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,202 @@
+package org.indoorgml.routing;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path queries on a {@link ContractionHierarchy}.
+ * <p>
+ * A query runs two Dijkstra searches, one from each end, that only follow
+ * upward edges and meet at the highest State of the route. Shortcuts on the
+ * found path are unpacked into the original graph edges afterwards, so the
+ * resulting {@link Route} looks exactly like one from {@link RoutePlanner}.
+ * Like {@link RoutePlanner} the searches reuse their arrays and allocate
+ * nothing per query. A planner is not thread safe.
+ */
+public final class HierarchyRoutePlanner {
+
+    private final ContractionHierarchy hierarchy;
+    private final StateGraph graph;
+    private final Side forward;
+    private final Side backward;
+    private int[] chain = new int[64];
+    private int[] path = new int[64];
+    private int pathLength;
+    private int generation;
+
+    public HierarchyRoutePlanner(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        this.graph = hierarchy.getGraph();
+        int n = graph.getStateCount();
+        forward = new Side(n);
+        backward = new Side(n);
+    }
+
+    public ContractionHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * Computes the shortest route between two States given by their IDs.
+     *
+     * @return true if a route was found
+     */
+    public boolean findRoute(String fromStateId, String toStateId, Route result) {
+        int from = graph.indexOf(fromStateId);
+        int to = graph.indexOf(toStateId);
+        if (from < 0 || to < 0) {
+            result.reset(graph);
+            return false;
+        }
+        return findRoute(from, to, result);
+    }
+
+    /**
+     * Computes the shortest route between two State indices and stores it in
+     * {@code result}.
+     *
+     * @return true if a route was found
+     */
+    public boolean findRoute(int from, int to, Route result) {
+        result.reset(graph);
+        nextGeneration();
+        forward.start(from, generation);
+        backward.start(to, generation);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        if (from == to) {
+            best = 0;
+            meet = from;
+        }
+        int settled = 0;
+        while (!forward.heap.isEmpty() || !backward.heap.isEmpty()) {
+            double minForward = forward.heap.isEmpty() ? Double.POSITIVE_INFINITY : forward.heap.peekKey();
+            double minBackward = backward.heap.isEmpty() ? Double.POSITIVE_INFINITY : backward.heap.peekKey();
+            if (Math.min(minForward, minBackward) >= best) {
+                break;
+            }
+            Side side = minForward <= minBackward ? forward : backward;
+            Side other = side == forward ? backward : forward;
+            int u = side.heap.pop();
+            settled++;
+            double du = side.dist[u];
+            for (int e = hierarchy.getFirstEdge(u), end = hierarchy.getEndEdge(u); e < end; e++) {
+                int t = hierarchy.getTarget(e);
+                double nd = du + hierarchy.getWeight(e);
+                if (side.stamp[t] != generation) {
+                    side.stamp[t] = generation;
+                    side.dist[t] = nd;
+                    side.parentEdge[t] = e;
+                    side.parent[t] = u;
+                    side.heap.push(t, nd);
+                } else if (nd < side.dist[t]) {
+                    side.dist[t] = nd;
+                    side.parentEdge[t] = e;
+                    side.parent[t] = u;
+                    side.heap.decreaseKey(t, nd);
+                } else {
+                    continue;
+                }
+                if (other.stamp[t] == generation && nd + other.dist[t] < best) {
+                    best = nd + other.dist[t];
+                    meet = t;
+                }
+            }
+        }
+        if (meet < 0) {
+            result.setSettled(settled);
+            return false;
+        }
+        unpackRoute(from, meet, best, settled, result);
+        return true;
+    }
+
+    private void unpackRoute(int from, int meet, double distance, int settled, Route result) {
+        pathLength = 0;
+        // States from the meeting State down to the start, unpacked in reverse
+        int links = 0;
+        for (int s = meet; s != from; s = forward.parent[s]) {
+            chain = grow(chain, links + 1);
+            chain[links++] = s;
+        }
+        for (int i = links - 1; i >= 0; i--) {
+            int s = chain[i];
+            unpack(forward.parent[s], forward.parentEdge[s], false);
+        }
+        // upward edges of the backward search, walked downwards to the target
+        for (int s = meet; backward.parent[s] >= 0; s = backward.parent[s]) {
+            unpack(backward.parent[s], backward.parentEdge[s], true);
+        }
+
+        result.prepare(pathLength + 1, distance, settled);
+        result.set(0, from, -1);
+        for (int i = 0; i < pathLength; i++) {
+            result.set(i + 1, graph.getTarget(path[i]), path[i]);
+        }
+    }
+
+    /**
+     * Appends the graph edges of an upward edge of {@code owner}, walked
+     * downwards from its target to {@code owner} if {@code reverse} is set.
+     */
+    private void unpack(int owner, int edge, boolean reverse) {
+        int middle = hierarchy.getMiddle(edge);
+        if (middle < 0) {
+            int graphEdge = ~middle;
+            path = grow(path, pathLength + 1);
+            path[pathLength++] = reverse ? graph.getReverseEdge(graphEdge) : graphEdge;
+            return;
+        }
+        int target = hierarchy.getTarget(edge);
+        int toOwner = hierarchy.findEdge(middle, owner);
+        int toTarget = hierarchy.findEdge(middle, target);
+        if (reverse) {
+            unpack(middle, toTarget, true);
+            unpack(middle, toOwner, false);
+        } else {
+            unpack(middle, toOwner, true);
+            unpack(middle, toTarget, false);
+        }
+    }
+
+    private static int[] grow(int[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    private void nextGeneration() {
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(forward.stamp, 0);
+            Arrays.fill(backward.stamp, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Search state of one direction.
+     */
+    private static final class Side {
+        final double[] dist;
+        final int[] stamp;
+        final int[] parent;
+        final int[] parentEdge;
+        final IndexedMinHeap heap;
+
+        Side(int n) {
+            dist = new double[n];
+            stamp = new int[n];
+            parent = new int[n];
+            parentEdge = new int[n];
+            heap = new IndexedMinHeap(n, 256);
+        }
+
+        void start(int s, int generation) {
+            heap.clear();
+            stamp[s] = generation;
+            dist[s] = 0;
+            parent[s] = -1;
+            parentEdge[s] = -1;
+            heap.push(s, 0);
+        }
+    }
+}
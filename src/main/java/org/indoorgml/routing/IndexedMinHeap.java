@@ -0,0 +1,118 @@
+package org.indoorgml.routing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of state indices ordered by a double key, supporting
+ * decrease-key. The arrays are allocated once; whether a state is currently
+ * in the heap must be tracked by the caller.
+ */
+final class IndexedMinHeap {
+
+    private int[] heap;
+    private double[] keys;
+    /** Heap slot of every state. */
+    private final int[] index;
+    private int size;
+
+    IndexedMinHeap(int states) {
+        this(states, states);
+    }
+
+    /**
+     * Creates a heap for {@code states} states that initially holds up to
+     * {@code capacity} entries and grows on demand.
+     */
+    IndexedMinHeap(int states, int capacity) {
+        index = new int[states];
+        heap = new int[Math.max(1, capacity)];
+        keys = new double[heap.length];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    double peekKey() {
+        return keys[0];
+    }
+
+    void push(int s, double key) {
+        if (size == heap.length) {
+            int capacity = Math.min(index.length, heap.length * 2);
+            heap = Arrays.copyOf(heap, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        int i = size++;
+        heap[i] = s;
+        keys[i] = key;
+        index[s] = i;
+        siftUp(i);
+    }
+
+    void decreaseKey(int s, double key) {
+        int i = index[s];
+        keys[i] = key;
+        siftUp(i);
+    }
+
+    int pop() {
+        int top = heap[0];
+        size--;
+        if (size > 0) {
+            move(size, 0);
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int s = heap[i];
+        double key = keys[i];
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (keys[up] <= key) {
+                break;
+            }
+            move(up, i);
+            i = up;
+        }
+        heap[i] = s;
+        keys[i] = key;
+        index[s] = i;
+    }
+
+    private void siftDown(int i) {
+        int s = heap[i];
+        double key = keys[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        heap[i] = s;
+        keys[i] = key;
+        index[s] = i;
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        index[heap[to]] = to;
+    }
+}
@@ -0,0 +1,173 @@
+package org.indoorgml.routing;
+
+import org.indoorgml.model.LineString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a route query. Instances are meant to be reused: a
+ * {@link RoutePlanner} overwrites the content and only grows the internal
+ * arrays when a longer route is found.
+ */
+public final class Route {
+
+    private StateGraph graph;
+    private int[] states = new int[64];
+    private int[] edges = new int[64];
+    private int length;
+    private double distance = Double.POSITIVE_INFINITY;
+    private int settled;
+
+    /**
+     * Returns true if the last query found a route.
+     */
+    public boolean isFound() {
+        return length > 0;
+    }
+
+    /**
+     * Returns the number of States on the route including start and target.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Returns the number of States the query settled, a measure of its cost.
+     */
+    public int getSettledCount() {
+        return settled;
+    }
+
+    public int getState(int i) {
+        checkIndex(i, length);
+        return states[i];
+    }
+
+    public String getStateId(int i) {
+        return graph.getStateId(getState(i));
+    }
+
+    /**
+     * Returns the graph edge leading from State {@code i} to State {@code i + 1}.
+     */
+    public int getEdge(int i) {
+        checkIndex(i, length - 1);
+        return edges[i];
+    }
+
+    /**
+     * Copies the State IDs into a new list.
+     */
+    public List<String> getStateIds() {
+        List<String> ids = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            ids.add(graph.getStateId(states[i]));
+        }
+        return ids;
+    }
+
+    /**
+     * Concatenates the Transition geometries along the route into one
+     * {@code x, y, z} array, oriented from start to target. Shared end points
+     * of consecutive Transitions appear once.
+     */
+    public double[] getCoordinates() {
+        if (length == 0) {
+            return new double[0];
+        }
+        if (length == 1) {
+            int s = states[0];
+            return new double[] {graph.getX(s), graph.getY(s), graph.getZ(s)};
+        }
+        int size = 3;
+        for (int i = 0; i < length - 1; i++) {
+            size += Math.max(1, vertexCount(edges[i]) - 1) * 3;
+        }
+        double[] out = new double[size];
+        int pos = 0;
+        int s = states[0];
+        out[pos++] = graph.getX(s);
+        out[pos++] = graph.getY(s);
+        out[pos++] = graph.getZ(s);
+        for (int i = 0; i < length - 1; i++) {
+            int edge = edges[i];
+            LineString line = graph.getTransition(edge).getGeometry();
+            if (vertexCount(edge) < 2) {
+                int t = states[i + 1];
+                out[pos++] = graph.getX(t);
+                out[pos++] = graph.getY(t);
+                out[pos++] = graph.getZ(t);
+                continue;
+            }
+            double[] coords = line.getCoordinates();
+            int vertices = coords.length / 3;
+            boolean reversed = graph.isReversed(edge);
+            // the first vertex coincides with the end of the previous part
+            for (int v = 1; v < vertices; v++) {
+                int src = (reversed ? vertices - 1 - v : v) * 3;
+                out[pos++] = coords[src];
+                out[pos++] = coords[src + 1];
+                out[pos++] = coords[src + 2];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the route geometry as a packed LineString.
+     */
+    public LineString toLineString() {
+        LineString line = new LineString();
+        line.setCoordinates(getCoordinates());
+        return line;
+    }
+
+    private int vertexCount(int edge) {
+        LineString line = graph.getTransition(edge).getGeometry();
+        return line != null ? line.getVertexCount() : 0;
+    }
+
+    void reset(StateGraph graph) {
+        this.graph = graph;
+        length = 0;
+        distance = Double.POSITIVE_INFINITY;
+        settled = 0;
+    }
+
+    /**
+     * Prepares the arrays for a route of {@code count} States.
+     */
+    void prepare(int count, double distance, int settled) {
+        if (states.length < count) {
+            int capacity = Math.max(count, states.length * 2);
+            states = new int[capacity];
+            edges = new int[capacity];
+        }
+        this.length = count;
+        this.distance = distance;
+        this.settled = settled;
+    }
+
+    void set(int i, int state, int incomingEdge) {
+        states[i] = state;
+        if (i > 0) {
+            edges[i - 1] = incomingEdge;
+        }
+    }
+
+    void setSettled(int settled) {
+        this.settled = settled;
+    }
+
+    private static void checkIndex(int i, int size) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.indoorgml.routing;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path queries on a {@link StateGraph} with Dijkstra or A*.
+ * <p>
+ * All search state lives in arrays sized to the graph, which are allocated
+ * once per planner. Instead of clearing them before every query, each entry
+ * carries the number of the query that last wrote it, so a query only pays
+ * for the States it actually visits and allocates nothing. A planner is not
+ * thread safe; use one planner per thread on a shared graph.
+ */
+public final class RoutePlanner {
+
+    private final StateGraph graph;
+    private final double[] dist;
+    private final int[] parent;
+    private final int[] parentEdge;
+    private final int[] visited;
+    private final int[] closed;
+    private final IndexedMinHeap heap;
+    private int generation;
+    private boolean useHeuristic = true;
+
+    public RoutePlanner(StateGraph graph) {
+        this.graph = graph;
+        int n = graph.getStateCount();
+        dist = new double[n];
+        parent = new int[n];
+        parentEdge = new int[n];
+        visited = new int[n];
+        closed = new int[n];
+        heap = new IndexedMinHeap(n);
+    }
+
+    public StateGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Switches between A* with the straight line distance as heuristic
+     * (default) and plain Dijkstra.
+     */
+    public void setUseHeuristic(boolean useHeuristic) {
+        this.useHeuristic = useHeuristic;
+    }
+
+    public boolean isUseHeuristic() {
+        return useHeuristic;
+    }
+
+    /**
+     * Computes the shortest route between two States given by their IDs.
+     *
+     * @return true if a route was found
+     */
+    public boolean findRoute(String fromStateId, String toStateId, Route result) {
+        int from = graph.indexOf(fromStateId);
+        int to = graph.indexOf(toStateId);
+        if (from < 0 || to < 0) {
+            result.reset(graph);
+            return false;
+        }
+        return findRoute(from, to, result);
+    }
+
+    /**
+     * Computes the shortest route between two State indices of the graph and
+     * stores it in {@code result}.
+     *
+     * @return true if a route was found
+     */
+    public boolean findRoute(int from, int to, Route result) {
+        result.reset(graph);
+        nextGeneration();
+        heap.clear();
+        int settled = 0;
+
+        dist[from] = 0;
+        parent[from] = -1;
+        parentEdge[from] = -1;
+        visited[from] = generation;
+        heap.push(from, heuristic(from, to));
+        while (!heap.isEmpty()) {
+            int s = heap.pop();
+            closed[s] = generation;
+            settled++;
+            if (s == to) {
+                buildRoute(from, to, result, settled);
+                return true;
+            }
+            double d = dist[s];
+            for (int e = graph.getFirstEdge(s), end = graph.getEndEdge(s); e < end; e++) {
+                int t = graph.getTarget(e);
+                if (closed[t] == generation) {
+                    continue;
+                }
+                double nd = d + graph.getWeight(e);
+                if (visited[t] != generation) {
+                    visited[t] = generation;
+                    dist[t] = nd;
+                    parent[t] = s;
+                    parentEdge[t] = e;
+                    heap.push(t, nd + heuristic(t, to));
+                } else if (nd < dist[t]) {
+                    dist[t] = nd;
+                    parent[t] = s;
+                    parentEdge[t] = e;
+                    heap.decreaseKey(t, nd + heuristic(t, to));
+                }
+            }
+        }
+        result.setSettled(settled);
+        return false;
+    }
+
+    private void buildRoute(int from, int to, Route result, int settled) {
+        int count = 1;
+        for (int s = to; s != from; s = parent[s]) {
+            count++;
+        }
+        result.prepare(count, dist[to], settled);
+        int s = to;
+        for (int i = count - 1; i >= 0; i--) {
+            result.set(i, s, parentEdge[s]);
+            s = parent[s];
+        }
+    }
+
+    private double heuristic(int s, int target) {
+        return useHeuristic ? graph.distance(s, target) : 0;
+    }
+
+    private void nextGeneration() {
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            // stamps would become ambiguous after the overflow
+            Arrays.fill(visited, 0);
+            Arrays.fill(closed, 0);
+            generation = 1;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.indoorgml.routing;
+
+import org.indoorgml.model.IdIndex;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.LineString;
+import org.indoorgml.model.ModelSnapshot;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+import org.indoorgml.model.Vector3d;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable snapshot of the State/Transition graph of a model in compressed
+ * sparse row layout.
+ * <p>
+ * States are numbered {@code 0..n-1}. The outgoing edges of state {@code s}
+ * are {@code offsets[s]..offsets[s+1]-1}; every Transition contributes one
+ * edge in each direction. Edge weights are the lengths of the Transition
+ * geometry, or the straight distance between the two States if a Transition
+ * has no geometry. The graph does not follow later changes of the model; build
+ * a new one after editing.
+ */
+public final class StateGraph {
+
+    private final String[] stateIds;
+    private final double[] positions;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private final Transition[] transitions;
+    /** Transition index per edge, bitwise inverted if the edge runs from B to A. */
+    private final int[] edgeTransitions;
+    private final int[] reverseEdges;
+    private final IdIndex indexById;
+    /** Graph index per model handle of a State, -1 for handles not in the graph. */
+    private final int[] indexByHandle;
+
+    private StateGraph(String[] stateIds, double[] positions, int[] offsets, int[] targets, double[] weights,
+                       Transition[] transitions, int[] edgeTransitions, int[] reverseEdges,
+                       IdIndex indexById, int[] indexByHandle) {
+        this.stateIds = stateIds;
+        this.positions = positions;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.transitions = transitions;
+        this.edgeTransitions = edgeTransitions;
+        this.reverseEdges = reverseEdges;
+        this.indexById = indexById;
+        this.indexByHandle = indexByHandle;
+    }
+
+    /**
+     * Builds the graph from the current States and Transitions of the model.
+     * Transitions whose States are not part of the model are ignored.
+     */
+    public static StateGraph build(IndoorGMLModel model) {
+        return build(model.snapshot());
+    }
+
+    /**
+     * Builds the graph from a snapshot, for example on a routing thread while
+     * the model is being edited.
+     */
+    public static StateGraph build(ModelSnapshot model) {
+        Collection<StatePoint> states = model.getStates();
+        int n = states.size();
+        String[] ids = new String[n];
+        double[] positions = new double[n * 3];
+        IdIndex indexById = new IdIndex(n);
+        int[] indexByHandle = new int[model.getStateHandleCount()];
+        Arrays.fill(indexByHandle, -1);
+        int s = 0;
+        for (StatePoint state : states) {
+            ids[s] = state.getId();
+            Vector3d p = state.getPosition();
+            positions[s * 3] = p.getX();
+            positions[s * 3 + 1] = p.getY();
+            positions[s * 3 + 2] = p.getZ();
+            indexById.put(state.getId(), s);
+            indexByHandle[state.getHandle()] = s;
+            s++;
+        }
+
+        Transition[] transitions = new Transition[model.getTransitions().size()];
+        int[] from = new int[transitions.length];
+        int[] to = new int[transitions.length];
+        int[] offsets = new int[n + 1];
+        int count = 0;
+        for (Transition t : model.getTransitions()) {
+            int a = index(model, indexByHandle, indexById, t.getStateA());
+            int b = index(model, indexByHandle, indexById, t.getStateB());
+            if (a < 0 || b < 0) {
+                continue;
+            }
+            transitions[count] = t;
+            from[count] = a;
+            to[count] = b;
+            offsets[a + 1]++;
+            offsets[b + 1]++;
+            count++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] targets = new int[offsets[n]];
+        double[] weights = new double[offsets[n]];
+        int[] edgeTransitions = new int[offsets[n]];
+        int[] reverseEdges = new int[offsets[n]];
+        int[] fill = new int[n];
+        System.arraycopy(offsets, 0, fill, 0, n);
+        for (int t = 0; t < count; t++) {
+            double w = length(transitions[t], positions, from[t], to[t]);
+            int e = fill[from[t]]++;
+            targets[e] = to[t];
+            weights[e] = w;
+            edgeTransitions[e] = t;
+            int r = fill[to[t]]++;
+            targets[r] = from[t];
+            weights[r] = w;
+            edgeTransitions[r] = ~t;
+            reverseEdges[e] = r;
+            reverseEdges[r] = e;
+        }
+        if (count < transitions.length) {
+            Transition[] used = new Transition[count];
+            System.arraycopy(transitions, 0, used, 0, count);
+            transitions = used;
+        }
+        return new StateGraph(ids, positions, offsets, targets, weights, transitions, edgeTransitions,
+                reverseEdges, indexById, indexByHandle);
+    }
+
+    /**
+     * Resolves a State by its handle and falls back to the ID for States
+     * that are not the instances stored in the model.
+     */
+    private static int index(ModelSnapshot model, int[] indexByHandle, IdIndex indexById, StatePoint state) {
+        int h = state.getHandle();
+        if (h >= 0 && h < indexByHandle.length && model.getState(h) == state) {
+            return indexByHandle[h];
+        }
+        return indexById.get(state.getId());
+    }
+
+    private static double length(Transition t, double[] positions, int a, int b) {
+        LineString line = t.getGeometry();
+        if (line == null || line.getVertexCount() < 2) {
+            return distance(positions, a * 3, positions, b * 3);
+        }
+        double[] coords = line.getCoordinates();
+        double sum = 0;
+        for (int i = 3; i < coords.length; i += 3) {
+            sum += distance(coords, i - 3, coords, i);
+        }
+        return sum;
+    }
+
+    private static double distance(double[] p, int i, double[] q, int j) {
+        double dx = p[i] - q[j];
+        double dy = p[i + 1] - q[j + 1];
+        double dz = p[i + 2] - q[j + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    public int getStateCount() {
+        return stateIds.length;
+    }
+
+    /**
+     * Returns the number of directed edges, twice the number of Transitions.
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the index of a State, or -1 if it is not part of the graph.
+     */
+    public int indexOf(String stateId) {
+        return indexById.get(stateId);
+    }
+
+    /**
+     * Returns the index of the State with the given model handle, or -1 if it
+     * is not part of the graph.
+     */
+    public int indexOfHandle(int stateHandle) {
+        return stateHandle >= 0 && stateHandle < indexByHandle.length ? indexByHandle[stateHandle] : -1;
+    }
+
+    public String getStateId(int state) {
+        return stateIds[state];
+    }
+
+    public double getX(int state) {
+        return positions[state * 3];
+    }
+
+    public double getY(int state) {
+        return positions[state * 3 + 1];
+    }
+
+    public double getZ(int state) {
+        return positions[state * 3 + 2];
+    }
+
+    public int getFirstEdge(int state) {
+        return offsets[state];
+    }
+
+    public int getEndEdge(int state) {
+        return offsets[state + 1];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    public double getWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Returns the edge built from the same Transition in the opposite direction.
+     */
+    public int getReverseEdge(int edge) {
+        return reverseEdges[edge];
+    }
+
+    /**
+     * Returns the Transition an edge was built from.
+     */
+    public Transition getTransition(int edge) {
+        int t = edgeTransitions[edge];
+        return transitions[t >= 0 ? t : ~t];
+    }
+
+    /**
+     * Returns true if the edge runs from State B to State A of its Transition,
+     * i.e. against the direction of the Transition geometry.
+     */
+    public boolean isReversed(int edge) {
+        return edgeTransitions[edge] < 0;
+    }
+
+    /**
+     * Straight line distance between two States, a lower bound of the route
+     * length as long as Transition geometries start and end at their States.
+     */
+    public double distance(int a, int b) {
+        return distance(positions, a * 3, positions, b * 3);
+    }
+}
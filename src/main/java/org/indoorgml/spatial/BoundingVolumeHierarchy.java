@@ -0,0 +1,357 @@
+package org.indoorgml.spatial;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Bounding volume hierarchy over axis aligned boxes, stored in flat arrays.
+ * <p>
+ * Items are given by their boxes as {@code minX, minY, minZ, maxX, maxY, maxZ}
+ * sextuples and referred to by their index. Nodes are laid out depth first:
+ * the left child of an inner node directly follows it, the index of the right
+ * child is stored. Leaves reference a range of the item permutation. The tree
+ * is split at the median of the item centers along the longest axis.
+ * <p>
+ * The hierarchy is immutable after construction; queries may run on several
+ * threads at once.
+ */
+public final class BoundingVolumeHierarchy {
+
+    /**
+     * Maximum number of items per leaf.
+     */
+    private static final int LEAF_SIZE = 4;
+    private static final int STACK_SIZE = 64;
+
+    /**
+     * Callback for nearest item queries.
+     */
+    public interface DistanceFunction {
+        /**
+         * Returns the squared distance between the query point and an item.
+         */
+        double distanceSquared(int item, double x, double y, double z);
+    }
+
+    /**
+     * Callback for ray queries.
+     */
+    public interface RayVisitor {
+        /**
+         * Intersects the ray with an item and returns the ray parameter of the
+         * hit, or {@code maxT} if the item is missed or farther away.
+         */
+        double intersect(int item, double maxT);
+    }
+
+    private final int itemCount;
+    private final int[] items;
+    /** Box of the item at every position of {@link #items}, for exact box queries. */
+    private final double[] itemBounds;
+    private double[] nodeBounds;
+    /** Right child of an inner node, or -1 for a leaf. */
+    private int[] nodeRight;
+    private int[] nodeStart;
+    private int[] leafSize;
+    private int nodeTotal;
+
+    private BoundingVolumeHierarchy(int itemCount) {
+        this.itemCount = itemCount;
+        this.items = new int[itemCount];
+        this.itemBounds = new double[itemCount * 6];
+        int capacity = Math.max(1, itemCount);
+        nodeBounds = new double[capacity * 6];
+        nodeRight = new int[capacity];
+        nodeStart = new int[capacity];
+        leafSize = new int[capacity];
+    }
+
+    /**
+     * Builds a hierarchy over the given item boxes.
+     */
+    public static BoundingVolumeHierarchy build(double[] bounds) {
+        if (bounds.length % 6 != 0) {
+            throw new IllegalArgumentException("Bounds must consist of six values per item");
+        }
+        int n = bounds.length / 6;
+        BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(n);
+        double[] centers = new double[n * 3];
+        for (int i = 0; i < n; i++) {
+            bvh.items[i] = i;
+            for (int a = 0; a < 3; a++) {
+                centers[i * 3 + a] = (bounds[i * 6 + a] + bounds[i * 6 + 3 + a]) * 0.5;
+            }
+        }
+        if (n > 0) {
+            bvh.buildNode(bounds, centers, 0, n);
+        }
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(bounds, bvh.items[i] * 6, bvh.itemBounds, i * 6, 6);
+        }
+        return bvh;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getNodeCount() {
+        return nodeTotal;
+    }
+
+    private int buildNode(double[] bounds, double[] centers, int start, int end) {
+        int node = allocateNode();
+        int b = node * 6;
+        nodeBounds[b] = nodeBounds[b + 1] = nodeBounds[b + 2] = Double.POSITIVE_INFINITY;
+        nodeBounds[b + 3] = nodeBounds[b + 4] = nodeBounds[b + 5] = Double.NEGATIVE_INFINITY;
+        double[] cmin = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        double[] cmax = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = start; i < end; i++) {
+            int item = items[i];
+            for (int a = 0; a < 3; a++) {
+                nodeBounds[b + a] = Math.min(nodeBounds[b + a], bounds[item * 6 + a]);
+                nodeBounds[b + 3 + a] = Math.max(nodeBounds[b + 3 + a], bounds[item * 6 + 3 + a]);
+                cmin[a] = Math.min(cmin[a], centers[item * 3 + a]);
+                cmax[a] = Math.max(cmax[a], centers[item * 3 + a]);
+            }
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (cmax[a] - cmin[a] > cmax[axis] - cmin[axis]) {
+                axis = a;
+            }
+        }
+        if (end - start <= LEAF_SIZE || cmax[axis] == cmin[axis]) {
+            nodeRight[node] = -1;
+            nodeStart[node] = start;
+            leafSize[node] = end - start;
+            return node;
+        }
+        int mid = (start + end) >>> 1;
+        select(centers, axis, start, end - 1, mid);
+        buildNode(bounds, centers, start, mid);
+        // the recursion may grow the node arrays, so store the child afterwards
+        int right = buildNode(bounds, centers, mid, end);
+        nodeRight[node] = right;
+        return node;
+    }
+
+    private int allocateNode() {
+        if (nodeTotal == nodeRight.length) {
+            int capacity = nodeRight.length * 2;
+            nodeBounds = Arrays.copyOf(nodeBounds, capacity * 6);
+            nodeRight = Arrays.copyOf(nodeRight, capacity);
+            nodeStart = Arrays.copyOf(nodeStart, capacity);
+            leafSize = Arrays.copyOf(leafSize, capacity);
+        }
+        return nodeTotal++;
+    }
+
+    /**
+     * Partially sorts {@code items[lo..hi]} so that position {@code k} holds
+     * the item with the k-th smallest center along the axis.
+     */
+    private void select(double[] centers, int axis, int lo, int hi, int k) {
+        while (hi > lo) {
+            double pivot = centers[items[(lo + hi) >>> 1] * 3 + axis];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (centers[items[i] * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (centers[items[j] * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = items[i];
+                    items[i] = items[j];
+                    items[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Visits all items whose box contains the point. Stops early when the
+     * visitor returns false.
+     */
+    public void query(double x, double y, double z, IntPredicate visitor) {
+        query(x, y, z, x, y, z, visitor);
+    }
+
+    /**
+     * Visits all items whose box intersects the given box. Stops early when
+     * the visitor returns false.
+     */
+    public void query(double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                      IntPredicate visitor) {
+        if (nodeTotal == 0) {
+            return;
+        }
+        int[] stack = new int[STACK_SIZE];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int b = node * 6;
+            if (nodeBounds[b] > maxX || nodeBounds[b + 3] < minX
+                    || nodeBounds[b + 1] > maxY || nodeBounds[b + 4] < minY
+                    || nodeBounds[b + 2] > maxZ || nodeBounds[b + 5] < minZ) {
+                continue;
+            }
+            if (nodeRight[node] < 0) {
+                for (int i = nodeStart[node], end = i + leafSize[node]; i < end; i++) {
+                    int ib = i * 6;
+                    if (itemBounds[ib] > maxX || itemBounds[ib + 3] < minX
+                            || itemBounds[ib + 1] > maxY || itemBounds[ib + 4] < minY
+                            || itemBounds[ib + 2] > maxZ || itemBounds[ib + 5] < minZ) {
+                        continue;
+                    }
+                    if (!visitor.test(items[i])) {
+                        return;
+                    }
+                }
+            } else {
+                stack = push(stack, top++, nodeRight[node]);
+                stack = push(stack, top++, node + 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the item closest to the point according to the distance
+     * function, or -1 if the hierarchy is empty or no item is closer than
+     * {@code maxDistance}.
+     */
+    public int nearest(double x, double y, double z, double maxDistance, DistanceFunction distance) {
+        if (nodeTotal == 0) {
+            return -1;
+        }
+        double best = maxDistance * maxDistance;
+        int bestItem = -1;
+        int[] stack = new int[STACK_SIZE];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (boxDistanceSquared(node, x, y, z) >= best) {
+                continue;
+            }
+            if (nodeRight[node] < 0) {
+                for (int i = nodeStart[node], end = i + leafSize[node]; i < end; i++) {
+                    double d = distance.distanceSquared(items[i], x, y, z);
+                    if (d < best) {
+                        best = d;
+                        bestItem = items[i];
+                    }
+                }
+            } else {
+                // visit the closer child first
+                int left = node + 1;
+                int right = nodeRight[node];
+                if (boxDistanceSquared(left, x, y, z) <= boxDistanceSquared(right, x, y, z)) {
+                    stack = push(stack, top++, right);
+                    stack = push(stack, top++, left);
+                } else {
+                    stack = push(stack, top++, left);
+                    stack = push(stack, top++, right);
+                }
+            }
+        }
+        return bestItem;
+    }
+
+    /**
+     * Visits the items whose boxes are hit by the ray {@code origin + t * dir}
+     * for {@code 0 <= t <= maxT}, nearer boxes first. Boxes beyond the closest
+     * hit reported by the visitor are skipped.
+     *
+     * @return the closest hit reported by the visitor, or {@code maxT}
+     */
+    public double raycast(double ox, double oy, double oz, double dx, double dy, double dz, double maxT,
+                          RayVisitor visitor) {
+        if (nodeTotal == 0) {
+            return maxT;
+        }
+        double ix = 1.0 / dx;
+        double iy = 1.0 / dy;
+        double iz = 1.0 / dz;
+        int[] stack = new int[STACK_SIZE];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            double entry = slab(node, ox, oy, oz, ix, iy, iz, maxT);
+            if (entry == Double.POSITIVE_INFINITY || entry > maxT) {
+                continue;
+            }
+            if (nodeRight[node] < 0) {
+                for (int i = nodeStart[node], end = i + leafSize[node]; i < end; i++) {
+                    maxT = visitor.intersect(items[i], maxT);
+                }
+            } else {
+                int left = node + 1;
+                int right = nodeRight[node];
+                double tl = slab(left, ox, oy, oz, ix, iy, iz, maxT);
+                double tr = slab(right, ox, oy, oz, ix, iy, iz, maxT);
+                if (tl <= tr) {
+                    stack = push(stack, top++, right);
+                    stack = push(stack, top++, left);
+                } else {
+                    stack = push(stack, top++, left);
+                    stack = push(stack, top++, right);
+                }
+            }
+        }
+        return maxT;
+    }
+
+    /**
+     * Returns the entry parameter of the ray into the node box, or infinity if
+     * the box is missed.
+     */
+    private double slab(int node, double ox, double oy, double oz, double ix, double iy, double iz,
+                        double maxT) {
+        int b = node * 6;
+        double t1 = (nodeBounds[b] - ox) * ix;
+        double t2 = (nodeBounds[b + 3] - ox) * ix;
+        double tmin = Math.min(t1, t2);
+        double tmax = Math.max(t1, t2);
+        t1 = (nodeBounds[b + 1] - oy) * iy;
+        t2 = (nodeBounds[b + 4] - oy) * iy;
+        tmin = Math.max(tmin, Math.min(t1, t2));
+        tmax = Math.min(tmax, Math.max(t1, t2));
+        t1 = (nodeBounds[b + 2] - oz) * iz;
+        t2 = (nodeBounds[b + 5] - oz) * iz;
+        tmin = Math.max(tmin, Math.min(t1, t2));
+        tmax = Math.min(tmax, Math.max(t1, t2));
+        tmin = Math.max(tmin, 0);
+        return tmin <= tmax && tmin <= maxT ? tmin : Double.POSITIVE_INFINITY;
+    }
+
+    private double boxDistanceSquared(int node, double x, double y, double z) {
+        int b = node * 6;
+        double dx = Math.max(0, Math.max(nodeBounds[b] - x, x - nodeBounds[b + 3]));
+        double dy = Math.max(0, Math.max(nodeBounds[b + 1] - y, y - nodeBounds[b + 4]));
+        double dz = Math.max(0, Math.max(nodeBounds[b + 2] - z, z - nodeBounds[b + 5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static int[] push(int[] stack, int top, int node) {
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[top] = node;
+        return stack;
+    }
+}
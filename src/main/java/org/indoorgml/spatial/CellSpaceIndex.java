@@ -0,0 +1,248 @@
+package org.indoorgml.spatial;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.Vector3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Spatial index over the CellSpaces of a model for point location.
+ * <p>
+ * The triangles of all polygons are copied into one packed array grouped by
+ * CellSpace, and a {@link BoundingVolumeHierarchy} is built over the bounding
+ * boxes of the CellSpaces. Containment tests count the crossings of a ray with
+ * the triangles of each candidate cell, so they assume closed cell
+ * boundaries; cells made of a single floor polygon never contain a point but
+ * are still found by box and nearest queries.
+ * <p>
+ * The index does not follow later changes of the model; build a new one after
+ * editing. It is immutable and can be queried from several threads.
+ */
+public final class CellSpaceIndex {
+
+    /**
+     * Ray direction of the containment test, chosen off the axes so that it
+     * rarely runs through edges of axis aligned geometry.
+     */
+    private static final double RAY_X = 0.5773502691896258;
+    private static final double RAY_Y = 0.5924696837498491;
+    private static final double RAY_Z = 0.5618011431406431;
+    /** Queries per task of the batch methods. */
+    private static final int BATCH_GRAIN = 1024;
+
+    private final CellSpace[] cells;
+    private final double[] bounds;
+    /** Triangle corners as nine coordinates per triangle. */
+    private final double[] triangles;
+    private final int[] firstTriangle;
+    private final BoundingVolumeHierarchy hierarchy;
+
+    private CellSpaceIndex(CellSpace[] cells, double[] bounds, double[] triangles, int[] firstTriangle) {
+        this.cells = cells;
+        this.bounds = bounds;
+        this.triangles = triangles;
+        this.firstTriangle = firstTriangle;
+        this.hierarchy = BoundingVolumeHierarchy.build(bounds);
+    }
+
+    /**
+     * Builds an index over all CellSpaces of the model.
+     */
+    public static CellSpaceIndex build(IndoorGMLModel model) {
+        return build(model.getCellSpaces());
+    }
+
+    /**
+     * Builds an index over the given CellSpaces. CellSpaces without triangles
+     * are skipped.
+     */
+    public static CellSpaceIndex build(Collection<CellSpace> cellSpaces) {
+        List<CellSpace> cells = new ArrayList<>(cellSpaces.size());
+        double[] bounds = new double[cellSpaces.size() * 6];
+        int[] firstTriangle = new int[cellSpaces.size() + 1];
+        double[] triangles = new double[1024];
+        int count = 0;
+        for (CellSpace cs : cellSpaces) {
+            int b = cells.size() * 6;
+            bounds[b] = bounds[b + 1] = bounds[b + 2] = Double.POSITIVE_INFINITY;
+            bounds[b + 3] = bounds[b + 4] = bounds[b + 5] = Double.NEGATIVE_INFINITY;
+            int start = count;
+            if (cs.getPolygons() != null) {
+                for (Polygon poly : cs.getPolygons()) {
+                    double[] coords = poly.getCoordinates();
+                    int[] indices = poly.getIndexArray();
+                    if (count + indices.length * 3 > triangles.length) {
+                        triangles = Arrays.copyOf(triangles, Math.max(triangles.length * 2,
+                                count + indices.length * 3));
+                    }
+                    for (int i = 0; i + 2 < indices.length; i += 3) {
+                        for (int k = 0; k < 3; k++) {
+                            int v = indices[i + k] * 3;
+                            for (int a = 0; a < 3; a++) {
+                                double c = coords[v + a];
+                                triangles[count++] = c;
+                                bounds[b + a] = Math.min(bounds[b + a], c);
+                                bounds[b + 3 + a] = Math.max(bounds[b + 3 + a], c);
+                            }
+                        }
+                    }
+                }
+            }
+            if (count == start) {
+                continue;
+            }
+            firstTriangle[cells.size()] = start / 9;
+            cells.add(cs);
+        }
+        firstTriangle[cells.size()] = count / 9;
+        int n = cells.size();
+        return new CellSpaceIndex(cells.toArray(new CellSpace[0]), Arrays.copyOf(bounds, n * 6),
+                Arrays.copyOf(triangles, count), Arrays.copyOf(firstTriangle, n + 1));
+    }
+
+    public int size() {
+        return cells.length;
+    }
+
+    public int getTriangleCount() {
+        return triangles.length / 9;
+    }
+
+    /**
+     * Returns a CellSpace containing the point, or null. If cells overlap, the
+     * one with the smallest bounding box is returned.
+     */
+    public CellSpace findContaining(double x, double y, double z) {
+        int[] best = {-1};
+        double[] bestVolume = {Double.POSITIVE_INFINITY};
+        hierarchy.query(x, y, z, cell -> {
+            double volume = volume(cell);
+            if (volume < bestVolume[0] && contains(cell, x, y, z)) {
+                best[0] = cell;
+                bestVolume[0] = volume;
+            }
+            return true;
+        });
+        return best[0] >= 0 ? cells[best[0]] : null;
+    }
+
+    public CellSpace findContaining(Vector3d p) {
+        return findContaining(p.getX(), p.getY(), p.getZ());
+    }
+
+    /**
+     * Returns all CellSpaces whose bounding box intersects the given box.
+     */
+    public List<CellSpace> findIntersecting(double minX, double minY, double minZ,
+                                            double maxX, double maxY, double maxZ) {
+        List<CellSpace> result = new ArrayList<>();
+        hierarchy.query(minX, minY, minZ, maxX, maxY, maxZ, cell -> result.add(cells[cell]));
+        return result;
+    }
+
+    /**
+     * Returns the CellSpace containing the point or, if there is none, the one
+     * whose boundary is closest to it. Returns null only for an empty index.
+     */
+    public CellSpace findNearest(double x, double y, double z) {
+        CellSpace containing = findContaining(x, y, z);
+        if (containing != null) {
+            return containing;
+        }
+        int cell = hierarchy.nearest(x, y, z, Double.POSITIVE_INFINITY, this::distanceSquared);
+        return cell >= 0 ? cells[cell] : null;
+    }
+
+    public CellSpace findNearest(Vector3d p) {
+        return findNearest(p.getX(), p.getY(), p.getZ());
+    }
+
+    /**
+     * Locates many points at once. {@code points} holds {@code x, y, z}
+     * triples; the result holds the containing CellSpace of every point, or
+     * null. The queries are split into tasks on the given pool.
+     */
+    public CellSpace[] findContaining(double[] points, ForkJoinPool pool) {
+        CellSpace[] result = new CellSpace[points.length / 3];
+        pool.invoke(new BatchTask(points, result, 0, result.length, false));
+        return result;
+    }
+
+    /**
+     * Like {@link #findContaining(double[], ForkJoinPool)} but falls back to
+     * the nearest CellSpace for points outside all cells.
+     */
+    public CellSpace[] findNearest(double[] points, ForkJoinPool pool) {
+        CellSpace[] result = new CellSpace[points.length / 3];
+        pool.invoke(new BatchTask(points, result, 0, result.length, true));
+        return result;
+    }
+
+    @SuppressWarnings("serial")
+    private final class BatchTask extends RecursiveAction {
+        private final double[] points;
+        private final CellSpace[] result;
+        private final int from;
+        private final int to;
+        private final boolean nearest;
+
+        BatchTask(double[] points, CellSpace[] result, int from, int to, boolean nearest) {
+            this.points = points;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+            this.nearest = nearest;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH_GRAIN) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BatchTask(points, result, from, mid, nearest),
+                        new BatchTask(points, result, mid, to, nearest));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                double x = points[i * 3];
+                double y = points[i * 3 + 1];
+                double z = points[i * 3 + 2];
+                result[i] = nearest ? findNearest(x, y, z) : findContaining(x, y, z);
+            }
+        }
+    }
+
+    private double volume(int cell) {
+        int b = cell * 6;
+        return (bounds[b + 3] - bounds[b]) * (bounds[b + 4] - bounds[b + 1]) * (bounds[b + 5] - bounds[b + 2]);
+    }
+
+    /**
+     * Point in polyhedron test: the point is inside if a ray from it crosses
+     * the boundary of the cell an odd number of times.
+     */
+    private boolean contains(int cell, double x, double y, double z) {
+        boolean inside = false;
+        for (int t = firstTriangle[cell], end = firstTriangle[cell + 1]; t < end; t++) {
+            if (Intersections.rayTriangle(triangles, t * 9, x, y, z, RAY_X, RAY_Y, RAY_Z)
+                    < Double.POSITIVE_INFINITY) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private double distanceSquared(int cell, double x, double y, double z) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int t = firstTriangle[cell], end = firstTriangle[cell + 1]; t < end; t++) {
+            best = Math.min(best, TriangleDistance.distanceSquared(triangles, t * 9, x, y, z));
+        }
+        return best;
+    }
+}
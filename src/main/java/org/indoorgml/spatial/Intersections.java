@@ -0,0 +1,119 @@
+package org.indoorgml.spatial;
+
+/**
+ * Ray intersection tests on packed coordinates. All methods return the ray
+ * parameter {@code t >= 0} of the hit, or positive infinity on a miss. The
+ * ray direction does not have to be normalized; {@code t} is measured in
+ * multiples of it.
+ */
+public final class Intersections {
+
+    private static final double EPSILON = 1e-12;
+
+    private Intersections() {
+    }
+
+    /**
+     * Moeller-Trumbore intersection with the triangle whose nine coordinates
+     * start at {@code i}. Both sides of the triangle are hit.
+     */
+    public static double rayTriangle(double[] t, int i, double ox, double oy, double oz,
+                                     double dx, double dy, double dz) {
+        double ax = t[i];
+        double ay = t[i + 1];
+        double az = t[i + 2];
+        double e1x = t[i + 3] - ax;
+        double e1y = t[i + 4] - ay;
+        double e1z = t[i + 5] - az;
+        double e2x = t[i + 6] - ax;
+        double e2y = t[i + 7] - ay;
+        double e2z = t[i + 8] - az;
+        double px = dy * e2z - dz * e2y;
+        double py = dz * e2x - dx * e2z;
+        double pz = dx * e2y - dy * e2x;
+        double det = e1x * px + e1y * py + e1z * pz;
+        if (Math.abs(det) < EPSILON) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double inv = 1.0 / det;
+        double sx = ox - ax;
+        double sy = oy - ay;
+        double sz = oz - az;
+        double u = (sx * px + sy * py + sz * pz) * inv;
+        if (u < 0 || u > 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double v = (dx * qx + dy * qy + dz * qz) * inv;
+        if (v < 0 || u + v > 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double hit = (e2x * qx + e2y * qy + e2z * qz) * inv;
+        return hit > 0 ? hit : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Intersection with a sphere. A ray starting inside the sphere hits it at
+     * {@code t = 0}.
+     */
+    public static double raySphere(double cx, double cy, double cz, double radius, double ox, double oy,
+                                   double oz, double dx, double dy, double dz) {
+        double mx = ox - cx;
+        double my = oy - cy;
+        double mz = oz - cz;
+        double a = dx * dx + dy * dy + dz * dz;
+        double b = mx * dx + my * dy + mz * dz;
+        double c = mx * mx + my * my + mz * mz - radius * radius;
+        if (c <= 0) {
+            return 0;
+        }
+        if (b > 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double disc = b * b - a * c;
+        if (disc < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (-b - Math.sqrt(disc)) / a;
+    }
+
+    /**
+     * Treats the segment between the points at {@code p} and {@code q} as a
+     * capsule of the given radius and returns the ray parameter of the point
+     * of the ray closest to the segment if it lies within the radius.
+     */
+    public static double raySegment(double[] c, int p, int q, double radius, double ox, double oy,
+                                    double oz, double dx, double dy, double dz) {
+        double sx = c[q] - c[p];
+        double sy = c[q + 1] - c[p + 1];
+        double sz = c[q + 2] - c[p + 2];
+        double rx = ox - c[p];
+        double ry = oy - c[p + 1];
+        double rz = oz - c[p + 2];
+        double a = dx * dx + dy * dy + dz * dz;
+        double b = dx * sx + dy * sy + dz * sz;
+        double e = sx * sx + sy * sy + sz * sz;
+        double f = sx * rx + sy * ry + sz * rz;
+        double g = dx * rx + dy * ry + dz * rz;
+        double t;
+        double s;
+        if (e < EPSILON) {
+            s = 0;
+            t = Math.max(0, -g / a);
+        } else {
+            double denom = a * e - b * b;
+            t = denom > EPSILON ? Math.max(0, (b * f - g * e) / denom) : 0;
+            s = (b * t + f) / e;
+            if (s < 0 || s > 1) {
+                s = Math.min(1, Math.max(0, s));
+                t = Math.max(0, (b * s - g) / a);
+            }
+        }
+        double ex = rx + t * dx - s * sx;
+        double ey = ry + t * dy - s * sy;
+        double ez = rz + t * dz - s * sz;
+        return ex * ex + ey * ey + ez * ez <= radius * radius ? t : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,165 @@
+package org.indoorgml.spatial;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups CellSpaces into storeys by the Z range of their polygons.
+ * <p>
+ * Every cell is assigned to a storey by the lowest Z coordinate of its
+ * polygons, its floor elevation. Sorted floor elevations that are closer
+ * than a tolerance to the first elevation of the current storey belong to the
+ * same storey; a larger step starts the next one. Storeys are numbered from
+ * the bottom, starting at 0.
+ */
+public final class StoreyPartition {
+
+    /**
+     * Default tolerance in model units between floor elevations of one storey.
+     */
+    public static final double DEFAULT_TOLERANCE = 1.0;
+
+    /**
+     * One storey of the partition.
+     */
+    public static final class Storey {
+        private final int index;
+        private final double elevation;
+        private double minZ = Double.POSITIVE_INFINITY;
+        private double maxZ = Double.NEGATIVE_INFINITY;
+        private final List<CellSpace> cells = new ArrayList<>();
+
+        Storey(int index, double elevation) {
+            this.index = index;
+            this.elevation = elevation;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the lowest floor elevation of the storey's cells.
+         */
+        public double getElevation() {
+            return elevation;
+        }
+
+        public double getMinZ() {
+            return minZ;
+        }
+
+        public double getMaxZ() {
+            return maxZ;
+        }
+
+        public List<CellSpace> getCellSpaces() {
+            return Collections.unmodifiableList(cells);
+        }
+    }
+
+    private final List<Storey> storeys;
+    private final Map<String, Storey> storeyByCell;
+    private final double[] elevations;
+
+    private StoreyPartition(List<Storey> storeys, Map<String, Storey> storeyByCell) {
+        this.storeys = storeys;
+        this.storeyByCell = storeyByCell;
+        this.elevations = new double[storeys.size()];
+        for (int i = 0; i < elevations.length; i++) {
+            elevations[i] = storeys.get(i).elevation;
+        }
+    }
+
+    public static StoreyPartition compute(Collection<CellSpace> cells) {
+        return compute(cells, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Partitions the cells. Cells without polygons are left out.
+     */
+    public static StoreyPartition compute(Collection<CellSpace> cells, double tolerance) {
+        CellSpace[] order = new CellSpace[cells.size()];
+        double[] minZ = new double[cells.size()];
+        double[] maxZ = new double[cells.size()];
+        int n = 0;
+        for (CellSpace cs : cells) {
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            for (Polygon poly : cs.getPolygons()) {
+                double[] c = poly.getCoordinates();
+                for (int i = 2; i < c.length; i += 3) {
+                    lo = Math.min(lo, c[i]);
+                    hi = Math.max(hi, c[i]);
+                }
+            }
+            if (lo <= hi) {
+                order[n] = cs;
+                minZ[n] = lo;
+                maxZ[n] = hi;
+                n++;
+            }
+        }
+        Integer[] sorted = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, (a, b) -> Double.compare(minZ[a], minZ[b]));
+
+        List<Storey> storeys = new ArrayList<>();
+        Map<String, Storey> storeyByCell = new HashMap<>(n * 2);
+        Storey current = null;
+        for (int k = 0; k < n; k++) {
+            int i = sorted[k];
+            if (current == null || minZ[i] - current.elevation > tolerance) {
+                current = new Storey(storeys.size(), minZ[i]);
+                storeys.add(current);
+            }
+            current.cells.add(order[i]);
+            current.minZ = Math.min(current.minZ, minZ[i]);
+            current.maxZ = Math.max(current.maxZ, maxZ[i]);
+            storeyByCell.put(order[i].getId(), current);
+        }
+        return new StoreyPartition(storeys, storeyByCell);
+    }
+
+    public int getStoreyCount() {
+        return storeys.size();
+    }
+
+    public Storey getStorey(int index) {
+        return storeys.get(index);
+    }
+
+    public List<Storey> getStoreys() {
+        return Collections.unmodifiableList(storeys);
+    }
+
+    /**
+     * Returns the storey a cell was assigned to, or null.
+     */
+    public Storey getStoreyOf(String cellId) {
+        return storeyByCell.get(cellId);
+    }
+
+    /**
+     * Returns the index of the highest storey whose elevation is not above
+     * {@code z}, or 0 below the lowest storey. Returns -1 for an empty
+     * partition.
+     */
+    public int indexAt(double z) {
+        int i = Arrays.binarySearch(elevations, z);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return elevations.length == 0 ? -1 : Math.max(0, i);
+    }
+}
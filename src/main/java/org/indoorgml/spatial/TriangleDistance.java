@@ -0,0 +1,67 @@
+package org.indoorgml.spatial;
+
+/**
+ * Point to triangle distance on packed triangle arrays.
+ */
+final class TriangleDistance {
+
+    private TriangleDistance() {
+    }
+
+    /**
+     * Returns the squared distance between a point and the triangle whose
+     * nine coordinates start at {@code i}. Follows the region classification
+     * of Ericson, Real-Time Collision Detection, 5.1.5.
+     */
+    static double distanceSquared(double[] t, int i, double px, double py, double pz) {
+        double ax = t[i], ay = t[i + 1], az = t[i + 2];
+        double abx = t[i + 3] - ax, aby = t[i + 4] - ay, abz = t[i + 5] - az;
+        double acx = t[i + 6] - ax, acy = t[i + 7] - ay, acz = t[i + 8] - az;
+        double apx = px - ax, apy = py - ay, apz = pz - az;
+        double d1 = abx * apx + aby * apy + abz * apz;
+        double d2 = acx * apx + acy * apy + acz * apz;
+        if (d1 <= 0 && d2 <= 0) {
+            return squared(apx, apy, apz);
+        }
+        double bpx = px - t[i + 3], bpy = py - t[i + 4], bpz = pz - t[i + 5];
+        double d3 = abx * bpx + aby * bpy + abz * bpz;
+        double d4 = acx * bpx + acy * bpy + acz * bpz;
+        if (d3 >= 0 && d4 <= d3) {
+            return squared(bpx, bpy, bpz);
+        }
+        double vc = d1 * d4 - d3 * d2;
+        if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            double v = d1 / (d1 - d3);
+            return squared(apx - v * abx, apy - v * aby, apz - v * abz);
+        }
+        double cpx = px - t[i + 6], cpy = py - t[i + 7], cpz = pz - t[i + 8];
+        double d5 = abx * cpx + aby * cpy + abz * cpz;
+        double d6 = acx * cpx + acy * cpy + acz * cpz;
+        if (d6 >= 0 && d5 <= d6) {
+            return squared(cpx, cpy, cpz);
+        }
+        double vb = d5 * d2 - d1 * d6;
+        if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+            double w = d2 / (d2 - d6);
+            return squared(apx - w * acx, apy - w * acy, apz - w * acz);
+        }
+        double va = d3 * d6 - d5 * d4;
+        if (va <= 0 && d4 - d3 >= 0 && d5 - d6 >= 0) {
+            double w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+            double bcx = t[i + 6] - t[i + 3], bcy = t[i + 7] - t[i + 4], bcz = t[i + 8] - t[i + 5];
+            return squared(bpx - w * bcx, bpy - w * bcy, bpz - w * bcz);
+        }
+        double denom = va + vb + vc;
+        if (denom == 0) {
+            // degenerate triangle, fall back to the closest corner
+            return Math.min(squared(apx, apy, apz), Math.min(squared(bpx, bpy, bpz), squared(cpx, cpy, cpz)));
+        }
+        double v = vb / denom;
+        double w = vc / denom;
+        return squared(apx - v * abx - w * acx, apy - v * aby - w * acy, apz - v * abz - w * acz);
+    }
+
+    private static double squared(double x, double y, double z) {
+        return x * x + y * y + z * z;
+    }
+}
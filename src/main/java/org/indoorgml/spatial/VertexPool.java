@@ -0,0 +1,132 @@
+package org.indoorgml.spatial;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.Polygon;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Welded, indexed vertex data of several CellSpaces.
+ * <p>
+ * All polygons share one pool of vertices; walls that neighboring cells have
+ * in common and corners repeated by the polygons of one cell are stored once.
+ * The triangles of every polygon stay a contiguous range of the index array,
+ * so triangles can still be mapped back to their cell and polygon. Build one
+ * pool per storey or per group of cells that is shown together.
+ */
+public final class VertexPool {
+
+    private final double[] coordinates;
+    private final int[] indices;
+    private final int[] firstIndex;
+    private final String[] cellIds;
+    private final String[] polygonIds;
+    private final WeldReport report;
+
+    private VertexPool(double[] coordinates, int[] indices, int[] firstIndex, String[] cellIds,
+                       String[] polygonIds, WeldReport report) {
+        this.coordinates = coordinates;
+        this.indices = indices;
+        this.firstIndex = firstIndex;
+        this.cellIds = cellIds;
+        this.polygonIds = polygonIds;
+        this.report = report;
+    }
+
+    /**
+     * Welds the polygons of the cells into one pool.
+     *
+     * @param tolerance largest distance of vertices that are merged
+     */
+    public static VertexPool weld(Collection<CellSpace> cells, double tolerance) {
+        int polygons = 0;
+        int vertices = 0;
+        int triangleIndices = 0;
+        for (CellSpace cs : cells) {
+            for (Polygon poly : cs.getPolygons()) {
+                polygons++;
+                vertices += poly.getVertexCount();
+                triangleIndices += poly.getIndexArray().length;
+            }
+        }
+        VertexWelder welder = new VertexWelder(tolerance, vertices / 2);
+        int[] indices = new int[triangleIndices];
+        int[] firstIndex = new int[polygons + 1];
+        String[] cellIds = new String[polygons];
+        String[] polygonIds = new String[polygons];
+        int p = 0;
+        int out = 0;
+        for (CellSpace cs : cells) {
+            for (Polygon poly : cs.getPolygons()) {
+                int[] remap = welder.addAll(poly.getCoordinates());
+                for (int index : poly.getIndexArray()) {
+                    indices[out++] = remap[index];
+                }
+                cellIds[p] = cs.getId();
+                polygonIds[p] = poly.getId();
+                firstIndex[++p] = out;
+            }
+        }
+        return new VertexPool(welder.getCoordinates(), indices, firstIndex, cellIds, polygonIds,
+                new WeldReport(welder.getInputCount(), welder.getVertexCount()));
+    }
+
+    public int getVertexCount() {
+        return coordinates.length / 3;
+    }
+
+    /**
+     * Returns the shared vertices as {@code x, y, z} triples.
+     */
+    public double[] getCoordinates() {
+        return coordinates;
+    }
+
+    /**
+     * Returns the triangle indices into the shared vertices.
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    public int getPolygonCount() {
+        return cellIds.length;
+    }
+
+    public String getCellId(int polygon) {
+        return cellIds[polygon];
+    }
+
+    public String getPolygonId(int polygon) {
+        return polygonIds[polygon];
+    }
+
+    public int getFirstTriangle(int polygon) {
+        return firstIndex[polygon] / 3;
+    }
+
+    public int getTriangleCount(int polygon) {
+        return (firstIndex[polygon + 1] - firstIndex[polygon]) / 3;
+    }
+
+    /**
+     * Returns the polygon a triangle belongs to, or -1.
+     */
+    public int getPolygonOfTriangle(int triangle) {
+        int p = Arrays.binarySearch(firstIndex, triangle * 3);
+        if (p < 0) {
+            p = -p - 2;
+        } else {
+            // skip polygons without triangles
+            while (p + 1 < firstIndex.length && firstIndex[p + 1] == firstIndex[p]) {
+                p++;
+            }
+        }
+        return p >= 0 && p < cellIds.length ? p : -1;
+    }
+
+    public WeldReport getReport() {
+        return report;
+    }
+}
@@ -0,0 +1,166 @@
+package org.indoorgml.spatial;
+
+import java.util.Arrays;
+
+/**
+ * Merges vertices that lie within a tolerance of each other into one shared
+ * vertex.
+ * <p>
+ * Vertices are hashed into a grid whose cells are as large as the tolerance,
+ * so a vertex only has to be compared with the vertices in the 27 grid cells
+ * around it. A vertex is merged into the first added vertex within the
+ * tolerance; the result therefore depends on the order of the vertices, and
+ * chains of vertices that are each within the tolerance of the next are not
+ * collapsed into one. A tolerance of 0 merges exactly equal coordinates only.
+ * <p>
+ * A welder can be {@link #clear() cleared} and reused for the next pool
+ * without allocating again. Not thread safe.
+ */
+public final class VertexWelder {
+
+    /** Grid cell size used for a tolerance of 0. */
+    private static final double MIN_CELL = 1e-9;
+
+    private final double tolerance;
+    private final double toleranceSquared;
+    private final double inverseCell;
+    private double[] coordinates;
+    private int[] next;
+    private int[] heads;
+    private int count;
+    private int added;
+
+    public VertexWelder(double tolerance) {
+        this(tolerance, 64);
+    }
+
+    /**
+     * @param expectedVertices number of distinct vertices to allocate room for
+     */
+    public VertexWelder(double tolerance, int expectedVertices) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+        }
+        this.tolerance = tolerance;
+        this.toleranceSquared = tolerance * tolerance;
+        this.inverseCell = 1.0 / Math.max(tolerance, MIN_CELL);
+        int capacity = Math.max(16, expectedVertices);
+        coordinates = new double[capacity * 3];
+        next = new int[capacity];
+        heads = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+        Arrays.fill(heads, -1);
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Returns the number of distinct vertices.
+     */
+    public int getVertexCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of vertices passed to the welder, including merged ones.
+     */
+    public int getInputCount() {
+        return added;
+    }
+
+    /**
+     * Returns the index of the vertex within the tolerance of the given point,
+     * adding the point as a new vertex if there is none.
+     */
+    public int add(double x, double y, double z) {
+        added++;
+        long cx = (long) Math.floor(x * inverseCell);
+        long cy = (long) Math.floor(y * inverseCell);
+        long cz = (long) Math.floor(z * inverseCell);
+        int mask = heads.length - 1;
+        for (long i = cx - 1; i <= cx + 1; i++) {
+            for (long j = cy - 1; j <= cy + 1; j++) {
+                for (long k = cz - 1; k <= cz + 1; k++) {
+                    for (int v = heads[hash(i, j, k) & mask]; v >= 0; v = next[v]) {
+                        double dx = coordinates[v * 3] - x;
+                        double dy = coordinates[v * 3 + 1] - y;
+                        double dz = coordinates[v * 3 + 2] - z;
+                        if (dx * dx + dy * dy + dz * dz <= toleranceSquared) {
+                            return v;
+                        }
+                    }
+                }
+            }
+        }
+        if (count == next.length) {
+            grow();
+            mask = heads.length - 1;
+        }
+        int v = count++;
+        coordinates[v * 3] = x;
+        coordinates[v * 3 + 1] = y;
+        coordinates[v * 3 + 2] = z;
+        int bucket = hash(cx, cy, cz) & mask;
+        next[v] = heads[bucket];
+        heads[bucket] = v;
+        return v;
+    }
+
+    /**
+     * Adds packed {@code x, y, z} coordinates and returns the index of the
+     * shared vertex for each of them.
+     */
+    public int[] addAll(double[] coords) {
+        int[] remap = new int[coords.length / 3];
+        for (int i = 0; i < remap.length; i++) {
+            remap[i] = add(coords[i * 3], coords[i * 3 + 1], coords[i * 3 + 2]);
+        }
+        return remap;
+    }
+
+    /**
+     * Returns a copy of the distinct vertices as {@code x, y, z} triples.
+     */
+    public double[] getCoordinates() {
+        return Arrays.copyOf(coordinates, count * 3);
+    }
+
+    /**
+     * Removes all vertices but keeps the allocated tables.
+     */
+    public void clear() {
+        // reset only the used buckets, a small pool should not pay for a large table
+        int mask = heads.length - 1;
+        for (int v = 0; v < count; v++) {
+            heads[bucket(v) & mask] = -1;
+        }
+        count = 0;
+        added = 0;
+    }
+
+    private void grow() {
+        int capacity = next.length * 2;
+        coordinates = Arrays.copyOf(coordinates, capacity * 3);
+        next = new int[capacity];
+        heads = new int[heads.length * 2];
+        Arrays.fill(heads, -1);
+        int mask = heads.length - 1;
+        for (int v = 0; v < count; v++) {
+            int bucket = bucket(v) & mask;
+            next[v] = heads[bucket];
+            heads[bucket] = v;
+        }
+    }
+
+    private int bucket(int v) {
+        return hash((long) Math.floor(coordinates[v * 3] * inverseCell),
+                (long) Math.floor(coordinates[v * 3 + 1] * inverseCell),
+                (long) Math.floor(coordinates[v * 3 + 2] * inverseCell));
+    }
+
+    private static int hash(long x, long y, long z) {
+        long h = x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL + z * 0x165667B19E3779F9L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,53 @@
+package org.indoorgml.spatial;
+
+import java.util.Locale;
+
+/**
+ * Vertex counts before and after welding.
+ */
+public final class WeldReport {
+
+    private final int inputVertices;
+    private final int outputVertices;
+
+    public WeldReport(int inputVertices, int outputVertices) {
+        this.inputVertices = inputVertices;
+        this.outputVertices = outputVertices;
+    }
+
+    public int getInputVertices() {
+        return inputVertices;
+    }
+
+    public int getOutputVertices() {
+        return outputVertices;
+    }
+
+    /**
+     * Returns the share of vertices removed by welding, from 0 to 1.
+     */
+    public double getReduction() {
+        return inputVertices == 0 ? 0 : 1.0 - (double) outputVertices / inputVertices;
+    }
+
+    /**
+     * Returns the bytes saved in vertex buffers with the given size per vertex,
+     * for example 12 for float positions or 28 for positions and colors.
+     */
+    public long getSavedBytes(int bytesPerVertex) {
+        return (long) (inputVertices - outputVertices) * bytesPerVertex;
+    }
+
+    /**
+     * Returns the sum of both reports.
+     */
+    public WeldReport plus(WeldReport other) {
+        return new WeldReport(inputVertices + other.inputVertices, outputVertices + other.outputVertices);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d -> %d vertices (%.1f%% less)", inputVertices, outputVertices,
+                getReduction() * 100);
+    }
+}
@@ -7,91 +7,234 @@ import java.util.List;
 
 /**
  * Static helper methods for simple geometry transformations.
+ * <p>
+ * Bounds are stored as {@code minX, minY, minZ, maxX, maxY, maxZ}. The
+ * kernels on packed coordinates compute the whole box, or apply a scale and
+ * a translation, in a single pass; they process two vertices per iteration
+ * with independent accumulators so the comparisons do not wait on each other.
+ * <p>
+ * If the JVM was started with {@code --add-modules jdk.incubator.vector}, long
+ * coordinate runs go through the SIMD kernels of {@link VectorKernels}
+ * instead. Both produce the same results.
  */
 public final class GeometryUtils {
 
+    /** True if the Vector API is available; checked before {@link VectorKernels} is loaded. */
+    static final boolean VECTOR = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    /** Shorter runs, like the vertices of a single polygon, are not worth the setup of the vector kernels. */
+    private static final int VECTOR_MIN_LENGTH = 3 * 64;
+
     private GeometryUtils() {
     }
 
     /**
-     * Computes the center of the bounding box of all polygons.
+     * Returns empty bounds that any point extends.
      */
-    public static Vector3d computeBoundingCenter(List<Polygon> polygons) {
-        double minX = Double.POSITIVE_INFINITY;
-        double minY = Double.POSITIVE_INFINITY;
-        double minZ = Double.POSITIVE_INFINITY;
-        double maxX = Double.NEGATIVE_INFINITY;
-        double maxY = Double.NEGATIVE_INFINITY;
-        double maxZ = Double.NEGATIVE_INFINITY;
-
-        for (Polygon poly : polygons) {
-            for (Vector3d v : poly.getVertices()) {
-                minX = Math.min(minX, v.getX());
-                minY = Math.min(minY, v.getY());
-                minZ = Math.min(minZ, v.getZ());
-                maxX = Math.max(maxX, v.getX());
-                maxY = Math.max(maxY, v.getY());
-                maxZ = Math.max(maxZ, v.getZ());
+    public static double[] emptyBounds() {
+        return new double[] {
+                Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    }
+
+    /**
+     * Returns true if no point was added to the bounds.
+     */
+    public static boolean isEmpty(double[] bounds) {
+        return bounds[0] > bounds[3];
+    }
+
+    /**
+     * Computes the bounding box of all polygons in one pass over their vertices.
+     */
+    public static double[] computeBounds(List<Polygon> polygons) {
+        double[] bounds = emptyBounds();
+        for (int p = 0; p < polygons.size(); p++) {
+            Polygon poly = polygons.get(p);
+            if (poly.isPacked()) {
+                double[] coords = poly.getCoordinates();
+                extendBounds(coords, 0, coords.length, bounds);
+            } else {
+                // list based polygons would copy their coordinates
+                for (Vector3d v : poly.getVertices()) {
+                    extendBounds(v.getX(), v.getY(), v.getZ(), bounds);
+                }
             }
         }
+        return bounds;
+    }
+
+    /**
+     * Extends the bounds by {@code length / 3} vertices stored as {@code x, y, z}
+     * triples starting at {@code from}.
+     */
+    public static void extendBounds(double[] coords, int from, int length, double[] bounds) {
+        if (VECTOR && length >= VECTOR_MIN_LENGTH) {
+            VectorKernels.extendBounds(coords, from, length, bounds);
+        } else {
+            extendBoundsScalar(coords, from, length, bounds);
+        }
+    }
+
+    static void extendBoundsScalar(double[] coords, int from, int length, double[] bounds) {
+        double minX0 = bounds[0];
+        double minY0 = bounds[1];
+        double minZ0 = bounds[2];
+        double maxX0 = bounds[3];
+        double maxY0 = bounds[4];
+        double maxZ0 = bounds[5];
+        double minX1 = minX0;
+        double minY1 = minY0;
+        double minZ1 = minZ0;
+        double maxX1 = maxX0;
+        double maxY1 = maxY0;
+        double maxZ1 = maxZ0;
+        int end = from + length;
+        int i = from;
+        for (int pairEnd = end - 5; i < pairEnd; i += 6) {
+            double x0 = coords[i];
+            double y0 = coords[i + 1];
+            double z0 = coords[i + 2];
+            double x1 = coords[i + 3];
+            double y1 = coords[i + 4];
+            double z1 = coords[i + 5];
+            minX0 = x0 < minX0 ? x0 : minX0;
+            maxX0 = x0 > maxX0 ? x0 : maxX0;
+            minY0 = y0 < minY0 ? y0 : minY0;
+            maxY0 = y0 > maxY0 ? y0 : maxY0;
+            minZ0 = z0 < minZ0 ? z0 : minZ0;
+            maxZ0 = z0 > maxZ0 ? z0 : maxZ0;
+            minX1 = x1 < minX1 ? x1 : minX1;
+            maxX1 = x1 > maxX1 ? x1 : maxX1;
+            minY1 = y1 < minY1 ? y1 : minY1;
+            maxY1 = y1 > maxY1 ? y1 : maxY1;
+            minZ1 = z1 < minZ1 ? z1 : minZ1;
+            maxZ1 = z1 > maxZ1 ? z1 : maxZ1;
+        }
+        if (i + 2 < end) {
+            double x = coords[i];
+            double y = coords[i + 1];
+            double z = coords[i + 2];
+            minX0 = x < minX0 ? x : minX0;
+            maxX0 = x > maxX0 ? x : maxX0;
+            minY0 = y < minY0 ? y : minY0;
+            maxY0 = y > maxY0 ? y : maxY0;
+            minZ0 = z < minZ0 ? z : minZ0;
+            maxZ0 = z > maxZ0 ? z : maxZ0;
+        }
+        bounds[0] = Math.min(minX0, minX1);
+        bounds[1] = Math.min(minY0, minY1);
+        bounds[2] = Math.min(minZ0, minZ1);
+        bounds[3] = Math.max(maxX0, maxX1);
+        bounds[4] = Math.max(maxY0, maxY1);
+        bounds[5] = Math.max(maxZ0, maxZ1);
+    }
 
+    /**
+     * Extends the bounds by a single point.
+     */
+    public static void extendBounds(double x, double y, double z, double[] bounds) {
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.min(bounds[2], z);
+        bounds[3] = Math.max(bounds[3], x);
+        bounds[4] = Math.max(bounds[4], y);
+        bounds[5] = Math.max(bounds[5], z);
+    }
+
+    /**
+     * Returns the center of the bounds.
+     */
+    public static Vector3d center(double[] bounds) {
         return new Vector3d(
-                (minX + maxX) / 2.0,
-                (minY + maxY) / 2.0,
-                (minZ + maxZ) / 2.0);
+                (bounds[0] + bounds[3]) / 2.0,
+                (bounds[1] + bounds[4]) / 2.0,
+                (bounds[2] + bounds[5]) / 2.0);
+    }
+
+    /**
+     * Returns the largest extent of the bounds.
+     */
+    public static double maxDimension(double[] bounds) {
+        return Math.max(bounds[3] - bounds[0], Math.max(bounds[4] - bounds[1], bounds[5] - bounds[2]));
+    }
+
+    /**
+     * Computes the center of the bounding box of all polygons.
+     */
+    public static Vector3d computeBoundingCenter(List<Polygon> polygons) {
+        return center(computeBounds(polygons));
     }
 
     /**
      * Returns the largest dimension of the bounding box covering all polygons.
      */
     public static double computeMaxDimension(List<Polygon> polygons) {
-        double minX = Double.POSITIVE_INFINITY;
-        double minY = Double.POSITIVE_INFINITY;
-        double minZ = Double.POSITIVE_INFINITY;
-        double maxX = Double.NEGATIVE_INFINITY;
-        double maxY = Double.NEGATIVE_INFINITY;
-        double maxZ = Double.NEGATIVE_INFINITY;
-
-        for (Polygon poly : polygons) {
-            for (Vector3d v : poly.getVertices()) {
-                minX = Math.min(minX, v.getX());
-                minY = Math.min(minY, v.getY());
-                minZ = Math.min(minZ, v.getZ());
-                maxX = Math.max(maxX, v.getX());
-                maxY = Math.max(maxY, v.getY());
-                maxZ = Math.max(maxZ, v.getZ());
-            }
-        }
-
-        double dx = maxX - minX;
-        double dy = maxY - minY;
-        double dz = maxZ - minZ;
-        return Math.max(dx, Math.max(dy, dz));
+        return maxDimension(computeBounds(polygons));
     }
 
     /**
      * Scales all polygon vertices by the given factor.
      */
     public static void applyScale(List<Polygon> polygons, double s) {
-        for (Polygon poly : polygons) {
-            for (Vector3d v : poly.getVertices()) {
-                v.setX(v.getX() * s);
-                v.setY(v.getY() * s);
-                v.setZ(v.getZ() * s);
-            }
-        }
+        applyTransform(polygons, s, 0, 0, 0);
     }
 
     /**
      * Translates all polygon vertices by the given offset vector.
      */
     public static void applyTranslation(List<Polygon> polygons, Vector3d offset) {
-        for (Polygon poly : polygons) {
-            for (Vector3d v : poly.getVertices()) {
-                v.setX(v.getX() + offset.getX());
-                v.setY(v.getY() + offset.getY());
-                v.setZ(v.getZ() + offset.getZ());
+        applyTransform(polygons, 1, offset.getX(), offset.getY(), offset.getZ());
+    }
+
+    /**
+     * Scales all polygon vertices and then translates them, in one pass:
+     * {@code v' = v * s + (tx, ty, tz)}. Packed polygons are rewritten in
+     * their backing arrays.
+     */
+    public static void applyTransform(List<Polygon> polygons, double s, double tx, double ty, double tz) {
+        for (int p = 0; p < polygons.size(); p++) {
+            Polygon poly = polygons.get(p);
+            if (poly.isPacked()) {
+                double[] coords = poly.getCoordinates();
+                transform(coords, 0, coords.length, s, tx, ty, tz);
+            } else {
+                for (Vector3d v : poly.getVertices()) {
+                    v.setX(v.getX() * s + tx);
+                    v.setY(v.getY() * s + ty);
+                    v.setZ(v.getZ() * s + tz);
+                }
             }
         }
     }
+
+    /**
+     * Scales and translates {@code length / 3} vertices stored as
+     * {@code x, y, z} triples starting at {@code from} in place.
+     */
+    public static void transform(double[] coords, int from, int length, double s,
+                                 double tx, double ty, double tz) {
+        if (VECTOR && length >= VECTOR_MIN_LENGTH) {
+            VectorKernels.transform(coords, from, length, s, tx, ty, tz);
+        } else {
+            transformScalar(coords, from, length, s, tx, ty, tz);
+        }
+    }
+
+    static void transformScalar(double[] coords, int from, int length, double s, double tx, double ty, double tz) {
+        int end = from + length;
+        int i = from;
+        for (int pairEnd = end - 5; i < pairEnd; i += 6) {
+            coords[i] = coords[i] * s + tx;
+            coords[i + 1] = coords[i + 1] * s + ty;
+            coords[i + 2] = coords[i + 2] * s + tz;
+            coords[i + 3] = coords[i + 3] * s + tx;
+            coords[i + 4] = coords[i + 4] * s + ty;
+            coords[i + 5] = coords[i + 5] * s + tz;
+        }
+        if (i + 2 < end) {
+            coords[i] = coords[i] * s + tx;
+            coords[i + 1] = coords[i + 1] * s + ty;
+            coords[i + 2] = coords[i + 2] * s + tz;
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package org.indoorgml.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the packed coordinate kernels of {@link GeometryUtils}.
+ * <p>
+ * A block of three vectors holds {@code L} whole vertices, where {@code L} is
+ * the vector length, so lane {@code j} of the {@code k}-th vector always
+ * holds coordinate {@code (k * L + j) % 3}. The bounds are kept per lane and
+ * only sorted into x, y and z after the loop, and the translation is applied
+ * with three vectors that repeat {@code tx, ty, tz} in the same pattern. The
+ * vertices after the last whole block go through the scalar kernels.
+ * <p>
+ * This class must only be loaded if the {@code jdk.incubator.vector} module is
+ * present, see {@link GeometryUtils}.
+ */
+final class VectorKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final int L = SPECIES.length();
+
+    private VectorKernels() {
+    }
+
+    static void extendBounds(double[] coords, int from, int length, double[] bounds) {
+        DoubleVector min0 = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        DoubleVector min1 = min0;
+        DoubleVector min2 = min0;
+        DoubleVector max0 = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        DoubleVector max1 = max0;
+        DoubleVector max2 = max0;
+        int end = from + length;
+        int i = from;
+        for (int blockEnd = end - 3 * L; i <= blockEnd; i += 3 * L) {
+            DoubleVector v0 = DoubleVector.fromArray(SPECIES, coords, i);
+            DoubleVector v1 = DoubleVector.fromArray(SPECIES, coords, i + L);
+            DoubleVector v2 = DoubleVector.fromArray(SPECIES, coords, i + 2 * L);
+            // compare and blend like the scalar kernel, so NaN is skipped the same way
+            min0 = min0.blend(v0, v0.compare(VectorOperators.LT, min0));
+            max0 = max0.blend(v0, v0.compare(VectorOperators.GT, max0));
+            min1 = min1.blend(v1, v1.compare(VectorOperators.LT, min1));
+            max1 = max1.blend(v1, v1.compare(VectorOperators.GT, max1));
+            min2 = min2.blend(v2, v2.compare(VectorOperators.LT, min2));
+            max2 = max2.blend(v2, v2.compare(VectorOperators.GT, max2));
+        }
+        if (i > from) {
+            double[] lanes = new double[6 * L];
+            min0.intoArray(lanes, 0);
+            min1.intoArray(lanes, L);
+            min2.intoArray(lanes, 2 * L);
+            max0.intoArray(lanes, 3 * L);
+            max1.intoArray(lanes, 4 * L);
+            max2.intoArray(lanes, 5 * L);
+            for (int j = 0; j < 3 * L; j++) {
+                int c = j % 3;
+                double min = lanes[j];
+                double max = lanes[3 * L + j];
+                bounds[c] = min < bounds[c] ? min : bounds[c];
+                bounds[3 + c] = max > bounds[3 + c] ? max : bounds[3 + c];
+            }
+        }
+        GeometryUtils.extendBoundsScalar(coords, i, end - i, bounds);
+    }
+
+    static void transform(double[] coords, int from, int length, double s, double tx, double ty, double tz) {
+        double[] pattern = new double[3 * L];
+        for (int j = 0; j < pattern.length; j += 3) {
+            pattern[j] = tx;
+            pattern[j + 1] = ty;
+            pattern[j + 2] = tz;
+        }
+        DoubleVector scale = DoubleVector.broadcast(SPECIES, s);
+        DoubleVector t0 = DoubleVector.fromArray(SPECIES, pattern, 0);
+        DoubleVector t1 = DoubleVector.fromArray(SPECIES, pattern, L);
+        DoubleVector t2 = DoubleVector.fromArray(SPECIES, pattern, 2 * L);
+        int end = from + length;
+        int i = from;
+        for (int blockEnd = end - 3 * L; i <= blockEnd; i += 3 * L) {
+            // multiply and add separately, a fused multiply add would round
+            // differently from the scalar kernel
+            DoubleVector.fromArray(SPECIES, coords, i).mul(scale).add(t0).intoArray(coords, i);
+            DoubleVector.fromArray(SPECIES, coords, i + L).mul(scale).add(t1).intoArray(coords, i + L);
+            DoubleVector.fromArray(SPECIES, coords, i + 2 * L).mul(scale).add(t2).intoArray(coords, i + 2 * L);
+        }
+        GeometryUtils.transformScalar(coords, i, end - i, s, tx, ty, tz);
+    }
+}
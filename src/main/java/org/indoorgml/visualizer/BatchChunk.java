@@ -0,0 +1,203 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+
+import org.indoorgml.model.Polygon;
+import org.indoorgml.spatial.VertexWelder;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * Polygons that are merged into one geometry of a {@link CellSpaceBatch}.
+ * <p>
+ * Creating a chunk only records its polygons. {@link #layout} welds them,
+ * fixes the offset of every polygon in the merged buffers and allocates the
+ * buffers, after which {@link #fill} can write disjoint polygon ranges from
+ * several threads. {@link #finish} creates the mesh and geometry without
+ * attaching them; only {@link CellSpaceBatch#addGeometry} has to run on the
+ * render thread.
+ * <p>
+ * With welding, the polygons of a cell share one block of vertices in which
+ * vertices within the tolerance are stored once. Every polygon range of the
+ * cell then covers the whole block.
+ */
+final class BatchChunk {
+
+    private final String[] cellIds;
+    private final Polygon[] polygons;
+    private final ColorRGBA[] colors;
+    private final Material material;
+    private final boolean transparent;
+    private final ViewTransform transform;
+    private final double weldTolerance;
+    private int[] firstVertex;
+    private int[] vertexCounts;
+    private int[] firstIndex;
+    /** Welded vertices of a cell at the index of its first polygon, or null without welding. */
+    private double[][] blocks;
+    /** Triangle indices of every polygon into the block of its cell, or null without welding. */
+    private int[][] weldedIndices;
+    private FloatBuffer positions;
+    private IntBuffer indices;
+    private FloatBuffer vertexColors;
+    private Geometry geometry;
+    private CellSpaceBatch.Range[] ranges;
+
+    /**
+     * @param colors        one color per polygon for a vertex color buffer, or null
+     * @param weldTolerance largest distance of vertices merged within a cell,
+     *                      or a negative value to keep all vertices
+     * @param transform     conversion of the model coordinates into the scene
+     */
+    BatchChunk(List<String> cellIds, List<Polygon> polygons, List<ColorRGBA> colors, Material material,
+               boolean transparent, double weldTolerance, ViewTransform transform) {
+        this.cellIds = cellIds.toArray(new String[0]);
+        this.polygons = polygons.toArray(new Polygon[0]);
+        this.colors = colors != null ? colors.toArray(new ColorRGBA[0]) : null;
+        this.material = material;
+        this.transparent = transparent;
+        this.transform = transform;
+        this.weldTolerance = weldTolerance;
+    }
+
+    /**
+     * Welds the polygons if requested, computes their offsets and allocates the
+     * buffers. Must be called once before {@link #fill}; it may run on any
+     * thread.
+     */
+    void layout() {
+        int n = polygons.length;
+        firstVertex = new int[n + 1];
+        vertexCounts = new int[n];
+        firstIndex = new int[n + 1];
+        for (int p = 0; p < n; p++) {
+            firstIndex[p + 1] = firstIndex[p] + polygons[p].getIndexArray().length;
+        }
+        if (weldTolerance >= 0) {
+            blocks = new double[n][];
+            weldedIndices = new int[n][];
+            weld(new VertexWelder(weldTolerance));
+        } else {
+            for (int p = 0; p < n; p++) {
+                vertexCounts[p] = polygons[p].getVertexCount();
+                firstVertex[p + 1] = firstVertex[p] + vertexCounts[p];
+            }
+        }
+        positions = BufferUtils.createFloatBuffer(firstVertex[n] * 3);
+        indices = BufferUtils.createIntBuffer(firstIndex[n]);
+        vertexColors = colors != null ? BufferUtils.createFloatBuffer(firstVertex[n] * 4) : null;
+    }
+
+    /**
+     * Welds the consecutive polygons of every cell into one block of vertices.
+     */
+    private void weld(VertexWelder welder) {
+        int base = 0;
+        int start = 0;
+        while (start < polygons.length) {
+            welder.clear();
+            int end = start;
+            while (end < polygons.length && cellIds[end].equals(cellIds[start])) {
+                int[] remap = welder.addAll(polygons[end].getCoordinates());
+                int[] polyIndices = polygons[end].getIndexArray();
+                int[] local = new int[polyIndices.length];
+                for (int i = 0; i < local.length; i++) {
+                    local[i] = remap[polyIndices[i]];
+                }
+                weldedIndices[end++] = local;
+            }
+            blocks[start] = welder.getCoordinates();
+            int count = welder.getVertexCount();
+            for (int p = start; p < end; p++) {
+                firstVertex[p] = base;
+                vertexCounts[p] = count;
+            }
+            base += count;
+            start = end;
+        }
+        firstVertex[polygons.length] = base;
+    }
+
+    int getPolygonCount() {
+        return polygons.length;
+    }
+
+    int getVertexCount() {
+        return firstVertex[polygons.length];
+    }
+
+    /**
+     * Writes the positions, indices and colors of the polygons {@code from}
+     * (inclusive) to {@code to} (exclusive) with absolute puts.
+     */
+    void fill(int from, int to) {
+        for (int p = from; p < to; p++) {
+            Polygon poly = polygons[p];
+            int base = firstVertex[p];
+            // a welded block is written together with the first polygon of its cell
+            double[] coords = blocks != null ? blocks[p] : poly.getCoordinates();
+            if (coords != null) {
+                transform.write(coords, positions, base * 3);
+                if (vertexColors != null) {
+                    ColorRGBA c = colors[p];
+                    for (int i = base * 4, end = (base + vertexCounts[p]) * 4; i < end; i += 4) {
+                        vertexColors.put(i, c.r);
+                        vertexColors.put(i + 1, c.g);
+                        vertexColors.put(i + 2, c.b);
+                        vertexColors.put(i + 3, c.a);
+                    }
+                }
+            }
+            int[] polyIndices = weldedIndices != null ? weldedIndices[p] : poly.getIndexArray();
+            int first = firstIndex[p];
+            for (int i = 0; i < polyIndices.length; i++) {
+                indices.put(first + i, base + polyIndices[i]);
+            }
+        }
+    }
+
+    /**
+     * Creates the mesh, its bound and the geometry once all polygons are filled.
+     */
+    void finish() {
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, indices);
+        if (vertexColors != null) {
+            mesh.setBuffer(VertexBuffer.Type.Color, 4, vertexColors);
+            mesh.getBuffer(VertexBuffer.Type.Color).setUsage(VertexBuffer.Usage.Dynamic);
+        }
+        mesh.setMode(Mesh.Mode.Triangles);
+        mesh.updateBound();
+
+        geometry = new Geometry("cellSpaceBatch", mesh);
+        geometry.setMaterial(material);
+        if (transparent) {
+            geometry.setQueueBucket(RenderQueue.Bucket.Transparent);
+        }
+
+        ranges = new CellSpaceBatch.Range[polygons.length];
+        for (int p = 0; p < polygons.length; p++) {
+            ranges[p] = new CellSpaceBatch.Range(geometry, cellIds[p], polygons[p].getId(),
+                    firstVertex[p], vertexCounts[p],
+                    firstIndex[p] / 3, (firstIndex[p + 1] - firstIndex[p]) / 3,
+                    polygons[p].getVertexCount(), colors != null ? colors[p] : null);
+        }
+    }
+
+    Geometry getGeometry() {
+        return geometry;
+    }
+
+    CellSpaceBatch.Range[] getRanges() {
+        return ranges;
+    }
+}
@@ -0,0 +1,671 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.collision.CollisionResult;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.spatial.VertexWelder;
+import org.indoorgml.spatial.WeldReport;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of {@link CellSpaceGeometryBuilder#buildBatchedCellSpaces} and
+ * {@link CellSpaceGeometryBuilder#buildVertexColoredCellSpaces}: a node with
+ * a few merged geometries plus the mapping from triangle and vertex ranges
+ * back to the cell spaces and polygons they were built from.
+ * <p>
+ * The batch can be changed after it was built: added cells are merged into
+ * new geometries, removed cells are hidden by collapsing their triangles
+ * without touching other ranges, and moved cells are rewritten in place.
+ * Once more than half of the vertices of a merged geometry belong to removed
+ * cells, the geometry is replaced by a compact copy of its remaining ranges.
+ * Must be modified on the render thread.
+ */
+public class CellSpaceBatch {
+
+    /**
+     * Vertex and triangle range of one polygon inside a merged geometry.
+     */
+    public static final class Range {
+        private final Geometry geometry;
+        private final String cellId;
+        private final String polygonId;
+        private final int firstVertex;
+        private final int vertexCount;
+        private final int firstTriangle;
+        private final int triangleCount;
+        /** Vertices of the polygon before welding. */
+        private final int inputVertexCount;
+        private final float baseR;
+        private final float baseG;
+        private final float baseB;
+        private final float baseA;
+        private boolean removed;
+
+        Range(Geometry geometry, String cellId, String polygonId, int firstVertex, int vertexCount,
+              int firstTriangle, int triangleCount, int inputVertexCount, ColorRGBA baseColor) {
+            this.geometry = geometry;
+            this.cellId = cellId;
+            this.polygonId = polygonId;
+            this.firstVertex = firstVertex;
+            this.vertexCount = vertexCount;
+            this.firstTriangle = firstTriangle;
+            this.triangleCount = triangleCount;
+            this.inputVertexCount = inputVertexCount;
+            this.baseR = baseColor != null ? baseColor.r : 1f;
+            this.baseG = baseColor != null ? baseColor.g : 1f;
+            this.baseB = baseColor != null ? baseColor.b : 1f;
+            this.baseA = baseColor != null ? baseColor.a : 1f;
+        }
+
+        /**
+         * Copies the range into another geometry.
+         */
+        private Range(Range r, Geometry geometry, int firstVertex, int firstTriangle) {
+            this.geometry = geometry;
+            this.cellId = r.cellId;
+            this.polygonId = r.polygonId;
+            this.firstVertex = firstVertex;
+            this.vertexCount = r.vertexCount;
+            this.firstTriangle = firstTriangle;
+            this.triangleCount = r.triangleCount;
+            this.inputVertexCount = r.inputVertexCount;
+            this.baseR = r.baseR;
+            this.baseG = r.baseG;
+            this.baseB = r.baseB;
+            this.baseA = r.baseA;
+        }
+
+        public Geometry getGeometry() {
+            return geometry;
+        }
+
+        public String getCellId() {
+            return cellId;
+        }
+
+        public String getPolygonId() {
+            return polygonId;
+        }
+
+        public int getFirstVertex() {
+            return firstVertex;
+        }
+
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        public int getFirstTriangle() {
+            return firstTriangle;
+        }
+
+        public int getTriangleCount() {
+            return triangleCount;
+        }
+    }
+
+    /**
+     * Ranges of one merged geometry, ordered by their first triangle.
+     */
+    private static final class Chunk {
+        final Range[] ranges;
+        int live;
+        /** Vertices of removed ranges that are still in the buffers. */
+        int deadVertices;
+
+        Chunk(Range[] ranges) {
+            this.ranges = ranges;
+            this.live = ranges.length;
+        }
+    }
+
+    private final Node node;
+    private final boolean vertexColored;
+    private final Material[] materials;
+    private final ColorRGBA[] colors;
+    private final boolean transparent;
+    private final double weldTolerance;
+    private final ViewTransform transform;
+    private final Map<Geometry, Chunk> rangesByGeometry = new IdentityHashMap<>();
+    private final Map<String, List<Range>> rangesByCell = new HashMap<>();
+    private int vertexCount;
+    private int deadVertexCount;
+    private int inputVertexCount;
+    private int cellsAdded;
+    private VertexWelder welder;
+
+    /**
+     * @param materials one material per palette color, or a single vertex color
+     *                  material if {@code vertexColored} is set
+     * @param colors        the palette colors including their alpha value
+     * @param weldTolerance largest distance of vertices that are merged within
+     *                      a cell, or a negative value to keep all vertices
+     * @param transform     conversion of the model coordinates into the scene
+     */
+    CellSpaceBatch(Node node, boolean vertexColored, Material[] materials, ColorRGBA[] colors,
+                   boolean transparent, double weldTolerance, ViewTransform transform) {
+        this.node = node;
+        this.vertexColored = vertexColored;
+        this.materials = materials;
+        this.colors = colors;
+        this.transparent = transparent;
+        this.weldTolerance = weldTolerance;
+        this.transform = transform;
+    }
+
+    /**
+     * Merges the given cells into new geometries. Cells continue the cyclic
+     * palette coloring of the cells added before them.
+     */
+    public void add(List<CellSpace> cells) {
+        for (BatchChunk chunk : plan(cells)) {
+            chunk.layout();
+            chunk.fill(0, chunk.getPolygonCount());
+            chunk.finish();
+            addGeometry(chunk);
+        }
+    }
+
+    /**
+     * Splits the cells into chunks of at most
+     * {@link CellSpaceGeometryBuilder#MAX_BATCH_VERTICES} vertices and assigns
+     * their palette colors. Only the polygons are partitioned; the chunks are
+     * welded, laid out, filled and finished on any thread and registered with
+     * {@link #addGeometry(BatchChunk)}.
+     */
+    List<BatchChunk> plan(List<CellSpace> cells) {
+        return plan(cells, -1);
+    }
+
+    /**
+     * Plans the cells with the given palette color, or continues the cyclic
+     * coloring if it is negative.
+     */
+    private List<BatchChunk> plan(List<CellSpace> cells, int fixedColor) {
+        List<BatchChunk> chunks = new ArrayList<>();
+        int groups = vertexColored ? 1 : colors.length;
+        List<String> chunkCells = new ArrayList<>();
+        List<Polygon> chunkPolygons = new ArrayList<>();
+        List<ColorRGBA> chunkColors = vertexColored ? new ArrayList<>() : null;
+        for (int group = 0; group < groups; group++) {
+            int vertices = 0;
+            for (int i = 0; i < cells.size(); i++) {
+                int color = fixedColor >= 0 ? fixedColor : (cellsAdded + i) % colors.length;
+                if (!vertexColored && color != group) {
+                    continue;
+                }
+                CellSpace cs = cells.get(i);
+                for (Polygon poly : cs.getPolygons()) {
+                    if (vertices + poly.getVertexCount() > CellSpaceGeometryBuilder.MAX_BATCH_VERTICES
+                            && !chunkPolygons.isEmpty()) {
+                        chunks.add(newChunk(chunkCells, chunkPolygons, chunkColors, materials[group]));
+                        vertices = 0;
+                    }
+                    chunkCells.add(cs.getId());
+                    chunkPolygons.add(poly);
+                    if (chunkColors != null) {
+                        chunkColors.add(colors[color]);
+                    }
+                    vertices += poly.getVertexCount();
+                }
+            }
+            if (!chunkPolygons.isEmpty()) {
+                chunks.add(newChunk(chunkCells, chunkPolygons, chunkColors, materials[group]));
+            }
+        }
+        if (fixedColor < 0) {
+            cellsAdded += cells.size();
+        }
+        return chunks;
+    }
+
+    private BatchChunk newChunk(List<String> cellIds, List<Polygon> polygons, List<ColorRGBA> polygonColors,
+                                Material material) {
+        BatchChunk chunk = new BatchChunk(cellIds, polygons, polygonColors, material, transparent,
+                weldTolerance, transform);
+        cellIds.clear();
+        polygons.clear();
+        if (polygonColors != null) {
+            polygonColors.clear();
+        }
+        return chunk;
+    }
+
+    /**
+     * Registers and attaches a finished chunk.
+     */
+    void addGeometry(BatchChunk chunk) {
+        addGeometry(chunk.getGeometry(), chunk.getRanges());
+    }
+
+    /**
+     * Registers a merged geometry together with its ranges, which must be
+     * ordered by their first triangle.
+     */
+    private void addGeometry(Geometry geometry, Range[] ranges) {
+        rangesByGeometry.put(geometry, new Chunk(ranges));
+        for (Range r : ranges) {
+            rangesByCell.computeIfAbsent(r.getCellId(), k -> new ArrayList<>()).add(r);
+            inputVertexCount += r.inputVertexCount;
+        }
+        vertexCount += geometry.getMesh().getVertexCount();
+        node.attachChild(geometry);
+    }
+
+    /**
+     * Removes a cell by turning its triangles into degenerate ones. Only the
+     * index ranges of the cell are rewritten; a merged geometry is detached
+     * once none of its cells is left, and compacted once most of its vertices
+     * are unused.
+     */
+    public void remove(String cellId) {
+        List<Range> ranges = rangesByCell.remove(cellId);
+        if (ranges == null) {
+            return;
+        }
+        List<Geometry> changed = new ArrayList<>(1);
+        for (int i = 0; i < ranges.size(); i++) {
+            Range r = ranges.get(i);
+            r.removed = true;
+            inputVertexCount -= r.inputVertexCount;
+            Chunk chunk = rangesByGeometry.get(r.geometry);
+            if (!sharesBlock(ranges, i)) {
+                chunk.deadVertices += r.vertexCount;
+                deadVertexCount += r.vertexCount;
+            }
+            if (--chunk.live == 0) {
+                rangesByGeometry.remove(r.geometry);
+                vertexCount -= r.geometry.getMesh().getVertexCount();
+                deadVertexCount -= chunk.deadVertices;
+                r.geometry.removeFromParent();
+                continue;
+            }
+            Mesh mesh = r.geometry.getMesh();
+            VertexBuffer vb = mesh.getBuffer(VertexBuffer.Type.Index);
+            IntBuffer indices = (IntBuffer) vb.getData();
+            int end = (r.firstTriangle + r.triangleCount) * 3;
+            for (int j = r.firstTriangle * 3; j < end; j++) {
+                indices.put(j, r.firstVertex);
+            }
+            vb.setUpdateNeeded();
+            mesh.clearCollisionData();
+            if (changed.isEmpty() || changed.get(changed.size() - 1) != r.geometry) {
+                changed.add(r.geometry);
+            }
+        }
+        for (Geometry geometry : changed) {
+            Chunk chunk = rangesByGeometry.get(geometry);
+            if (chunk != null && chunk.deadVertices * 2 > geometry.getMesh().getVertexCount()) {
+                compact(geometry, chunk);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the range at the index uses the welded vertex block of
+     * the range before it.
+     */
+    private static boolean sharesBlock(List<Range> ranges, int index) {
+        if (index == 0) {
+            return false;
+        }
+        Range previous = ranges.get(index - 1);
+        Range r = ranges.get(index);
+        return previous.geometry == r.geometry && previous.firstVertex == r.firstVertex;
+    }
+
+    /**
+     * Replaces a merged geometry by a copy that only holds the vertices and
+     * triangles of its remaining ranges.
+     */
+    private void compact(Geometry geometry, Chunk chunk) {
+        Mesh mesh = geometry.getMesh();
+        FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        IntBuffer indices = (IntBuffer) mesh.getBuffer(VertexBuffer.Type.Index).getData();
+        FloatBuffer colorBuffer = vertexColored ? mesh.getFloatBuffer(VertexBuffer.Type.Color) : null;
+        int liveVertices = mesh.getVertexCount() - chunk.deadVertices;
+        int liveIndices = 0;
+        for (Range r : chunk.ranges) {
+            if (!r.removed) {
+                liveIndices += r.triangleCount * 3;
+            }
+        }
+        FloatBuffer newPositions = BufferUtils.createFloatBuffer(liveVertices * 3);
+        IntBuffer newIndices = BufferUtils.createIntBuffer(liveIndices);
+        FloatBuffer newColors = colorBuffer != null ? BufferUtils.createFloatBuffer(liveVertices * 4) : null;
+
+        Mesh compacted = new Mesh();
+        Geometry copy = new Geometry(geometry.getName(), compacted);
+        Range[] ranges = new Range[chunk.live];
+        int count = 0;
+        int base = 0;
+        int triangle = 0;
+        Range previous = null;
+        for (Range r : chunk.ranges) {
+            if (r.removed) {
+                continue;
+            }
+            int first;
+            if (previous != null && previous.cellId.equals(r.cellId) && previous.firstVertex == r.firstVertex) {
+                first = ranges[count - 1].firstVertex;
+            } else {
+                first = base;
+                for (int i = 0; i < r.vertexCount * 3; i++) {
+                    newPositions.put(base * 3 + i, positions.get(r.firstVertex * 3 + i));
+                }
+                if (newColors != null) {
+                    for (int i = 0; i < r.vertexCount * 4; i++) {
+                        newColors.put(base * 4 + i, colorBuffer.get(r.firstVertex * 4 + i));
+                    }
+                }
+                base += r.vertexCount;
+            }
+            for (int i = 0; i < r.triangleCount * 3; i++) {
+                newIndices.put(triangle * 3 + i, indices.get(r.firstTriangle * 3 + i) - r.firstVertex + first);
+            }
+            Range moved = new Range(r, copy, first, triangle);
+            List<Range> cellRanges = rangesByCell.get(r.cellId);
+            cellRanges.set(cellRanges.indexOf(r), moved);
+            ranges[count++] = moved;
+            triangle += r.triangleCount;
+            previous = r;
+        }
+
+        compacted.setBuffer(VertexBuffer.Type.Position, 3, newPositions);
+        compacted.setBuffer(VertexBuffer.Type.Index, 3, newIndices);
+        if (newColors != null) {
+            compacted.setBuffer(VertexBuffer.Type.Color, 4, newColors);
+            compacted.getBuffer(VertexBuffer.Type.Color).setUsage(VertexBuffer.Usage.Dynamic);
+        }
+        compacted.setMode(Mesh.Mode.Triangles);
+        compacted.updateBound();
+        copy.setMaterial(geometry.getMaterial());
+        copy.setQueueBucket(geometry.getQueueBucket());
+
+        rangesByGeometry.remove(geometry);
+        rangesByGeometry.put(copy, new Chunk(ranges));
+        vertexCount += liveVertices - mesh.getVertexCount();
+        deadVertexCount -= chunk.deadVertices;
+        geometry.removeFromParent();
+        node.attachChild(copy);
+    }
+
+    /**
+     * Rewrites the vertex positions of a cell after its geometry was moved. If
+     * the polygons no longer match the stored ranges, or welding them again
+     * gives different shared vertices, the cell is rebuilt.
+     */
+    public void update(CellSpace cell) {
+        List<Range> ranges = rangesByCell.get(cell.getId());
+        List<Polygon> polygons = cell.getPolygons();
+        double[][] blocks = null;
+        if (ranges != null && isWelded()) {
+            blocks = weldInPlace(ranges, polygons);
+        }
+        if (ranges == null || (isWelded() ? blocks == null : !matches(ranges, polygons))) {
+            rebuild(cell);
+            return;
+        }
+        for (int p = 0; p < ranges.size(); p++) {
+            Range r = ranges.get(p);
+            VertexBuffer vb = r.geometry.getMesh().getBuffer(VertexBuffer.Type.Position);
+            FloatBuffer positions = (FloatBuffer) vb.getData();
+            if (blocks == null) {
+                transform.write(polygons.get(p).getCoordinates(), positions, r.firstVertex * 3);
+            } else if (blocks[p] != null) {
+                transform.write(blocks[p], positions, r.firstVertex * 3);
+            }
+            vb.setUpdateNeeded();
+            // the polygons of a cell are usually merged into the same geometry
+            boolean last = p + 1 == ranges.size() || ranges.get(p + 1).geometry != r.geometry;
+            if (last) {
+                Mesh mesh = r.geometry.getMesh();
+                mesh.updateBound();
+                mesh.clearCollisionData();
+                r.geometry.updateModelBound();
+            }
+        }
+    }
+
+    /**
+     * Replaces the geometry of a cell by merging it into a new geometry. A
+     * cell that is already shown keeps its palette color; an unknown cell is
+     * added like by {@link #add(List)}.
+     */
+    void rebuild(CellSpace cell) {
+        int color = paletteColor(rangesByCell.get(cell.getId()));
+        remove(cell.getId());
+        for (BatchChunk chunk : plan(Collections.singletonList(cell), color)) {
+            chunk.layout();
+            chunk.fill(0, chunk.getPolygonCount());
+            chunk.finish();
+            addGeometry(chunk);
+        }
+    }
+
+    /**
+     * Returns the palette index the ranges were built with, or -1 if there
+     * are none.
+     */
+    private int paletteColor(List<Range> ranges) {
+        if (ranges == null || ranges.isEmpty()) {
+            return -1;
+        }
+        Range r = ranges.get(0);
+        for (int c = 0; c < colors.length; c++) {
+            if (vertexColored
+                    ? colors[c].r == r.baseR && colors[c].g == r.baseG && colors[c].b == r.baseB
+                            && colors[c].a == r.baseA
+                    : r.geometry.getMaterial() == materials[c]) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Welds the polygons again like {@link BatchChunk} does and returns the
+     * new vertices of every welded block at the index of its first range, or
+     * null if the vertex counts or triangle indices of a block changed.
+     */
+    private double[][] weldInPlace(List<Range> ranges, List<Polygon> polygons) {
+        if (ranges.size() != polygons.size()) {
+            return null;
+        }
+        if (welder == null) {
+            welder = new VertexWelder(weldTolerance);
+        }
+        double[][] blocks = new double[ranges.size()][];
+        int start = 0;
+        while (start < ranges.size()) {
+            welder.clear();
+            int end = start;
+            do {
+                Range r = ranges.get(end);
+                Polygon poly = polygons.get(end);
+                int[] remap = welder.addAll(poly.getCoordinates());
+                int[] polyIndices = poly.getIndexArray();
+                if (polyIndices.length != r.triangleCount * 3) {
+                    return null;
+                }
+                IntBuffer indices = (IntBuffer) r.geometry.getMesh().getBuffer(VertexBuffer.Type.Index).getData();
+                for (int i = 0; i < polyIndices.length; i++) {
+                    if (indices.get(r.firstTriangle * 3 + i) != r.firstVertex + remap[polyIndices[i]]) {
+                        return null;
+                    }
+                }
+                end++;
+            } while (end < ranges.size() && sharesBlock(ranges, end));
+            if (welder.getVertexCount() != ranges.get(start).vertexCount) {
+                return null;
+            }
+            blocks[start] = welder.getCoordinates();
+            start = end;
+        }
+        return blocks;
+    }
+
+    private static boolean matches(List<Range> ranges, List<Polygon> polygons) {
+        if (ranges.size() != polygons.size()) {
+            return false;
+        }
+        for (int p = 0; p < ranges.size(); p++) {
+            if (ranges.get(p).vertexCount != polygons.get(p).getVertexCount()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public int getGeometryCount() {
+        return rangesByGeometry.size();
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Returns the transform used to write the vertices of added and moved cells.
+     */
+    public ViewTransform getViewTransform() {
+        return transform;
+    }
+
+    /**
+     * Returns true if the vertices of every cell were welded.
+     */
+    public boolean isWelded() {
+        return weldTolerance >= 0;
+    }
+
+    /**
+     * Returns the vertex counts of the shown cells before and after welding.
+     * Vertices of removed cells that are still in the buffers are not counted.
+     */
+    public WeldReport getWeldReport() {
+        return new WeldReport(inputVertexCount, vertexCount - deadVertexCount);
+    }
+
+    /**
+     * Returns true if colors are stored per vertex and can be changed per cell
+     * through {@link #setColor} and {@link #resetColor}.
+     */
+    public boolean isVertexColored() {
+        return vertexColored;
+    }
+
+    /**
+     * Returns true if the geometry is one of the merged geometries of this batch.
+     */
+    public boolean contains(Geometry geometry) {
+        return rangesByGeometry.containsKey(geometry);
+    }
+
+    /**
+     * Returns the polygon range a picked triangle belongs to, or null if the
+     * collision did not hit this batch.
+     */
+    public Range locate(CollisionResult result) {
+        return locate(result.getGeometry(), result.getTriangleIndex());
+    }
+
+    /**
+     * Returns the polygon range containing the given triangle of a merged geometry.
+     */
+    public Range locate(Geometry geometry, int triangleIndex) {
+        Chunk chunk = rangesByGeometry.get(geometry);
+        if (chunk == null) {
+            return null;
+        }
+        Range[] ranges = chunk.ranges;
+        int lo = 0;
+        int hi = ranges.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Range r = ranges[mid];
+            if (triangleIndex < r.firstTriangle) {
+                hi = mid - 1;
+            } else if (triangleIndex >= r.firstTriangle + r.triangleCount) {
+                lo = mid + 1;
+            } else {
+                return r.removed ? null : r;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the ranges of all polygons of the given cell space.
+     */
+    public List<Range> getRanges(String cellId) {
+        List<Range> ranges = rangesByCell.get(cellId);
+        return ranges != null ? Collections.unmodifiableList(ranges) : Collections.emptyList();
+    }
+
+    /**
+     * Overwrites the vertex colors of all polygons of a cell in place. The alpha
+     * value of the base color is kept so transparency does not change. Does not
+     * allocate.
+     */
+    public void setColor(String cellId, ColorRGBA color) {
+        List<Range> ranges = rangesByCell.get(cellId);
+        if (ranges == null) {
+            return;
+        }
+        for (int i = 0; i < ranges.size(); i++) {
+            Range r = ranges.get(i);
+            writeColor(r, color.r, color.g, color.b, r.baseA);
+        }
+    }
+
+    /**
+     * Restores the base colors of all polygons of a cell.
+     */
+    public void resetColor(String cellId) {
+        List<Range> ranges = rangesByCell.get(cellId);
+        if (ranges == null) {
+            return;
+        }
+        for (int i = 0; i < ranges.size(); i++) {
+            Range r = ranges.get(i);
+            writeColor(r, r.baseR, r.baseG, r.baseB, r.baseA);
+        }
+    }
+
+    private void writeColor(Range r, float red, float green, float blue, float alpha) {
+        if (!vertexColored) {
+            throw new IllegalStateException("Batch was not built with vertex colors");
+        }
+        VertexBuffer vb = r.geometry.getMesh().getBuffer(VertexBuffer.Type.Color);
+        FloatBuffer colors = (FloatBuffer) vb.getData();
+        int end = (r.firstVertex + r.vertexCount) * 4;
+        for (int i = r.firstVertex * 4; i < end; i += 4) {
+            colors.put(i, red);
+            colors.put(i + 1, green);
+            colors.put(i + 2, blue);
+            colors.put(i + 3, alpha);
+        }
+        vb.setUpdateNeeded();
+    }
+}
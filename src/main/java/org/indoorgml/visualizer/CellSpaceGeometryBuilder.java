@@ -8,14 +8,15 @@ import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
 import com.jme3.scene.VertexBuffer;
-import com.jme3.render.RenderQueue;
-import com.jme3.render.RenderState;
+import com.jme3.material.RenderState;
+import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.util.BufferUtils;
 
 import org.indoorgml.model.CellSpace;
 import org.indoorgml.model.Polygon;
-import org.indoorgml.model.Vector3d;
+import org.indoorgml.spatial.VertexPool;
 
+import java.nio.FloatBuffer;
 import java.util.List;
 
 /**
@@ -23,6 +24,11 @@ import java.util.List;
  */
 public class CellSpaceGeometryBuilder {
 
+    /**
+     * Maximum number of vertices merged into a single batched mesh.
+     */
+    static final int MAX_BATCH_VERTICES = 1 << 18;
+
     private CellSpaceGeometryBuilder() {
         // utility class
     }
@@ -40,11 +46,20 @@ public class CellSpaceGeometryBuilder {
      */
     public static Node buildCellSpaces(List<Polygon> polygons, AssetManager assetManager,
                                        ColorRGBA color, float alpha) {
+        return buildCellSpaces(polygons, assetManager, color, alpha, ViewTransform.IDENTITY);
+    }
+
+    /**
+     * Creates a node containing geometries for all cell spaces whose vertices
+     * are converted into the scene by the transform while they are written.
+     */
+    public static Node buildCellSpaces(List<Polygon> polygons, AssetManager assetManager,
+                                       ColorRGBA color, float alpha, ViewTransform transform) {
         Node node = new Node("cellSpaces");
         Material material = material(assetManager, color, alpha);
         boolean transparent = alpha < 1f;
         for (Polygon poly : polygons) {
-            node.attachChild(buildGeometry(poly, material, transparent));
+            node.attachChild(buildGeometry(poly, material, transparent, transform));
         }
         return node;
     }
@@ -54,12 +69,17 @@ public class CellSpaceGeometryBuilder {
      */
     public static Node buildCellSpacesFromCells(List<CellSpace> cells, AssetManager assetManager,
                                                ColorRGBA color, float alpha) {
+        return buildCellSpacesFromCells(cells, assetManager, color, alpha, ViewTransform.IDENTITY);
+    }
+
+    public static Node buildCellSpacesFromCells(List<CellSpace> cells, AssetManager assetManager,
+                                               ColorRGBA color, float alpha, ViewTransform transform) {
         Node node = new Node("cellSpaces");
         Material material = material(assetManager, color, alpha);
         boolean transparent = alpha < 1f;
         for (CellSpace cs : cells) {
             for (Polygon poly : cs.getPolygons()) {
-                Geometry geom = buildGeometry(poly, material, transparent);
+                Geometry geom = buildGeometry(poly, material, transparent, transform);
                 geom.setUserData("cellId", cs.getId());
                 geom.setUserData("polygonId", poly.getId());
                 node.attachChild(geom);
@@ -72,27 +92,146 @@ public class CellSpaceGeometryBuilder {
         return buildCellSpacesFromCells(cells, assetManager, ColorRGBA.LightGray, 1f);
     }
 
-    private static Geometry buildGeometry(Polygon polygon, Material material, boolean transparent) {
+    /**
+     * Builds merged geometries for all cell spaces using a single color. Instead of
+     * one geometry per polygon only one geometry per {@value #MAX_BATCH_VERTICES}
+     * vertices is created.
+     */
+    public static CellSpaceBatch buildBatchedCellSpaces(List<CellSpace> cells, AssetManager assetManager,
+                                                        ColorRGBA color, float alpha) {
+        return buildBatchedCellSpaces(cells, assetManager, new ColorRGBA[] {color}, alpha);
+    }
+
+    /**
+     * Builds merged geometries for cell spaces colored cyclically from the palette.
+     * All polygons sharing a color, and therefore a material, are merged into the
+     * same meshes. The returned batch maps picked triangles back to cell and
+     * polygon IDs.
+     */
+    public static CellSpaceBatch buildBatchedCellSpaces(List<CellSpace> cells, AssetManager assetManager,
+                                                        ColorRGBA[] palette, float alpha) {
+        return buildBatchedCellSpaces(cells, assetManager, palette, alpha, ViewTransform.IDENTITY);
+    }
+
+    /**
+     * Builds merged geometries colored cyclically from the palette whose
+     * vertices are converted into the scene by the transform. Cells added to
+     * the batch later are converted the same way.
+     */
+    public static CellSpaceBatch buildBatchedCellSpaces(List<CellSpace> cells, AssetManager assetManager,
+                                                        ColorRGBA[] palette, float alpha,
+                                                        ViewTransform transform) {
+        Material[] materials = new Material[palette.length];
+        for (int c = 0; c < palette.length; c++) {
+            materials[c] = material(assetManager, palette[c], alpha);
+        }
+        CellSpaceBatch batch = new CellSpaceBatch(new Node("cellSpaces"), false, materials,
+                withAlpha(palette, alpha), alpha < 1f, -1, transform);
+        batch.add(cells);
+        return batch;
+    }
+
+    /**
+     * Builds merged geometries that all share one material and take their color
+     * from a per-vertex color buffer. Cells are colored cyclically from the
+     * palette and can be recolored in place through {@link CellSpaceBatch#setColor}.
+     */
+    public static CellSpaceBatch buildVertexColoredCellSpaces(List<CellSpace> cells, AssetManager assetManager,
+                                                             ColorRGBA[] palette, float alpha) {
+        return buildVertexColoredCellSpaces(cells, assetManager, palette, alpha, -1);
+    }
+
+    /**
+     * Builds vertex colored merged geometries in which the polygons of every
+     * cell share their vertices: corners repeated by the walls, floor and
+     * ceiling of a cell are merged if they lie within the tolerance. The batch
+     * reports the reduction through {@link CellSpaceBatch#getWeldReport()}.
+     *
+     * @param weldTolerance largest distance of merged vertices, or a negative
+     *                      value to keep all vertices
+     */
+    public static CellSpaceBatch buildVertexColoredCellSpaces(List<CellSpace> cells, AssetManager assetManager,
+                                                             ColorRGBA[] palette, float alpha,
+                                                             double weldTolerance) {
+        return buildVertexColoredCellSpaces(cells, assetManager, palette, alpha, weldTolerance,
+                ViewTransform.IDENTITY);
+    }
+
+    /**
+     * Builds vertex colored merged geometries, optionally welded, whose
+     * vertices are converted into the scene by the transform. Cells added or
+     * moved later are converted the same way.
+     *
+     * @param weldTolerance largest distance of merged vertices, or a negative
+     *                      value to keep all vertices
+     */
+    public static CellSpaceBatch buildVertexColoredCellSpaces(List<CellSpace> cells, AssetManager assetManager,
+                                                             ColorRGBA[] palette, float alpha,
+                                                             double weldTolerance, ViewTransform transform) {
+        boolean transparent = alpha < 1f;
+        Material[] materials = {vertexColorMaterial(assetManager, transparent)};
+        CellSpaceBatch batch = new CellSpaceBatch(new Node("cellSpaces"), true, materials,
+                withAlpha(palette, alpha), transparent, weldTolerance, transform);
+        batch.add(cells);
+        return batch;
+    }
+
+    /**
+     * Builds a single geometry from a welded vertex pool, for example the
+     * pool of one storey in which neighboring cells share their walls. The
+     * triangles of a picked geometry map back to their cell through
+     * {@link VertexPool#getPolygonOfTriangle}.
+     */
+    public static Geometry buildWeldedCellSpaces(VertexPool pool, AssetManager assetManager, ColorRGBA color,
+                                                 float alpha) {
+        return buildWeldedCellSpaces(pool, assetManager, color, alpha, ViewTransform.IDENTITY);
+    }
+
+    public static Geometry buildWeldedCellSpaces(VertexPool pool, AssetManager assetManager, ColorRGBA color,
+                                                 float alpha, ViewTransform transform) {
+        double[] coords = pool.getCoordinates();
+        FloatBuffer vertices = BufferUtils.createFloatBuffer(coords.length);
+        transform.write(coords, vertices, 0);
         Mesh mesh = new Mesh();
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, vertices);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, BufferUtils.createIntBuffer(pool.getIndices()));
+        mesh.setMode(Mesh.Mode.Triangles);
+        mesh.updateBound();
 
-        float[] vertices = new float[polygon.getVertices().size() * 3];
-        int i = 0;
-        for (Vector3d v : polygon.getVertices()) {
-            vertices[i++] = (float) v.getX();
-            vertices[i++] = (float) v.getY();
-            vertices[i++] = (float) v.getZ();
+        Geometry geom = new Geometry("weldedCellSpaces", mesh);
+        geom.setMaterial(material(assetManager, color, alpha));
+        if (alpha < 1f) {
+            geom.setQueueBucket(RenderQueue.Bucket.Transparent);
         }
+        return geom;
+    }
+
+    private static ColorRGBA[] withAlpha(ColorRGBA[] palette, float alpha) {
+        ColorRGBA[] colors = new ColorRGBA[palette.length];
+        for (int c = 0; c < palette.length; c++) {
+            colors[c] = palette[c].clone();
+            colors[c].a = alpha;
+        }
+        return colors;
+    }
+
+    private static Geometry buildGeometry(Polygon polygon, Material material, boolean transparent,
+                                          ViewTransform transform) {
+        Mesh mesh = new Mesh();
 
-        int[] indices = polygon.getIndices().stream().mapToInt(Integer::intValue).toArray();
+        // packed polygons hand out their backing arrays, list based ones are packed once
+        double[] coords = polygon.getCoordinates();
+        FloatBuffer vertices = BufferUtils.createFloatBuffer(coords.length);
+        transform.write(coords, vertices, 0);
 
-        mesh.setBuffer(VertexBuffer.Type.Position, 3, BufferUtils.createFloatBuffer(vertices));
-        mesh.setBuffer(VertexBuffer.Type.Index, 3, BufferUtils.createIntBuffer(indices));
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, vertices);
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, BufferUtils.createIntBuffer(polygon.getIndexArray()));
         mesh.setMode(Mesh.Mode.Triangles);
         mesh.updateBound();
 
         Geometry geom = new Geometry("cellSpace", mesh);
         geom.setMaterial(material.clone());
-        ColorRGBA base = material.getParam("Color").getValue();
+        ColorRGBA base = (ColorRGBA) material.getParam("Color").getValue();
         geom.setUserData("baseColor", base.clone());
         if (transparent) {
             geom.setQueueBucket(RenderQueue.Bucket.Transparent);
@@ -100,6 +239,15 @@ public class CellSpaceGeometryBuilder {
         return geom;
     }
 
+    private static Material vertexColorMaterial(AssetManager assetManager, boolean transparent) {
+        Material mat = new Material(assetManager, Materials.UNSHADED);
+        mat.setBoolean("VertexColor", true);
+        if (transparent) {
+            mat.getAdditionalRenderState().setBlendMode(RenderState.BlendMode.Alpha);
+        }
+        return mat;
+    }
+
     private static Material material(AssetManager assetManager, ColorRGBA color, float alpha) {
         Material mat = new Material(assetManager, Materials.UNSHADED);
         ColorRGBA c = color.clone();
@@ -1,6 +1,7 @@
 package org.indoorgml.visualizer;
 
 import com.jme3.asset.AssetManager;
+import com.jme3.math.ColorRGBA;
 import com.jme3.scene.Node;
 
 import org.indoorgml.model.LineString;
@@ -24,15 +25,26 @@ public class IndoorGMLVisualizer {
      * Creates a node containing cell spaces, transitions and state geometries.
      */
     public Node buildScene(List<Polygon> cellSpaces, List<LineString> transitions, List<StatePoint> states) {
+        return buildScene(cellSpaces, transitions, states, ViewTransform.IDENTITY);
+    }
+
+    /**
+     * Creates a node containing cell spaces, transitions and state geometries
+     * whose coordinates are converted into the scene by the transform. The
+     * given structures are not modified.
+     */
+    public Node buildScene(List<Polygon> cellSpaces, List<LineString> transitions, List<StatePoint> states,
+                           ViewTransform transform) {
         Node root = new Node("IndoorGML");
         if (cellSpaces != null) {
-            root.attachChild(CellSpaceGeometryBuilder.buildCellSpaces(cellSpaces, assetManager));
+            root.attachChild(CellSpaceGeometryBuilder.buildCellSpaces(cellSpaces, assetManager,
+                    ColorRGBA.LightGray, 1f, transform));
         }
         if (transitions != null) {
-            root.attachChild(TransitionGeometryBuilder.buildTransitions(transitions, assetManager));
+            root.attachChild(TransitionGeometryBuilder.buildTransitions(transitions, assetManager, transform));
         }
         if (states != null) {
-            root.attachChild(StateGeometryBuilder.buildStates(states, assetManager));
+            root.attachChild(StateGeometryBuilder.buildStates(states, assetManager, transform));
         }
         return root;
     }
@@ -0,0 +1,180 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.Materials;
+import com.jme3.math.ColorRGBA;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.instancing.InstancedNode;
+import com.jme3.scene.shape.Sphere;
+
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Vector3d;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State markers rendered through hardware instancing.
+ * <p>
+ * All markers share one sphere mesh and one material and are drawn by a single
+ * {@link InstancedNode}. Each marker is still a lightweight Geometry carrying
+ * the {@code stateId} user data, so ray picking keeps working. Markers can be
+ * added, moved and removed at any time; the instance data is regrouped at most
+ * once per frame. A highlighted marker is temporarily moved out of the
+ * instanced node so it can use its own material.
+ */
+public class InstancedStateMarkers {
+
+    private final Node node = new Node("states");
+    private final InstancedNode instances = new InstancedNode("stateInstances");
+    private final Node highlights = new Node("stateHighlights");
+    private final Mesh sphere;
+    private final Material material;
+    private final Material highlightMaterial;
+    private final ViewTransform transform;
+    private final Map<String, Geometry> markers = new HashMap<>();
+    private Geometry highlighted;
+    private boolean dirty;
+
+    InstancedStateMarkers(AssetManager assetManager, float radius, ViewTransform transform) {
+        this.transform = transform;
+        sphere = new Sphere(10, 10, radius);
+        material = new Material(assetManager, Materials.UNSHADED);
+        material.setColor("Color", ColorRGBA.Red);
+        material.setBoolean("UseInstancing", true);
+        highlightMaterial = new Material(assetManager, Materials.UNSHADED);
+        highlightMaterial.setColor("Color", ColorRGBA.Yellow);
+
+        node.attachChild(instances);
+        node.attachChild(highlights);
+        instances.addControl(new InstanceControl());
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public int getCount() {
+        return markers.size();
+    }
+
+    /**
+     * Returns the transform used to place the markers.
+     */
+    public ViewTransform getViewTransform() {
+        return transform;
+    }
+
+    /**
+     * Returns the marker geometry of a state, or null if there is none.
+     */
+    public Geometry getGeometry(String stateId) {
+        return markers.get(stateId);
+    }
+
+    /**
+     * Adds a marker for the state, replacing an existing marker with the same id.
+     */
+    public void add(StatePoint state) {
+        attach(state.getId(), createMarker(state));
+    }
+
+    /**
+     * Creates the marker geometry of a state without attaching it. May run on
+     * any thread.
+     */
+    Geometry createMarker(StatePoint state) {
+        Geometry geom = new Geometry("state", sphere);
+        geom.setMaterial(material);
+        geom.setUserData("stateId", state.getId());
+        Vector3d pos = state.getPosition();
+        geom.setLocalTranslation(transform.toViewX(pos.getX()), transform.toViewY(pos.getY()),
+                transform.toViewZ(pos.getZ()));
+        return geom;
+    }
+
+    /**
+     * Attaches a marker created by {@link #createMarker}, replacing an
+     * existing marker with the same id.
+     */
+    void attach(String stateId, Geometry geom) {
+        remove(stateId);
+        markers.put(stateId, geom);
+        instances.attachChild(geom);
+        dirty = true;
+    }
+
+    /**
+     * Moves the marker of a state. The instance transform is updated with the
+     * next frame without regrouping.
+     */
+    public void move(String stateId, Vector3d position) {
+        Geometry geom = markers.get(stateId);
+        if (geom != null) {
+            geom.setLocalTranslation(transform.toViewX(position.getX()), transform.toViewY(position.getY()),
+                    transform.toViewZ(position.getZ()));
+        }
+    }
+
+    public void remove(String stateId) {
+        Geometry geom = markers.remove(stateId);
+        if (geom == null) {
+            return;
+        }
+        if (geom == highlighted) {
+            highlighted = null;
+        }
+        geom.removeFromParent();
+        dirty = true;
+    }
+
+    /**
+     * Highlights a single state, clearing any previous highlight.
+     */
+    public void highlight(String stateId) {
+        clearHighlight();
+        Geometry geom = markers.get(stateId);
+        if (geom == null) {
+            return;
+        }
+        geom.removeFromParent();
+        geom.setMaterial(highlightMaterial);
+        highlights.attachChild(geom);
+        highlighted = geom;
+    }
+
+    public void clearHighlight() {
+        if (highlighted == null) {
+            return;
+        }
+        highlighted.removeFromParent();
+        highlighted.setMaterial(material);
+        instances.attachChild(highlighted);
+        highlighted = null;
+        dirty = true;
+    }
+
+    /**
+     * Regroups newly attached markers into instanced geometries once per frame.
+     */
+    private final class InstanceControl extends AbstractControl {
+        @Override
+        protected void controlUpdate(float tpf) {
+            if (dirty) {
+                instances.instance();
+                dirty = false;
+            }
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+            // nothing to do
+        }
+    }
+}
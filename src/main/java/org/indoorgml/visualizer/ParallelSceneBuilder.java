@@ -0,0 +1,305 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.app.Application;
+import com.jme3.scene.Geometry;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds the scene of a large model on worker threads instead of the render
+ * thread.
+ * <p>
+ * The cells are split into the chunks of their {@link CellSpaceBatch} on the
+ * calling thread. The buffers of every chunk are then filled by fork-join
+ * tasks over ranges of CellSpaces, and meshes and bounds are created on the
+ * workers as well. Transitions and State markers are prepared in slices.
+ * Every finished part is handed to the render thread with
+ * {@link Application#enqueue(Runnable)} and attached there, so the window
+ * keeps rendering while the model fills in.
+ * <p>
+ * Call the build methods from the render thread. Progress is reported on the
+ * render thread. A cancelled build stops preparing parts; parts attached
+ * before the cancellation stay in the scene.
+ */
+public class ParallelSceneBuilder {
+
+    /** Polygons filled by one fork-join leaf task. */
+    private static final int POLYGON_GRAIN = 1024;
+    /** State markers created by one task. */
+    private static final int STATE_SLICE = 4096;
+    /** Transition vertices written by one task. */
+    private static final int TRANSITION_SLICE_VERTICES = 1 << 16;
+
+    /**
+     * Receives the progress of a build on the render thread.
+     */
+    public interface ProgressListener {
+        /**
+         * @param completed polygons, Transitions and States attached so far
+         * @param total     polygons, Transitions and States of the whole build
+         */
+        void progressed(int completed, int total);
+    }
+
+    /**
+     * Handle of a running build.
+     */
+    public static final class Build {
+        private final ProgressListener listener;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private volatile boolean cancelled;
+        private volatile int completed;
+        private int total;
+
+        Build(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getCompleted() {
+            return completed;
+        }
+
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Stops the build. Parts that are already prepared are dropped.
+         */
+        public void cancel() {
+            cancelled = true;
+            future.cancel(false);
+        }
+
+        /**
+         * Returns a future that completes on the render thread once every part
+         * is attached, or exceptionally if preparing a part failed.
+         */
+        public CompletableFuture<Void> getFuture() {
+            return future;
+        }
+
+        void advance(int units) {
+            completed += units;
+            if (listener != null) {
+                listener.progressed(completed, total);
+            }
+            if (completed == total) {
+                future.complete(null);
+            }
+        }
+
+        void fail(Throwable error) {
+            cancelled = true;
+            future.completeExceptionally(error);
+        }
+    }
+
+    private final Application app;
+    private final ForkJoinPool pool;
+
+    public ParallelSceneBuilder(Application app) {
+        this(app, ForkJoinPool.commonPool());
+    }
+
+    public ParallelSceneBuilder(Application app, ForkJoinPool pool) {
+        this.app = app;
+        this.pool = pool;
+    }
+
+    /**
+     * Adds all CellSpaces, States and Transitions of the model to the given
+     * scene parts. Any of the parts may be null if it is not shown.
+     */
+    public Build build(IndoorGMLModel model, CellSpaceBatch cells, InstancedStateMarkers states,
+                       TransitionNetwork transitions, ProgressListener listener) {
+        Build build = new Build(listener);
+        List<Runnable> tasks = new ArrayList<>();
+        if (cells != null) {
+            prepareCells(build, cells, new ArrayList<>(model.getCellSpaces()), tasks);
+        }
+        if (states != null) {
+            prepareStates(build, states, model.getStates(), tasks);
+        }
+        if (transitions != null) {
+            prepareTransitions(build, transitions, model.getTransitions(), tasks);
+        }
+        return start(build, tasks);
+    }
+
+    /**
+     * Merges the cells into the batch.
+     */
+    public Build addCellSpaces(CellSpaceBatch batch, List<CellSpace> cells, ProgressListener listener) {
+        Build build = new Build(listener);
+        List<Runnable> tasks = new ArrayList<>();
+        prepareCells(build, batch, cells, tasks);
+        return start(build, tasks);
+    }
+
+    public Build addStates(InstancedStateMarkers markers, Collection<StatePoint> states,
+                           ProgressListener listener) {
+        Build build = new Build(listener);
+        List<Runnable> tasks = new ArrayList<>();
+        prepareStates(build, markers, states, tasks);
+        return start(build, tasks);
+    }
+
+    public Build addTransitions(TransitionNetwork network, Collection<Transition> transitions,
+                                ProgressListener listener) {
+        Build build = new Build(listener);
+        List<Runnable> tasks = new ArrayList<>();
+        prepareTransitions(build, network, transitions, tasks);
+        return start(build, tasks);
+    }
+
+    private Build start(Build build, List<Runnable> tasks) {
+        if (build.total == 0) {
+            build.future.complete(null);
+            return build;
+        }
+        for (Runnable task : tasks) {
+            pool.execute(() -> {
+                if (build.isCancelled()) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException | Error e) {
+                    build.fail(e);
+                }
+            });
+        }
+        return build;
+    }
+
+    /**
+     * Hands a prepared part to the render thread.
+     */
+    private void attach(Build build, int units, Runnable attach) {
+        if (build.isCancelled()) {
+            return;
+        }
+        app.enqueue(() -> {
+            if (!build.isCancelled()) {
+                attach.run();
+                build.advance(units);
+            }
+        });
+    }
+
+    private void prepareCells(Build build, CellSpaceBatch batch, List<CellSpace> cells, List<Runnable> tasks) {
+        // planning assigns palette colors and must happen in order on this thread
+        for (BatchChunk chunk : batch.plan(cells)) {
+            build.total += chunk.getPolygonCount();
+            tasks.add(() -> {
+                // welding and the offsets cover whole cells and precede the split fill
+                chunk.layout();
+                new FillTask(build, chunk, 0, chunk.getPolygonCount()).invoke();
+                if (build.isCancelled()) {
+                    return;
+                }
+                chunk.finish();
+                attach(build, chunk.getPolygonCount(), () -> batch.addGeometry(chunk));
+            });
+        }
+    }
+
+    private void prepareStates(Build build, InstancedStateMarkers markers, Collection<StatePoint> states,
+                               List<Runnable> tasks) {
+        List<StatePoint> all = new ArrayList<>(states);
+        build.total += all.size();
+        for (int start = 0; start < all.size(); start += STATE_SLICE) {
+            List<StatePoint> slice = all.subList(start, Math.min(all.size(), start + STATE_SLICE));
+            tasks.add(() -> {
+                Geometry[] geometries = new Geometry[slice.size()];
+                for (int i = 0; i < geometries.length; i++) {
+                    geometries[i] = markers.createMarker(slice.get(i));
+                }
+                attach(build, slice.size(), () -> {
+                    for (int i = 0; i < geometries.length; i++) {
+                        markers.attach(slice.get(i).getId(), geometries[i]);
+                    }
+                });
+            });
+        }
+    }
+
+    private void prepareTransitions(Build build, TransitionNetwork network, Collection<Transition> transitions,
+                                    List<Runnable> tasks) {
+        List<Transition> slice = new ArrayList<>();
+        int vertices = 0;
+        for (Transition t : transitions) {
+            int count = Math.max(0, t.getGeometry().getVertexCount() - 1) * 2;
+            if (vertices + count > TRANSITION_SLICE_VERTICES && !slice.isEmpty()) {
+                addTransitionTask(build, network, slice, tasks);
+                slice = new ArrayList<>();
+                vertices = 0;
+            }
+            slice.add(t);
+            vertices += count;
+        }
+        if (!slice.isEmpty()) {
+            addTransitionTask(build, network, slice, tasks);
+        }
+    }
+
+    private void addTransitionTask(Build build, TransitionNetwork network, List<Transition> slice,
+                                   List<Runnable> tasks) {
+        build.total += slice.size();
+        tasks.add(() -> {
+            TransitionNetwork.PreparedChunk chunk = network.prepare(slice);
+            attach(build, slice.size(), () -> network.attach(chunk));
+        });
+    }
+
+    /**
+     * Fills the buffers of a chunk, splitting its polygons, which are grouped
+     * by CellSpace, into ranges.
+     */
+    @SuppressWarnings("serial")
+    private static final class FillTask extends RecursiveAction {
+        private final Build build;
+        private final BatchChunk chunk;
+        private final int from;
+        private final int to;
+
+        FillTask(Build build, BatchChunk chunk, int from, int to) {
+            this.build = build;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (build.isCancelled()) {
+                return;
+            }
+            if (to - from > POLYGON_GRAIN) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new FillTask(build, chunk, from, mid), new FillTask(build, chunk, mid, to));
+                return;
+            }
+            chunk.fill(from, to);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.LineString;
+import org.indoorgml.model.ModelChangeEvent;
+import org.indoorgml.model.ModelChangeListener;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+import org.indoorgml.model.Vector3d;
+import org.indoorgml.spatial.BoundingVolumeHierarchy;
+import org.indoorgml.spatial.Intersections;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ray picking on the CPU without walking the scene graph.
+ * <p>
+ * The service copies the triangles of all CellSpaces, the State positions and
+ * the Transition segments of a model into packed arrays and builds one
+ * {@link BoundingVolumeHierarchy} per kind, so a pick only tests the few
+ * primitives near the ray. States are picked as spheres and Transitions as
+ * thin capsules around their segments. The result carries the ID of the hit
+ * object, which the scene parts map to their geometry in constant time.
+ * <p>
+ * Register the service as change listener of the model. Removed objects are
+ * filtered out right away through bit sets over their model handles; after
+ * additions or moves the index is rebuilt on the next pick.
+ * <p>
+ * Not thread safe, use it on the render thread.
+ */
+public class PickingService implements ModelChangeListener {
+
+    private static final float DEFAULT_TRANSITION_TOLERANCE = 0.1f;
+
+    /**
+     * Kind of a picked object.
+     */
+    public enum Kind {
+        CELL_SPACE, STATE, TRANSITION
+    }
+
+    /**
+     * Closest object hit by a ray.
+     */
+    public static final class Pick {
+        private final Kind kind;
+        private final String id;
+        private final String polygonId;
+        private final double distance;
+
+        Pick(Kind kind, String id, String polygonId, double distance) {
+            this.kind = kind;
+            this.id = id;
+            this.polygonId = polygonId;
+            this.distance = distance;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns the ID of the hit polygon if a CellSpace was picked.
+         */
+        public String getPolygonId() {
+            return polygonId;
+        }
+
+        /**
+         * Returns the distance along the ray in multiples of its direction.
+         */
+        public double getDistance() {
+            return distance;
+        }
+    }
+
+    private final IndoorGMLModel model;
+    private final double stateRadius;
+    private final double transitionTolerance;
+    /** Model handles of the elements removed since the last rebuild. */
+    private final BitSet removedCells = new BitSet();
+    private final BitSet removedStates = new BitSet();
+    private final BitSet removedTransitions = new BitSet();
+    private boolean dirty = true;
+
+    private double[] triangles;
+    private int[] trianglePolygons;
+    private String[] polygonIds;
+    private String[] polygonCells;
+    private int[] polygonCellHandles;
+    private BoundingVolumeHierarchy triangleTree;
+
+    private double[] statePositions;
+    private String[] stateIds;
+    private int[] stateHandles;
+    private BoundingVolumeHierarchy stateTree;
+
+    /** Segment end points as six coordinates per segment. */
+    private double[] segments;
+    private String[] segmentTransitions;
+    private int[] segmentTransitionHandles;
+    private BoundingVolumeHierarchy segmentTree;
+
+    public PickingService(IndoorGMLModel model) {
+        this(model, StateGeometryBuilder.RADIUS, DEFAULT_TRANSITION_TOLERANCE);
+    }
+
+    /**
+     * Creates a service for a scene built with the given transform. The
+     * marker radius and the transition tolerance of the scene are converted
+     * into model units; rays are passed to {@link #pick(Ray, ViewTransform)}.
+     */
+    public PickingService(IndoorGMLModel model, ViewTransform view) {
+        this(model, (float) view.toModelLength(StateGeometryBuilder.RADIUS),
+                (float) view.toModelLength(DEFAULT_TRANSITION_TOLERANCE));
+    }
+
+    /**
+     * @param stateRadius         radius of the State markers
+     * @param transitionTolerance maximum distance between the ray and a
+     *                            Transition segment that still counts as a hit
+     */
+    public PickingService(IndoorGMLModel model, float stateRadius, float transitionTolerance) {
+        this.model = model;
+        this.stateRadius = stateRadius;
+        this.transitionTolerance = transitionTolerance;
+    }
+
+    /**
+     * Returns the closest object hit by the ray, or null.
+     */
+    public Pick pick(Ray ray) {
+        Vector3f o = ray.getOrigin();
+        Vector3f d = ray.getDirection();
+        return pick(o.x, o.y, o.z, d.x, d.y, d.z);
+    }
+
+    /**
+     * Returns the closest object hit by a ray of a scene built with the given
+     * transform, for example a ray through the cursor. The distance of the
+     * pick is measured in model units.
+     */
+    public Pick pick(Ray ray, ViewTransform view) {
+        Vector3d o = view.toModel(ray.getOrigin());
+        Vector3f d = ray.getDirection();
+        return pick(o.getX(), o.getY(), o.getZ(), d.x, d.y, d.z);
+    }
+
+    /**
+     * Returns the closest object hit by the ray {@code origin + t * direction},
+     * {@code t >= 0}, or null.
+     */
+    public Pick pick(double ox, double oy, double oz, double dx, double dy, double dz) {
+        if (dirty) {
+            rebuild();
+        }
+        int[] hit = {-1, -1, -1};
+        double t = triangleTree.raycast(ox, oy, oz, dx, dy, dz, Double.POSITIVE_INFINITY, (item, maxT) -> {
+            double ti = Intersections.rayTriangle(triangles, item * 9, ox, oy, oz, dx, dy, dz);
+            if (ti < maxT && !removedCells.get(polygonCellHandles[trianglePolygons[item]])) {
+                hit[0] = item;
+                return ti;
+            }
+            return maxT;
+        });
+        t = stateTree.raycast(ox, oy, oz, dx, dy, dz, t, (item, maxT) -> {
+            double ti = Intersections.raySphere(statePositions[item * 3], statePositions[item * 3 + 1],
+                    statePositions[item * 3 + 2], stateRadius, ox, oy, oz, dx, dy, dz);
+            if (ti < maxT && !removedStates.get(stateHandles[item])) {
+                hit[1] = item;
+                return ti;
+            }
+            return maxT;
+        });
+        t = segmentTree.raycast(ox, oy, oz, dx, dy, dz, t, (item, maxT) -> {
+            double ti = Intersections.raySegment(segments, item * 6, item * 6 + 3, transitionTolerance,
+                    ox, oy, oz, dx, dy, dz);
+            if (ti < maxT && !removedTransitions.get(segmentTransitionHandles[item])) {
+                hit[2] = item;
+                return ti;
+            }
+            return maxT;
+        });
+        // every later search only accepts hits closer than the earlier ones
+        if (hit[2] >= 0) {
+            return new Pick(Kind.TRANSITION, segmentTransitions[hit[2]], null, t);
+        }
+        if (hit[1] >= 0) {
+            return new Pick(Kind.STATE, stateIds[hit[1]], null, t);
+        }
+        if (hit[0] >= 0) {
+            int polygon = trianglePolygons[hit[0]];
+            return new Pick(Kind.CELL_SPACE, polygonCells[polygon], polygonIds[polygon], t);
+        }
+        return null;
+    }
+
+    @Override
+    public void modelChanged(List<ModelChangeEvent> events) {
+        for (ModelChangeEvent e : events) {
+            int handle = e.getHandle();
+            switch (e.getType()) {
+                case CELL_SPACE_REMOVED:
+                    markRemoved(removedCells, handle);
+                    break;
+                case STATE_REMOVED:
+                    markRemoved(removedStates, handle);
+                    break;
+                case TRANSITION_REMOVED:
+                    markRemoved(removedTransitions, handle);
+                    break;
+                default:
+                    dirty = true;
+                    break;
+            }
+        }
+    }
+
+    private void markRemoved(BitSet removed, int handle) {
+        if (handle >= 0) {
+            removed.set(handle);
+        } else {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Rebuilds the index from the current model.
+     */
+    public void rebuild() {
+        removedCells.clear();
+        removedStates.clear();
+        removedTransitions.clear();
+        buildTriangles(model.getCellSpaces());
+        buildStates(model.getStates());
+        buildSegments(model.getTransitions());
+        dirty = false;
+    }
+
+    private void buildTriangles(Collection<CellSpace> cells) {
+        int polygonCount = 0;
+        int triangleCount = 0;
+        for (CellSpace cs : cells) {
+            for (Polygon poly : cs.getPolygons()) {
+                polygonCount++;
+                triangleCount += poly.getIndexArray().length / 3;
+            }
+        }
+        triangles = new double[triangleCount * 9];
+        trianglePolygons = new int[triangleCount];
+        polygonIds = new String[polygonCount];
+        polygonCells = new String[polygonCount];
+        polygonCellHandles = new int[polygonCount];
+        double[] bounds = new double[triangleCount * 6];
+        int p = 0;
+        int t = 0;
+        for (CellSpace cs : cells) {
+            for (Polygon poly : cs.getPolygons()) {
+                polygonIds[p] = poly.getId();
+                polygonCells[p] = cs.getId();
+                polygonCellHandles[p] = cs.getHandle();
+                double[] coords = poly.getCoordinates();
+                int[] indices = poly.getIndexArray();
+                for (int i = 0; i + 2 < indices.length; i += 3) {
+                    trianglePolygons[t] = p;
+                    for (int k = 0; k < 3; k++) {
+                        System.arraycopy(coords, indices[i + k] * 3, triangles, t * 9 + k * 3, 3);
+                    }
+                    bound(triangles, t * 9, 3, 0, bounds, t * 6);
+                    t++;
+                }
+                p++;
+            }
+        }
+        triangleTree = BoundingVolumeHierarchy.build(bounds);
+    }
+
+    private void buildStates(Collection<StatePoint> states) {
+        statePositions = new double[states.size() * 3];
+        stateIds = new String[states.size()];
+        stateHandles = new int[states.size()];
+        double[] bounds = new double[states.size() * 6];
+        int s = 0;
+        for (StatePoint state : states) {
+            Vector3d pos = state.getPosition();
+            stateIds[s] = state.getId();
+            stateHandles[s] = state.getHandle();
+            statePositions[s * 3] = pos.getX();
+            statePositions[s * 3 + 1] = pos.getY();
+            statePositions[s * 3 + 2] = pos.getZ();
+            bound(statePositions, s * 3, 1, stateRadius, bounds, s * 6);
+            s++;
+        }
+        stateTree = BoundingVolumeHierarchy.build(bounds);
+    }
+
+    private void buildSegments(Collection<Transition> transitions) {
+        int count = 0;
+        for (Transition tr : transitions) {
+            LineString line = tr.getGeometry();
+            count += line != null && line.getVertexCount() >= 2 ? line.getVertexCount() - 1 : 1;
+        }
+        segments = new double[count * 6];
+        segmentTransitions = new String[count];
+        segmentTransitionHandles = new int[count];
+        int s = 0;
+        for (Transition tr : transitions) {
+            LineString line = tr.getGeometry();
+            if (line != null && line.getVertexCount() >= 2) {
+                double[] coords = line.getCoordinates();
+                for (int i = 0; i + 5 < coords.length; i += 3) {
+                    System.arraycopy(coords, i, segments, s * 6, 6);
+                    segmentTransitionHandles[s] = tr.getHandle();
+                    segmentTransitions[s++] = tr.getId();
+                }
+            } else {
+                Vector3d a = tr.getStateA().getPosition();
+                Vector3d b = tr.getStateB().getPosition();
+                double[] seg = {a.getX(), a.getY(), a.getZ(), b.getX(), b.getY(), b.getZ()};
+                System.arraycopy(seg, 0, segments, s * 6, 6);
+                segmentTransitionHandles[s] = tr.getHandle();
+                segmentTransitions[s++] = tr.getId();
+            }
+        }
+        double[] bounds = new double[count * 6];
+        for (int i = 0; i < count; i++) {
+            bound(segments, i * 6, 2, transitionTolerance, bounds, i * 6);
+        }
+        segmentTree = BoundingVolumeHierarchy.build(bounds);
+    }
+
+    /**
+     * Writes the box around {@code points} consecutive points, grown by
+     * {@code margin}, to {@code bounds}.
+     */
+    private static void bound(double[] coords, int offset, int points, double margin, double[] bounds, int b) {
+        Arrays.fill(bounds, b, b + 3, Double.POSITIVE_INFINITY);
+        Arrays.fill(bounds, b + 3, b + 6, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < points; i++) {
+            for (int a = 0; a < 3; a++) {
+                double c = coords[offset + i * 3 + a];
+                bounds[b + a] = Math.min(bounds[b + a], c - margin);
+                bounds[b + 3 + a] = Math.max(bounds[b + 3 + a], c + margin);
+            }
+        }
+    }
+}
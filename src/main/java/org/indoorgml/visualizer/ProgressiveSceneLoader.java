@@ -0,0 +1,422 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.scene.Geometry;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+import org.indoorgml.model.Vector3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * App state that streams a model into the scene under a per frame time budget.
+ * <p>
+ * When the state is attached, the CellSpaces, States and Transitions are
+ * ordered by their distance to the camera. Every frame the state then prepares
+ * and attaches the next parts until the budget is used up: first the nearest
+ * few cells, then groups that double in size, so the surroundings of the
+ * camera show up within the first frames and the farther parts are merged
+ * into larger meshes. States and Transitions follow the cells of the same
+ * distance.
+ * <p>
+ * With a {@link ForkJoinPool} the buffers are filled on its workers and only
+ * the attachment is done within the budget; without one everything runs on
+ * the render thread. The scene parts should be empty when loading starts and
+ * must not be rebuilt while it runs. Detaching the state stops loading.
+ * <p>
+ * The model may be changed on the render thread while loading, typically with
+ * a {@link SceneSynchronizer} keeping the loaded parts up to date. Every group
+ * takes the current version of its elements from the model when it is
+ * submitted and skips removed ones, and after a group is attached, elements
+ * removed or moved while it was prepared are removed or updated.
+ */
+public class ProgressiveSceneLoader extends BaseAppState {
+
+    private static final float DEFAULT_FRAME_BUDGET = 4f;
+    private static final int FIRST_GROUP = 64;
+    private static final int MAX_GROUP = 8192;
+
+    private final IndoorGMLModel model;
+    private final CellSpaceBatch cells;
+    private final InstancedStateMarkers states;
+    private final TransitionNetwork transitions;
+    private final ForkJoinPool pool;
+    private final ConcurrentLinkedQueue<Runnable> ready = new ConcurrentLinkedQueue<>();
+    private long frameBudget = (long) (DEFAULT_FRAME_BUDGET * 1e6);
+    private volatile boolean stopped;
+
+    private List<CellSpace> cellOrder;
+    private List<StatePoint> stateOrder;
+    private List<Transition> transitionOrder;
+    private int nextCell;
+    private int nextState;
+    private int nextTransition;
+    private int groupSize = FIRST_GROUP;
+    private int inFlight;
+    private int loaded;
+    private int total;
+
+    /**
+     * Creates a loader that prepares all buffers on the render thread. Any of
+     * the scene parts may be null if it is not shown.
+     */
+    public ProgressiveSceneLoader(IndoorGMLModel model, CellSpaceBatch cells, InstancedStateMarkers states,
+                                  TransitionNetwork transitions) {
+        this(model, cells, states, transitions, null);
+    }
+
+    /**
+     * Creates a loader that fills the buffers on the given pool.
+     */
+    public ProgressiveSceneLoader(IndoorGMLModel model, CellSpaceBatch cells, InstancedStateMarkers states,
+                                  TransitionNetwork transitions, ForkJoinPool pool) {
+        this.model = model;
+        this.cells = cells;
+        this.states = states;
+        this.transitions = transitions;
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the time in milliseconds the loader may spend per frame.
+     */
+    public void setFrameBudget(float millis) {
+        frameBudget = (long) (millis * 1e6);
+    }
+
+    public float getFrameBudget() {
+        return frameBudget / 1e6f;
+    }
+
+    /**
+     * Returns the share of loaded polygons, States and Transitions.
+     */
+    public float getProgress() {
+        return total == 0 ? 1f : Math.min(1f, (float) loaded / total);
+    }
+
+    public boolean isFinished() {
+        return cellOrder != null && !hasMoreWork() && inFlight == 0 && ready.isEmpty();
+    }
+
+    @Override
+    protected void initialize(Application app) {
+        // the scene parts share one transform, distances are measured in the model
+        Vector3d eye = viewTransform().toModel(app.getCamera().getLocation());
+        cellOrder = Collections.emptyList();
+        stateOrder = Collections.emptyList();
+        transitionOrder = Collections.emptyList();
+        if (cells != null) {
+            cellOrder = sortByDistance(model.getCellSpaces(), eye, ProgressiveSceneLoader::position);
+            for (CellSpace cs : cellOrder) {
+                total += cs.getPolygons().size();
+            }
+        }
+        if (states != null) {
+            stateOrder = sortByDistance(model.getStates(), eye, StatePoint::getPosition);
+            total += stateOrder.size();
+        }
+        if (transitions != null) {
+            transitionOrder = sortByDistance(model.getTransitions(), eye, t -> t.getStateA().getPosition());
+            total += transitionOrder.size();
+        }
+    }
+
+    @Override
+    protected void cleanup(Application app) {
+        stopped = true;
+        ready.clear();
+    }
+
+    @Override
+    protected void onEnable() {
+        // loading continues with the next update
+    }
+
+    @Override
+    protected void onDisable() {
+        // prepared parts wait in the queue until the state is enabled again
+    }
+
+    @Override
+    public void update(float tpf) {
+        long deadline = System.nanoTime() + frameBudget;
+        int maxInFlight = pool != null ? pool.getParallelism() * 2 : 1;
+        while (System.nanoTime() < deadline) {
+            Runnable attach = ready.poll();
+            if (attach != null) {
+                attach.run();
+                continue;
+            }
+            if (!hasMoreWork() || inFlight >= maxInFlight) {
+                break;
+            }
+            submitNextGroup();
+        }
+    }
+
+    private boolean hasMoreWork() {
+        return nextCell < cellOrder.size() || nextState < stateOrder.size()
+                || nextTransition < transitionOrder.size();
+    }
+
+    /**
+     * Prepares the next group of cells together with the States and
+     * Transitions of the same share of their distance ordered lists.
+     */
+    private void submitNextGroup() {
+        int cellEnd = Math.min(cellOrder.size(), nextCell + groupSize);
+        double share = cellOrder.isEmpty() ? 0 : (double) cellEnd / cellOrder.size();
+        int stateEnd = groupEnd(nextState, stateOrder.size(), share);
+        int transitionEnd = groupEnd(nextTransition, transitionOrder.size(), share);
+
+        if (nextCell < cellEnd) {
+            List<CellSpace> group = currentCells(cellOrder.subList(nextCell, cellEnd));
+            // planning assigns palette colors and must stay on the render thread
+            List<BatchChunk> chunks = cells.plan(group);
+            int[] pending = {chunks.size()};
+            for (BatchChunk chunk : chunks) {
+                submit(() -> {
+                    chunk.layout();
+                    chunk.fill(0, chunk.getPolygonCount());
+                    chunk.finish();
+                    return () -> {
+                        cells.addGeometry(chunk);
+                        loaded += chunk.getPolygonCount();
+                        // a cell may span several chunks of its group
+                        if (--pending[0] == 0) {
+                            reconcileCells(group);
+                        }
+                    };
+                });
+            }
+        }
+        if (nextState < stateEnd) {
+            List<StatePoint> slice = currentStates(stateOrder.subList(nextState, stateEnd));
+            if (!slice.isEmpty()) {
+                submit(() -> {
+                    Geometry[] markers = new Geometry[slice.size()];
+                    for (int i = 0; i < markers.length; i++) {
+                        markers[i] = states.createMarker(slice.get(i));
+                    }
+                    return () -> {
+                        attachStates(slice, markers);
+                        loaded += markers.length;
+                    };
+                });
+            }
+        }
+        if (nextTransition < transitionEnd) {
+            List<Transition> slice = currentTransitions(transitionOrder.subList(nextTransition, transitionEnd));
+            if (!slice.isEmpty()) {
+                submit(() -> {
+                    TransitionNetwork.PreparedChunk chunk = transitions.prepare(slice);
+                    return () -> {
+                        transitions.attach(chunk);
+                        reconcileTransitions(slice);
+                        loaded += slice.size();
+                    };
+                });
+            }
+        }
+        nextCell = cellEnd;
+        nextState = stateEnd;
+        nextTransition = transitionEnd;
+        // groups prepared on the render thread have to fit into a single frame
+        groupSize = Math.min(pool != null ? MAX_GROUP : MAX_GROUP / 8, groupSize * 2);
+    }
+
+    /**
+     * Returns the current version of the cells that are still in the model
+     * and not yet shown. The model may have changed since the load order was
+     * computed; cells that were removed or that the scene already received
+     * through a {@link SceneSynchronizer} are counted as loaded.
+     */
+    private List<CellSpace> currentCells(List<CellSpace> slice) {
+        List<CellSpace> current = new ArrayList<>(slice.size());
+        for (CellSpace cs : slice) {
+            CellSpace c = model.getCellSpace(cs.getHandle());
+            if (c == null || !cells.getRanges(c.getId()).isEmpty()) {
+                loaded += cs.getPolygons().size();
+            } else {
+                current.add(c);
+            }
+        }
+        return current;
+    }
+
+    private List<StatePoint> currentStates(List<StatePoint> slice) {
+        List<StatePoint> current = new ArrayList<>(slice.size());
+        for (StatePoint state : slice) {
+            StatePoint s = model.getState(state.getHandle());
+            if (s == null || states.getGeometry(s.getId()) != null) {
+                loaded++;
+            } else {
+                current.add(s);
+            }
+        }
+        return current;
+    }
+
+    private List<Transition> currentTransitions(List<Transition> slice) {
+        List<Transition> current = new ArrayList<>(slice.size());
+        for (Transition transition : slice) {
+            Transition t = model.getTransition(transition.getHandle());
+            if (t == null || transitions.contains(t.getId())) {
+                loaded++;
+            } else {
+                current.add(t);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Applies the changes made to the model while a group of cells was being
+     * prepared. The model replaces moved cells by copies with new polygon
+     * lists, so a different list means the prepared geometry is stale.
+     */
+    private void reconcileCells(List<CellSpace> group) {
+        for (CellSpace prepared : group) {
+            CellSpace current = model.getCellSpace(prepared.getHandle());
+            if (current == null) {
+                cells.remove(prepared.getId());
+            } else if (current.getPolygons() != prepared.getPolygons()) {
+                cells.rebuild(current);
+            }
+        }
+    }
+
+    private void attachStates(List<StatePoint> slice, Geometry[] markers) {
+        for (int i = 0; i < markers.length; i++) {
+            StatePoint prepared = slice.get(i);
+            StatePoint current = model.getState(prepared.getHandle());
+            if (current == null) {
+                continue;
+            }
+            states.attach(current.getId(), markers[i]);
+            if (current != prepared) {
+                states.move(current.getId(), current.getPosition());
+            }
+        }
+    }
+
+    private void reconcileTransitions(List<Transition> slice) {
+        for (Transition prepared : slice) {
+            Transition current = model.getTransition(prepared.getHandle());
+            if (current == null) {
+                transitions.remove(prepared.getId());
+            } else if (current != prepared) {
+                transitions.update(current);
+            }
+        }
+    }
+
+    /**
+     * Returns the end of the next group of a list: at least the same share as
+     * the cells and at least one group size further.
+     */
+    private int groupEnd(int next, int size, double share) {
+        return Math.min(size, Math.max((int) Math.ceil(share * size), next + groupSize));
+    }
+
+    /**
+     * Work that prepares a part and returns the step attaching it.
+     */
+    private interface Preparation {
+        Runnable prepare();
+    }
+
+    private void submit(Preparation preparation) {
+        inFlight++;
+        Runnable task = () -> {
+            if (stopped) {
+                return;
+            }
+            Runnable attach;
+            try {
+                attach = preparation.prepare();
+            } catch (RuntimeException e) {
+                // rethrown on the render thread
+                attach = () -> {
+                    throw e;
+                };
+            }
+            Runnable step = attach;
+            ready.add(() -> {
+                inFlight--;
+                step.run();
+            });
+        };
+        if (pool != null) {
+            pool.execute(task);
+        } else {
+            task.run();
+        }
+    }
+
+    private ViewTransform viewTransform() {
+        if (cells != null) {
+            return cells.getViewTransform();
+        }
+        if (states != null) {
+            return states.getViewTransform();
+        }
+        return transitions != null ? transitions.getViewTransform() : ViewTransform.IDENTITY;
+    }
+
+    private interface PositionFunction<T> {
+        Vector3d position(T element);
+    }
+
+    /**
+     * Sorts the elements by their distance to the eye. Distances and indices
+     * are packed into longs so a primitive sort can be used; the float bits of
+     * non negative distances order like the distances themselves.
+     */
+    private static <T> List<T> sortByDistance(Collection<T> elements, Vector3d eye, PositionFunction<T> position) {
+        List<T> list = new ArrayList<>(elements);
+        long[] keys = new long[list.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Vector3d p = position.position(list.get(i));
+            float d = 0f;
+            if (p != null) {
+                double dx = p.getX() - eye.getX();
+                double dy = p.getY() - eye.getY();
+                double dz = p.getZ() - eye.getZ();
+                d = (float) (dx * dx + dy * dy + dz * dz);
+            }
+            keys[i] = ((long) Float.floatToIntBits(d) << 32) | i;
+        }
+        Arrays.sort(keys);
+        List<T> sorted = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            sorted.add(list.get((int) key));
+        }
+        return sorted;
+    }
+
+    private static Vector3d position(CellSpace cs) {
+        if (cs.getState() != null) {
+            return cs.getState().getPosition();
+        }
+        for (Polygon poly : cs.getPolygons()) {
+            double[] c = poly.getCoordinates();
+            if (c.length >= 3) {
+                return new Vector3d(c[0], c[1], c[2]);
+            }
+        }
+        return null;
+    }
+}
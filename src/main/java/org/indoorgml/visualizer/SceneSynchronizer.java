@@ -0,0 +1,94 @@
+package org.indoorgml.visualizer;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.ModelChangeEvent;
+import org.indoorgml.model.ModelChangeListener;
+import org.indoorgml.model.Transition;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a scene built from an {@link org.indoorgml.model.IndoorGMLModel} in
+ * sync with the model by applying only the reported changes.
+ * <p>
+ * Register the synchronizer as change listener of the model. Cells and
+ * transitions added within one batch of events are merged into the scene
+ * together; removals and moves only touch the ranges of the affected objects.
+ * Any of the scene parts may be null if it is not shown. Since the scene graph
+ * is changed directly, the model must be modified on the render thread.
+ */
+public class SceneSynchronizer implements ModelChangeListener {
+
+    private final CellSpaceBatch cells;
+    private final InstancedStateMarkers states;
+    private final TransitionNetwork transitions;
+
+    public SceneSynchronizer(CellSpaceBatch cells, InstancedStateMarkers states,
+                             TransitionNetwork transitions) {
+        this.cells = cells;
+        this.states = states;
+        this.transitions = transitions;
+    }
+
+    @Override
+    public void modelChanged(List<ModelChangeEvent> events) {
+        Map<String, CellSpace> addedCells = new LinkedHashMap<>();
+        Map<String, Transition> addedTransitions = new LinkedHashMap<>();
+        for (ModelChangeEvent e : events) {
+            switch (e.getType()) {
+                case CELL_SPACE_ADDED:
+                    addedCells.put(e.getId(), e.getCellSpace());
+                    break;
+                case CELL_SPACE_REMOVED:
+                    if (addedCells.remove(e.getId()) == null && cells != null) {
+                        cells.remove(e.getId());
+                    }
+                    break;
+                case CELL_SPACE_MOVED:
+                    if (addedCells.replace(e.getId(), e.getCellSpace()) == null && cells != null) {
+                        cells.update(e.getCellSpace());
+                    }
+                    break;
+                case STATE_ADDED:
+                    if (states != null) {
+                        states.add(e.getState());
+                    }
+                    break;
+                case STATE_REMOVED:
+                    if (states != null) {
+                        states.remove(e.getId());
+                    }
+                    break;
+                case STATE_MOVED:
+                    if (states != null) {
+                        states.move(e.getId(), e.getState().getPosition());
+                    }
+                    break;
+                case TRANSITION_ADDED:
+                    addedTransitions.put(e.getId(), e.getTransition());
+                    break;
+                case TRANSITION_REMOVED:
+                    if (addedTransitions.remove(e.getId()) == null && transitions != null) {
+                        transitions.remove(e.getId());
+                    }
+                    break;
+                case TRANSITION_MOVED:
+                    if (addedTransitions.replace(e.getId(), e.getTransition()) == null && transitions != null) {
+                        transitions.update(e.getTransition());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (cells != null && !addedCells.isEmpty()) {
+            cells.add(new ArrayList<>(addedCells.values()));
+        }
+        if (transitions != null && !addedTransitions.isEmpty()) {
+            transitions.addAll(addedTransitions.values());
+        }
+    }
+}
@@ -12,6 +12,7 @@ import com.jme3.scene.shape.Sphere;
 import org.indoorgml.model.StatePoint;
 import org.indoorgml.model.Vector3d;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -19,29 +20,59 @@ import java.util.List;
  */
 public class StateGeometryBuilder {
 
-    private static final float RADIUS = 0.2f;
+    static final float RADIUS = 0.2f;
 
     private StateGeometryBuilder() {
         // utility class
     }
 
     public static Node buildStates(List<StatePoint> states, AssetManager assetManager) {
+        return buildStates(states, assetManager, ViewTransform.IDENTITY);
+    }
+
+    /**
+     * Creates one marker per state placed at its position converted into the
+     * scene by the transform.
+     */
+    public static Node buildStates(List<StatePoint> states, AssetManager assetManager, ViewTransform transform) {
         Node node = new Node("states");
         Material material = defaultMaterial(assetManager);
         for (StatePoint state : states) {
-            node.attachChild(buildGeometry(state, material));
+            node.attachChild(buildGeometry(state, material, transform));
         }
         return node;
     }
 
-    private static Geometry buildGeometry(StatePoint state, Material material) {
+    /**
+     * Creates instanced markers for all states. They share one sphere mesh and
+     * material and are rendered with a single instanced draw call.
+     */
+    public static InstancedStateMarkers buildInstancedStates(Collection<StatePoint> states,
+                                                             AssetManager assetManager) {
+        return buildInstancedStates(states, assetManager, ViewTransform.IDENTITY);
+    }
+
+    /**
+     * Creates instanced markers placed by the transform. States added or moved
+     * later are placed the same way.
+     */
+    public static InstancedStateMarkers buildInstancedStates(Collection<StatePoint> states,
+                                                             AssetManager assetManager, ViewTransform transform) {
+        InstancedStateMarkers markers = new InstancedStateMarkers(assetManager, RADIUS, transform);
+        for (StatePoint state : states) {
+            markers.add(state);
+        }
+        return markers;
+    }
+
+    private static Geometry buildGeometry(StatePoint state, Material material, ViewTransform transform) {
         Sphere sphere = new Sphere(10, 10, RADIUS);
         Geometry geom = new Geometry("state", sphere);
         geom.setMaterial(material.clone());
-        ColorRGBA base = material.getParam("Color").getValue();
+        ColorRGBA base = (ColorRGBA) material.getParam("Color").getValue();
         geom.setUserData("baseColor", base.clone());
         Vector3d pos = state.getPosition();
-        geom.setLocalTranslation(new Vector3f((float) pos.getX(), (float) pos.getY(), (float) pos.getZ()));
+        geom.setLocalTranslation(transform.toView(pos, new Vector3f()));
         geom.setUserData("stateId", state.getId());
         return geom;
     }
@@ -0,0 +1,382 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Node;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.ModelChangeEvent;
+import org.indoorgml.model.ModelChangeListener;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+import org.indoorgml.spatial.StoreyPartition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scene of a model split into one node per storey.
+ * <p>
+ * The CellSpaces are grouped into storeys by a {@link StoreyPartition}. Every
+ * storey has its own cell batch, State markers and Transition network below
+ * its node, so the renderer can cull a storey as a whole by its bound, and a
+ * hidden storey is detached from the scene: neither its logical and geometric
+ * state is updated nor is it rendered, and the cost of a frame depends on the
+ * visible storeys only. States belong to the storey of their CellSpace;
+ * Transitions between storeys belong to the lower one.
+ * <p>
+ * With a {@link ViewTransform} every storey writes its vertices relative to
+ * its own elevation and its node is moved into place, so the floats of tall
+ * buildings stay small on every storey.
+ * <p>
+ * Register the scene as change listener of the model to keep it in sync.
+ * Added cells are put into the storey of their floor elevation; the storeys
+ * themselves are fixed when the scene is built. Must be modified on the render
+ * thread.
+ */
+public class StoreyScene implements ModelChangeListener {
+
+    /**
+     * Scene parts of one storey.
+     */
+    public static final class Storey {
+        private final int index;
+        private final Node node;
+        private final CellSpaceBatch cells;
+        private final InstancedStateMarkers states;
+        private final TransitionNetwork transitions;
+        private final SceneSynchronizer synchronizer;
+        private boolean visible = true;
+
+        Storey(int index, CellSpaceBatch cells, InstancedStateMarkers states, TransitionNetwork transitions) {
+            this.index = index;
+            this.node = new Node("storey" + index);
+            this.cells = cells;
+            this.states = states;
+            this.transitions = transitions;
+            this.synchronizer = new SceneSynchronizer(cells, states, transitions);
+            node.attachChild(cells.getNode());
+            node.attachChild(states.getNode());
+            node.attachChild(transitions.getNode());
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Node getNode() {
+            return node;
+        }
+
+        public CellSpaceBatch getCells() {
+            return cells;
+        }
+
+        public InstancedStateMarkers getStates() {
+            return states;
+        }
+
+        public TransitionNetwork getTransitions() {
+            return transitions;
+        }
+
+        public boolean isVisible() {
+            return visible;
+        }
+    }
+
+    private final Node node = new Node("storeys");
+    private final IndoorGMLModel model;
+    private final StoreyPartition partition;
+    private final ViewTransform view;
+    private final Storey[] storeys;
+    private final Map<String, Integer> storeyOfCell = new HashMap<>();
+    private final Map<String, Integer> storeyOfState = new HashMap<>();
+    private final Map<String, Integer> storeyOfTransition = new HashMap<>();
+
+    private StoreyScene(IndoorGMLModel model, StoreyPartition partition, ViewTransform view, Storey[] storeys) {
+        this.model = model;
+        this.partition = partition;
+        this.view = view;
+        this.storeys = storeys;
+        for (Storey storey : storeys) {
+            node.attachChild(storey.node);
+        }
+    }
+
+    /**
+     * Builds the scene of all CellSpaces, States and Transitions of the model
+     * with the default storey tolerance.
+     */
+    public static StoreyScene build(IndoorGMLModel model, AssetManager assetManager, ColorRGBA[] palette,
+                                    float alpha) {
+        return build(model, assetManager, palette, alpha, StoreyPartition.DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Builds the scene. Cells are colored per storey with vertex colors from
+     * the palette.
+     *
+     * @param tolerance largest difference of floor elevations within a storey
+     */
+    public static StoreyScene build(IndoorGMLModel model, AssetManager assetManager, ColorRGBA[] palette,
+                                    float alpha, double tolerance) {
+        return build(model, assetManager, palette, alpha, tolerance, ViewTransform.IDENTITY);
+    }
+
+    /**
+     * Builds the scene converted into the view by the transform. Every
+     * storey uses the transform moved to its elevation as local origin.
+     *
+     * @param tolerance largest difference of floor elevations within a storey
+     */
+    public static StoreyScene build(IndoorGMLModel model, AssetManager assetManager, ColorRGBA[] palette,
+                                    float alpha, double tolerance, ViewTransform view) {
+        StoreyPartition partition = StoreyPartition.compute(model.getCellSpaces(), tolerance);
+        int count = Math.max(1, partition.getStoreyCount());
+        List<List<StatePoint>> states = new ArrayList<>(count);
+        List<List<Transition>> transitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            states.add(new ArrayList<>());
+            transitions.add(new ArrayList<>());
+        }
+        Map<String, Integer> storeyOfCell = new HashMap<>();
+        for (StoreyPartition.Storey s : partition.getStoreys()) {
+            for (CellSpace cs : s.getCellSpaces()) {
+                storeyOfCell.put(cs.getId(), s.getIndex());
+            }
+        }
+        Map<String, Integer> storeyOfState = new HashMap<>();
+        for (StatePoint state : model.getStates()) {
+            CellSpace cs = model.getCellSpaceOfState(state.getId());
+            Integer index = cs != null ? storeyOfCell.get(cs.getId()) : null;
+            int storey = index != null ? index : indexAt(partition, state);
+            storeyOfState.put(state.getId(), storey);
+            states.get(storey).add(state);
+        }
+        Map<String, Integer> storeyOfTransition = new HashMap<>();
+        for (Transition t : model.getTransitions()) {
+            int storey = Math.min(storeyOf(storeyOfState, partition, t.getStateA()),
+                    storeyOf(storeyOfState, partition, t.getStateB()));
+            storeyOfTransition.put(t.getId(), storey);
+            transitions.get(storey).add(t);
+        }
+
+        Storey[] storeys = new Storey[count];
+        for (int i = 0; i < count; i++) {
+            List<CellSpace> cells = i < partition.getStoreyCount()
+                    ? new ArrayList<>(partition.getStorey(i).getCellSpaces()) : new ArrayList<>();
+            ViewTransform local = i < partition.getStoreyCount()
+                    ? view.withOrigin(view.getOriginX(), view.getOriginY(), partition.getStorey(i).getElevation())
+                    : view;
+            storeys[i] = new Storey(i,
+                    CellSpaceGeometryBuilder.buildVertexColoredCellSpaces(cells, assetManager, palette, alpha, -1,
+                            local),
+                    StateGeometryBuilder.buildInstancedStates(states.get(i), assetManager, local),
+                    TransitionGeometryBuilder.buildTransitionNetwork(transitions.get(i), assetManager, local));
+            storeys[i].node.setLocalTranslation(view.getTranslation(local, null));
+        }
+        StoreyScene scene = new StoreyScene(model, partition, view, storeys);
+        scene.storeyOfCell.putAll(storeyOfCell);
+        scene.storeyOfState.putAll(storeyOfState);
+        scene.storeyOfTransition.putAll(storeyOfTransition);
+        return scene;
+    }
+
+    /**
+     * Returns the node holding the nodes of the visible storeys.
+     */
+    public Node getNode() {
+        return node;
+    }
+
+    /**
+     * Returns the transform of the whole scene, for example to convert
+     * picking rays into the model.
+     */
+    public ViewTransform getViewTransform() {
+        return view;
+    }
+
+    public int getStoreyCount() {
+        return storeys.length;
+    }
+
+    public Storey getStorey(int index) {
+        return storeys[index];
+    }
+
+    /**
+     * Returns the storey of a CellSpace, or -1 if the cell is not part of the
+     * scene.
+     */
+    public int getStoreyOfCell(String cellId) {
+        Integer index = storeyOfCell.get(cellId);
+        return index != null ? index : -1;
+    }
+
+    public int getVisibleCount() {
+        int visible = 0;
+        for (Storey storey : storeys) {
+            if (storey.visible) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+
+    public boolean isVisible(int index) {
+        return storeys[index].visible;
+    }
+
+    /**
+     * Shows or hides a storey. A hidden storey is detached, so it is skipped
+     * by both the update and the render pass.
+     */
+    public void setVisible(int index, boolean visible) {
+        Storey storey = storeys[index];
+        if (storey.visible == visible) {
+            return;
+        }
+        storey.visible = visible;
+        if (visible) {
+            node.attachChild(storey.node);
+        } else {
+            node.detachChild(storey.node);
+        }
+    }
+
+    /**
+     * Shows the given storey and hides all others.
+     */
+    public void isolate(int index) {
+        for (int i = 0; i < storeys.length; i++) {
+            setVisible(i, i == index);
+        }
+    }
+
+    public void showAll() {
+        for (int i = 0; i < storeys.length; i++) {
+            setVisible(i, true);
+        }
+    }
+
+    @Override
+    public void modelChanged(List<ModelChangeEvent> events) {
+        List<List<ModelChangeEvent>> byStorey = new ArrayList<>(storeys.length);
+        for (int i = 0; i < storeys.length; i++) {
+            byStorey.add(new ArrayList<>());
+        }
+        for (ModelChangeEvent e : events) {
+            switch (e.getType()) {
+                case CELL_SPACE_ADDED:
+                    route(byStorey, e, storeyOfCell, storeyOf(e.getCellSpace()));
+                    break;
+                case CELL_SPACE_MOVED:
+                    move(byStorey, e, ModelChangeEvent.Type.CELL_SPACE_REMOVED,
+                            ModelChangeEvent.Type.CELL_SPACE_ADDED, storeyOfCell, storeyOf(e.getCellSpace()));
+                    break;
+                case STATE_ADDED:
+                    route(byStorey, e, storeyOfState, storeyOf(e.getState()));
+                    break;
+                case STATE_MOVED:
+                    move(byStorey, e, ModelChangeEvent.Type.STATE_REMOVED, ModelChangeEvent.Type.STATE_ADDED,
+                            storeyOfState, storeyOf(e.getState()));
+                    break;
+                case TRANSITION_ADDED:
+                    route(byStorey, e, storeyOfTransition, storeyOf(e.getTransition()));
+                    break;
+                case TRANSITION_MOVED:
+                    move(byStorey, e, ModelChangeEvent.Type.TRANSITION_REMOVED,
+                            ModelChangeEvent.Type.TRANSITION_ADDED, storeyOfTransition,
+                            storeyOf(e.getTransition()));
+                    break;
+                case CELL_SPACE_REMOVED:
+                    remove(byStorey, e, storeyOfCell);
+                    break;
+                case STATE_REMOVED:
+                    remove(byStorey, e, storeyOfState);
+                    break;
+                case TRANSITION_REMOVED:
+                    remove(byStorey, e, storeyOfTransition);
+                    break;
+                default:
+                    break;
+            }
+        }
+        for (int i = 0; i < storeys.length; i++) {
+            if (!byStorey.get(i).isEmpty()) {
+                storeys[i].synchronizer.modelChanged(byStorey.get(i));
+            }
+        }
+    }
+
+    private static void route(List<List<ModelChangeEvent>> byStorey, ModelChangeEvent e,
+                              Map<String, Integer> storeyOf, int storey) {
+        storeyOf.put(e.getId(), storey);
+        byStorey.get(storey).add(e);
+    }
+
+    private static void remove(List<List<ModelChangeEvent>> byStorey, ModelChangeEvent e,
+                               Map<String, Integer> storeyOf) {
+        Integer storey = storeyOf.remove(e.getId());
+        if (storey != null) {
+            byStorey.get(storey).add(e);
+        }
+    }
+
+    /**
+     * Routes a move to the storey of the element, or turns it into a removal
+     * and an addition if the element left its storey.
+     */
+    private static void move(List<List<ModelChangeEvent>> byStorey, ModelChangeEvent e,
+                             ModelChangeEvent.Type removed, ModelChangeEvent.Type added,
+                             Map<String, Integer> storeyOf, int storey) {
+        Integer previous = storeyOf.put(e.getId(), storey);
+        if (previous == null || previous == storey) {
+            byStorey.get(storey).add(e);
+            return;
+        }
+        byStorey.get(previous).add(new ModelChangeEvent(removed, e.getId(), e.getElement()));
+        byStorey.get(storey).add(new ModelChangeEvent(added, e.getId(), e.getElement()));
+    }
+
+    private int storeyOf(CellSpace cs) {
+        double minZ = Double.POSITIVE_INFINITY;
+        for (Polygon poly : cs.getPolygons()) {
+            double[] c = poly.getCoordinates();
+            for (int i = 2; i < c.length; i += 3) {
+                minZ = Math.min(minZ, c[i]);
+            }
+        }
+        return clamp(partition.indexAt(minZ));
+    }
+
+    private int storeyOf(StatePoint state) {
+        CellSpace cs = model.getCellSpaceOfState(state.getId());
+        Integer index = cs != null ? storeyOfCell.get(cs.getId()) : null;
+        return index != null ? index : clamp(indexAt(partition, state));
+    }
+
+    private int storeyOf(Transition t) {
+        return Math.min(storeyOf(storeyOfState, partition, t.getStateA()),
+                storeyOf(storeyOfState, partition, t.getStateB()));
+    }
+
+    private int clamp(int index) {
+        return Math.max(0, Math.min(storeys.length - 1, index));
+    }
+
+    private static int storeyOf(Map<String, Integer> storeyOfState, StoreyPartition partition, StatePoint state) {
+        Integer index = storeyOfState.get(state.getId());
+        return index != null ? index : Math.max(0, indexAt(partition, state));
+    }
+
+    private static int indexAt(StoreyPartition partition, StatePoint state) {
+        return state.getPosition() != null ? Math.max(0, partition.indexAt(state.getPosition().getZ())) : 0;
+    }
+}
@@ -11,9 +11,10 @@ import com.jme3.scene.Node;
 import com.jme3.util.BufferUtils;
 
 import org.indoorgml.model.LineString;
-import org.indoorgml.model.Vector3d;
 import org.indoorgml.model.Transition;
 
+import java.nio.FloatBuffer;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -26,44 +27,78 @@ public class TransitionGeometryBuilder {
     }
 
     public static Node buildTransitions(List<LineString> lines, AssetManager assetManager) {
+        return buildTransitions(lines, assetManager, ViewTransform.IDENTITY);
+    }
+
+    /**
+     * Builds one line strip per line whose vertices are converted into the
+     * scene by the transform.
+     */
+    public static Node buildTransitions(List<LineString> lines, AssetManager assetManager,
+                                        ViewTransform transform) {
         Node node = new Node("transitions");
         Material material = defaultMaterial(assetManager);
         for (LineString line : lines) {
-            node.attachChild(buildGeometry(line, material));
+            node.attachChild(buildGeometry(line, material, transform));
         }
         return node;
     }
 
     public static Node buildTransitionsFromTransitions(List<Transition> transitions,
                                                        AssetManager assetManager) {
+        return buildTransitionsFromTransitions(transitions, assetManager, ViewTransform.IDENTITY);
+    }
+
+    public static Node buildTransitionsFromTransitions(List<Transition> transitions,
+                                                       AssetManager assetManager, ViewTransform transform) {
         Node node = new Node("transitions");
         Material material = defaultMaterial(assetManager);
         for (Transition t : transitions) {
-            Geometry geom = buildGeometry(t.getGeometry(), material);
+            Geometry geom = buildGeometry(t.getGeometry(), material, transform);
             geom.setUserData("transitionId", t.getId());
             node.attachChild(geom);
         }
         return node;
     }
 
-    private static Geometry buildGeometry(LineString line, Material material) {
-        Mesh mesh = new Mesh();
+    /**
+     * Builds all transitions into a few shared {@link Mesh.Mode#Lines} meshes
+     * instead of one geometry per transition.
+     */
+    public static TransitionNetwork buildTransitionNetwork(Collection<Transition> transitions,
+                                                           AssetManager assetManager) {
+        return buildTransitionNetwork(transitions, assetManager, ViewTransform.IDENTITY);
+    }
 
-        float[] vertices = new float[line.getVertices().size() * 3];
-        int i = 0;
-        for (Vector3d v : line.getVertices()) {
-            vertices[i++] = (float) v.getX();
-            vertices[i++] = (float) v.getY();
-            vertices[i++] = (float) v.getZ();
+    /**
+     * Builds the shared line meshes with segments converted into the scene by
+     * the transform. Transitions added or moved later are converted the same way.
+     */
+    public static TransitionNetwork buildTransitionNetwork(Collection<Transition> transitions,
+                                                           AssetManager assetManager, ViewTransform transform) {
+        int vertices = 0;
+        for (Transition t : transitions) {
+            vertices += Math.max(0, t.getGeometry().getVertexCount() - 1) * 2;
         }
+        TransitionNetwork network = new TransitionNetwork(assetManager, ColorRGBA.Green, vertices, transform);
+        network.addAll(transitions);
+        return network;
+    }
+
+    private static Geometry buildGeometry(LineString line, Material material, ViewTransform transform) {
+        Mesh mesh = new Mesh();
+
+        double[] coords = line.getCoordinates();
+        FloatBuffer vertices = BufferUtils.createFloatBuffer(coords.length);
+        transform.write(coords, vertices, 0);
 
-        mesh.setBuffer(VertexBuffer.Type.Position, 3, BufferUtils.createFloatBuffer(vertices));
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, vertices);
         mesh.setMode(Mesh.Mode.LineStrip);
         mesh.updateBound();
 
         Geometry geom = new Geometry("transition", mesh);
         geom.setMaterial(material.clone());
-        ColorRGBA base = material.getParam("Color").getValue();
+        ColorRGBA base = (ColorRGBA) material.getParam("Color").getValue();
         geom.setUserData("baseColor", base.clone());
         return geom;
     }
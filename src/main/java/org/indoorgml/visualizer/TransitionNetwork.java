@@ -0,0 +1,407 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.Materials;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+
+import org.indoorgml.model.Transition;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All transitions of a model rendered as a few {@link Mesh.Mode#Lines} meshes.
+ * <p>
+ * Every transition occupies a contiguous vertex range (two vertices per line
+ * segment) inside one of the chunked meshes, and an index maps each
+ * transition id to its range. Removing, recoloring or moving a transition only
+ * rewrites that range; freed ranges are collapsed to zero length and reused by
+ * later transitions with the same number of segments. Colors are stored per
+ * vertex, so all chunks share one material.
+ * <p>
+ * Must be modified on the render thread.
+ */
+public class TransitionNetwork {
+
+    /**
+     * Maximum number of vertices per chunk.
+     */
+    private static final int CHUNK_VERTICES = 1 << 16;
+    private static final int MIN_CHUNK_VERTICES = 1 << 10;
+
+    private static final class Chunk {
+        final Geometry geometry;
+        final FloatBuffer positions;
+        final FloatBuffer colors;
+        final String[] segmentOwners;
+        int used;
+        boolean countsChanged;
+        boolean boundChanged;
+
+        Chunk(Geometry geometry, FloatBuffer positions, FloatBuffer colors, int capacity) {
+            this.geometry = geometry;
+            this.positions = positions;
+            this.colors = colors;
+            this.segmentOwners = new String[capacity / 2];
+        }
+
+        int capacity() {
+            return segmentOwners.length * 2;
+        }
+    }
+
+    private static final class Entry {
+        final Chunk chunk;
+        final int firstVertex;
+        final int vertexCount;
+
+        Entry(Chunk chunk, int firstVertex, int vertexCount) {
+            this.chunk = chunk;
+            this.firstVertex = firstVertex;
+            this.vertexCount = vertexCount;
+        }
+    }
+
+    private final Node node = new Node("transitions");
+    private final Material material;
+    private final ColorRGBA baseColor;
+    private final ViewTransform transform;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final Map<Geometry, Chunk> chunksByGeometry = new IdentityHashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Integer, ArrayDeque<Entry>> freeRanges = new HashMap<>();
+    private int fillIndex;
+    private int segmentCount;
+
+    TransitionNetwork(AssetManager assetManager, ColorRGBA baseColor, int expectedVertices,
+                      ViewTransform transform) {
+        this.baseColor = baseColor.clone();
+        this.transform = transform;
+        material = new Material(assetManager, Materials.UNSHADED);
+        material.setBoolean("VertexColor", true);
+        // presize the chunks for the initial transitions
+        int remaining = expectedVertices;
+        while (remaining > 0) {
+            int capacity = Math.min(CHUNK_VERTICES, Math.max(MIN_CHUNK_VERTICES, remaining));
+            addChunk(capacity);
+            remaining -= capacity;
+        }
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public int getGeometryCount() {
+        return chunks.size();
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Returns the transform used to write the segments of added and moved transitions.
+     */
+    public ViewTransform getViewTransform() {
+        return transform;
+    }
+
+    public boolean contains(String transitionId) {
+        return entries.containsKey(transitionId);
+    }
+
+    /**
+     * Adds the line segments of a transition, replacing an existing entry with the same id.
+     */
+    public void add(Transition t) {
+        append(t);
+        refresh();
+    }
+
+    /**
+     * Adds many transitions and updates the affected meshes only once.
+     */
+    public void addAll(Iterable<Transition> transitions) {
+        for (Transition t : transitions) {
+            append(t);
+        }
+        refresh();
+    }
+
+    private void append(Transition t) {
+        removeEntry(t.getId());
+        double[] coords = t.getGeometry().getCoordinates();
+        int segments = coords.length / 3 - 1;
+        if (segments < 1) {
+            return;
+        }
+        Entry entry = allocate(segments * 2);
+        entries.put(t.getId(), entry);
+        writePositions(entry, coords);
+        writeColor(entry, baseColor.r, baseColor.g, baseColor.b, baseColor.a);
+        for (int s = 0; s < segments; s++) {
+            entry.chunk.segmentOwners[entry.firstVertex / 2 + s] = t.getId();
+        }
+        segmentCount += segments;
+    }
+
+    /**
+     * Rewrites the segments of a transition after its geometry changed.
+     */
+    public void update(Transition t) {
+        Entry entry = entries.get(t.getId());
+        double[] coords = t.getGeometry().getCoordinates();
+        if (entry != null && (coords.length / 3 - 1) * 2 == entry.vertexCount) {
+            writePositions(entry, coords);
+        } else {
+            append(t);
+        }
+        refresh();
+    }
+
+    /**
+     * Removes a transition by collapsing its segments onto their first vertex;
+     * no other range is touched.
+     */
+    public void remove(String transitionId) {
+        removeEntry(transitionId);
+        refresh();
+    }
+
+    private void removeEntry(String transitionId) {
+        Entry entry = entries.remove(transitionId);
+        if (entry == null) {
+            return;
+        }
+        Chunk chunk = entry.chunk;
+        int first = entry.firstVertex * 3;
+        float x = chunk.positions.get(first);
+        float y = chunk.positions.get(first + 1);
+        float z = chunk.positions.get(first + 2);
+        int end = (entry.firstVertex + entry.vertexCount) * 3;
+        for (int i = first; i < end; i += 3) {
+            chunk.positions.put(i, x);
+            chunk.positions.put(i + 1, y);
+            chunk.positions.put(i + 2, z);
+        }
+        for (int s = 0; s < entry.vertexCount / 2; s++) {
+            chunk.segmentOwners[entry.firstVertex / 2 + s] = null;
+        }
+        chunk.geometry.getMesh().getBuffer(VertexBuffer.Type.Position).setUpdateNeeded();
+        freeRanges.computeIfAbsent(entry.vertexCount, k -> new ArrayDeque<>()).push(entry);
+        segmentCount -= entry.vertexCount / 2;
+    }
+
+    /**
+     * Overwrites the color of a transition in place.
+     */
+    public void setColor(String transitionId, ColorRGBA color) {
+        Entry entry = entries.get(transitionId);
+        if (entry != null) {
+            writeColor(entry, color.r, color.g, color.b, color.a);
+        }
+    }
+
+    public void resetColor(String transitionId) {
+        setColor(transitionId, baseColor);
+    }
+
+    /**
+     * Returns the id of the transition owning a picked line segment, or null if
+     * the geometry is not part of this network.
+     */
+    public String locate(Geometry geometry, int segmentIndex) {
+        Chunk chunk = chunksByGeometry.get(geometry);
+        if (chunk == null || segmentIndex < 0 || segmentIndex >= chunk.segmentOwners.length) {
+            return null;
+        }
+        return chunk.segmentOwners[segmentIndex];
+    }
+
+    private Entry allocate(int vertexCount) {
+        ArrayDeque<Entry> free = freeRanges.get(vertexCount);
+        if (free != null && !free.isEmpty()) {
+            return free.pop();
+        }
+        Chunk chunk = null;
+        for (; fillIndex < chunks.size(); fillIndex++) {
+            Chunk c = chunks.get(fillIndex);
+            if (c.capacity() - c.used >= vertexCount) {
+                chunk = c;
+                break;
+            }
+        }
+        if (chunk == null) {
+            int previous = chunks.isEmpty() ? MIN_CHUNK_VERTICES / 2 : chunks.get(chunks.size() - 1).capacity();
+            chunk = addChunk(Math.max(vertexCount, Math.min(CHUNK_VERTICES, previous * 2)));
+            fillIndex = chunks.size() - 1;
+        }
+        Entry entry = new Entry(chunk, chunk.used, vertexCount);
+        chunk.used += vertexCount;
+        chunk.positions.limit(chunk.used * 3);
+        chunk.colors.limit(chunk.used * 4);
+        chunk.countsChanged = true;
+        return entry;
+    }
+
+    /**
+     * Creates and attaches an empty chunk. Its buffers keep their limit at the
+     * number of used vertices, so only filled ranges are drawn and contribute
+     * to the bound.
+     */
+    private Chunk addChunk(int capacity) {
+        Chunk chunk = createChunk(capacity + (capacity & 1), 0);
+        register(chunk);
+        return chunk;
+    }
+
+    private Chunk createChunk(int capacity, int used) {
+        FloatBuffer positions = BufferUtils.createFloatBuffer(capacity * 3);
+        FloatBuffer colors = BufferUtils.createFloatBuffer(capacity * 4);
+        positions.limit(used * 3);
+        colors.limit(used * 4);
+        Mesh mesh = new Mesh();
+        mesh.setMode(Mesh.Mode.Lines);
+        mesh.setBuffer(VertexBuffer.Type.Position, 3, positions);
+        mesh.setBuffer(VertexBuffer.Type.Color, 4, colors);
+        mesh.getBuffer(VertexBuffer.Type.Position).setUsage(VertexBuffer.Usage.Dynamic);
+        mesh.getBuffer(VertexBuffer.Type.Color).setUsage(VertexBuffer.Usage.Dynamic);
+
+        Geometry geom = new Geometry("transitionNetwork", mesh);
+        geom.setMaterial(material);
+        Chunk chunk = new Chunk(geom, positions, colors, capacity);
+        chunk.used = used;
+        return chunk;
+    }
+
+    private void register(Chunk chunk) {
+        chunks.add(chunk);
+        chunksByGeometry.put(chunk.geometry, chunk);
+        node.attachChild(chunk.geometry);
+    }
+
+    /**
+     * Transitions written into a detached chunk by {@link #prepare}.
+     */
+    static final class PreparedChunk {
+        private final Chunk chunk;
+        private final String[] ids;
+        private final int[] firstVertex;
+
+        PreparedChunk(Chunk chunk, String[] ids, int[] firstVertex) {
+            this.chunk = chunk;
+            this.ids = ids;
+            this.firstVertex = firstVertex;
+        }
+
+        int getTransitionCount() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * Writes the transitions into a new chunk that is not yet part of the
+     * network and computes its bound. Only reads the shared material and base
+     * color, so it may run on any thread; the result is added with
+     * {@link #attach} on the render thread.
+     */
+    PreparedChunk prepare(List<Transition> transitions) {
+        String[] ids = new String[transitions.size()];
+        int[] firstVertex = new int[transitions.size() + 1];
+        for (int i = 0; i < ids.length; i++) {
+            Transition t = transitions.get(i);
+            ids[i] = t.getId();
+            firstVertex[i + 1] = firstVertex[i] + Math.max(0, t.getGeometry().getVertexCount() - 1) * 2;
+        }
+        int vertices = firstVertex[ids.length];
+        Chunk chunk = createChunk(Math.max(2, vertices), vertices);
+        for (int i = 0; i < ids.length; i++) {
+            Entry entry = new Entry(chunk, firstVertex[i], firstVertex[i + 1] - firstVertex[i]);
+            writePositions(entry, transitions.get(i).getGeometry().getCoordinates());
+            writeColor(entry, baseColor.r, baseColor.g, baseColor.b, baseColor.a);
+        }
+        chunk.geometry.getMesh().updateBound();
+        chunk.geometry.updateModelBound();
+        chunk.boundChanged = false;
+        return new PreparedChunk(chunk, ids, firstVertex);
+    }
+
+    /**
+     * Adds a chunk built by {@link #prepare}, replacing existing entries with
+     * the same ids.
+     */
+    void attach(PreparedChunk prepared) {
+        Chunk chunk = prepared.chunk;
+        for (int i = 0; i < prepared.ids.length; i++) {
+            String id = prepared.ids[i];
+            int count = prepared.firstVertex[i + 1] - prepared.firstVertex[i];
+            removeEntry(id);
+            if (count == 0) {
+                continue;
+            }
+            entries.put(id, new Entry(chunk, prepared.firstVertex[i], count));
+            for (int s = prepared.firstVertex[i] / 2, end = prepared.firstVertex[i + 1] / 2; s < end; s++) {
+                chunk.segmentOwners[s] = id;
+            }
+            segmentCount += count / 2;
+        }
+        register(chunk);
+    }
+
+    /**
+     * Applies pending vertex count and bound changes to the chunk meshes.
+     */
+    private void refresh() {
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            Mesh mesh = chunk.geometry.getMesh();
+            if (chunk.countsChanged) {
+                mesh.getBuffer(VertexBuffer.Type.Position).updateData(chunk.positions);
+                mesh.getBuffer(VertexBuffer.Type.Color).updateData(chunk.colors);
+                mesh.updateCounts();
+                chunk.countsChanged = false;
+            }
+            if (chunk.boundChanged) {
+                mesh.updateBound();
+                chunk.geometry.updateModelBound();
+                chunk.boundChanged = false;
+            }
+        }
+    }
+
+    private void writePositions(Entry entry, double[] coords) {
+        FloatBuffer positions = entry.chunk.positions;
+        int out = entry.firstVertex * 3;
+        for (int v = 0; v + 3 < coords.length; v += 3) {
+            // segment from vertex v to vertex v + 1
+            transform.write(coords, v, 6, positions, out);
+            out += 6;
+        }
+        entry.chunk.geometry.getMesh().getBuffer(VertexBuffer.Type.Position).setUpdateNeeded();
+        entry.chunk.boundChanged = true;
+    }
+
+    private static void writeColor(Entry entry, float r, float g, float b, float a) {
+        FloatBuffer colors = entry.chunk.colors;
+        int end = (entry.firstVertex + entry.vertexCount) * 4;
+        for (int i = entry.firstVertex * 4; i < end; i += 4) {
+            colors.put(i, r);
+            colors.put(i + 1, g);
+            colors.put(i + 2, b);
+            colors.put(i + 3, a);
+        }
+        entry.chunk.geometry.getMesh().getBuffer(VertexBuffer.Type.Color).setUpdateNeeded();
+    }
+}
@@ -0,0 +1,201 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.math.Vector3f;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.Vector3d;
+import org.indoorgml.util.GeometryUtils;
+
+import java.nio.FloatBuffer;
+import java.util.Collection;
+
+/**
+ * Maps model coordinates to the float coordinates of the scene.
+ * <p>
+ * Georeferenced models use large coordinates such as {@code 62762.359}
+ * which lose most of their fraction when they are converted to float. A
+ * transform keeps a local origin in double precision and subtracts it
+ * before the conversion, so the vertices written into the mesh buffers are
+ * small and exact while the model itself is never rewritten. The scene is
+ * scaled uniformly around the origin.
+ * <p>
+ * All scene parts built with the same transform line up. For large sites
+ * every tile may be built with its own origin from {@link #withOrigin}; its
+ * node is then placed with {@link #getTranslation}. Instances are immutable.
+ */
+public final class ViewTransform {
+
+    /**
+     * Writes the model coordinates unchanged.
+     */
+    public static final ViewTransform IDENTITY = new ViewTransform(0, 0, 0, 1);
+
+    private final double originX;
+    private final double originY;
+    private final double originZ;
+    private final double scale;
+
+    /**
+     * @param scale factor applied after the origin was subtracted, must be
+     *              positive
+     */
+    public ViewTransform(double originX, double originY, double originZ, double scale) {
+        if (!(scale > 0) || Double.isInfinite(scale)) {
+            throw new IllegalArgumentException("Invalid scale: " + scale);
+        }
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.scale = scale;
+    }
+
+    /**
+     * Returns a transform that centers the cells around the origin of the
+     * scene and scales their largest dimension to the given size. The bounds
+     * are computed in a single pass over the packed coordinates.
+     */
+    public static ViewTransform fit(Collection<CellSpace> cells, double size) {
+        double[] bounds = GeometryUtils.emptyBounds();
+        for (CellSpace cs : cells) {
+            extend(cs.getPolygons(), bounds);
+        }
+        return fit(bounds, size);
+    }
+
+    /**
+     * Returns a transform that centers the polygons around the origin of the
+     * scene and scales their largest dimension to the given size.
+     */
+    public static ViewTransform fitPolygons(Collection<Polygon> polygons, double size) {
+        return fit(extend(polygons, GeometryUtils.emptyBounds()), size);
+    }
+
+    /**
+     * Returns a transform that only moves the given point to the origin of
+     * the scene.
+     */
+    public static ViewTransform centeredOn(Vector3d origin) {
+        return new ViewTransform(origin.getX(), origin.getY(), origin.getZ(), 1);
+    }
+
+    /**
+     * Returns a transform with the same scale and another origin, for
+     * example the corner of a tile or the elevation of a storey.
+     */
+    public ViewTransform withOrigin(double x, double y, double z) {
+        return new ViewTransform(x, y, z, scale);
+    }
+
+    public double getOriginX() {
+        return originX;
+    }
+
+    public double getOriginY() {
+        return originY;
+    }
+
+    public double getOriginZ() {
+        return originZ;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public float toViewX(double x) {
+        return (float) ((x - originX) * scale);
+    }
+
+    public float toViewY(double y) {
+        return (float) ((y - originY) * scale);
+    }
+
+    public float toViewZ(double z) {
+        return (float) ((z - originZ) * scale);
+    }
+
+    /**
+     * Converts a model position into the scene.
+     */
+    public Vector3f toView(Vector3d p, Vector3f store) {
+        Vector3f result = store != null ? store : new Vector3f();
+        result.set(toViewX(p.getX()), toViewY(p.getY()), toViewZ(p.getZ()));
+        return result;
+    }
+
+    /**
+     * Converts a position of the scene, for example the camera location or
+     * the origin of a picking ray, back into model coordinates. Directions
+     * need no conversion because the scale is uniform.
+     */
+    public Vector3d toModel(Vector3f p) {
+        return new Vector3d(p.x / scale + originX, p.y / scale + originY, p.z / scale + originZ);
+    }
+
+    /**
+     * Returns the model length of a distance in the scene.
+     */
+    public double toModelLength(double viewLength) {
+        return viewLength / scale;
+    }
+
+    /**
+     * Writes {@code x, y, z} triples converted into the scene to the buffer
+     * starting at the given float index. Does not change the buffer position.
+     */
+    public void write(double[] coords, FloatBuffer out, int offset) {
+        write(coords, 0, coords.length, out, offset);
+    }
+
+    /**
+     * Writes {@code length} coordinates starting at {@code from}, which must
+     * both be multiples of three.
+     */
+    public void write(double[] coords, int from, int length, FloatBuffer out, int offset) {
+        int end = from + length;
+        for (int i = from; i < end; i += 3) {
+            out.put(offset, (float) ((coords[i] - originX) * scale));
+            out.put(offset + 1, (float) ((coords[i + 1] - originY) * scale));
+            out.put(offset + 2, (float) ((coords[i + 2] - originZ) * scale));
+            offset += 3;
+        }
+    }
+
+    /**
+     * Returns the translation that places a node built with the tile
+     * transform into the scene of this transform. Both must use the same
+     * scale.
+     */
+    public Vector3f getTranslation(ViewTransform tile, Vector3f store) {
+        if (tile.scale != scale) {
+            throw new IllegalArgumentException("Tile uses another scale");
+        }
+        Vector3f result = store != null ? store : new Vector3f();
+        result.set(toViewX(tile.originX), toViewY(tile.originY), toViewZ(tile.originZ));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ViewTransform[origin=(" + originX + ", " + originY + ", " + originZ + "), scale=" + scale + "]";
+    }
+
+    private static double[] extend(Collection<Polygon> polygons, double[] bounds) {
+        for (Polygon poly : polygons) {
+            double[] coords = poly.getCoordinates();
+            GeometryUtils.extendBounds(coords, 0, coords.length, bounds);
+        }
+        return bounds;
+    }
+
+    private static ViewTransform fit(double[] bounds, double size) {
+        if (GeometryUtils.isEmpty(bounds)) {
+            return IDENTITY;
+        }
+        double extent = GeometryUtils.maxDimension(bounds);
+        double scale = extent > 0 ? size / extent : 1;
+        Vector3d center = GeometryUtils.center(bounds);
+        return new ViewTransform(center.getX(), center.getY(), center.getZ(), scale);
+    }
+}
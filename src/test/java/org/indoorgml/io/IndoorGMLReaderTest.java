@@ -0,0 +1,88 @@
+package org.indoorgml.io;
+
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.ModelChangeEvent;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class IndoorGMLReaderTest {
+
+    private static final String DOCUMENT = ""
+            + "<core:IndoorFeatures xmlns:core=\"http://www.opengis.net/indoorgml/1.0/core\""
+            + " xmlns:gml=\"http://www.opengis.net/gml/3.2\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">"
+            + cell("C1", 0) + cell("C2", 10)
+            + state("S1", "C1", "1 2 1") + state("S2", "C2", "11 2 1")
+            + "<core:Transition gml:id=\"T1\">"
+            + "<core:connects xlink:href=\"#S1\"/><core:connects xlink:href=\"#S2\"/>"
+            + "<core:geometry><gml:LineString><gml:posList>1 2 1 6 0 1 11 2 1</gml:posList>"
+            + "</gml:LineString></core:geometry></core:Transition>"
+            + "</core:IndoorFeatures>";
+
+    private static String cell(String id, double x) {
+        return "<core:CellSpace gml:id=\"" + id + "\"><gml:Polygon><gml:exterior><gml:LinearRing>"
+                + "<gml:posList>" + x + " 0 0 " + (x + 5) + " 0 0 " + (x + 5) + " 5 0 " + x + " 5 0 "
+                + x + " 0 0</gml:posList></gml:LinearRing></gml:exterior></gml:Polygon></core:CellSpace>";
+    }
+
+    private static String state(String id, String cell, String pos) {
+        return "<core:State gml:id=\"" + id + "\"><core:duality xlink:href=\"#" + cell + "\"/>"
+                + "<core:geometry><gml:Point><gml:pos>" + pos + "</gml:pos></gml:Point></core:geometry>"
+                + "</core:State>";
+    }
+
+    @Test
+    void elementsAreCompleteWhenTheyArePublished() throws Exception {
+        IndoorGMLModel model = new IndoorGMLModel();
+        List<double[]> statePositions = new ArrayList<>();
+        List<double[]> transitionCoordinates = new ArrayList<>();
+        model.addChangeListener(events -> {
+            // copy what the listener sees at delivery time
+            for (ModelChangeEvent e : events) {
+                if (e.getType() == ModelChangeEvent.Type.STATE_ADDED
+                        || e.getType() == ModelChangeEvent.Type.STATE_MOVED) {
+                    StatePoint s = e.getState();
+                    statePositions.add(new double[] {
+                            s.getPosition().getX(), s.getPosition().getY(), s.getPosition().getZ()});
+                }
+                if (e.getType() == ModelChangeEvent.Type.TRANSITION_ADDED) {
+                    transitionCoordinates.add(e.getTransition().getGeometry().getCoordinates().clone());
+                }
+            }
+        });
+
+        new IndoorGMLReader().read(new ByteArrayInputStream(DOCUMENT.getBytes(StandardCharsets.UTF_8)), model);
+
+        assertArrayEquals(new double[] {11, 2, 1}, statePositions.get(statePositions.size() - 1));
+        assertEquals(1, transitionCoordinates.size());
+        assertArrayEquals(new double[] {1, 2, 1, 6, 0, 1, 11, 2, 1}, transitionCoordinates.get(0));
+
+        Transition t = model.getTransitions().iterator().next();
+        assertSame(model.getState(t.getStateA().getId()), t.getStateA());
+        assertSame(model.getState(t.getStateB().getId()), t.getStateB());
+        assertEquals(1.0, t.getStateA().getPosition().getX());
+    }
+
+    @Test
+    void smallDocumentIsDeliveredInOneBatch() throws Exception {
+        IndoorGMLModel model = new IndoorGMLModel();
+        List<Integer> deliveries = new ArrayList<>();
+        model.addChangeListener(events -> deliveries.add(events.size()));
+
+        new IndoorGMLReader().read(new ByteArrayInputStream(DOCUMENT.getBytes(StandardCharsets.UTF_8)), model);
+
+        assertEquals(1, deliveries.size());
+        assertEquals(2, model.getCellSpaces().size());
+        assertEquals(1, model.getTransitions().size());
+    }
+}
@@ -0,0 +1,125 @@
+package org.indoorgml.io;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ModelJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<Polygon> floor(double x) {
+        Polygon poly = new Polygon();
+        poly.setCoordinates(new double[] {x, 0, 0, x + 5, 0, 0, x + 5, 5, 0, x, 5, 0});
+        poly.setIndexArray(new int[] {0, 1, 2, 0, 2, 3});
+        List<Polygon> list = new ArrayList<>();
+        list.add(poly);
+        return list;
+    }
+
+    @Test
+    void changesAreReplayedOnTheBase() throws Exception {
+        Path base = dir.resolve("model.igms");
+        Path file = dir.resolve("model.journal");
+        IndoorGMLModel model = new IndoorGMLModel();
+        CellSpace first = model.addCellSpace(floor(0));
+        SnapshotWriter.write(model, base);
+        try (ModelJournal journal = ModelJournal.open(file, base, false)) {
+            model.addChangeListener(journal);
+            CellSpace second = model.addCellSpace(floor(10));
+            model.addTransition(first.getState(), second.getState());
+            model.removeCellSpace(first.getId());
+        }
+
+        IndoorGMLModel recovered = ModelJournal.recover(base, file);
+        assertEquals(1, recovered.getCellSpaces().size());
+        assertNull(recovered.getCellSpace(first.getId()));
+        assertEquals(0, recovered.getTransitions().size());
+    }
+
+    @Test
+    void failedWriteStopsTheJournalWithoutFailingTheBatch() throws Exception {
+        Path base = dir.resolve("model.igms");
+        Path file = dir.resolve("model.journal");
+        IndoorGMLModel model = new IndoorGMLModel();
+        model.addCellSpace(floor(0));
+        SnapshotWriter.write(model, base);
+        ModelJournal journal = ModelJournal.open(file, base, false);
+        List<String> seen = new ArrayList<>();
+        model.addChangeListener(journal);
+        model.addChangeListener(events -> seen.add(events.get(0).getId()));
+
+        CellSpace kept = model.addCellSpace(floor(10));
+        long size = journal.size();
+        // writing to the closed channel fails
+        journal.close();
+        CellSpace lost = model.addCellSpace(floor(20));
+
+        assertEquals(List.of(kept.getId(), lost.getId()), seen);
+        assertNotNull(journal.getFailure());
+        IndoorGMLModel recovered = ModelJournal.recover(base, file);
+        assertNotNull(recovered.getCellSpace(kept.getId()));
+        assertNull(recovered.getCellSpace(lost.getId()));
+        assertEquals(size, Files.size(file));
+    }
+
+    @Test
+    void newJournalContinuesTheCompactedBase() throws Exception {
+        Path base = dir.resolve("model.igms");
+        Path file = dir.resolve("model.journal");
+        IndoorGMLModel model = new IndoorGMLModel();
+        SnapshotWriter.write(model, base);
+        try (ModelJournal journal = ModelJournal.open(file, base, false)) {
+            model.addChangeListener(journal);
+            model.addCellSpace(floor(0));
+            model.addCellSpace(floor(10));
+            journal.compact(model, base);
+            model.removeChangeListener(journal);
+        }
+        Files.delete(file);
+
+        CellSpace added;
+        try (ModelJournal journal = ModelJournal.open(file, base, false)) {
+            assertEquals(2, journal.getLastSequence());
+            model.addChangeListener(journal);
+            added = model.addCellSpace(floor(20));
+        }
+
+        IndoorGMLModel recovered = ModelJournal.recover(base, file);
+        assertEquals(3, recovered.getCellSpaces().size());
+        assertNotNull(recovered.getCellSpace(added.getId()));
+    }
+
+    @Test
+    void journalThatDoesNotContinueTheBaseIsRejected() throws Exception {
+        Path base = dir.resolve("model.igms");
+        Path file = dir.resolve("model.journal");
+        IndoorGMLModel model = new IndoorGMLModel();
+        model.addCellSpace(floor(0));
+        SnapshotWriter.write(model, base);
+        // a journal of a later base, whose first records are missing here
+        SnapshotWriter.write(model.snapshot(), dir.resolve("later.igms"), 5);
+        try (ModelJournal journal = ModelJournal.open(file, dir.resolve("later.igms"), false)) {
+            model.addChangeListener(journal);
+            model.addCellSpace(floor(10));
+        }
+
+        assertThrows(IOException.class, () -> ModelJournal.recover(base, file));
+        assertThrows(IOException.class, () -> ModelJournal.open(file, base, false));
+    }
+}
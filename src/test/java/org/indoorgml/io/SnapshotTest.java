@@ -0,0 +1,61 @@
+package org.indoorgml.io;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+import org.indoorgml.model.Transition;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Returns a 10 x 10 floor with a 2 x 2 hole in its middle.
+     */
+    private static List<Polygon> floorWithHole(double x) {
+        Polygon poly = new Polygon();
+        poly.setCoordinates(new double[] {
+                x, 0, 0, x + 10, 0, 0, x + 10, 10, 0, x, 10, 0,
+                x + 4, 4, 0, x + 4, 6, 0, x + 6, 6, 0, x + 6, 4, 0});
+        poly.setHoleStarts(new int[] {4});
+        List<Polygon> list = new ArrayList<>();
+        list.add(poly);
+        return list;
+    }
+
+    @Test
+    void holesAndMissingTransitionGeometryAreKept() throws Exception {
+        IndoorGMLModel model = new IndoorGMLModel();
+        CellSpace a = model.addCellSpace(floorWithHole(0));
+        CellSpace b = model.addCellSpace(floorWithHole(20));
+        Transition t = model.addTransition(a.getState(), b.getState());
+        t.setGeometry(null);
+        Path file = dir.resolve("model.igms");
+
+        SnapshotWriter.write(model, file);
+
+        try (MappedSnapshot snapshot = MappedSnapshot.open(file)) {
+            IndoorGMLModel loaded = snapshot.toModel();
+            Polygon poly = loaded.getCellSpace(b.getId()).getPolygons().get(0);
+            assertArrayEquals(new int[] {4}, poly.getHoleStarts());
+            assertArrayEquals(b.getPolygons().get(0).getIndexArray(), poly.getIndexArray());
+            Transition restored = loaded.getTransition(t.getId());
+            assertNotNull(restored);
+            assertNull(restored.getGeometry());
+            assertEquals(2, loaded.getCellSpaces().size());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.indoorgml.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IdIndexTest {
+
+    @Test
+    void nullIdIsMissing() {
+        IdIndex index = new IdIndex();
+        index.put("Room1", 0);
+
+        assertEquals(-1, index.get(null));
+        assertFalse(index.contains(null));
+        assertEquals(-1, index.remove(null));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void modelLookupOfNullIdFindsNothing() {
+        IndoorGMLModel model = new IndoorGMLModel();
+
+        assertNull(model.getCellSpace(null));
+        assertNull(model.getState(null));
+        assertNull(model.getTransition(null));
+    }
+}
@@ -0,0 +1,202 @@
+package org.indoorgml.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TriangulatorTest {
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private static List<Polygon> square(double x) {
+        Polygon poly = new Polygon();
+        poly.setCoordinates(new double[] {x, 0, 0, x + 5, 0, 0, x + 5, 5, 0, x, 5, 0});
+        List<Polygon> list = new ArrayList<>();
+        list.add(poly);
+        return list;
+    }
+
+    @Test
+    void publishedPolygonsAreNotRetriangulated() {
+        IndoorGMLModel model = new IndoorGMLModel();
+        CellSpace cell = model.addCellSpace(square(0));
+        int[] before = cell.getPolygons().get(0).getIndexArray();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> Triangulator.triangulateAll(model.getCellSpaces(), pool, true));
+        assertSame(before, cell.getPolygons().get(0).getIndexArray());
+    }
+
+    @Test
+    void importDataIsTriangulatedInParallel() {
+        List<CellSpace> cells = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            CellSpace cs = new CellSpace();
+            cs.setPolygons(square(i * 10));
+            cells.add(cs);
+        }
+
+        assertEquals(1000, Triangulator.triangulateAll(cells, pool, true));
+        for (CellSpace cs : cells) {
+            assertArrayEquals(new int[] {0, 1, 2, 0, 2, 3}, cs.getPolygons().get(0).getIndexArray());
+        }
+    }
+
+    @Test
+    void holesAreLeftOut() {
+        // 10 x 10 square with two 2 x 2 holes, wound either way
+        double[] coords = {
+            0, 0, 0, 10, 0, 0, 10, 10, 0, 0, 10, 0,
+            2, 2, 0, 2, 4, 0, 4, 4, 0, 4, 2, 0,
+            6, 6, 0, 8, 6, 0, 8, 8, 0, 6, 8, 0
+        };
+        int[] holeStarts = {4, 8};
+
+        int[] indices = new Triangulator().triangulate(coords, holeStarts);
+
+        assertTriangulates(coords, holeStarts, indices);
+        assertEquals(92, area(coords, indices), 1e-9);
+        for (int t = 0; t < indices.length; t += 3) {
+            double cx = (coords[indices[t] * 3] + coords[indices[t + 1] * 3] + coords[indices[t + 2] * 3]) / 3;
+            double cy = (coords[indices[t] * 3 + 1] + coords[indices[t + 1] * 3 + 1]
+                    + coords[indices[t + 2] * 3 + 1]) / 3;
+            boolean inHole = (cx > 2 && cx < 4 && cy > 2 && cy < 4) || (cx > 6 && cx < 8 && cy > 6 && cy < 8);
+            assertFalse(inHole, "triangle inside a hole");
+        }
+    }
+
+    @Test
+    void collinearPointsAreTriangulated() {
+        // a vertical wall with extra vertices along its bottom and top edges
+        double[] coords = {
+            0, 0, 0, 1, 0, 0, 2, 0, 0, 3, 0, 0, 4, 0, 0,
+            4, 0, 3, 2, 0, 3, 1, 0, 3, 0, 0, 3
+        };
+
+        int[] indices = new Triangulator().triangulate(coords);
+
+        assertTriangulates(coords, null, indices);
+        assertEquals(12, area(coords, indices), 1e-9);
+    }
+
+    @Test
+    void randomPolygonsAreCoveredExactly() {
+        Random random = new Random(18);
+        Triangulator triangulator = new Triangulator();
+        for (int i = 0; i < 200; i++) {
+            // star shaped rings around the origin are simple; with at least
+            // five vertices every edge stays more than 1.5 from the origin,
+            // so the square hole is inside
+            int n = 3 + random.nextInt(i % 2 == 0 ? 20 : 200);
+            boolean hole = n > 4 && random.nextBoolean();
+            double[] coords = new double[(n + (hole ? 4 : 0)) * 3];
+            for (int k = 0; k < n; k++) {
+                double angle = (k + random.nextDouble() * 0.9) * 2 * Math.PI / n;
+                double r = 5 + random.nextDouble() * 5;
+                coords[k * 3] = r * Math.cos(angle);
+                coords[k * 3 + 1] = r * Math.sin(angle);
+                coords[k * 3 + 2] = 0.5 * coords[k * 3] + 3;
+            }
+            int[] holeStarts = null;
+            if (hole) {
+                double[] square = {-1, -1, -1, 1, 1, 1, 1, -1};
+                for (int k = 0; k < 4; k++) {
+                    int c = (n + k) * 3;
+                    coords[c] = square[k * 2];
+                    coords[c + 1] = square[k * 2 + 1];
+                    coords[c + 2] = 0.5 * coords[c] + 3;
+                }
+                holeStarts = new int[] {n};
+            }
+
+            int[] indices = triangulator.triangulate(coords, holeStarts);
+
+            assertTriangulates(coords, holeStarts, indices);
+            double expected = ringArea(coords, 0, n) - (hole ? ringArea(coords, n, n + 4) : 0);
+            assertEquals(expected, area(coords, indices), expected * 1e-9, "polygon " + i);
+        }
+    }
+
+    /**
+     * Checks index ranges, the triangle count and that every triangle faces
+     * the same way as the exterior ring.
+     */
+    private static void assertTriangulates(double[] coords, int[] holeStarts, int[] indices) {
+        int n = coords.length / 3;
+        int holes = holeStarts != null ? holeStarts.length : 0;
+        int outerEnd = holes > 0 ? holeStarts[0] : n;
+        assertEquals(0, indices.length % 3);
+        assertTrue(indices.length / 3 <= n + 2 * holes - 2, "too many triangles: " + indices.length / 3);
+        for (int index : indices) {
+            assertTrue(index >= 0 && index < n, "index out of range: " + index);
+        }
+        double[] ring = normal(coords, 0, outerEnd);
+        for (int t = 0; t < indices.length; t += 3) {
+            double[] tri = triangleNormal(coords, indices[t], indices[t + 1], indices[t + 2]);
+            assertTrue(tri[0] * ring[0] + tri[1] * ring[1] + tri[2] * ring[2] >= -1e-9, "flipped triangle");
+        }
+    }
+
+    private static double area(double[] coords, int[] indices) {
+        double sum = 0;
+        for (int t = 0; t < indices.length; t += 3) {
+            sum += length(triangleNormal(coords, indices[t], indices[t + 1], indices[t + 2])) / 2;
+        }
+        return sum;
+    }
+
+    private static double ringArea(double[] coords, int start, int end) {
+        return length(normal(coords, start, end)) / 2;
+    }
+
+    /**
+     * Newell normal of a ring, its length is twice the ring area.
+     */
+    private static double[] normal(double[] c, int start, int end) {
+        double[] n = new double[3];
+        for (int i = start; i < end; i++) {
+            int a = i * 3;
+            int b = (i + 1 == end ? start : i + 1) * 3;
+            n[0] += (c[a + 1] - c[b + 1]) * (c[a + 2] + c[b + 2]);
+            n[1] += (c[a + 2] - c[b + 2]) * (c[a] + c[b]);
+            n[2] += (c[a] - c[b]) * (c[a + 1] + c[b + 1]);
+        }
+        return n;
+    }
+
+    private static double[] triangleNormal(double[] c, int a, int b, int d) {
+        double ux = c[b * 3] - c[a * 3];
+        double uy = c[b * 3 + 1] - c[a * 3 + 1];
+        double uz = c[b * 3 + 2] - c[a * 3 + 2];
+        double vx = c[d * 3] - c[a * 3];
+        double vy = c[d * 3 + 1] - c[a * 3 + 1];
+        double vz = c[d * 3 + 2] - c[a * 3 + 2];
+        return new double[] {uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx};
+    }
+
+    private static double length(double[] v) {
+        return Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+    }
+}
@@ -0,0 +1,69 @@
+package org.indoorgml.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HierarchyRoutePlannerTest {
+
+    @Test
+    void routesMatchThePlainSearch() {
+        Random random = new Random(11);
+        for (int g = 0; g < 20; g++) {
+            StateGraph graph = StateGraph.build(TestGraphs.random(random, 40, 80, 1 + g % 3));
+            assertSameRoutes(graph, ContractionHierarchy.build(graph, 1 + g % 4));
+        }
+    }
+
+    @Test
+    void tiesAreUnpackedIntoAShortestRoute() {
+        StateGraph graph = StateGraph.build(TestGraphs.grid(8, 6));
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph, 2);
+        assertTrue(hierarchy.getShortcutCount() > 0);
+        assertSameRoutes(graph, hierarchy);
+
+        Route route = new Route();
+        assertTrue(new HierarchyRoutePlanner(hierarchy).findRoute(0, graph.getStateCount() - 1, route));
+        assertEquals(12, route.getDistance(), 1e-9);
+        assertEquals(13, route.getLength());
+    }
+
+    @Test
+    void loadedHierarchyAnswersTheSame(@TempDir Path dir) throws IOException {
+        StateGraph graph = StateGraph.build(TestGraphs.random(new Random(7), 40, 80, 2));
+        Path file = dir.resolve("graph.ch");
+        ContractionHierarchy.build(graph).save(file);
+
+        assertSameRoutes(graph, ContractionHierarchy.load(file, graph));
+    }
+
+    /**
+     * Compares every pair of States with {@link RoutePlanner}, which is
+     * tested against brute force.
+     */
+    private static void assertSameRoutes(StateGraph graph, ContractionHierarchy hierarchy) {
+        RoutePlanner reference = new RoutePlanner(graph);
+        HierarchyRoutePlanner planner = new HierarchyRoutePlanner(hierarchy);
+        Route expected = new Route();
+        Route route = new Route();
+        for (int from = 0; from < graph.getStateCount(); from++) {
+            for (int to = 0; to < graph.getStateCount(); to++) {
+                boolean found = reference.findRoute(from, to, expected);
+                assertEquals(found, planner.findRoute(from, to, route), "route from " + from + " to " + to);
+                if (found) {
+                    TestGraphs.assertRoute(graph, route, from, to, expected.getDistance());
+                } else {
+                    assertFalse(route.isFound());
+                    assertEquals(0, route.getLength());
+                }
+            }
+        }
+    }
+}
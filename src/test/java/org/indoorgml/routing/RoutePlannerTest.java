@@ -0,0 +1,84 @@
+package org.indoorgml.routing;
+
+import org.indoorgml.model.IndoorGMLModel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoutePlannerTest {
+
+    @Test
+    void dijkstraAndAStarMatchBruteForce() {
+        Random random = new Random(10);
+        for (int g = 0; g < 20; g++) {
+            StateGraph graph = StateGraph.build(TestGraphs.random(random, 30, 60, 1 + g % 3));
+            double[][] expected = TestGraphs.distances(graph);
+            RoutePlanner planner = new RoutePlanner(graph);
+            Route route = new Route();
+            for (boolean heuristic : new boolean[] {false, true}) {
+                planner.setUseHeuristic(heuristic);
+                for (int from = 0; from < graph.getStateCount(); from++) {
+                    for (int to = 0; to < graph.getStateCount(); to++) {
+                        boolean found = planner.findRoute(from, to, route);
+                        if (expected[from][to] == Double.POSITIVE_INFINITY) {
+                            assertFalse(found);
+                            assertFalse(route.isFound());
+                        } else {
+                            assertTrue(found);
+                            TestGraphs.assertRoute(graph, route, from, to, expected[from][to]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void tiesResolveToAShortestRoute() {
+        StateGraph graph = StateGraph.build(TestGraphs.grid(6, 5));
+        RoutePlanner planner = new RoutePlanner(graph);
+        Route route = new Route();
+        for (boolean heuristic : new boolean[] {false, true}) {
+            planner.setUseHeuristic(heuristic);
+            assertTrue(planner.findRoute(0, graph.getStateCount() - 1, route));
+            TestGraphs.assertRoute(graph, route, 0, graph.getStateCount() - 1, 9);
+            assertEquals(10, route.getLength());
+        }
+    }
+
+    @Test
+    void unreachableGoalIsNotFound() {
+        IndoorGMLModel model = TestGraphs.grid(3, 1);
+        String island = model.addCellSpace(TestGraphs.room(10, 10, 0)).getState().getId();
+        StateGraph graph = StateGraph.build(model);
+        RoutePlanner planner = new RoutePlanner(graph);
+        Route route = new Route();
+
+        assertFalse(planner.findRoute(graph.getStateId(0), island, route));
+        assertFalse(route.isFound());
+        assertEquals(Double.POSITIVE_INFINITY, route.getDistance());
+        assertEquals(0, route.getLength());
+
+        assertFalse(planner.findRoute(graph.getStateId(0), "unknown", route));
+        assertFalse(route.isFound());
+    }
+
+    @Test
+    void routeToTheStartIsASingleState() {
+        StateGraph graph = StateGraph.build(TestGraphs.grid(3, 3));
+        RoutePlanner planner = new RoutePlanner(graph);
+        Route route = new Route();
+        for (boolean heuristic : new boolean[] {false, true}) {
+            planner.setUseHeuristic(heuristic);
+            assertTrue(planner.findRoute(4, 4, route));
+            assertEquals(1, route.getLength());
+            assertEquals(0, route.getDistance());
+            assertEquals(4, route.getState(0));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.indoorgml.routing;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Graphs and reference distances shared by the routing tests.
+ */
+final class TestGraphs {
+
+    private TestGraphs() {
+    }
+
+    /**
+     * Returns a model with {@code n} rooms whose States lie on a coarse
+     * integer grid, so equal distances are common. Room {@code i} belongs
+     * to component {@code i % components} and Transitions only connect rooms
+     * of the same component. Half of the Transitions take a detour, the
+     * others are straight, and a few are parallel or loops.
+     */
+    static IndoorGMLModel random(Random random, int n, int transitions, int components) {
+        IndoorGMLModel model = new IndoorGMLModel();
+        List<CellSpace> cells = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            cells.add(model.addCellSpace(room(random.nextInt(8), random.nextInt(8), random.nextInt(2) * 3)));
+        }
+        for (int i = 0; i < transitions; i++) {
+            int a = random.nextInt(n);
+            int b = (random.nextInt(n) / components) * components + a % components;
+            if (b >= n) {
+                b = a;
+            }
+            CellSpace ca = cells.get(a);
+            CellSpace cb = cells.get(b);
+            double[] coordinates = null;
+            if (random.nextBoolean()) {
+                double[] p = position(ca);
+                double[] q = position(cb);
+                coordinates = new double[] {
+                        p[0], p[1], p[2],
+                        random.nextInt(8), random.nextInt(8), p[2],
+                        q[0], q[1], q[2]
+                };
+            }
+            model.addTransition(ca.getState(), cb.getState(), coordinates);
+        }
+        return model;
+    }
+
+    /**
+     * Returns a model with a {@code width} by {@code height} grid of rooms
+     * one unit apart, where every room is connected to its right and upper
+     * neighbor. All shortest routes between two rooms have the same length.
+     */
+    static IndoorGMLModel grid(int width, int height) {
+        IndoorGMLModel model = new IndoorGMLModel();
+        CellSpace[] cells = new CellSpace[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                cells[y * width + x] = model.addCellSpace(room(x, y, 0));
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (x + 1 < width) {
+                    model.addTransition(cells[y * width + x].getState(), cells[y * width + x + 1].getState());
+                }
+                if (y + 1 < height) {
+                    model.addTransition(cells[y * width + x].getState(), cells[(y + 1) * width + x].getState());
+                }
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Returns a floor polygon whose centroid is the given point.
+     */
+    static List<Polygon> room(double x, double y, double z) {
+        Polygon floor = new Polygon();
+        floor.setCoordinates(new double[] {
+                x - 0.25, y - 0.25, z, x + 0.25, y - 0.25, z, x + 0.25, y + 0.25, z, x - 0.25, y + 0.25, z
+        });
+        List<Polygon> list = new ArrayList<>(1);
+        list.add(floor);
+        return list;
+    }
+
+    private static double[] position(CellSpace cell) {
+        return new double[] {
+                cell.getState().getPosition().getX(),
+                cell.getState().getPosition().getY(),
+                cell.getState().getPosition().getZ()
+        };
+    }
+
+    /**
+     * Computes all pairwise distances with Floyd-Warshall, infinity for
+     * unreachable pairs.
+     */
+    static double[][] distances(StateGraph graph) {
+        int n = graph.getStateCount();
+        double[][] d = new double[n][n];
+        for (int s = 0; s < n; s++) {
+            Arrays.fill(d[s], Double.POSITIVE_INFINITY);
+            d[s][s] = 0;
+            for (int e = graph.getFirstEdge(s); e < graph.getEndEdge(s); e++) {
+                d[s][graph.getTarget(e)] = Math.min(d[s][graph.getTarget(e)], graph.getWeight(e));
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    d[i][j] = Math.min(d[i][j], d[i][k] + d[k][j]);
+                }
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Checks that the route runs from {@code from} to {@code to} along graph
+     * edges whose weights add up to the expected distance.
+     */
+    static void assertRoute(StateGraph graph, Route route, int from, int to, double expected) {
+        assertTrue(route.isFound(), "no route from " + from + " to " + to);
+        assertEquals(expected, route.getDistance(), 1e-9);
+        assertEquals(from, route.getState(0));
+        assertEquals(to, route.getState(route.getLength() - 1));
+        double sum = 0;
+        for (int i = 0; i + 1 < route.getLength(); i++) {
+            int e = route.getEdge(i);
+            int s = route.getState(i);
+            assertTrue(e >= graph.getFirstEdge(s) && e < graph.getEndEdge(s), "edge does not leave state " + s);
+            assertEquals(route.getState(i + 1), graph.getTarget(e));
+            sum += graph.getWeight(e);
+        }
+        assertEquals(expected, sum, 1e-9);
+    }
+}
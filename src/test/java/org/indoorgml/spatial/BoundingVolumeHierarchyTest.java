@@ -0,0 +1,138 @@
+package org.indoorgml.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BoundingVolumeHierarchyTest {
+
+    private static final int ITEMS = 2000;
+
+    /**
+     * Returns random, partly overlapping boxes in a 100 x 100 x 20 volume.
+     */
+    private static double[] randomBoxes(Random random) {
+        double[] bounds = new double[ITEMS * 6];
+        for (int i = 0; i < ITEMS; i++) {
+            int b = i * 6;
+            bounds[b] = random.nextDouble() * 100;
+            bounds[b + 1] = random.nextDouble() * 100;
+            bounds[b + 2] = random.nextDouble() * 20;
+            bounds[b + 3] = bounds[b] + random.nextDouble() * 5;
+            bounds[b + 4] = bounds[b + 1] + random.nextDouble() * 5;
+            bounds[b + 5] = bounds[b + 2] + random.nextDouble() * 3;
+        }
+        return bounds;
+    }
+
+    private static boolean contains(double[] bounds, int item, double x, double y, double z) {
+        int b = item * 6;
+        return x >= bounds[b] && x <= bounds[b + 3] && y >= bounds[b + 1] && y <= bounds[b + 4]
+                && z >= bounds[b + 2] && z <= bounds[b + 5];
+    }
+
+    /**
+     * Returns the ray parameter where the ray enters the box of the item, or
+     * infinity if it misses the box.
+     */
+    private static double entry(double[] bounds, int item, double[] o, double[] d) {
+        double near = 0;
+        double far = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < 3; a++) {
+            double t1 = (bounds[item * 6 + a] - o[a]) / d[a];
+            double t2 = (bounds[item * 6 + 3 + a] - o[a]) / d[a];
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        return near <= far ? near : Double.POSITIVE_INFINITY;
+    }
+
+    @Test
+    void pointQueriesFindTheSameItemsAsBruteForce() {
+        Random random = new Random(1);
+        double[] bounds = randomBoxes(random);
+        BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(bounds);
+        assertEquals(ITEMS, bvh.getItemCount());
+
+        for (int q = 0; q < 500; q++) {
+            double x = random.nextDouble() * 105;
+            double y = random.nextDouble() * 105;
+            double z = random.nextDouble() * 23;
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < ITEMS; i++) {
+                if (contains(bounds, i, x, y, z)) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> found = new ArrayList<>();
+            bvh.query(x, y, z, item -> found.add(item));
+            found.sort(null);
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    void raycastReturnsTheClosestHitOfBruteForce() {
+        Random random = new Random(2);
+        double[] bounds = randomBoxes(random);
+        BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(bounds);
+
+        for (int q = 0; q < 500; q++) {
+            double[] o = {random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 20};
+            double[] d = {random.nextGaussian(), random.nextGaussian(), random.nextGaussian() * 0.2};
+            double maxT = 50;
+            double expected = maxT;
+            for (int i = 0; i < ITEMS; i++) {
+                expected = Math.min(expected, entry(bounds, i, o, d));
+            }
+            double hit = bvh.raycast(o[0], o[1], o[2], d[0], d[1], d[2], maxT,
+                    (item, limit) -> Math.min(limit, entry(bounds, item, o, d)));
+            assertEquals(expected, hit, 1e-12);
+        }
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(3);
+        double[] bounds = randomBoxes(random);
+        BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(bounds);
+        BoundingVolumeHierarchy.DistanceFunction center = (item, x, y, z) -> {
+            int b = item * 6;
+            double dx = (bounds[b] + bounds[b + 3]) / 2 - x;
+            double dy = (bounds[b + 1] + bounds[b + 4]) / 2 - y;
+            double dz = (bounds[b + 2] + bounds[b + 5]) / 2 - z;
+            return dx * dx + dy * dy + dz * dz;
+        };
+
+        for (int q = 0; q < 500; q++) {
+            double x = random.nextDouble() * 120 - 10;
+            double y = random.nextDouble() * 120 - 10;
+            double z = random.nextDouble() * 30 - 5;
+            int expected = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < ITEMS; i++) {
+                double dist = center.distanceSquared(i, x, y, z);
+                if (dist < best) {
+                    best = dist;
+                    expected = i;
+                }
+            }
+            assertEquals(expected, bvh.nearest(x, y, z, Double.POSITIVE_INFINITY, center));
+        }
+    }
+
+    @Test
+    void emptyHierarchyFindsNothing() {
+        BoundingVolumeHierarchy bvh = BoundingVolumeHierarchy.build(new double[0]);
+
+        List<Integer> found = new ArrayList<>();
+        bvh.query(0, 0, 0, item -> found.add(item));
+        assertEquals(0, found.size());
+        assertEquals(-1, bvh.nearest(0, 0, 0, Double.POSITIVE_INFINITY, (item, x, y, z) -> 0));
+        assertEquals(7.0, bvh.raycast(0, 0, 0, 1, 0, 0, 7, (item, limit) -> 0));
+    }
+}
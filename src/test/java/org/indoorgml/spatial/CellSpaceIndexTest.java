@@ -0,0 +1,150 @@
+package org.indoorgml.spatial;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CellSpaceIndexTest {
+
+    private static final int SIDE = 12;
+    private static final int FLOORS = 3;
+
+    private final Random random = new Random(11);
+    private IndoorGMLModel model;
+    /** Box of every cell as minX, minY, minZ, maxX, maxY, maxZ, in model order. */
+    private List<double[]> boxes;
+    private List<CellSpace> cells;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        model = new IndoorGMLModel();
+        boxes = new ArrayList<>();
+        cells = new ArrayList<>();
+        // rooms of random size that do not overlap, one per grid slot
+        for (int f = 0; f < FLOORS; f++) {
+            for (int i = 0; i < SIDE * SIDE; i++) {
+                double x = (i % SIDE) * 10 + random.nextDouble() * 2;
+                double y = (i / SIDE) * 10 + random.nextDouble() * 2;
+                double z = f * 4;
+                double[] box = {x, y, z, x + 3 + random.nextDouble() * 5, y + 3 + random.nextDouble() * 5, z + 3};
+                boxes.add(box);
+                cells.add(model.addCellSpace(box(box)));
+            }
+        }
+        pool = new ForkJoinPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Returns the six triangulated faces of a box, wound outwards.
+     */
+    private static List<Polygon> box(double[] b) {
+        double x = b[0];
+        double y = b[1];
+        double z = b[2];
+        double x2 = b[3];
+        double y2 = b[4];
+        double z2 = b[5];
+        List<Polygon> list = new ArrayList<>(6);
+        list.add(quad(x, y, z, x, y2, z, x2, y2, z, x2, y, z));
+        list.add(quad(x, y, z2, x2, y, z2, x2, y2, z2, x, y2, z2));
+        list.add(quad(x, y, z, x2, y, z, x2, y, z2, x, y, z2));
+        list.add(quad(x2, y, z, x2, y2, z, x2, y2, z2, x2, y, z2));
+        list.add(quad(x2, y2, z, x, y2, z, x, y2, z2, x2, y2, z2));
+        list.add(quad(x, y2, z, x, y, z, x, y, z2, x, y2, z2));
+        return list;
+    }
+
+    private static Polygon quad(double... c) {
+        Polygon poly = new Polygon();
+        poly.setCoordinates(c);
+        poly.setIndexArray(new int[] {0, 1, 2, 0, 2, 3});
+        return poly;
+    }
+
+    private CellSpace bruteForceContaining(double x, double y, double z) {
+        for (int i = 0; i < boxes.size(); i++) {
+            double[] b = boxes.get(i);
+            if (x > b[0] && x < b[3] && y > b[1] && y < b[4] && z > b[2] && z < b[5]) {
+                return cells.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static double boxDistanceSquared(double[] b, double x, double y, double z) {
+        double dx = Math.max(0, Math.max(b[0] - x, x - b[3]));
+        double dy = Math.max(0, Math.max(b[1] - y, y - b[4]));
+        double dz = Math.max(0, Math.max(b[2] - z, z - b[5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private double[] randomPoints(int count) {
+        double[] points = new double[count * 3];
+        for (int i = 0; i < points.length; i += 3) {
+            points[i] = random.nextDouble() * SIDE * 10;
+            points[i + 1] = random.nextDouble() * SIDE * 10;
+            points[i + 2] = random.nextDouble() * FLOORS * 4;
+        }
+        return points;
+    }
+
+    @Test
+    void pointLocationMatchesBruteForce() {
+        CellSpaceIndex index = CellSpaceIndex.build(model);
+        assertEquals(cells.size(), index.size());
+        assertEquals(cells.size() * 12, index.getTriangleCount());
+
+        double[] points = randomPoints(3000);
+        CellSpace[] expected = new CellSpace[points.length / 3];
+        int inside = 0;
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = bruteForceContaining(points[i * 3], points[i * 3 + 1], points[i * 3 + 2]);
+            assertSame(expected[i], index.findContaining(points[i * 3], points[i * 3 + 1], points[i * 3 + 2]));
+            if (expected[i] != null) {
+                inside++;
+            }
+        }
+        // both outcomes are covered
+        assertTrue(inside > 100 && inside < expected.length - 100);
+        assertArrayEquals(expected, index.findContaining(points, pool));
+    }
+
+    @Test
+    void pointsOutsideAllCellsFindTheClosestCell() {
+        CellSpaceIndex index = CellSpaceIndex.build(model);
+
+        double[] points = randomPoints(1000);
+        CellSpace[] nearest = index.findNearest(points, pool);
+        for (int i = 0; i < nearest.length; i++) {
+            double x = points[i * 3];
+            double y = points[i * 3 + 1];
+            double z = points[i * 3 + 2];
+            double best = Double.POSITIVE_INFINITY;
+            for (double[] b : boxes) {
+                best = Math.min(best, boxDistanceSquared(b, x, y, z));
+            }
+            double found = boxDistanceSquared(boxes.get(cells.indexOf(nearest[i])), x, y, z);
+            assertEquals(best, found, 1e-9);
+        }
+    }
+}
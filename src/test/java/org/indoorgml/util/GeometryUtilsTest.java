@@ -0,0 +1,65 @@
+package org.indoorgml.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs with the Vector API module added, so the public kernels take the SIMD
+ * path for long runs and are compared with the scalar fallback.
+ */
+class GeometryUtilsTest {
+
+    @Test
+    void vectorKernelsAreAvailable() {
+        assertTrue(GeometryUtils.VECTOR);
+    }
+
+    @Test
+    void boundsMatchTheScalarKernel() {
+        Random random = new Random(20);
+        for (int vertices : new int[] {0, 1, 2, 63, 64, 65, 100, 257, 1000, 4099}) {
+            double[] coords = coordinates(random, vertices + 5);
+            for (int skip : new int[] {0, 1, 5}) {
+                double[] expected = GeometryUtils.emptyBounds();
+                GeometryUtils.extendBoundsScalar(coords, skip * 3, vertices * 3, expected);
+                double[] bounds = GeometryUtils.emptyBounds();
+                GeometryUtils.extendBounds(coords, skip * 3, vertices * 3, bounds);
+                assertArrayEquals(expected, bounds, vertices + " vertices from " + skip);
+
+                // existing bounds are extended, not replaced
+                double[] wide = {-1e9, -1e9, -1e9, 1e9, 1e9, 1e9};
+                GeometryUtils.extendBounds(coords, skip * 3, vertices * 3, wide);
+                assertArrayEquals(new double[] {-1e9, -1e9, -1e9, 1e9, 1e9, 1e9}, wide);
+            }
+        }
+    }
+
+    @Test
+    void transformMatchesTheScalarKernel() {
+        Random random = new Random(20);
+        for (int vertices : new int[] {0, 1, 2, 63, 64, 65, 100, 257, 1000, 4099}) {
+            double[] coords = coordinates(random, vertices + 5);
+            for (int skip : new int[] {0, 1, 5}) {
+                double[] expected = coords.clone();
+                GeometryUtils.transformScalar(expected, skip * 3, vertices * 3, 0.37, -62762.359, -49638.265, 4);
+                double[] actual = coords.clone();
+                GeometryUtils.transform(actual, skip * 3, vertices * 3, 0.37, -62762.359, -49638.265, 4);
+                assertArrayEquals(expected, actual, vertices + " vertices from " + skip);
+            }
+        }
+    }
+
+    private static double[] coordinates(Random random, int vertices) {
+        double[] coords = new double[vertices * 3];
+        for (int i = 0; i < coords.length; i += 3) {
+            coords[i] = 62762.359 + random.nextDouble() * 800;
+            coords[i + 1] = 49638.265 - random.nextDouble() * 700;
+            coords[i + 2] = random.nextGaussian() * 50;
+        }
+        return coords;
+    }
+}
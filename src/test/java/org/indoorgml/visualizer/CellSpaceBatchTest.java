@@ -0,0 +1,155 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.VertexBuffer;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Polygon;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CellSpaceBatchTest {
+
+    private static final ColorRGBA[] PALETTE = {ColorRGBA.Red, ColorRGBA.Green, ColorRGBA.Blue};
+
+    private AssetManager assetManager;
+    private IndoorGMLModel model;
+    private List<CellSpace> cells;
+
+    @BeforeEach
+    void setUp() {
+        assetManager = TestScenes.assetManager();
+        model = new IndoorGMLModel();
+        cells = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            cells.add(model.addCellSpace(TestScenes.box(i * 10, 0, 0, 5, 5, 3)));
+        }
+    }
+
+    /**
+     * Returns the cell with its top face dropped, which no longer matches the
+     * ranges of the batch.
+     */
+    private CellSpace withoutTop(CellSpace cell) {
+        CellSpace changed = new CellSpace();
+        changed.setId(cell.getId());
+        changed.setState(cell.getState());
+        List<Polygon> polygons = new ArrayList<>(cell.getPolygons());
+        polygons.remove(1);
+        changed.setPolygons(polygons);
+        return changed;
+    }
+
+    @Test
+    void rebuiltCellKeepsItsMaterial() {
+        CellSpaceBatch batch = CellSpaceGeometryBuilder.buildBatchedCellSpaces(cells, assetManager, PALETTE, 1f);
+        Material before = batch.getRanges(cells.get(1).getId()).get(0).getGeometry().getMaterial();
+
+        batch.update(withoutTop(cells.get(1)));
+
+        List<CellSpaceBatch.Range> ranges = batch.getRanges(cells.get(1).getId());
+        assertEquals(5, ranges.size());
+        assertSame(before, ranges.get(0).getGeometry().getMaterial());
+
+        // the cyclic coloring continues where it was before the rebuild
+        CellSpace added = model.addCellSpace(TestScenes.box(30, 0, 0, 5, 5, 3));
+        batch.add(List.of(added));
+        Material first = batch.getRanges(cells.get(0).getId()).get(0).getGeometry().getMaterial();
+        assertSame(first, batch.getRanges(added.getId()).get(0).getGeometry().getMaterial());
+        assertNotSame(first, before);
+    }
+
+    @Test
+    void rebuiltVertexColoredCellKeepsItsColor() {
+        CellSpaceBatch batch = CellSpaceGeometryBuilder.buildVertexColoredCellSpaces(cells, assetManager,
+                PALETTE, 1f);
+
+        batch.update(withoutTop(cells.get(1)));
+
+        CellSpaceBatch.Range r = batch.getRanges(cells.get(1).getId()).get(0);
+        FloatBuffer colors = r.getGeometry().getMesh().getFloatBuffer(VertexBuffer.Type.Color);
+        int i = r.getFirstVertex() * 4;
+        assertEquals(ColorRGBA.Green, new ColorRGBA(colors.get(i), colors.get(i + 1), colors.get(i + 2),
+                colors.get(i + 3)));
+    }
+
+    @Test
+    void weldedCellsShareTheirCorners() {
+        CellSpaceBatch batch = CellSpaceGeometryBuilder.buildVertexColoredCellSpaces(cells, assetManager,
+                PALETTE, 1f, 1e-6);
+
+        assertEquals(3 * 24, batch.getWeldReport().getInputVertices());
+        assertEquals(3 * 8, batch.getWeldReport().getOutputVertices());
+        assertEquals(3 * 8, batch.getVertexCount());
+        for (CellSpaceBatch.Range r : batch.getRanges(cells.get(2).getId())) {
+            assertEquals(8, r.getVertexCount());
+        }
+    }
+
+    @Test
+    void movedWeldedCellIsRewrittenInPlace() {
+        CellSpaceBatch batch = CellSpaceGeometryBuilder.buildVertexColoredCellSpaces(cells, assetManager,
+                PALETTE, 1f, 1e-6);
+        CellSpaceBatch.Range before = batch.getRanges(cells.get(1).getId()).get(0);
+
+        model.moveCellSpace(cells.get(1).getId(), 0, 0, 7);
+        batch.update(model.getCellSpace(cells.get(1).getId()));
+
+        CellSpaceBatch.Range after = batch.getRanges(cells.get(1).getId()).get(0);
+        assertSame(before, after);
+        assertEquals(7, TestScenes.firstVertex(after).z, 1e-5);
+        assertEquals(1, batch.getGeometryCount());
+        assertEquals(3 * 8, batch.getVertexCount());
+        assertEquals(3 * 8, batch.getWeldReport().getOutputVertices());
+    }
+
+    @Test
+    void mostlyRemovedGeometryIsCompacted() {
+        List<CellSpace> many = new ArrayList<>(cells);
+        for (int i = 3; i < 10; i++) {
+            many.add(model.addCellSpace(TestScenes.box(i * 10, 0, 0, 5, 5, 3)));
+        }
+        CellSpaceBatch batch = CellSpaceGeometryBuilder.buildVertexColoredCellSpaces(many, assetManager,
+                PALETTE, 1f, 1e-6);
+        CellSpace kept = many.get(9);
+
+        for (int i = 0; i < 4; i++) {
+            batch.remove(many.get(i).getId());
+        }
+        assertEquals(10 * 8, batch.getVertexCount());
+        assertEquals(6 * 8, batch.getWeldReport().getOutputVertices());
+        assertEquals(6 * 24, batch.getWeldReport().getInputVertices());
+
+        batch.remove(many.get(4).getId());
+        batch.remove(many.get(5).getId());
+
+        assertEquals(1, batch.getGeometryCount());
+        assertEquals(4 * 8, batch.getVertexCount());
+        assertEquals(4 * 8, batch.getWeldReport().getOutputVertices());
+        List<CellSpaceBatch.Range> ranges = batch.getRanges(kept.getId());
+        assertEquals(6, ranges.size());
+        CellSpaceBatch.Range r = ranges.get(0);
+        assertTrue(batch.contains(r.getGeometry()));
+        assertEquals(90, TestScenes.firstVertex(r).x, 1e-5);
+        assertSame(r, batch.locate(r.getGeometry(), r.getFirstTriangle()));
+        int triangles = r.getGeometry().getMesh().getTriangleCount();
+        assertEquals(4 * 12, triangles);
+        FloatBuffer colors = r.getGeometry().getMesh().getFloatBuffer(VertexBuffer.Type.Color);
+        int i = r.getFirstVertex() * 4;
+        assertEquals(PALETTE[9 % 3], new ColorRGBA(colors.get(i), colors.get(i + 1), colors.get(i + 2),
+                colors.get(i + 3)));
+    }
+}
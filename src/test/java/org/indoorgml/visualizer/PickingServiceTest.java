@@ -0,0 +1,117 @@
+package org.indoorgml.visualizer;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Transition;
+import org.indoorgml.model.Vector3d;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PickingServiceTest {
+
+    private IndoorGMLModel model;
+    private CellSpace first;
+    private CellSpace second;
+    private PickingService picking;
+
+    @BeforeEach
+    void setUp() {
+        model = new IndoorGMLModel();
+        first = model.addCellSpace(TestScenes.box(0, 0, 0, 5, 5, 3));
+        second = model.addCellSpace(TestScenes.box(10, 0, 0, 5, 5, 3));
+        picking = new PickingService(model);
+        model.addChangeListener(picking);
+    }
+
+    /**
+     * Picks along the X axis at the given height, through both rooms.
+     */
+    private PickingService.Pick pickAlongX(double z) {
+        return picking.pick(-10, 1, z, 1, 0, 0);
+    }
+
+    @Test
+    void removedCellIsSeenThrough() {
+        PickingService.Pick pick = pickAlongX(1);
+        assertEquals(PickingService.Kind.CELL_SPACE, pick.getKind());
+        assertEquals(first.getId(), pick.getId());
+        assertEquals(10, pick.getDistance(), 1e-9);
+
+        model.removeCellSpace(first.getId());
+
+        pick = pickAlongX(1);
+        assertEquals(second.getId(), pick.getId());
+        assertEquals(20, pick.getDistance(), 1e-9);
+
+        model.removeCellSpace(second.getId());
+        assertNull(pickAlongX(1));
+    }
+
+    @Test
+    void movedCellIsPickedAtItsNewPosition() {
+        assertEquals(first.getId(), pickAlongX(1).getId());
+
+        model.moveCellSpace(first.getId(), 0, 0, 100);
+
+        assertEquals(second.getId(), pickAlongX(1).getId());
+        PickingService.Pick pick = pickAlongX(101);
+        assertEquals(first.getId(), pick.getId());
+        assertEquals(10, pick.getDistance(), 1e-9);
+    }
+
+    @Test
+    void cellAddedInTheBatchThatRemovesAnotherIsPicked() {
+        CellSpace replacement;
+        model.beginBatch();
+        try {
+            model.removeCellSpace(first.getId());
+            // may reuse the handle of the removed cell
+            replacement = model.addCellSpace(TestScenes.box(2, 0, 0, 3, 5, 3));
+        } finally {
+            model.endBatch();
+        }
+
+        PickingService.Pick pick = pickAlongX(1);
+        assertEquals(replacement.getId(), pick.getId());
+        assertEquals(12, pick.getDistance(), 1e-9);
+    }
+
+    @Test
+    void removedTransitionIsNotPicked() {
+        Transition t = model.addTransition(first.getState(), second.getState());
+        Vector3d a = model.getState(first.getState().getId()).getPosition();
+        Vector3d b = model.getState(second.getState().getId()).getPosition();
+        // straight down onto the middle of the segment, between the rooms
+        double x = (a.getX() + b.getX()) / 2;
+        double y = (a.getY() + b.getY()) / 2;
+        double z = (a.getZ() + b.getZ()) / 2;
+
+        PickingService.Pick pick = picking.pick(x, y, z + 10, 0, 0, -1);
+        assertNotNull(pick);
+        assertEquals(PickingService.Kind.TRANSITION, pick.getKind());
+        assertEquals(t.getId(), pick.getId());
+
+        model.removeTransition(t.getId());
+        assertNull(picking.pick(x, y, z + 10, 0, 0, -1));
+    }
+
+    @Test
+    void stateOfMovedCellIsPickedAtItsNewPosition() {
+        model.moveCellSpace(second.getId(), 0, 20, 0);
+        Vector3d s = model.getState(second.getState().getId()).getPosition();
+
+        // from inside the moved room towards its State
+        PickingService.Pick pick = picking.pick(s.getX() - 2, s.getY(), s.getZ(), 1, 0, 0);
+        assertEquals(PickingService.Kind.STATE, pick.getKind());
+        assertEquals(second.getState().getId(), pick.getId());
+
+        model.removeState(second.getState().getId());
+        pick = picking.pick(s.getX() - 2, s.getY(), s.getZ(), 1, 0, 0);
+        assertEquals(PickingService.Kind.CELL_SPACE, pick.getKind());
+    }
+}
@@ -0,0 +1,173 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.app.LegacyApplication;
+import com.jme3.asset.AssetManager;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.StatePoint;
+import org.indoorgml.model.Transition;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressiveSceneLoaderTest {
+
+    private static final int SIDE = 20;
+
+    private IndoorGMLModel model;
+    private CellSpaceBatch cells;
+    private InstancedStateMarkers states;
+    private TransitionNetwork transitions;
+    private List<String> cellIds;
+    private LegacyApplication app;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        model = new IndoorGMLModel();
+        List<StatePoint> rooms = new ArrayList<>();
+        for (int i = 0; i < SIDE * SIDE; i++) {
+            rooms.add(model.addCellSpace(TestScenes.box((i % SIDE) * 5, (i / SIDE) * 5, 0, 5, 5, 3)).getState());
+        }
+        cellIds = new ArrayList<>();
+        for (CellSpace cs : model.getCellSpaces()) {
+            cellIds.add(cs.getId());
+        }
+        for (int i = 0; i + 1 < rooms.size(); i++) {
+            model.addTransition(rooms.get(i), rooms.get(i + 1));
+        }
+        AssetManager assetManager = TestScenes.assetManager();
+        cells = CellSpaceGeometryBuilder.buildVertexColoredCellSpaces(Collections.emptyList(), assetManager,
+                new ColorRGBA[] {ColorRGBA.Gray}, 1f);
+        states = StateGeometryBuilder.buildInstancedStates(Collections.emptyList(), assetManager);
+        transitions = TransitionGeometryBuilder.buildTransitionNetwork(Collections.emptyList(), assetManager);
+        model.addChangeListener(new SceneSynchronizer(cells, states, transitions));
+
+        Camera camera = new Camera(640, 480);
+        camera.setLocation(Vector3f.ZERO);
+        app = new LegacyApplication() {
+            @Override
+            public Camera getCamera() {
+                return camera;
+            }
+        };
+        pool = new ForkJoinPool(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void elementsChangedDuringLoadingAreShownAsInTheModel() throws InterruptedException {
+        ProgressiveSceneLoader loader = new ProgressiveSceneLoader(model, cells, states, transitions, pool);
+        loader.initialize(app);
+
+        // hold the worker so that the first groups stay in flight
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        loader.update(0);
+        assertFalse(loader.isFinished());
+
+        // remove and move cells of the groups in flight as well as of the
+        // groups that are not submitted yet
+        for (CellSpace cs : new ArrayList<>(model.getCellSpaces())) {
+            int index = cs.getHandle();
+            if (index % 7 == 0) {
+                model.removeCellSpace(cs.getId());
+            } else if (index % 7 == 3) {
+                model.moveCellSpace(cs.getId(), 0, 0, 100);
+            }
+        }
+        release.countDown();
+        for (int frame = 0; frame < 10_000 && !loader.isFinished(); frame++) {
+            pool.awaitQuiescence(1, TimeUnit.SECONDS);
+            loader.update(0);
+        }
+        assertTrue(loader.isFinished());
+        assertEquals(1f, loader.getProgress());
+
+        for (CellSpace cs : model.getCellSpaces()) {
+            List<CellSpaceBatch.Range> ranges = cells.getRanges(cs.getId());
+            assertEquals(cs.getPolygons().size(), ranges.size(), cs.getId());
+            double z = cs.getPolygons().get(0).getCoordinates()[2];
+            assertEquals(z, TestScenes.firstVertex(ranges.get(0)).z, 1e-4, cs.getId());
+        }
+        int shown = 0;
+        for (List<CellSpaceBatch.Range> ranges : rangesOfAllCells()) {
+            shown += ranges.size();
+        }
+        int polygons = 0;
+        for (CellSpace cs : model.getCellSpaces()) {
+            polygons += cs.getPolygons().size();
+        }
+        assertEquals(polygons, shown);
+
+        assertEquals(model.getStates().size(), states.getCount());
+        for (StatePoint s : model.getStates()) {
+            Vector3f marker = states.getGeometry(s.getId()).getLocalTranslation();
+            assertEquals(s.getPosition().getZ(), marker.z, 1e-4, s.getId());
+        }
+
+        for (Transition t : model.getTransitions()) {
+            Vector3f start = TestScenes.firstVertex(transitions, t.getId());
+            assertNotNull(start, t.getId());
+            assertEquals(t.getStateA().getPosition().getZ(), start.z, 1e-4, t.getId());
+        }
+        assertEquals(model.getTransitions().size(), transitions.getSegmentCount());
+    }
+
+    @Test
+    void removedElementsAreNotLoaded() {
+        ProgressiveSceneLoader loader = new ProgressiveSceneLoader(model, cells, states, transitions);
+        loader.initialize(app);
+        CellSpace far = null;
+        for (CellSpace cs : model.getCellSpaces()) {
+            far = cs;
+        }
+        model.removeCellSpace(far.getId());
+
+        for (int frame = 0; frame < 10_000 && !loader.isFinished(); frame++) {
+            loader.update(0);
+        }
+
+        assertTrue(loader.isFinished());
+        assertTrue(cells.getRanges(far.getId()).isEmpty());
+        assertNull(states.getGeometry(far.getState().getId()));
+        assertEquals(model.getStates().size(), states.getCount());
+        assertEquals(model.getTransitions().size(), transitions.getSegmentCount());
+    }
+
+    private List<List<CellSpaceBatch.Range>> rangesOfAllCells() {
+        List<List<CellSpaceBatch.Range>> all = new ArrayList<>();
+        for (String id : cellIds) {
+            all.add(cells.getRanges(id));
+        }
+        return all;
+    }
+}
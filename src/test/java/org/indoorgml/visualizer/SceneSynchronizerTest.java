@@ -0,0 +1,63 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+
+import org.indoorgml.model.CellSpace;
+import org.indoorgml.model.IndoorGMLModel;
+import org.indoorgml.model.Transition;
+import org.indoorgml.model.Vector3d;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class SceneSynchronizerTest {
+
+    private IndoorGMLModel model;
+    private CellSpace first;
+    private CellSpaceBatch cells;
+    private InstancedStateMarkers states;
+    private TransitionNetwork transitions;
+
+    @BeforeEach
+    void setUp() {
+        AssetManager assetManager = TestScenes.assetManager();
+        model = new IndoorGMLModel();
+        first = model.addCellSpace(TestScenes.box(0, 0, 0, 5, 5, 3));
+        cells = CellSpaceGeometryBuilder.buildBatchedCellSpaces(List.of(first), assetManager,
+                new ColorRGBA[] {ColorRGBA.Gray, ColorRGBA.Blue}, 1f);
+        states = StateGeometryBuilder.buildInstancedStates(model.getStates(), assetManager);
+        transitions = TransitionGeometryBuilder.buildTransitionNetwork(model.getTransitions(), assetManager);
+        model.addChangeListener(new SceneSynchronizer(cells, states, transitions));
+    }
+
+    @Test
+    void elementsMovedInTheBatchThatAddsThemAreShownAtTheirNewPosition() {
+        model.beginBatch();
+        CellSpace added;
+        Transition t;
+        try {
+            added = model.addCellSpace(TestScenes.box(10, 0, 0, 5, 5, 3));
+            t = model.addTransition(added.getState(), first.getState());
+            model.moveCellSpace(added.getId(), 0, 20, 0);
+        } finally {
+            model.endBatch();
+        }
+
+        List<CellSpaceBatch.Range> ranges = cells.getRanges(added.getId());
+        assertEquals(6, ranges.size());
+        assertEquals(new Vector3f(10, 20, 0), TestScenes.firstVertex(ranges.get(0)));
+
+        Vector3d state = model.getState(added.getState().getId()).getPosition();
+        Vector3f start = TestScenes.firstVertex(transitions, t.getId());
+        assertNotNull(start);
+        assertEquals(state.getY(), start.y, 1e-5);
+        assertEquals(20 + 2.5, start.y, 1e-5);
+    }
+}
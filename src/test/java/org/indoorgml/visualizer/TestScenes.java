@@ -0,0 +1,79 @@
+package org.indoorgml.visualizer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+
+import org.indoorgml.model.Polygon;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Models and scene lookups shared by the visualizer tests.
+ */
+final class TestScenes {
+
+    private TestScenes() {
+    }
+
+    static AssetManager assetManager() {
+        return new DesktopAssetManager(true);
+    }
+
+    /**
+     * Returns the six packed faces of an axis aligned box.
+     */
+    static List<Polygon> box(double x, double y, double z, double w, double d, double h) {
+        double x2 = x + w;
+        double y2 = y + d;
+        double z2 = z + h;
+        List<Polygon> list = new ArrayList<>(6);
+        list.add(quad(x, y, z, x, y2, z, x2, y2, z, x2, y, z));
+        list.add(quad(x, y, z2, x2, y, z2, x2, y2, z2, x, y2, z2));
+        list.add(quad(x, y, z, x2, y, z, x2, y, z2, x, y, z2));
+        list.add(quad(x2, y, z, x2, y2, z, x2, y2, z2, x2, y, z2));
+        list.add(quad(x2, y2, z, x, y2, z, x, y2, z2, x2, y2, z2));
+        list.add(quad(x, y2, z, x, y, z, x, y, z2, x, y2, z2));
+        return list;
+    }
+
+    private static Polygon quad(double... c) {
+        Polygon poly = new Polygon();
+        poly.setCoordinates(c);
+        poly.setIndexArray(new int[] {0, 1, 2, 0, 2, 3});
+        return poly;
+    }
+
+    /**
+     * Returns the first vertex of a range as it was written to the mesh.
+     */
+    static Vector3f firstVertex(CellSpaceBatch.Range range) {
+        FloatBuffer positions = range.getGeometry().getMesh().getFloatBuffer(VertexBuffer.Type.Position);
+        int i = range.getFirstVertex() * 3;
+        return new Vector3f(positions.get(i), positions.get(i + 1), positions.get(i + 2));
+    }
+
+    /**
+     * Returns the start of the first segment of a transition in the network,
+     * or null if the network does not show it.
+     */
+    static Vector3f firstVertex(TransitionNetwork network, String transitionId) {
+        for (Spatial child : network.getNode().getChildren()) {
+            Geometry geometry = (Geometry) child;
+            int segments = geometry.getMesh().getBuffer(VertexBuffer.Type.Position).getNumElements() / 2;
+            for (int s = 0; s < segments; s++) {
+                if (transitionId.equals(network.locate(geometry, s))) {
+                    FloatBuffer positions = geometry.getMesh().getFloatBuffer(VertexBuffer.Type.Position);
+                    int i = s * 6;
+                    return new Vector3f(positions.get(i), positions.get(i + 1), positions.get(i + 2));
+                }
+            }
+        }
+        return null;
+    }
+}